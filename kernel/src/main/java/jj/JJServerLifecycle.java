@@ -5,6 +5,9 @@ import static jj.server.ServerLocation.Root;
 
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.inject.Inject;
@@ -70,6 +73,21 @@ public class JJServerLifecycle {
 
 	public void stop() {
 		if (started.compareAndSet(true, false)) {
+			ServerDraining drainingEvent = new ServerDraining();
+			publisher.publish(drainingEvent);
+			
+			for (Future<?> future : drainingEvent.pending()) {
+				try {
+					// everything draining has its own deadline, this is just in case
+					future.get(1, MINUTES);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					break;
+				} catch (ExecutionException | TimeoutException e) {
+					// stopping regardless
+				}
+			}
+			
 			publisher.publish(new ServerStopping());
 		} else {
 			// getting double stooped is also bad!
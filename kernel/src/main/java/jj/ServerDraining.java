@@ -0,0 +1,56 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import jj.logging.LoggedEvent;
+
+import org.slf4j.Logger;
+
+/**
+ * <p>
+ * Published when the server is about to stop, before {@link ServerStopping}, while
+ * everything is still running. Anything that needs to finish its work first, like
+ * answering the requests already in hand, should start winding down and register
+ * a future that completes when it's done. Stopping waits for all of them, so they
+ * should give up on their own in a reasonable time
+ * 
+ * @author jason
+ *
+ */
+@ServerLogger
+public class ServerDraining extends LoggedEvent {
+	
+	private final List<Future<?>> pending = new ArrayList<>();
+	
+	ServerDraining() {}
+	
+	public void waitFor(final Future<?> future) {
+		pending.add(future);
+	}
+	
+	List<Future<?>> pending() {
+		return pending;
+	}
+
+	@Override
+	public void describeTo(Logger logger) {
+		logger.info("Finishing up");
+	}
+}
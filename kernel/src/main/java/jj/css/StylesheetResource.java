@@ -19,6 +19,7 @@ import static jj.application.AppLocation.*;
 import static jj.server.ServerLocation.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.ZlibWrapper;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -36,6 +37,7 @@ import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Undefined;
 
+import jj.http.server.CompressedBytes;
 import jj.http.server.LoadedResource;
 import jj.http.server.ServableResourceConfiguration;
 import jj.http.server.resource.StaticResource;
@@ -71,6 +73,7 @@ public class StylesheetResource extends AbstractResource<Void> implements Loaded
 	static final String LESS_SCRIPT = "less-rhino-1.7.3.js";
 	private final ByteBuf bytes;
 	private final String sha1;
+	private final CompressedBytes compressedBytes = new CompressedBytes();
 	private final Path path;
 	private final long size;
 	private final LessConfiguration lessConfiguration;
@@ -199,7 +202,12 @@ public class StylesheetResource extends AbstractResource<Void> implements Loaded
 
 	@Override
 	public ByteBuf bytes() {
-		return Unpooled.wrappedBuffer(bytes);
+		return bytes.slice();
+	}
+	
+	@Override
+	public ByteBuf compressedBytes(ZlibWrapper wrapper) {
+		return compressedBytes.bytes(wrapper, bytes);
 	}
 
 	@Override
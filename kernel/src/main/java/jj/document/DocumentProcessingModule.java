@@ -20,6 +20,7 @@ import com.google.inject.binder.LinkedBindingBuilder;
 import com.google.inject.multibindings.MapBinder;
 
 import jj.JJModule;
+import jj.document.ScriptRequestBody.RequestBodyLoad;
 import jj.document.servable.DocumentServableModule;
 import jj.http.server.websocket.WebSocketMessageProcessor;
 import jj.jjmessage.JJMessage;
@@ -62,6 +63,8 @@ public class DocumentProcessingModule extends JJModule {
 		
 		bind(WebSocketMessageProcessor.class).to(DocumentWebSocketMessageProcessors.class);
 		
+		bindContinuationProcessingOf(RequestBodyLoad.class).to(ScriptRequestBody.class);
+		
 		bindConfiguration(DocumentConfiguration.class);
 		
 		bindAssetPath("/jj/document/assets");
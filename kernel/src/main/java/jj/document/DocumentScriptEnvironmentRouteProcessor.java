@@ -28,6 +28,8 @@ import jj.document.servable.DocumentRequestProcessor;
 import jj.execution.TaskRunner;
 import jj.http.server.HttpServerRequest;
 import jj.http.server.HttpServerResponse;
+import jj.http.server.RequestQueue;
+import jj.http.server.RequestQueues;
 import jj.http.server.RouteProcessor;
 import jj.http.server.ServableResource;
 import jj.http.server.resource.StaticResource;
@@ -39,6 +41,11 @@ import jj.resource.ResourceTask;
 import jj.resource.ResourceThread;
 
 /**
+ * <p>
+ * Serves documents. Every request ends up waiting its turn on the script
+ * thread, so they go through a {@link RequestQueue} first, and get turned
+ * away when it's backed up
+ * 
  * @author jason
  *
  */
@@ -48,34 +55,58 @@ public class DocumentScriptEnvironmentRouteProcessor implements RouteProcessor {
 	private final ResourceFinder resourceFinder;
 	private final TaskRunner taskRunner;
 	private final Injector parentInjector;
+	private final RequestQueue requestQueue;
 	
 	@Inject
-	DocumentScriptEnvironmentRouteProcessor(final ResourceFinder resourceFinder, final TaskRunner taskRunner, final Injector parentInjector) {
+	DocumentScriptEnvironmentRouteProcessor(
+		final ResourceFinder resourceFinder,
+		final TaskRunner taskRunner,
+		final Injector parentInjector,
+		final RequestQueues requestQueues
+	) {
 		this.resourceFinder = resourceFinder;
 		this.taskRunner = taskRunner;
 		this.parentInjector = parentInjector;
+		this.requestQueue = requestQueues.queue(getClass().getSimpleName());
 	}
 
 	@Override
 	public void process(final RouteMatch routeMatch, final HttpServerRequest request, final HttpServerResponse response) {
 		
+		RequestQueue.Ticket ticket = requestQueue.admit();
+		if (ticket == null) {
+			requestQueue.turnAway(response);
+			return;
+		}
+		
 		Route route = routeMatch.route();
 		
 		DocumentScriptEnvironment dse = findDocumentScriptEnvironment(route.mapping());
 		
 		if (dse == null) {
-			taskRunner.execute(new ResourceTask("Loading document script at " + route.mapping()) {
-
-				@Override
-				protected void run() throws Exception {
-					preloadResources();
-					DocumentScriptEnvironment dse = resourceFinder.loadResource(DocumentScriptEnvironment.class, Virtual, route.mapping());
-					serve(dse, request, response);
-				}
-				
-			});
+			try {
+				taskRunner.execute(new ResourceTask("Loading document script at " + route.mapping()) {
+					
+					@Override
+					protected void run() throws Exception {
+						preloadResources();
+						DocumentScriptEnvironment dse = resourceFinder.loadResource(DocumentScriptEnvironment.class, Virtual, route.mapping());
+						serve(dse, ticket, request, response);
+					}
+					
+					@Override
+					protected boolean errored(Throwable cause) {
+						ticket.cancel();
+						response.error(cause);
+						return true;
+					}
+				});
+			} catch (RuntimeException e) {
+				ticket.cancel();
+				throw e;
+			}
 		} else {
-			serve(dse, request, response);
+			serve(dse, ticket, request, response);
 		}
 	}
 	
@@ -98,25 +129,35 @@ public class DocumentScriptEnvironmentRouteProcessor implements RouteProcessor {
 		return resourceFinder.findResource(DocumentScriptEnvironment.class, Virtual, name);
 	}
 	
-	private void serve(DocumentScriptEnvironment dse, HttpServerRequest request, HttpServerResponse response) {
+	private void serve(DocumentScriptEnvironment dse, RequestQueue.Ticket ticket, HttpServerRequest request, HttpServerResponse response) {
 		if (dse == null) {
 			
+			ticket.cancel();
 			response.sendNotFound();
 			
 		} else if (dse.initializationDidError()) {
-				
+			
+			ticket.cancel();
 			response.error(dse.initializationError());
 			
 		} else {
-			parentInjector.createChildInjector(new AbstractModule() {
-				
-				@Override
-				protected void configure() {
-					bind(DocumentScriptEnvironment.class).toInstance(dse);
-					bind(HttpServerRequest.class).toInstance(request);
-					bind(HttpServerResponse.class).toInstance(response);
-				}
-			}).getInstance(DocumentRequestProcessor.class).process();
+			try {
+				parentInjector.createChildInjector(new AbstractModule() {
+					
+					@Override
+					protected void configure() {
+						bind(DocumentScriptEnvironment.class).toInstance(dse);
+						bind(HttpServerRequest.class).toInstance(request);
+						bind(HttpServerResponse.class).toInstance(response);
+						bind(RequestQueue.Ticket.class).toInstance(ticket);
+					}
+				}).getInstance(DocumentRequestProcessor.class).process();
+			} catch (RuntimeException e) {
+				// a ticket that already started is done with the queue, so this only
+				// matters if the processing never got that far
+				ticket.cancel();
+				throw e;
+			}
 		}
 	}
 
@@ -0,0 +1,158 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.document;
+
+import java.nio.file.Path;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.mozilla.javascript.Undefined;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaders;
+import jj.http.server.HttpServerRequest;
+import jj.http.server.RequestBody.SpoolListener;
+import jj.http.server.RequestBodyListener;
+import jj.script.Continuation;
+import jj.script.ContinuationProcessor;
+import jj.script.ContinuationState;
+import jj.script.CurrentScriptEnvironment;
+import jj.script.PendingKey;
+
+/**
+ * Gives document scripts the body of the request being processed, either as a
+ * string or as the path to a file holding it. Bodies that arrived with the request
+ * are returned directly, anything else is a continuation that resumes once the
+ * body has all arrived. Resumes with undefined if the body couldn't be read
+ * 
+ * @author jason
+ *
+ */
+@Singleton
+public class ScriptRequestBody implements ContinuationProcessor {
+	
+	static class RequestBodyLoad implements Continuation {
+		
+		private PendingKey pendingKey;
+		
+		private final HttpServerRequest request;
+		
+		private final boolean spool;
+		
+		RequestBodyLoad(final HttpServerRequest request, final boolean spool) {
+			this.request = request;
+			this.spool = spool;
+		}
+		
+		@Override
+		public String toString() {
+			return (spool ? "spooling" : "reading") + " the body of " + request;
+		}
+
+		@Override
+		public void pendingKey(PendingKey pendingKey) {
+			this.pendingKey = pendingKey;
+		}
+
+		@Override
+		public PendingKey pendingKey() {
+			return pendingKey;
+		}
+	}
+	
+	private final CurrentDocumentRequestProcessor document;
+	private final CurrentScriptEnvironment env;
+	
+	@Inject
+	ScriptRequestBody(final CurrentDocumentRequestProcessor document, final CurrentScriptEnvironment env) {
+		this.document = document;
+		this.env = env;
+	}
+	
+	private HttpServerRequest request() {
+		assert document.current() != null : "there is no request outside of a document request";
+		return document.current().httpRequest();
+	}
+	
+	/**
+	 * The body, as a string
+	 */
+	public Object text() {
+		HttpServerRequest request = request();
+		String body = request.body();
+		if (body != null) {
+			return body;
+		}
+		
+		throw env.preparedContinuation(new RequestBodyLoad(request, false));
+	}
+	
+	/**
+	 * The path to a temporary file holding the body, which lasts until
+	 * the response is sent
+	 */
+	public Object spool() {
+		throw env.preparedContinuation(new RequestBodyLoad(request(), true));
+	}
+
+	@Override
+	public void process(final ContinuationState continuationState) {
+		
+		final RequestBodyLoad load = continuationState.continuationAs(RequestBodyLoad.class);
+		
+		if (load.spool) {
+			load.request.requestBody().spool(new SpoolListener() {
+				
+				@Override
+				public void spooled(Path path) {
+					load.pendingKey.resume(path.toString());
+				}
+				
+				@Override
+				public void errored(Throwable cause) {
+					load.pendingKey.resume(Undefined.instance);
+				}
+			});
+		} else {
+			load.request.requestBody().read(new RequestBodyListener() {
+				
+				private final ByteBuf text = Unpooled.buffer();
+				
+				@Override
+				protected void bodyPart(ByteBuf bodyPart) {
+					text.writeBytes(bodyPart);
+				}
+				
+				@Override
+				protected void bodyComplete(HttpHeaders trailingHeaders) {
+					try {
+						load.pendingKey.resume(text.toString(load.request.charset()));
+					} finally {
+						text.release();
+					}
+				}
+				
+				@Override
+				protected void bodyErrored(Throwable cause) {
+					text.release();
+					load.pendingKey.resume(Undefined.instance);
+				}
+			});
+		}
+	}
+}
@@ -18,6 +18,7 @@ import jj.document.DocumentScriptEnvironment;
 import jj.execution.TaskRunner;
 import jj.http.server.HttpServerRequest;
 import jj.http.server.HttpServerResponse;
+import jj.http.server.RequestQueue;
 import jj.jjmessage.JJMessage;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
@@ -51,6 +52,8 @@ public class DocumentRequestProcessor {
 	
 	private final HttpServerResponse httpResponse;
 	
+	private final RequestQueue.Ticket ticket;
+	
 	private final Set<DocumentFilter> filters;
 	
 	private ArrayList<JJMessage> messages; 
@@ -63,6 +66,7 @@ public class DocumentRequestProcessor {
 		final DocumentScriptEnvironment dse,
 		final HttpServerRequest httpRequest,
 		final HttpServerResponse httpResponse,
+		final RequestQueue.Ticket ticket,
 		// move this out!
 		final Set<DocumentFilter> filters
 	) {
@@ -73,6 +77,7 @@ public class DocumentRequestProcessor {
 		this.document = dse.document();
 		this.httpRequest = httpRequest;
 		this.httpResponse = httpResponse;
+		this.ticket = ticket;
 		this.filters = filters;
 	}
 	
@@ -113,7 +118,9 @@ public class DocumentRequestProcessor {
 
 		@Override
 		protected void begin() throws Exception {
-			if (!scriptEnvironment.hasServerScript()) {
+			if (!ticket.start(httpResponse)) {
+				// waited too long, and has been turned away
+			} else if (!scriptEnvironment.hasServerScript()) {
 				respond();
 			} else if (scriptEnvironment.initializationDidError()) {
 				httpResponse.error(scriptEnvironment.initializationError());
@@ -193,6 +200,10 @@ public class DocumentRequestProcessor {
 		// and it gets REALLY ANNOYING
 		document.outputSettings().prettyPrint(false).indentAmount(0);
 		byte[] bytes = document.toString().getBytes(documentScriptEnvironment.charset());
+		if (documentScriptEnvironment.compressible()) {
+			// lets the server compress it on the way out
+			httpResponse.header(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+		}
 		httpResponse
 			.header(HttpHeaderNames.CONTENT_LENGTH, bytes.length)
 			// clients shouldn't cache these responses at all
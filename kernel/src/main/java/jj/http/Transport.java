@@ -0,0 +1,138 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http;
+
+import java.util.concurrent.ThreadFactory;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * <p>
+ * The netty transports the HTTP server and client can run on. Event loop groups
+ * and channels have to come from the same transport, so everything that builds
+ * either one asks the {@link #current()} transport for it.
+ *
+ * <p>
+ * The native transport is used whenever it can be loaded, unless the system property
+ * {@value #NATIVE_TRANSPORT_PROPERTY} is set to false. The choice is made once, since
+ * the event loop groups outlive any configuration
+ *
+ * @author jason
+ *
+ */
+public enum Transport {
+
+	/**
+	 * The linux native transport. Channels default to edge-triggered mode, and
+	 * server sockets can share ports with SO_REUSEPORT
+	 */
+	Epoll {
+
+		@Override
+		public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+			return new EpollEventLoopGroup(threads, threadFactory);
+		}
+
+		@Override
+		public Class<? extends ServerSocketChannel> serverSocketChannel() {
+			return EpollServerSocketChannel.class;
+		}
+
+		@Override
+		public Class<? extends SocketChannel> socketChannel() {
+			return EpollSocketChannel.class;
+		}
+
+		@Override
+		public Class<? extends DatagramChannel> datagramChannel() {
+			return EpollDatagramChannel.class;
+		}
+	},
+
+	/**
+	 * The JDK selector based transport, available everywhere
+	 */
+	Nio {
+
+		@Override
+		public EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+			return new NioEventLoopGroup(threads, threadFactory);
+		}
+
+		@Override
+		public Class<? extends ServerSocketChannel> serverSocketChannel() {
+			return NioServerSocketChannel.class;
+		}
+
+		@Override
+		public Class<? extends SocketChannel> socketChannel() {
+			return NioSocketChannel.class;
+		}
+
+		@Override
+		public Class<? extends DatagramChannel> datagramChannel() {
+			return NioDatagramChannel.class;
+		}
+	};
+
+	public static final String NATIVE_TRANSPORT_PROPERTY = "jj.http.nativeTransport";
+
+	private static final Transport CURRENT =
+		!"false".equalsIgnoreCase(System.getProperty(NATIVE_TRANSPORT_PROPERTY)) && io.netty.channel.epoll.Epoll.isAvailable() ?
+			Epoll :
+			Nio;
+
+	public static Transport current() {
+		return CURRENT;
+	}
+
+	/**
+	 * Looks up a native channel option by name, returning null if the netty
+	 * in use doesn't know about it. Only meaningful for the native transport
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> ChannelOption<T> nativeOption(String name) {
+		if (this == Epoll) {
+			try {
+				return (ChannelOption<T>)EpollChannelOption.class.getField(name).get(null);
+			} catch (NoSuchFieldException | IllegalAccessException e) {
+				// not in this version
+			}
+		}
+		return null;
+	}
+
+	public abstract EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory);
+
+	public abstract Class<? extends ServerSocketChannel> serverSocketChannel();
+
+	public abstract Class<? extends SocketChannel> socketChannel();
+
+	public abstract Class<? extends DatagramChannel> datagramChannel();
+}
@@ -0,0 +1,135 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.AbstractEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+
+/**
+ * <p>
+ * Base for the injectable event loop groups. The native event loop group can't be
+ * extended, so this wraps whichever group the current {@link Transport} makes and
+ * hands everything to it.
+ *
+ * @author jason
+ *
+ */
+public abstract class TransportEventLoopGroup extends AbstractEventExecutorGroup implements EventLoopGroup {
+
+	public static ThreadFactory threadFactory(final String name, final UncaughtExceptionHandler uncaughtExceptionHandler) {
+
+		return new ThreadFactory() {
+
+			private final AtomicInteger id = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+
+				Thread thread = new Thread(r, name + " " + id.incrementAndGet());
+				thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
+				return thread;
+			}
+		};
+	}
+
+	private final Transport transport;
+
+	private final EventLoopGroup delegate;
+
+	protected TransportEventLoopGroup(final int threads, final String name, final UncaughtExceptionHandler uncaughtExceptionHandler) {
+		transport = Transport.current();
+		delegate = transport.newEventLoopGroup(threads, threadFactory(name, uncaughtExceptionHandler));
+	}
+
+	public Transport transport() {
+		return transport;
+	}
+
+	@Override
+	public EventLoop next() {
+		return delegate.next();
+	}
+
+	@Override
+	@Deprecated
+	public Iterator<EventExecutor> iterator() {
+		return delegate.iterator();
+	}
+
+	@Override
+	public <E extends EventExecutor> Set<E> children() {
+		return delegate.children();
+	}
+
+	@Override
+	public ChannelFuture register(Channel channel) {
+		return delegate.register(channel);
+	}
+
+	@Override
+	public ChannelFuture register(Channel channel, ChannelPromise promise) {
+		return delegate.register(channel, promise);
+	}
+
+	@Override
+	public boolean isShuttingDown() {
+		return delegate.isShuttingDown();
+	}
+
+	@Override
+	public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+		return delegate.shutdownGracefully(quietPeriod, timeout, unit);
+	}
+
+	@Override
+	public Future<?> terminationFuture() {
+		return delegate.terminationFuture();
+	}
+
+	@Override
+	@Deprecated
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+}
@@ -21,8 +21,7 @@ import java.net.InetAddress;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.socket.nio.NioDatagramChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.local.LocalChannel;
 import io.netty.resolver.dns.DnsAddressResolverGroup;
 
 import javax.inject.Inject;
@@ -33,6 +32,7 @@ import jj.configuration.ConfigurationLoaded;
 import jj.configuration.ConfigurationLoading;
 import jj.event.Listener;
 import jj.event.Subscriber;
+import jj.http.server.HttpServerLoopback;
 
 /**
  * @author jason
@@ -45,10 +45,12 @@ class HttpClient {
 	private static final String LOCALHOST = "localhost";
 	private static final InetAddress LOCALHOST_ADDRESS = Inet6Address.getLoopbackAddress();
 	
-	private final HttpClientNioEventLoopGroup eventLoop;
+	private final HttpClientEventLoopGroup eventLoop;
 	private final HttpClientChannelInitializer initializer;
 	private final HttpClientConfigurationReader configuration;
 	private final Provider<Bootstrap> bootstrapProvider;
+	private final HttpServerLoopback loopback;
+	private final Bootstrap loopbackBootstrap;
 	private volatile Bootstrap bootstrap;
 	
 	// we can store this to verify that the configuration is the same
@@ -59,15 +61,22 @@ class HttpClient {
 	
 	@Inject
 	HttpClient(
-		final HttpClientNioEventLoopGroup eventLoop,
+		final HttpClientEventLoopGroup eventLoop,
 		final HttpClientChannelInitializer initializer,
 		final HttpClientConfigurationReader configuration,
-		final Provider<Bootstrap> bootstrapProvider
+		final Provider<Bootstrap> bootstrapProvider,
+		final HttpServerLoopback loopback
 	) {
 		this.eventLoop = eventLoop;
 		this.initializer = initializer;
 		this.configuration = configuration;
 		this.bootstrapProvider = bootstrapProvider;
+		this.loopback = loopback;
+		// nothing in the configuration applies to these
+		loopbackBootstrap = new Bootstrap()
+			.group(eventLoop)
+			.handler(initializer)
+			.channel(LocalChannel.class);
 	}
 	
 	@Listener
@@ -88,10 +97,10 @@ class HttpClient {
 			bootstrap = bootstrapProvider.get()
 				.group(eventLoop)
 				.handler(initializer)
-				.channel(NioSocketChannel.class)
+				.channel(eventLoop.transport().socketChannel())
 				.localAddress(configuration.localClientAddress())
 				.resolver(new DnsAddressResolverGroup(
-					NioDatagramChannel.class,
+					eventLoop.transport().datagramChannel(),
 					configuration.localNameserverAddress(),
 					configuration.nameservers()
 				))
@@ -104,13 +113,16 @@ class HttpClient {
 		assert host != null && !host.isEmpty() : "supply a host!";
 		assert port > 0 && port < 65536 : "supply a valid port number!";
 		
+		// TLS is terminated in front of our server, so secure
+		// requests can't go straight to it
+		if (!secure && loopback.serves(host, port)) {
+			return loopbackBootstrap.connect(loopback.address());
+		}
+		
 		if (LOCALHOST.equals(host)) { // skip right to the loopback, avoid any 
 			return bootstrap.connect(LOCALHOST_ADDRESS, port);
 		}
 		
-		// future optimization - if we're looping back onto a port bound to our http server, just
-		// pass things directly to it via embedded channels instead of going through the OS
-		
 		return bootstrap.connect(host, port);
 	}
 }
@@ -17,9 +17,9 @@ package jj.http.client;
 
 import javax.inject.Singleton;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelHandler.Sharable;
-import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpContentDecompressor;
 
@@ -29,12 +29,12 @@ import io.netty.handler.codec.http.HttpContentDecompressor;
  */
 @Singleton
 @Sharable
-class HttpClientChannelInitializer extends ChannelInitializer<SocketChannel> {
+class HttpClientChannelInitializer extends ChannelInitializer<Channel> {
 	
 	static final String CODEC = "codec";
 
 	@Override
-	protected void initChannel(SocketChannel ch) throws Exception {
+	protected void initChannel(Channel ch) throws Exception {
 		
 		ch.pipeline()
 			.addLast(new HttpClientCodec())
@@ -16,10 +16,6 @@
 package jj.http.client;
 
 import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -27,7 +23,7 @@ import javax.inject.Singleton;
 import jj.ServerStopping;
 import jj.event.Listener;
 import jj.event.Subscriber;
-import io.netty.channel.nio.NioEventLoopGroup;
+import jj.http.TransportEventLoopGroup;
 
 /**
  * @author jason
@@ -35,27 +31,11 @@ import io.netty.channel.nio.NioEventLoopGroup;
  */
 @Singleton
 @Subscriber
-class HttpClientNioEventLoopGroup extends NioEventLoopGroup {
-	
-	private static ExecutorService executorService(final int threads, final UncaughtExceptionHandler uncaughtExceptionHandler) {
-	
-	return Executors.newFixedThreadPool(threads, new ThreadFactory() {
-			
-			private final AtomicInteger id = new AtomicInteger();
-			
-			@Override
-			public Thread newThread(Runnable r) {
-				
-				Thread thread = new Thread(r, "JibbrJabbr HTTP Client I/O Handler " + id.incrementAndGet());
-				thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
-				return thread;
-			}
-		});
-	}
+class HttpClientEventLoopGroup extends TransportEventLoopGroup {
 
 	@Inject
-	HttpClientNioEventLoopGroup(UncaughtExceptionHandler uncaughtExceptionHandler) {
-		super(1, executorService(1, uncaughtExceptionHandler));
+	HttpClientEventLoopGroup(UncaughtExceptionHandler uncaughtExceptionHandler) {
+		super(1, "JibbrJabbr HTTP Client I/O Handler", uncaughtExceptionHandler);
 	}
 	
 	@Listener
@@ -33,7 +33,7 @@ public class HttpClientModule extends JJModule {
 		
 		bindContinuationProcessingOf(RestOperation.class).to(HttpClientRequestContinuationProcessor.class);
 		
-		bindExecutor(HttpClientNioEventLoopGroup.class);
+		bindExecutor(HttpClientEventLoopGroup.class);
 		
 		bindConfiguration(HttpClientConfiguration.class);
 	}
@@ -24,14 +24,14 @@ import jj.execution.JJTask;
  * @author jason
  *
  */
-public abstract class HttpClientTask extends JJTask<HttpClientNioEventLoopGroup> {
+public abstract class HttpClientTask extends JJTask<HttpClientEventLoopGroup> {
 
 	public HttpClientTask(String name) {
 		super(name);
 	}
 
 	@Override
-	protected final void addRunnableToExecutor(HttpClientNioEventLoopGroup executor, Runnable runnable) {
+	protected final void addRunnableToExecutor(HttpClientEventLoopGroup executor, Runnable runnable) {
 		executor.execute(runnable);
 	}
 
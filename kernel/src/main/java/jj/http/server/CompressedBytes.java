@@ -0,0 +1,103 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.ZlibWrapper;
+
+/**
+ * <p>
+ * Holds the compressed forms of a {@link LoadedResource}'s bytes. A resource
+ * never changes its bytes, a changed file becomes a new resource, so the
+ * compression happens once per sha1 and lives as long as the resource does.
+ *
+ * <p>
+ * Since it's only done once, it's done at the best compression level
+ *
+ * @author jason
+ *
+ */
+public class CompressedBytes {
+
+	private final EnumMap<ZlibWrapper, ByteBuf> compressed = new EnumMap<>(ZlibWrapper.class);
+
+	/**
+	 * The given bytes compressed with the given wrapper, which must be GZIP or ZLIB.
+	 * The source bytes must be the same on every call, and are held while they're
+	 * compressed so a resource dying meanwhile can't free them. The result can be read freely
+	 */
+	public ByteBuf bytes(final ZlibWrapper wrapper, final ByteBuf source) {
+		assert wrapper == ZlibWrapper.GZIP || wrapper == ZlibWrapper.ZLIB;
+
+		ByteBuf result;
+		synchronized (compressed) {
+			result = compressed.get(wrapper);
+			if (result == null) {
+				result = compress(wrapper, source);
+				compressed.put(wrapper, result);
+			}
+		}
+		return result.duplicate();
+	}
+
+	/**
+	 * Wraps the given stream in one that compresses with the given wrapper, which must
+	 * be GZIP or ZLIB, at the best compression level. Closing it closes the given stream
+	 */
+	public static OutputStream compressing(final ZlibWrapper wrapper, final OutputStream out) throws IOException {
+		assert wrapper == ZlibWrapper.GZIP || wrapper == ZlibWrapper.ZLIB;
+		
+		return wrapper == ZlibWrapper.GZIP ?
+			new GZIPOutputStream(out) {{ def.setLevel(Deflater.BEST_COMPRESSION); }} :
+			new DeflaterOutputStream(out, new Deflater(Deflater.BEST_COMPRESSION)) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						// we made it, we have to end it
+						def.end();
+					}
+				}
+			};
+	}
+
+	private ByteBuf compress(final ZlibWrapper wrapper, final ByteBuf bytes) {
+		ByteBuf source = bytes.slice().retain();
+		try {
+			ByteBuf result = Unpooled.buffer(source.readableBytes() / 2);
+			try (OutputStream out = compressing(wrapper, new ByteBufOutputStream(result))) {
+				source.getBytes(source.readerIndex(), out, source.readableBytes());
+			} catch (IOException ioe) {
+				// can't really happen, it's all in memory
+				throw new UncheckedIOException(ioe);
+			}
+			return result;
+		} finally {
+			source.release();
+		}
+	}
+}
@@ -5,26 +5,20 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
-import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler.UpgradeEvent;
 import io.netty.handler.codec.http.HttpVersion;
-import io.netty.handler.codec.http.websocketx.WebSocketServerHandshakerFactory;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.HttpConversionUtil.ExtensionHeaderNames;
 
 import java.io.IOException;
-import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 
-import com.google.inject.AbstractModule;
-import com.google.inject.Injector;
-import com.google.inject.Module;
-import com.google.inject.Provides;
-
 import jj.event.Publisher;
 import jj.http.server.uri.RouteMatch;
 import jj.http.server.uri.Router;
 import jj.http.server.websocket.WebSocketConnectionMaker;
-import jj.http.server.websocket.WebSocketFrameHandlerCreator;
 import jj.http.server.websocket.WebSocketRequestChecker;
 import jj.logging.Emergency;
 
@@ -36,93 +30,60 @@ import jj.logging.Emergency;
  */
 public class EngineHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
 	
-	private static final Pattern HTTP_REPLACER = Pattern.compile("http");
-	
-	private final ServableResources servables;
-	
 	private final Router router;
 	
-	private final Injector parentInjector;
+	private final RequestResponseCreator requestResponseCreator;
 	
 	private final WebSocketRequestChecker webSocketRequestChecker;
 	
+	private final WebSocketConnectionMaker webSocketConnectionMaker;
+	
 	private final Publisher publisher;
 	
 	@Inject
 	EngineHttpHandler(
-		final ServableResources servables,
 		final Router router,
-		final Injector parentInjector,
+		final RequestResponseCreator requestResponseCreator,
 		final WebSocketRequestChecker webSocketRequestChecker,
+		final WebSocketConnectionMaker webSocketConnectionMaker,
 		final Publisher publisher
 	) {
-		this.servables = servables;
 		this.router = router;
-		this.parentInjector = parentInjector;
+		this.requestResponseCreator = requestResponseCreator;
 		this.webSocketRequestChecker = webSocketRequestChecker;
+		this.webSocketConnectionMaker = webSocketConnectionMaker;
 		this.publisher = publisher;
 	}
-	
-	private Module makeRequestResponseModule(final ChannelHandlerContext ctx, final FullHttpRequest request) {
-		return new AbstractModule() {
-			
-			@Override
-			protected void configure() {
-				bind(ChannelHandlerContext.class).toInstance(ctx);
-				bind(FullHttpRequest.class).toInstance(request);
-				bind(HttpServerRequest.class).to(HttpServerRequestImpl.class);
-				bind(HttpServerResponse.class).to(HttpServerResponseImpl.class);
-			}
-		};
-	}
-	
-	private Module makeWebSocketHandshakerModule(final FullHttpRequest request) {
-		return new AbstractModule() {
-			
-			@Override
-			protected void configure() {
-				bind(WebSocketConnectionMaker.class);
-				bind(WebSocketFrameHandlerCreator.class);
-			}
-			
-			@Provides
-			protected WebSocketServerHandshakerFactory provideHandshaker() {
-				String uri = HTTP_REPLACER.matcher(
-					request.headers().get(HttpHeaderNames.ORIGIN) + 
-					request.uri()
-				).replaceFirst("ws");
-				
-				return new WebSocketServerHandshakerFactory(uri, null, false);
-			}
-		};
-	}
 
 	@Override
 	protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest request) throws Exception {
 		
-		//long time = System.nanoTime();
-		// injector creation is split apart here because it's measurably slower to include the websocket bindings
-		if (!request.decoderResult().isSuccess()) {
+		HttpServerRequestImpl httpRequest = requestResponseCreator.createRequest(ctx, request);
+		HttpServerResponseImpl httpResponse = requestResponseCreator.createResponse(ctx, httpRequest);
 		
-			Injector injector = parentInjector.createChildInjector(makeRequestResponseModule(ctx, request));
-			//System.out.printf("made req/res injector in %s millis%n", MILLISECONDS.convert(System.nanoTime() - time, NANOSECONDS));
+		if (!request.decoderResult().isSuccess()) {
 			
-			injector.getInstance(HttpServerResponse.class).sendError(HttpResponseStatus.BAD_REQUEST);
+			httpResponse.sendError(HttpResponseStatus.BAD_REQUEST);
 		
 		} else if (webSocketRequestChecker.isWebSocketRequest(request)) {
 			
-			Injector injector = parentInjector.createChildInjector(makeRequestResponseModule(ctx, request), makeWebSocketHandshakerModule(request));
-			//System.out.printf("made websocket handshake injector in %s millis%n", MILLISECONDS.convert(System.nanoTime() - time, NANOSECONDS));
-			
-			injector.getInstance(WebSocketConnectionMaker.class).handshakeWebsocket();
+			webSocketConnectionMaker.handshakeWebsocket(ctx, request, httpResponse);
 			
 		} else {
-		
-			Injector injector = parentInjector.createChildInjector(makeRequestResponseModule(ctx, request));
-			//System.out.printf("made req/res injector in %s millis%n", MILLISECONDS.convert(System.nanoTime() - time, NANOSECONDS));
 			
-			handleHttpRequest(injector.getInstance(HttpServerRequest.class), injector.getInstance(HttpServerResponse.class));
+			handleHttpRequest(httpRequest, httpResponse);
+		}
+	}
+	
+	@Override
+	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+		if (evt instanceof UpgradeEvent) {
+			// the request that asked for HTTP/2 gets its response on the first stream
+			FullHttpRequest request = ((UpgradeEvent)evt).upgradeRequest();
+			request.headers().setInt(ExtensionHeaderNames.STREAM_ID.text(), Http2CodecUtil.HTTP_UPGRADE_STREAM_ID);
+			channelRead0(ctx, request);
 		}
+		super.userEventTriggered(ctx, evt);
 	}
 	
 	@Override
@@ -142,7 +103,7 @@ public class EngineHttpHandler extends SimpleChannelInboundHandler<FullHttpReque
 	private void handleHttpRequest(final HttpServerRequest request, final HttpServerResponse response) throws Exception {
 		
 		RouteMatch routeMatch = router.routeRequest(request.method(), request.uriMatch());
-		RouteProcessor rp = servables.routeProcessor(routeMatch.resourceName());
+		RouteProcessor rp = routeMatch.routeProcessor();
 		if (rp != null) {
 			rp.process(routeMatch, request, response);
 		} else {
@@ -0,0 +1,133 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * <p>
+ * Holds flushes back so each one costs the socket a write only when it has to.
+ * Flushes made while the connection is being read, which is where the responses
+ * to pipelined requests come from, go out once when the read is complete. Flushes
+ * made anywhere else go out once at the end of the current turn of the event loop,
+ * along with anything else written in the meantime.
+ *
+ * <p>
+ * Gives up waiting after the given number of flushes, when the connection stops
+ * being writable, and before it closes, so nothing is held back for long
+ *
+ * <p>
+ * Has to go first in the pipeline, so it sees the flushes of everything after it
+ *
+ * @author jason
+ *
+ */
+class FlushConsolidator extends ChannelDuplexHandler {
+	
+	private final int flushLimit;
+	
+	private ChannelHandlerContext ctx;
+	
+	private int pendingFlushes;
+	
+	private boolean readInProgress;
+	
+	private boolean flushScheduled;
+	
+	private final Runnable scheduledFlush = () -> {
+		flushScheduled = false;
+		if (!readInProgress) {
+			flushIfPending();
+		}
+	};
+	
+	FlushConsolidator(final int flushLimit) {
+		assert flushLimit > 0;
+		this.flushLimit = flushLimit;
+	}
+	
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+	}
+	
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception {
+		if (++pendingFlushes == flushLimit) {
+			flushIfPending();
+		} else if (!readInProgress && !flushScheduled) {
+			flushScheduled = true;
+			ctx.channel().eventLoop().execute(scheduledFlush);
+		}
+	}
+	
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		readInProgress = true;
+		ctx.fireChannelRead(msg);
+	}
+	
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+		readInProgress = false;
+		flushIfPending();
+		ctx.fireChannelReadComplete();
+	}
+	
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		if (!ctx.channel().isWritable()) {
+			// let the socket drain what's there
+			flushIfPending();
+		}
+		ctx.fireChannelWritabilityChanged();
+	}
+	
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+		readInProgress = false;
+		flushIfPending();
+		ctx.fireExceptionCaught(cause);
+	}
+	
+	@Override
+	public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+		readInProgress = false;
+		flushIfPending();
+		ctx.disconnect(promise);
+	}
+	
+	@Override
+	public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+		readInProgress = false;
+		flushIfPending();
+		ctx.close(promise);
+	}
+	
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		flushIfPending();
+	}
+	
+	private void flushIfPending() {
+		if (pendingFlushes > 0) {
+			pendingFlushes = 0;
+			ctx.flush();
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static jj.http.server.PipelineStages.*;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler.SourceCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler.UpgradeCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler.UpgradeCodecFactory;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandler;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
+import io.netty.util.AsciiString;
+
+/**
+ * <p>
+ * Moves connections from HTTP/1.1 to cleartext HTTP/2, either when a request
+ * asks to upgrade to h2c, or when the client starts with the HTTP/2 preface
+ * because it knows ahead of time. TLS is terminated in front of us, so
+ * negotiation during the handshake never comes up
+ *
+ * <p>
+ * HTTP/2 connections replace the HTTP/1.1 codec and body streamer with a single
+ * connection handler, which takes care of HPACK and flow control for each stream,
+ * and turns each stream into a {@link io.netty.handler.codec.http.FullHttpRequest}
+ * carrying its stream id in a header. The responses carry it back, so the
+ * {@link EngineHttpHandler} and everything after it works the same either way.
+ * The streaming {@link ResponseCompressor} is taken out too, since responses to
+ * different streams can be written at the same time
+ *
+ * @author jason
+ *
+ */
+@Singleton
+class Http2Upgrader implements SourceCodec, UpgradeCodecFactory {
+	
+	/**
+	 * looks at the first bytes of the connection for the HTTP/2 preface,
+	 * and removes itself once it knows either way
+	 */
+	private final class PrefaceDetector extends ByteToMessageDecoder {
+		
+		private final ByteBuf preface = Http2CodecUtil.connectionPrefaceBuf();
+		
+		@Override
+		protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+			int length = Math.min(in.readableBytes(), preface.readableBytes());
+			if (!ByteBufUtil.equals(preface, preface.readerIndex(), in, in.readerIndex(), length)) {
+				ctx.pipeline().remove(this);
+			} else if (length == preface.readableBytes()) {
+				// the connection handler reads the preface itself
+				removeHttp1(ctx.pipeline());
+				if (ctx.pipeline().get(Upgrader.toString()) != null) {
+					ctx.pipeline().remove(Upgrader.toString());
+				}
+				ctx.pipeline().addAfter(ctx.name(), Http2.toString(), newConnectionHandler());
+				ctx.pipeline().remove(this);
+			}
+			// otherwise, wait for more
+		}
+		
+		@Override
+		protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+			preface.release();
+		}
+	}
+	
+	private final HttpServerSocketConfiguration configuration;
+	
+	@Inject
+	Http2Upgrader(final HttpServerSocketConfiguration configuration) {
+		this.configuration = configuration;
+	}
+	
+	/**
+	 * A handler that goes first in the pipeline and switches the
+	 * connection to HTTP/2 if the client starts with the preface
+	 */
+	ChannelHandler newPrefaceDetector() {
+		return new PrefaceDetector();
+	}
+	
+	/**
+	 * A handler that goes between the HTTP/1.1 codec and the aggregator
+	 * and switches the connection to HTTP/2 if a request asks to upgrade
+	 */
+	ChannelHandler newUpgradeHandler() {
+		return new HttpServerUpgradeHandler(this, this, HttpServerChannelInitializer.MAX_CONTENT_LENGTH);
+	}
+	
+	HttpToHttp2ConnectionHandler newConnectionHandler() {
+		Http2Connection connection = new DefaultHttp2Connection(true);
+		return new HttpToHttp2ConnectionHandlerBuilder()
+			.connection(connection)
+			.frameListener(
+				new InboundHttp2ToHttpAdapterBuilder(connection)
+					.maxContentLength(HttpServerChannelInitializer.MAX_CONTENT_LENGTH)
+					.propagateSettings(false)
+					.build()
+			)
+			.initialSettings(
+				new Http2Settings()
+					.maxConcurrentStreams(configuration.http2MaxConcurrentStreams())
+					.initialWindowSize(configuration.http2InitialWindowSize())
+			)
+			.build();
+	}
+	
+	private void removeHttp1(ChannelPipeline pipeline) {
+		for (PipelineStages stage : new PipelineStages[] { Decoder, Encoder, BodyStreamer, Compressor }) {
+			if (pipeline.get(stage.toString()) != null) {
+				pipeline.remove(stage.toString());
+			}
+		}
+	}
+
+	@Override
+	public UpgradeCodec newUpgradeCodec(CharSequence protocol) {
+		return AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol) ?
+			new Http2ServerUpgradeCodec(Http2.toString(), newConnectionHandler()) :
+			null;
+	}
+
+	@Override
+	public void upgradeFrom(ChannelHandlerContext ctx) {
+		// the upgrade handler takes itself out once the switch is done
+		removeHttp1(ctx.pipeline());
+	}
+}
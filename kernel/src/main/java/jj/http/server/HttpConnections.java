@@ -0,0 +1,194 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static jj.http.server.PipelineStages.*;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import jj.event.Publisher;
+import jj.logging.Warning;
+
+/**
+ * <p>
+ * Sits on the listening sockets and sees every connection as it is accepted.
+ * Connections over the configured limits, overall or from a single address,
+ * are closed before they're ever registered, so they cost nothing more than
+ * the accept
+ *
+ * <p>
+ * Keeps track of every open connection, so they can be drained when the server
+ * stops or restarts. Draining lets every connection finish answering the requests
+ * it already has, using its {@link IdleConnectionHandler}, and closes whatever
+ * is still open when the time runs out
+ *
+ * @author jason
+ *
+ */
+@Singleton
+@Sharable
+class HttpConnections extends ChannelInboundHandlerAdapter {
+	
+	private final HttpServerSocketConfiguration configuration;
+	
+	private final Publisher publisher;
+	
+	private final Set<Channel> connections = ConcurrentHashMap.newKeySet();
+	
+	private final AtomicInteger count = new AtomicInteger();
+	
+	private final ConcurrentMap<InetAddress, AtomicInteger> countsByAddress = new ConcurrentHashMap<>();
+	
+	private final AtomicBoolean refusing = new AtomicBoolean();
+	
+	private volatile Promise<Void> drained;
+
+	@Inject
+	HttpConnections(final HttpServerSocketConfiguration configuration, final Publisher publisher) {
+		this.configuration = configuration;
+		this.publisher = publisher;
+	}
+	
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		Channel child = (Channel)msg;
+		if (accept(child)) {
+			ctx.fireChannelRead(child);
+		} else {
+			child.unsafe().closeForcibly();
+		}
+	}
+	
+	private InetAddress addressOf(Channel child) {
+		SocketAddress address = child.remoteAddress();
+		return address instanceof InetSocketAddress ? ((InetSocketAddress)address).getAddress() : null;
+	}
+	
+	boolean accept(final Channel child) {
+		if (drained != null) {
+			return false;
+		}
+		
+		int max = configuration.maxConnections();
+		if (count.incrementAndGet() > max && max > 0) {
+			count.decrementAndGet();
+			refused("{} connections are open, refusing more", max);
+			return false;
+		}
+		
+		InetAddress address = addressOf(child);
+		int maxPerAddress = configuration.maxConnectionsPerAddress();
+		if (address != null && maxPerAddress > 0) {
+			AtomicInteger fromAddress = countsByAddress.computeIfAbsent(address, a -> new AtomicInteger());
+			if (fromAddress.incrementAndGet() > maxPerAddress) {
+				fromAddress.decrementAndGet();
+				count.decrementAndGet();
+				refused("{} connections are open from {}, refusing more", maxPerAddress, address);
+				return false;
+			}
+		}
+		
+		if (refusing.compareAndSet(true, false)) {
+			publisher.publish(new Warning("accepting connections again"));
+		}
+		
+		connections.add(child);
+		child.closeFuture().addListener(future -> closed(child, address, maxPerAddress > 0));
+		return true;
+	}
+	
+	private void refused(String message, Object...args) {
+		if (refusing.compareAndSet(false, true)) {
+			publisher.publish(new Warning(message, args));
+		}
+	}
+	
+	private void closed(final Channel child, final InetAddress address, final boolean countedAddress) {
+		connections.remove(child);
+		if (address != null && countedAddress) {
+			countsByAddress.computeIfPresent(address, (a, fromAddress) -> fromAddress.decrementAndGet() == 0 ? null : fromAddress);
+		}
+		if (count.decrementAndGet() == 0) {
+			finishDraining();
+		}
+	}
+	
+	private void finishDraining() {
+		Promise<Void> promise = drained;
+		if (promise != null && connections.isEmpty()) {
+			drained = null;
+			promise.trySuccess(null);
+		}
+	}
+	
+	/**
+	 * How many connections are open
+	 */
+	int count() {
+		return count.get();
+	}
+	
+	/**
+	 * Stops accepting connections, and closes the open ones once they've
+	 * answered their outstanding requests, or the timeout passes. The future
+	 * completes once they're all closed, after which connections are accepted
+	 * again
+	 */
+	Future<Void> drain(final long timeout, final TimeUnit unit) {
+		Promise<Void> promise = ImmediateEventExecutor.INSTANCE.newPromise();
+		drained = promise;
+		
+		for (Channel connection : connections) {
+			IdleConnectionHandler handler = (IdleConnectionHandler)connection.pipeline().get(IdleConnection.toString());
+			if (handler == null) {
+				// upgraded to something else, like a websocket, that can't be drained
+				connection.close();
+			} else {
+				connection.eventLoop().execute(handler::drain);
+			}
+		}
+		
+		GlobalEventExecutor.INSTANCE.schedule(() -> {
+			if (!promise.isDone()) {
+				publisher.publish(new Warning("{} connections did not drain in time and are being closed", count()));
+				connections.forEach(Channel::close);
+			}
+		}, timeout, unit);
+		
+		finishDraining();
+		
+		return promise;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.stream.ChunkedInput;
+
+/**
+ * <p>
+ * Hands out the chunks of another input as {@link HttpContent}, for connections
+ * that need every piece of a body to be a message, like HTTP/2. Unlike netty's
+ * {@link io.netty.handler.codec.http.HttpChunkedInput}, it doesn't end the
+ * message, since the response always does that itself
+ * 
+ * @author jason
+ *
+ */
+class HttpContentChunks implements ChunkedInput<HttpContent> {
+	
+	private final ChunkedInput<ByteBuf> input;
+	
+	HttpContentChunks(final ChunkedInput<ByteBuf> input) {
+		this.input = input;
+	}
+
+	@Override
+	public boolean isEndOfInput() throws Exception {
+		return input.isEndOfInput();
+	}
+
+	@Override
+	public void close() throws Exception {
+		input.close();
+	}
+
+	@Override
+	@Deprecated
+	public HttpContent readChunk(ChannelHandlerContext ctx) throws Exception {
+		return readChunk(ctx.alloc());
+	}
+
+	@Override
+	public HttpContent readChunk(ByteBufAllocator allocator) throws Exception {
+		ByteBuf chunk = input.readChunk(allocator);
+		return chunk == null ? null : new DefaultHttpContent(chunk);
+	}
+
+	@Override
+	public long length() {
+		return input.length();
+	}
+
+	@Override
+	public long progress() {
+		return input.progress();
+	}
+}
@@ -20,17 +20,16 @@ import static java.util.concurrent.TimeUnit.*;
 
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
 
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
 import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
 
 
 import javax.inject.Inject;
@@ -38,12 +37,15 @@ import javax.inject.Provider;
 import javax.inject.Singleton;
 
 
+import jj.ServerDraining;
 import jj.ServerStopping;
 import jj.configuration.ConfigurationLoaded;
 import jj.event.Listener;
 import jj.event.Publisher;
 import jj.event.Subscriber;
 import jj.execution.TaskRunner;
+import jj.http.Transport;
+import jj.http.TransportEventLoopGroup;
 import jj.logging.Emergency;
 import jj.util.StringUtils;
 
@@ -55,6 +57,12 @@ import jj.util.StringUtils;
  * Mainly, this class acts as an interface point to the configuration system,
  * it listens for 
  * 
+ * <p>
+ * Stopping, for a restart or for good, closes the listening sockets first, then
+ * gives the open connections a chance to finish what they're doing before they
+ * are closed. The I/O event loops are only shut down when the server stops, a
+ * restart keeps using them
+ * 
  * @author jason
  *
  */
@@ -62,25 +70,13 @@ import jj.util.StringUtils;
 @Subscriber
 class HttpServer {
 
-	private static ExecutorService executorService(final int threads, final UncaughtExceptionHandler uncaughtExceptionHandler) {
+	private final HttpServerEventLoopGroup ioEventLoopGroup;
 	
-		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
-			
-			private final AtomicInteger id = new AtomicInteger();
-			
-			@Override
-			public Thread newThread(Runnable r) {
-				
-				Thread thread = new Thread(r, "JibbrJabbr HTTP Boss Handler  " + id.incrementAndGet());
-				thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
-				return thread;
-			}
-		});
-	}
+	private final HttpServerChannelInitializer initializer;
 	
-	private final HttpServerNioEventLoopGroup ioEventLoopGroup;
+	private final HttpConnections connections;
 	
-	private final HttpServerChannelInitializer initializer;
+	private final HttpServerLoopback loopback;
 	
 	private final HttpServerSocketConfiguration configuration;
 	
@@ -100,8 +96,10 @@ class HttpServer {
 	
 	@Inject
 	HttpServer(
-		final HttpServerNioEventLoopGroup ioEventLoopGroup,
+		final HttpServerEventLoopGroup ioEventLoopGroup,
 		final HttpServerChannelInitializer initializer,
+		final HttpConnections connections,
+		final HttpServerLoopback loopback,
 		final HttpServerSocketConfiguration configuration,
 		final HttpServerSwitch httpServerSwitch,
 		final Publisher publisher,
@@ -111,6 +109,8 @@ class HttpServer {
 	) {
 		this.ioEventLoopGroup = ioEventLoopGroup;
 		this.initializer = initializer;
+		this.connections = connections;
+		this.loopback = loopback;
 		this.configuration = configuration;
 		this.httpServerSwitch = httpServerSwitch;
 		this.publisher = publisher;
@@ -126,10 +126,20 @@ class HttpServer {
 		}
 	}
 
+	@Listener
+	void on(ServerDraining event) {
+		if (httpServerSwitch.on() && serverBootstrap != null) {
+			// netty futures can't be waited on from just anywhere
+			CompletableFuture<Void> stopped = new CompletableFuture<>();
+			stop(serverBootstrap).addListener(future -> stopped.complete(null));
+			event.waitFor(stopped);
+		}
+	}
+
 	@Listener
 	void on(ServerStopping event) {
 		if (httpServerSwitch.on() && serverBootstrap != null) {
-			stop(serverBootstrap);
+			ioEventLoopGroup.shutdownGracefully();
 			publisher.publish(new HttpServerStopped());
 			serverBootstrap = null;
 		}
@@ -161,28 +171,48 @@ class HttpServer {
 	}
 	
 	private Future<?> stop(ServerBootstrap serverBootstrap) {
-		return serverBootstrap.group().shutdownGracefully(0, 250, MILLISECONDS).addListener((future) -> {
-			if (!future.isSuccess()) {} // uhhhh - no clue here really. can't imagine the failure mode yet
-			if (serverBootstrap.childGroup() != null) {
-				serverBootstrap.childGroup().shutdownGracefully(); // don't really care about waiting for these
-			}
+		Promise<Void> stopped = ImmediateEventExecutor.INSTANCE.newPromise();
+		loopback.close();
+		// closing the acceptors closes the listening sockets
+		serverBootstrap.group().shutdownGracefully(0, 250, MILLISECONDS).addListener((future) -> {
+			connections.drain(configuration.drainTimeout(), MILLISECONDS).addListener(drained -> {
+				if (future.isSuccess()) {
+					stopped.setSuccess(null);
+				} else {
+					stopped.setFailure(future.cause());
+				}
+			});
 		});
+		return stopped;
 	}
 
 	private void start() throws Exception {
 		List<Binding> bindings = configuration.bindings();
 		if (!bindings.isEmpty()) {
-			serverBootstrap = bindPorts(makeServerBootstrap(bindings.size()), bindings);
+			int acceptors = acceptorsPerBinding();
+			serverBootstrap = bindPorts(makeServerBootstrap(bindings.size() * acceptors, acceptors), bindings, acceptors);
+			// requests we make to ourselves don't need the network
+			loopback.open(ioEventLoopGroup, connections, initializer, bindings).sync();
 			publisher.publish(new HttpServerStarted());
 		} else {
 			serverBootstrap = null;
 		}
 	}
+	
+	private int acceptorsPerBinding() {
+		// only the native transport can share a port between sockets
+		return ioEventLoopGroup.transport() == Transport.Epoll ? Math.max(1, configuration.acceptorsPerBinding()) : 1;
+	}
 
-	private ServerBootstrap makeServerBootstrap(int bindingCount) {
-		return serverBootstrapProvider.get()
-			.group(new NioEventLoopGroup(bindingCount, executorService(bindingCount, uncaughtExceptionHandler)), ioEventLoopGroup)
-			.channel(NioServerSocketChannel.class)
+	private ServerBootstrap makeServerBootstrap(int acceptorCount, int acceptorsPerBinding) {
+		Transport transport = ioEventLoopGroup.transport();
+		ServerBootstrap result = serverBootstrapProvider.get()
+			.group(
+				transport.newEventLoopGroup(acceptorCount, TransportEventLoopGroup.threadFactory("JibbrJabbr HTTP Boss Handler", uncaughtExceptionHandler)),
+				ioEventLoopGroup
+			)
+			.channel(transport.serverSocketChannel())
+			.handler(connections)
 			.childHandler(initializer)
 			.option(ChannelOption.SO_KEEPALIVE, configuration.keepAlive())
 			.option(ChannelOption.SO_REUSEADDR, configuration.reuseAddress())
@@ -191,19 +221,39 @@ class HttpServer {
 			.option(ChannelOption.SO_BACKLOG, configuration.backlog())
 			.option(ChannelOption.SO_RCVBUF, configuration.receiveBufferSize())
 			.option(ChannelOption.SO_SNDBUF, configuration.sendBufferSize());
+		
+		if (transport == Transport.Epoll) {
+			result.option(EpollChannelOption.SO_REUSEPORT, acceptorsPerBinding > 1)
+				.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+			
+			if (configuration.tcpFastOpen() > 0) {
+				result.option(EpollChannelOption.TCP_FASTOPEN, configuration.tcpFastOpen());
+			}
+			
+			ChannelOption<Integer> tcpDeferAccept = transport.nativeOption("TCP_DEFER_ACCEPT");
+			if (configuration.tcpDeferAccept() > 0 && tcpDeferAccept != null) {
+				result.option(tcpDeferAccept, configuration.tcpDeferAccept());
+			}
+		}
+		
+		return result;
 	}
 
-	private ServerBootstrap bindPorts(ServerBootstrap serverBootstrap, List<Binding> bindings) throws Exception {
+	private ServerBootstrap bindPorts(ServerBootstrap serverBootstrap, List<Binding> bindings, int acceptorsPerBinding) throws Exception {
 		try {
 			for (Binding binding : bindings) {
 				
 				String host = binding.host();
 				int port = binding.port();
 				
-				if (!StringUtils.isEmpty(host)) {
-					serverBootstrap.bind(host, port).sync();
-				} else {
-					serverBootstrap.bind(port).sync();
+				// each bind lands on the next loop in the boss group, so
+				// sockets sharing a port each get their own acceptor thread
+				for (int i = 0; i < acceptorsPerBinding; ++i) {
+					if (!StringUtils.isEmpty(host)) {
+						serverBootstrap.bind(host, port).sync();
+					} else {
+						serverBootstrap.bind(port).sync();
+					}
 				}
 				publisher.publish(new BindingHttpServer(binding));
 			}
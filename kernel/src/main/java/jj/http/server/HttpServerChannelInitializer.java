@@ -17,11 +17,10 @@ package jj.http.server;
 
 import static jj.http.server.PipelineStages.*;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelHandler.Sharable;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
 import io.netty.handler.stream.ChunkedWriteHandler;
@@ -36,25 +35,60 @@ import javax.inject.Singleton;
  */
 @Singleton
 @Sharable
-class HttpServerChannelInitializer extends ChannelInitializer<SocketChannel> {
+class HttpServerChannelInitializer extends ChannelInitializer<Channel> {
+	
+	/**
+	 * the largest request body held whole in memory. bigger ones are
+	 * streamed over HTTP/1.1, and refused over HTTP/2 and in upgrades
+	 */
+	static final int MAX_CONTENT_LENGTH = 8192;
 	
 	private final Provider<EngineHttpHandler> engineProvider;
 	
+	private final HttpServerSocketConfiguration configuration;
+	
+	private final Http2Upgrader http2Upgrader;
+	
 	@Inject
 	public HttpServerChannelInitializer(
-		final Provider<EngineHttpHandler> engineProvider
+		final Provider<EngineHttpHandler> engineProvider,
+		final HttpServerSocketConfiguration configuration,
+		final Http2Upgrader http2Upgrader
 	) {
 		this.engineProvider = engineProvider;
+		this.configuration = configuration;
+		this.http2Upgrader = http2Upgrader;
 	}
 
 	@Override
-	protected void initChannel(SocketChannel ch) throws Exception {
+	protected void initChannel(Channel ch) throws Exception {
 		ChannelPipeline pipeline = ch.pipeline();
+		
+		if (configuration.flushConsolidationLimit() > 0) {
+			pipeline.addLast(FlushConsolidator.toString(), new FlushConsolidator(configuration.flushConsolidationLimit()));
+		}
 
-		pipeline.addLast(Decoder.toString(), new HttpRequestDecoder())
-			.addLast(Aggregator.toString(), new HttpObjectAggregator(8192))
-			.addLast(Encoder.toString(), new HttpResponseEncoder())
-			.addLast(ChunkedWriter.toString(), new ChunkedWriteHandler())
+		if (configuration.http2()) {
+			// the upgrade handler answers the upgrade request itself, so it
+			// needs the encoder in front of it
+			pipeline.addLast(PrefaceDetector.toString(), http2Upgrader.newPrefaceDetector())
+				.addLast(Decoder.toString(), new HttpRequestDecoder())
+				.addLast(Encoder.toString(), new HttpResponseEncoder())
+				.addLast(Upgrader.toString(), http2Upgrader.newUpgradeHandler())
+				.addLast(BodyStreamer.toString(), new RequestBodyStreamer(MAX_CONTENT_LENGTH, configuration.maxRequestBodySize()));
+		} else {
+			pipeline.addLast(Decoder.toString(), new HttpRequestDecoder())
+				.addLast(BodyStreamer.toString(), new RequestBodyStreamer(MAX_CONTENT_LENGTH, configuration.maxRequestBodySize()))
+				.addLast(Encoder.toString(), new HttpResponseEncoder());
+		}
+		
+		pipeline.addLast(ChunkedWriter.toString(), new ChunkedWriteHandler());
+		
+		if (configuration.compressResponses()) {
+			pipeline.addLast(Compressor.toString(), new ResponseCompressor(configuration.compressionThreshold()));
+		}
+		
+		pipeline.addLast(IdleConnection.toString(), new IdleConnectionHandler(configuration.idleTimeout()))
 			.addLast(JJEngine.toString(), engineProvider.get());
 	}
 
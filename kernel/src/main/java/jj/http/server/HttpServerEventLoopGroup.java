@@ -16,46 +16,26 @@
 package jj.http.server;
 
 import java.lang.Thread.UncaughtExceptionHandler;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import io.netty.channel.nio.NioEventLoopGroup;
+import jj.http.TransportEventLoopGroup;
 
 /**
  * @author jason
  *
  */
 @Singleton
-class HttpServerNioEventLoopGroup extends NioEventLoopGroup {
-	
-	private static ExecutorService executorService(final int threads, final UncaughtExceptionHandler uncaughtExceptionHandler) {
-		
-		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
-			
-			private final AtomicInteger id = new AtomicInteger();
-			
-			@Override
-			public Thread newThread(Runnable r) {
-				
-				Thread thread = new Thread(r, "JibbrJabbr HTTP Server I/O Handler " + id.incrementAndGet());
-				thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
-				return thread;
-			}
-		});
-	}
+class HttpServerEventLoopGroup extends TransportEventLoopGroup {
 	
 	private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
 
 	@Inject
-	HttpServerNioEventLoopGroup(
+	HttpServerEventLoopGroup(
 		final UncaughtExceptionHandler uncaughtExceptionHandler
 	) {
-		super(THREAD_COUNT, executorService(THREAD_COUNT, uncaughtExceptionHandler));
+		super(THREAD_COUNT, "JibbrJabbr HTTP Server I/O Handler", uncaughtExceptionHandler);
 	}
 	
 	
@@ -0,0 +1,123 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalServerChannel;
+import jj.util.StringUtils;
+
+/**
+ * <p>
+ * An in-process way into the HTTP server, for requests we make to ourselves.
+ * While the server is running, it also listens on a local address, and connections
+ * to it get the same pipeline as connections from the network, without going
+ * through the TCP stack, DNS, or connection setup
+ *
+ * <p>
+ * The client asks {@link #serves(String, int)} about every request it makes,
+ * and connects to {@link #address()} when the answer is yes. Only names that
+ * are certainly this machine count, so no lookups are needed to tell
+ *
+ * @author jason
+ *
+ */
+@Singleton
+public class HttpServerLoopback {
+	
+	private static final String LOCALHOST = "localhost";
+	
+	private final LocalAddress address = new LocalAddress("jj-http-server-" + Integer.toHexString(System.identityHashCode(this)));
+	
+	private volatile List<Binding> bindings = Collections.emptyList();
+	
+	private volatile Channel channel;
+	
+	@Inject
+	HttpServerLoopback() {}
+	
+	public LocalAddress address() {
+		return address;
+	}
+	
+	/**
+	 * true if a request to the given host and port would reach us
+	 */
+	public boolean serves(final String host, final int port) {
+		for (Binding binding : bindings) {
+			if (binding.port() == port && (
+				StringUtils.equals(host, binding.host()) ||
+				(isLoopback(host) && (isWildcard(binding.host()) || isLoopback(binding.host())))
+			)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private boolean isWildcard(final String host) {
+		return StringUtils.isEmpty(host) || "0.0.0.0".equals(host) || "::".equals(host) || "[::]".equals(host);
+	}
+	
+	private boolean isLoopback(final String host) {
+		return LOCALHOST.equalsIgnoreCase(host) ||
+			(host != null && host.startsWith("127.")) ||
+			"::1".equals(host) ||
+			"[::1]".equals(host);
+	}
+	
+	/**
+	 * Starts listening, with a pipeline made by the given handler
+	 */
+	ChannelFuture open(
+		final EventLoopGroup group,
+		final ChannelHandler acceptor,
+		final ChannelHandler initializer,
+		final List<Binding> bindings
+	) {
+		ChannelFuture future = new ServerBootstrap()
+			.group(group)
+			.channel(LocalServerChannel.class)
+			.handler(acceptor)
+			.childHandler(initializer)
+			.bind(address);
+		channel = future.channel();
+		this.bindings = bindings;
+		return future;
+	}
+	
+	/**
+	 * Stops listening. Connections already made stay open
+	 */
+	void close() {
+		bindings = Collections.emptyList();
+		Channel c = channel;
+		channel = null;
+		if (c != null) {
+			c.close();
+		}
+	}
+}
@@ -1,6 +1,9 @@
 package jj.http.server;
 
 import jj.JJModule;
+import jj.http.server.resource.PrecompressedResource;
+import jj.http.server.resource.PrecompressedResourceCreator;
+import jj.http.server.resource.PrecompressedResourceMaker;
 import jj.http.server.resource.StaticResource;
 import jj.http.server.resource.StaticResourceCreator;
 import jj.http.server.websocket.WebSocketConnectionTracker;
@@ -19,10 +22,14 @@ public class HttpServerModule extends JJModule {
 		
 		bindStartupListener(WebSocketConnectionTracker.class);
 		
+		bindStartupListener(PrecompressedResourceMaker.class);
+		
 		bindLoggedEventsAnnotatedWith(AccessLogger.class).toLogger(AccessLogger.NAME);
 		
-		bindExecutor(HttpServerNioEventLoopGroup.class);
+		bindExecutor(HttpServerEventLoopGroup.class);
 		
 		bindCreationOf(StaticResource.class).to(StaticResourceCreator.class);
+		
+		bindCreationOf(PrecompressedResource.class).to(PrecompressedResourceCreator.class);
 	}
 }
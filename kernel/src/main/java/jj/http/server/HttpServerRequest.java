@@ -97,9 +97,16 @@ public interface HttpServerRequest {
 	String id();
 
 	/**
-	 * Ehhhh this sucks.
+	 * The body as a string, if it was small enough to arrive with the
+	 * request. null if it is being streamed, in which case it has to be
+	 * read through {@link #requestBody()}
 	 */
 	String body();
+	
+	/**
+	 * The body of the request, as it arrives
+	 */
+	RequestBody requestBody();
 
 	/**
 	 * The character set of the request, currently just assumed to be UTF-8.
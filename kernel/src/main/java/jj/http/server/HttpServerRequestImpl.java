@@ -9,9 +9,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map.Entry;
 
-import javax.inject.Inject;
-import javax.inject.Singleton;
-
+import jj.http.server.RequestBodyStreamer.StreamedHttpRequest;
 import jj.http.server.uri.URIMatch;
 import jj.util.Sequence;
 import io.netty.channel.ChannelHandlerContext;
@@ -20,7 +18,6 @@ import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpMethod;
 
-@Singleton
 class HttpServerRequestImpl implements HttpServerRequest {
 	
 	private static final Sequence sequence = new Sequence();
@@ -39,11 +36,19 @@ class HttpServerRequestImpl implements HttpServerRequest {
 	
 	private final ChannelHandlerContext ctx;
 	
-	@Inject
+	private StreamedRequestBody body;
+	
 	HttpServerRequestImpl(final FullHttpRequest request, final ChannelHandlerContext ctx) {
 		this.request = request;
 		this.uriMatch = new URIMatch(request.uri());
 		this.ctx = ctx;
+		if (request instanceof StreamedHttpRequest) {
+			body = ((StreamedHttpRequest)request).body();
+		} else if (request.content().isReadable()) {
+			// the handler releases the request when it returns, but the
+			// body can be read until the response is sent
+			request.content().retain();
+		}
 	}
 	
 
@@ -124,7 +129,30 @@ class HttpServerRequestImpl implements HttpServerRequest {
 	 */
 	@Override
 	public String body() {
-		return request.content().toString(charset());
+		return request instanceof StreamedHttpRequest ? null : request.content().toString(charset());
+	}
+	
+	@Override
+	public synchronized RequestBody requestBody() {
+		if (body == null) {
+			body = new StreamedRequestBody(ctx.channel(), request.content().duplicate().retain());
+		}
+		return body;
+	}
+	
+	/**
+	 * Called when the response is sent, to let go of the body. Returns false
+	 * if the connection can't be used again
+	 */
+	boolean finish() {
+		if (!(request instanceof StreamedHttpRequest) && request.content().isReadable()) {
+			request.content().release();
+		}
+		StreamedRequestBody body;
+		synchronized (this) {
+			body = this.body;
+		}
+		return body == null || body.finish();
 	}
 
 	/**
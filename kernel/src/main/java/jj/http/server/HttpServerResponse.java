@@ -24,6 +24,7 @@ import io.netty.handler.codec.http.HttpVersion;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Date;
+import java.util.List;
 import java.util.Map.Entry;
 
 /**
@@ -109,6 +110,14 @@ public interface HttpServerResponse {
 	HttpServerResponse sendNotModified(ServableResource resource);
 
 	HttpServerResponse sendNotModified(ServableResource resource, boolean cache);
+	
+	/**
+	 * The ETag the given resource goes out with in response to this request. Each
+	 * encoding of a resource is a different set of bytes, so each has its own
+	 * @param resource
+	 * @return
+	 */
+	String etag(ServableResource resource);
 
 	/**
 	 * Sends a 307 Temporary Redirect to the given resource, using the fully qualified
@@ -136,5 +145,17 @@ public interface HttpServerResponse {
 	HttpServerResponse sendUncachableResource(ServableResource resource) throws IOException;
 
 	HttpServerResponse sendCachableResource(ServableResource resource) throws IOException;
+	
+	/**
+	 * Sends the given ranges of the resource as a 206 Partial Content, as a multipart
+	 * response if there is more than one, or a 416 Range Not Satisfiable if there
+	 * are none. Ranges are always of the unencoded bytes. Caches the response for
+	 * one year if {@code cache} is true. Ends the response
+	 * @param resource
+	 * @param ranges sorted, and not overlapping
+	 * @param cache
+	 * @return
+	 */
+	HttpServerResponse sendPartialResource(ServableResource resource, List<RangeHeaderReader.Range> ranges, boolean cache) throws IOException;
 
 }
\ No newline at end of file
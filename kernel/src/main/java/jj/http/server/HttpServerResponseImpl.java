@@ -18,53 +18,75 @@ package jj.http.server;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicReference;
 
-import javax.inject.Inject;
-import javax.inject.Singleton;
-
 import io.netty.handler.codec.http.*;
-import jj.Version;
 import jj.event.Publisher;
+import jj.http.server.RangeHeaderReader.Range;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http2.HttpConversionUtil.ExtensionHeaderNames;
 import io.netty.util.AsciiString;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedInput;
 import io.netty.handler.stream.ChunkedNioFile;
 
 /**
  * @author jason
  *
  */
-@Singleton
 class HttpServerResponseImpl implements HttpServerResponse {
 	
+	private static final int CHUNK_SIZE = 8192;
+	
+	private final HttpServerSocketConfiguration configuration;
+	
+	private final ResponseHeaderCache headerCache;
+	
 	private final HttpServerRequestImpl request;
 	
 	private final ChannelHandlerContext ctx;
 	
 	private final Publisher publisher;
+	
+	private final boolean http2;
 
-	@Inject
 	HttpServerResponseImpl(
-		final Version version,
+		final HttpServerSocketConfiguration configuration,
+		final ResponseHeaderCache headerCache,
 		final HttpServerRequestImpl request,
 		final ChannelHandlerContext ctx,
 		final Publisher publisher
 	) {
+		this.configuration = configuration;
+		this.headerCache = headerCache;
 		this.request = request;
 		this.ctx = ctx;
 		this.publisher = publisher;
-		header(HttpHeaderNames.SERVER, String.format(
-			"%s/%s (%s)",
-			version.name(),
-			version.version(),
-			version.branchName()
-		));
+		
+		// HTTP/2 requests come with the id of their stream, and the
+		// response has to go back on it
+		CharSequence streamId = request.header(ExtensionHeaderNames.STREAM_ID.text());
+		http2 = streamId != null;
+		if (http2) {
+			response.headers().set(ExtensionHeaderNames.STREAM_ID.text(), streamId);
+		}
+		
+		header(HttpHeaderNames.SERVER, headerCache.server());
 	}
 	
 	protected final DefaultHttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
@@ -162,23 +184,57 @@ class HttpServerResponseImpl implements HttpServerResponse {
 	}
 	
 	protected ByteBuf content() {
-		if (content.get() == null) {
-			content.compareAndSet(null, Unpooled.buffer(0));
+		ByteBuf result = content.get();
+		return result == null ? Unpooled.EMPTY_BUFFER : result;
+	}
+	
+	/**
+	 * adds a part to the body, which becomes a composite when there's more than one.
+	 * the part belongs to the response from here, and is released when it's written
+	 */
+	private void append(final ByteBuf part) {
+		ByteBuf current = content.get();
+		if (current == null) {
+			content.set(part);
+			return;
+		}
+		
+		CompositeByteBuf composite;
+		if (current instanceof CompositeByteBuf) {
+			composite = (CompositeByteBuf)current;
+		} else {
+			composite = ctx.alloc().compositeBuffer();
+			composite.addComponent(current).writerIndex(current.readableBytes());
+			content.set(composite);
+		}
+		composite.addComponent(composite.numComponents(), part)
+			.writerIndex(composite.writerIndex() + part.readableBytes());
+	}
+	
+	/**
+	 * lets go of any body written so far
+	 */
+	private void discardContent() {
+		ByteBuf current = content.getAndSet(null);
+		if (current != null) {
+			current.release();
 		}
-		return content.get();
 	}
 
 	@Override
 	public HttpServerResponse content(final byte[] bytes) {
 		assertNotCommitted();
-		content().writeBytes(bytes);
+		// the bytes get copied to the socket's memory at some point, so it may as well be now
+		append(ctx.alloc().ioBuffer(bytes.length).writeBytes(bytes));
 		return this;
 	}
 
 	@Override
 	public HttpServerResponse content(final ByteBuf buffer) {
 		assertNotCommitted();
-		content().writeBytes(buffer);
+		// resources keep their bytes, so they're shared rather than copied. writing
+		// releases what it sends, which gives back what's retained here
+		append(buffer.slice().retain());
 		return this;
 	}
 
@@ -201,6 +257,8 @@ class HttpServerResponseImpl implements HttpServerResponse {
 	@Override
 	public void sendError(final HttpResponseStatus status) {
 		assertNotCommitted();
+		// whatever was written before the trouble isn't going anywhere
+		discardContent();
 		byte[] body = status.reasonPhrase().getBytes(StandardCharsets.US_ASCII);
 		status(status)
 			.header(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_STORE)
@@ -243,9 +301,32 @@ class HttpServerResponseImpl implements HttpServerResponse {
 		}
 		
 		return status(HttpResponseStatus.NOT_MODIFIED)
-			.header(HttpHeaderNames.ETAG, resource.sha1())
+			.header(HttpHeaderNames.ETAG, etag(resource))
 			.end();
 	}
+	
+	@Override
+	public String etag(final ServableResource resource) {
+		if (resource instanceof LoadedResource && resource.compressible()) {
+			return etag(resource, compressionFor(((LoadedResource)resource).bytes().readableBytes()));
+		}
+		if (resource instanceof TransferableResource && resource.compressible()) {
+			TransferableResource transferable = (TransferableResource)resource;
+			ZlibWrapper wanted = compressionFor(transferable.size());
+			TransferableResource precompressed = wanted == null ? null : transferable.precompressed(wanted);
+			return precompressed == null ? resource.sha1() : precompressed.sha1();
+		}
+		return resource.sha1();
+	}
+	
+	/**
+	 * the ETag of a resource's bytes compressed on the fly with the given encoding,
+	 * or its SHA-1 if the encoding is null
+	 */
+	private static String etag(final ServableResource resource, final ZlibWrapper encoding) {
+		String sha1 = resource.sha1();
+		return sha1 == null || encoding == null ? sha1 : sha1 + "-" + ResponseCompressor.contentEncoding(encoding);
+	}
 
 	/**
 	 * Sends a 307 Temporary Redirect to the given resource, using the fully qualified
@@ -264,43 +345,81 @@ class HttpServerResponseImpl implements HttpServerResponse {
 
 	@Override
 	public HttpServerResponse sendUncachableResource(ServableResource resource) throws IOException {
-		assertNotCommitted();
-		header(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_CACHE);
-		if (resource instanceof TransferableResource) {
-			return sendResource((TransferableResource)resource);
-		} else if (resource instanceof LoadedResource) {
-			return sendResource((LoadedResource)resource);
-		}
-		
-		throw new AssertionError("trying to send a resource I don't understand");
+		return sendResource(resource, HttpHeaderValues.NO_CACHE);
 	}
 
 	@Override
 	public HttpServerResponse sendCachableResource(ServableResource resource) throws IOException {
+		return sendResource(resource, MAX_AGE_ONE_YEAR);
+	}
+	
+	private HttpServerResponse sendResource(final ServableResource resource, final CharSequence cacheControl) throws IOException {
 		assertNotCommitted();
-		header(HttpHeaderNames.CACHE_CONTROL, MAX_AGE_ONE_YEAR);
 		if (resource instanceof TransferableResource) {
+			header(HttpHeaderNames.CACHE_CONTROL, cacheControl);
 			return sendResource((TransferableResource)resource);
 		} else if (resource instanceof LoadedResource) {
-			return sendResource((LoadedResource)resource);
+			// held before anything gets set, so a resource that's gone leaves the response untouched
+			ByteBuf bytes = hold((LoadedResource)resource);
+			try {
+				header(HttpHeaderNames.CACHE_CONTROL, cacheControl);
+				return sendResource((LoadedResource)resource, bytes);
+			} finally {
+				bytes.release();
+			}
 		}
 		
 		throw new AssertionError("trying to send a resource I don't understand");
 	}
+	
+	/**
+	 * the resource's bytes, retained so that it dying can't free them while they're
+	 * in use. release them when done. a resource that has already let go of them is gone
+	 */
+	private static ByteBuf hold(final LoadedResource resource) {
+		try {
+			return resource.bytes().slice().retain();
+		} catch (IllegalReferenceCountException irce) {
+			throw new ResourceGoneException(resource, irce);
+		}
+	}
 
 	/**
 	 * Responds with the given resource and bytes as a 200 OK, not setting any
 	 * validation headers and turning caching off if no cache control headers have
 	 * previously been set on the response.  this is the appropriate responding
 	 * method for dynamically generated responses (not including simple statically
-	 * compiled dynamic resources, like less->css)
+	 * compiled dynamic resources, like less->css). the given bytes are the
+	 * resource's, held for the duration
 	 */
-	protected HttpServerResponse sendResource(final LoadedResource resource) {
-		return header(HttpHeaderNames.ETAG, resource.sha1())
-			.header(HttpHeaderNames.CONTENT_LENGTH, resource.bytes().readableBytes())
-			.header(HttpHeaderNames.CONTENT_TYPE, resource.contentType())
-			.content(resource.bytes())
-			.end();
+	protected HttpServerResponse sendResource(final LoadedResource resource, final ByteBuf held) {
+		ByteBuf bytes = held;
+		
+		ZlibWrapper encoding = resource.compressible() ? compressionFor(bytes.readableBytes()) : null;
+		if (encoding != null) {
+			// setting the encoding means the compressor leaves this alone
+			bytes = resource.compressedBytes(encoding);
+		}
+		
+		assertNotCommitted();
+		response.headers().add(headerCache.resourceHeaders(resource, encoding, etag(resource, encoding), bytes.readableBytes()));
+		
+		return content(bytes).end();
+	}
+	
+	/**
+	 * the encoding the compressor in the pipeline would pick for a body of the given
+	 * length, or null if there is no compressor or it wouldn't compress
+	 */
+	private ZlibWrapper compressionFor(long length) {
+		if (http2) {
+			// HTTP/2 connections have no compressor, but can still be sent bytes that are already compressed
+			return configuration.compressResponses() ?
+				ResponseCompressor.encodingFor(request.header(HttpHeaderNames.ACCEPT_ENCODING), length, configuration.compressionThreshold()) :
+				null;
+		}
+		ResponseCompressor compressor = ctx.pipeline().get(ResponseCompressor.class);
+		return compressor == null ? null : compressor.encodingFor(request.header(HttpHeaderNames.ACCEPT_ENCODING), length);
 	}
 
 	/**
@@ -311,19 +430,197 @@ class HttpServerResponseImpl implements HttpServerResponse {
 	 * @return
 	 */
 	protected HttpServerResponse sendResource(TransferableResource resource) throws IOException {
-		header(HttpHeaderNames.CONTENT_TYPE, resource.contentType())
-			.header(HttpHeaderNames.CONTENT_LENGTH, resource.size())
-			.header(HttpHeaderNames.DATE, new Date());
+		TransferableResource body = resource;
+		ZlibWrapper encoding = null;
 		
-		if (resource.sha1() != null) {
-			header(HttpHeaderNames.ETAG, resource.sha1());
+		if (resource.compressible()) {
+			ZlibWrapper wanted = compressionFor(resource.size());
+			TransferableResource precompressed = wanted == null ? null : resource.precompressed(wanted);
+			if (precompressed != null) {
+				body = precompressed;
+				encoding = wanted;
+			}
 		}
 		
-		return doSendTransferableResource(resource);
+		assertNotCommitted();
+		// a precompressed copy is its own set of bytes, with its own SHA-1
+		response.headers().add(headerCache.resourceHeaders(resource, encoding, body.sha1(), body.size()));
+		header(HttpHeaderNames.DATE, headerCache.date());
+		
+		return doSendTransferableResource(body);
+	}
+	
+	@Override
+	public HttpServerResponse sendPartialResource(
+		final ServableResource resource,
+		final List<Range> ranges,
+		final boolean cache
+	) throws IOException {
+		assertNotCommitted();
+		
+		if (resource instanceof TransferableResource) {
+			return sendPartialResource(resource, null, ((TransferableResource)resource).size(), ranges, cache);
+		} else if (resource instanceof LoadedResource) {
+			// held before anything gets set, so a resource that's gone leaves the response untouched
+			ByteBuf bytes = hold((LoadedResource)resource);
+			try {
+				return sendPartialResource(resource, bytes, bytes.readableBytes(), ranges, cache);
+			} finally {
+				bytes.release();
+			}
+		}
+		
+		throw new AssertionError("trying to send a resource I don't understand");
+	}
+	
+	/**
+	 * held is the loaded resource's bytes, or null if it's transferable
+	 */
+	private HttpServerResponse sendPartialResource(
+		final ServableResource resource,
+		final ByteBuf held,
+		final long size,
+		final List<Range> ranges,
+		final boolean cache
+	) throws IOException {
+		
+		header(HttpHeaderNames.CACHE_CONTROL, cache ? MAX_AGE_ONE_YEAR : HttpHeaderValues.NO_CACHE);
+		if (resource.compressible()) {
+			// the whole thing may have gone out encoded, so caches still need to know
+			header(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+		}
+		header(HttpHeaderNames.ETAG, resource.sha1());
+		
+		if (ranges.isEmpty()) {
+			return status(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+				.header(HttpHeaderNames.CONTENT_RANGE, HttpHeaderValues.BYTES + " */" + size)
+				.header(HttpHeaderNames.CONTENT_LENGTH, 0)
+				.end();
+		}
+		
+		status(HttpResponseStatus.PARTIAL_CONTENT)
+			.header(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES)
+			.header(HttpHeaderNames.DATE, headerCache.date());
+		
+		// everything gets made before anything gets written, so a failure
+		// can still be sent as an error
+		List<Object> body = new ArrayList<>(ranges.size() * 2 + 3);
+		try {
+			if (ranges.size() == 1) {
+				Range range = ranges.get(0);
+				header(HttpHeaderNames.CONTENT_TYPE, resource.contentType())
+					.header(HttpHeaderNames.CONTENT_RANGE, contentRange(range, size))
+					.header(HttpHeaderNames.CONTENT_LENGTH, range.length());
+				body.add(rangeBody(resource, held, range));
+			} else {
+				String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong()) + Long.toHexString(System.nanoTime());
+				long length = 0;
+				for (Range range : ranges) {
+					ByteBuf partHeader = Unpooled.copiedBuffer(
+						"\r\n--" + boundary +
+						"\r\n" + HttpHeaderNames.CONTENT_TYPE + ": " + resource.contentType() +
+						"\r\n" + HttpHeaderNames.CONTENT_RANGE + ": " + contentRange(range, size) +
+						"\r\n\r\n",
+						StandardCharsets.US_ASCII
+					);
+					length += partHeader.readableBytes() + range.length();
+					body.add(new DefaultHttpContent(partHeader));
+					body.add(rangeBody(resource, held, range));
+				}
+				ByteBuf end = Unpooled.copiedBuffer("\r\n--" + boundary + "--\r\n", StandardCharsets.US_ASCII);
+				length += end.readableBytes();
+				body.add(new DefaultHttpContent(end));
+				
+				header(HttpHeaderNames.CONTENT_TYPE, "multipart/byteranges; " + HttpHeaderValues.BOUNDARY + "=" + boundary)
+					.header(HttpHeaderNames.CONTENT_LENGTH, length);
+			}
+		} catch (IOException | RuntimeException e) {
+			// nothing gets written, so whatever got made has to be let go here
+			for (Object part : body) {
+				discard(part);
+			}
+			throw e;
+		}
+		
+		body.add(0, new ResponseCompressor.TransferHeaders(response));
+		body.add(LastHttpContent.EMPTY_LAST_CONTENT);
+		writeTogether(body.toArray());
+		
+		markCommitted();
+		return this;
+	}
+	
+	private String contentRange(final Range range, final long size) {
+		return HttpHeaderValues.BYTES + " " + range.start + "-" + range.end + "/" + size;
+	}
+	
+	/**
+	 * the bytes of one range, as a file transfer if the resource is transferable,
+	 * or a slice of its held bytes if it's loaded
+	 */
+	private Object rangeBody(final ServableResource resource, final ByteBuf held, final Range range) throws IOException {
+		if (resource instanceof TransferableResource) {
+			TransferableResource transferable = (TransferableResource)resource;
+			ByteBuf bytes = transferable.inMemory();
+			if (bytes != null) {
+				// already retained for us, and the slice shares it
+				return new DefaultHttpContent(bytes.slice(bytes.readerIndex() + (int)range.start, (int)range.length()));
+			}
+			// each of these closes its channel when it's done, so they each get their own
+			return fileBody(transferable, range.start, range.length());
+		}
+		
+		// writing releases it, and whoever's holding the bytes still needs them
+		return new DefaultHttpContent(held.slice(held.readerIndex() + (int)range.start, (int)range.length()).retain());
+	}
+	
+	/**
+	 * lets go of a part of the body that never got written
+	 */
+	private static void discard(final Object part) {
+		if (part instanceof ChunkedInput) {
+			try {
+				((ChunkedInput<?>)part).close();
+			} catch (Exception e) {
+				// already failing, and it's as closed as it's going to get
+			}
+		} else {
+			ReferenceCountUtil.release(part);
+		}
+	}
+	
+	/**
+	 * writes a response that takes more than one message as a single run on the
+	 * event loop, so nothing else going out on the connection can land in the
+	 * middle of it. over HTTP/2, every piece of a body goes to the stream of the
+	 * last response head written, so another stream's head in between would
+	 * send the rest of this one to the wrong place
+	 */
+	private void writeTogether(final Object...messages) {
+		Runnable write = () -> {
+			for (int i = 0; i < messages.length - 1; ++i) {
+				ctx.write(messages[i]);
+			}
+			maybeClose(ctx.writeAndFlush(messages[messages.length - 1]));
+		};
+		
+		if (ctx.executor().inEventLoop()) {
+			write.run();
+		} else {
+			try {
+				ctx.executor().execute(write);
+			} catch (RejectedExecutionException e) {
+				// the connection is going away, so nothing's getting written
+				for (Object message : messages) {
+					discard(message);
+				}
+			}
+		}
 	}
 	
 	private ChannelFuture maybeClose(final ChannelFuture f) {
-		if (!HttpUtil.isKeepAlive(request.request())) {
+		// HTTP/2 streams end on their own, the connection stays
+		if (!request.finish() || (!http2 && !HttpUtil.isKeepAlive(request.request()))) {
 			f.addListener(ChannelFutureListener.CLOSE);
 		}
 		
@@ -335,10 +632,16 @@ class HttpServerResponseImpl implements HttpServerResponse {
 	@Override
 	public HttpServerResponse end() {
 		assertNotCommitted();
-		header(HttpHeaderNames.DATE, new Date());
-		ctx.write(response);
-		ctx.write(content());
-		maybeClose(ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT));
+		header(HttpHeaderNames.DATE, headerCache.date());
+		// the body is all here, so it goes out as one message. it shares
+		// the headers, so anything the compressor changes shows up here too
+		maybeClose(ctx.writeAndFlush(new DefaultFullHttpResponse(
+			response.protocolVersion(),
+			response.status(),
+			content(),
+			response.headers(),
+			EmptyHttpHeaders.INSTANCE
+		)));
 		markCommitted();
 		return this;
 	}
@@ -360,24 +663,57 @@ class HttpServerResponseImpl implements HttpServerResponse {
 	}
 
 	/**
-	 * actually writes the stuff to the channel
-	 * 
-	 * how to test this? 
+	 * zero-copy only works if the file is on the default file system and nothing
+	 * between us and the socket needs to see the bytes on the way out. the
+	 * {@link ResponseCompressor} doesn't count, it leaves these responses alone.
+	 * HTTP/2 has to frame the bytes, so it never gets a direct transfer
+	 */
+	private boolean canTransferDirectly(TransferableResource resource) {
+		return !http2 &&
+			configuration.zeroCopyTransfer() &&
+			resource.size() >= configuration.zeroCopyThreshold() &&
+			resource.path().getFileSystem() == FileSystems.getDefault() &&
+			ctx.pipeline().get(SslHandler.class) == null &&
+			!encodesContent(ctx.pipeline().get(HttpContentEncoder.class));
+	}
+	
+	private boolean encodesContent(HttpContentEncoder encoder) {
+		return encoder != null && !(encoder instanceof ResponseCompressor);
+	}
+
+	/**
+	 * actually writes the stuff to the channel, straight from memory if the resource
+	 * is held there, otherwise using a file region if possible and falling back to chunking
 	 */
 	protected HttpServerResponse doSendTransferableResource(TransferableResource resource) throws IOException {
 		
-		ctx.write(response);
-		ctx.write(new ChunkedNioFile(resource.fileChannel()));
-		maybeClose(ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT));
+		ByteBuf bytes = resource.inMemory();
 		
-		// configuration can decide if we're doing zero-copy or chunking?
-		// can i even make zero-copy work again? haha
-		//maybeClose(ctx.writeAndFlush(new DefaultFileRegion(resource.fileChannel(), 0, resource.size())));
+		// the body doesn't pass through as content, so the compressor can't touch it
+		ResponseCompressor.TransferHeaders headers = new ResponseCompressor.TransferHeaders(response);
+		if (bytes != null) {
+			// no need to go to the file
+			writeTogether(headers, new DefaultLastHttpContent(bytes));
+		} else {
+			writeTogether(headers, fileBody(resource, 0, resource.size()), LastHttpContent.EMPTY_LAST_CONTENT);
+		}
 		
 		markCommitted();
 		return this;
 	}
 
+	/**
+	 * the given part of the file, as a region if it can be transferred directly,
+	 * otherwise in chunks, which have to be messages of their own over HTTP/2
+	 */
+	private Object fileBody(TransferableResource resource, long start, long length) throws IOException {
+		if (canTransferDirectly(resource)) {
+			return resource.fileRegion(start, length);
+		}
+		ChunkedNioFile chunks = new ChunkedNioFile(resource.fileChannel(), start, length, CHUNK_SIZE);
+		return http2 ? new HttpContentChunks(chunks) : chunks;
+	}
+
 	/**
 	 * @return {@code true} if the response has no body, {@code false} otherwise
 	 */
@@ -46,6 +46,162 @@ public interface HttpServerSocketConfiguration {
 	@Default("65536")
 	int receiveBufferSize();
 	
+	/**
+	 * The most flushes held back on a connection before they are made,
+	 * or zero to make every flush as it happens. Held flushes are made
+	 * when the connection is done reading, or at the end of the current
+	 * turn of its event loop, whichever comes first
+	 */
+	@Default("256")
+	int flushConsolidationLimit();
+	
+	/**
+	 * Should files be sent using the operating system zero-copy
+	 * facilities when the connection allows it? Connections that
+	 * transform the outgoing bytes always get chunked transfers
+	 */
+	@Default("true")
+	boolean zeroCopyTransfer();
+	
+	/**
+	 * The smallest file size in bytes that will be sent with a
+	 * zero-copy transfer. Anything smaller is chunked
+	 */
+	@Default("65536")
+	long zeroCopyThreshold();
+	
+	/**
+	 * Should responses that can be compressed be compressed for
+	 * clients that accept it?
+	 */
+	@Default("true")
+	boolean compressResponses();
+	
+	/**
+	 * The smallest response body in bytes that will be compressed.
+	 * Below this, the headers cost more than the compression saves
+	 */
+	@Default("1024")
+	long compressionThreshold();
+	
+	/**
+	 * Should clients be allowed to speak HTTP/2 in cleartext, either by
+	 * upgrading a connection or by starting with the HTTP/2 preface?
+	 */
+	@Default("true")
+	boolean http2();
+	
+	/**
+	 * How many streams an HTTP/2 client can have open at once
+	 */
+	@Default("100")
+	int http2MaxConcurrentStreams();
+	
+	/**
+	 * The initial flow control window of each HTTP/2 stream, in bytes
+	 */
+	@Default("65535")
+	int http2InitialWindowSize();
+	
+	/**
+	 * The most ranges a single request can ask for before its Range
+	 * header is ignored and it gets the whole resource
+	 */
+	@Default("5")
+	int maxRanges();
+	
+	/**
+	 * Requested ranges closer together than this many bytes are sent
+	 * as one range, since a part's headers cost more than the gap
+	 */
+	@Default("80")
+	long rangeCoalesceDistance();
+	
+	/**
+	 * The largest request body accepted, in bytes. Requests that declare
+	 * more are answered with 413, and streamed bodies that grow past it
+	 * error and close their connection
+	 */
+	@Default("104857600")
+	long maxRequestBodySize();
+	
+	/**
+	 * How many listening sockets to open for each binding. They share
+	 * the port with SO_REUSEPORT, each with its own acceptor thread, and
+	 * the kernel spreads new connections across them. Only honored by the
+	 * native transport, otherwise there is always one
+	 */
+	@Default("1")
+	int acceptorsPerBinding();
+	
+	/**
+	 * The length of the TCP_FASTOPEN queue for pending connections, or
+	 * zero to disable it. Only honored by the native transport
+	 */
+	@Default("0")
+	int tcpFastOpen();
+	
+	/**
+	 * How many seconds TCP_DEFER_ACCEPT lets a connection wait for data
+	 * before it is accepted, or zero to disable it. Only honored by the
+	 * native transport, when the version of netty in use supports it
+	 */
+	@Default("0")
+	int tcpDeferAccept();
+	
+	/**
+	 * How many requests a route processor that queues its work, like the
+	 * one for documents, will hold before it starts turning new ones away
+	 * with a 503. Zero means no limit
+	 */
+	@Default("256")
+	int maxQueuedRequests();
+	
+	/**
+	 * How many milliseconds a request can wait in a route processor's queue.
+	 * Once the oldest waiting request is older than this, new ones are turned
+	 * away, and requests that waited longer are turned away when their turn
+	 * comes. Zero means no limit
+	 */
+	@Default("2000")
+	long maxRequestQueueTime();
+	
+	/**
+	 * The Retry-After, in seconds, sent with requests that are turned away
+	 */
+	@Default("1")
+	int retryAfter();
+	
+	/**
+	 * How many seconds a connection can sit with nothing to do before
+	 * it is closed. Connections waiting on a response are never idle.
+	 * Zero means connections wait forever
+	 */
+	@Default("60")
+	int idleTimeout();
+	
+	/**
+	 * How many connections can be open at once. Connections past this
+	 * are closed as soon as they are accepted. Zero means no limit
+	 */
+	@Default("0")
+	int maxConnections();
+	
+	/**
+	 * How many connections can be open at once from a single address.
+	 * Zero means no limit
+	 */
+	@Default("0")
+	int maxConnectionsPerAddress();
+	
+	/**
+	 * How many milliseconds connections get to finish the requests they
+	 * are working on when the server stops or restarts, before they are
+	 * closed regardless
+	 */
+	@Default("10000")
+	long drainTimeout();
+	
 	@DefaultProvider(HttpBindingDefaultProvider.class)
 	List<Binding> bindings();
 }
@@ -23,14 +23,14 @@ import jj.execution.JJTask;
  * @author jason
  *
  */
-public abstract class HttpServerTask extends JJTask<HttpServerNioEventLoopGroup> {
+public abstract class HttpServerTask extends JJTask<HttpServerEventLoopGroup> {
 
 	public HttpServerTask(String name) {
 		super(name);
 	}
 
 	@Override
-	protected final void addRunnableToExecutor(HttpServerNioEventLoopGroup executor, Runnable runnable) {
+	protected final void addRunnableToExecutor(HttpServerEventLoopGroup executor, Runnable runnable) {
 		executor.execute(runnable);
 	}
 
@@ -0,0 +1,126 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http2.HttpConversionUtil.ExtensionHeaderNames;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+
+/**
+ * <p>
+ * Keeps count of the requests on a connection that haven't been answered, and
+ * closes the connection once it has gone long enough without any reads or writes
+ * and has nothing left to answer. Sits right in front of the {@link EngineHttpHandler},
+ * where requests and responses look the same for HTTP/1.1 and HTTP/2
+ *
+ * <p>
+ * Also how a connection is drained. Once {@link #drain()} is called, responses
+ * tell the client the connection is closing, and it closes as soon as the last
+ * outstanding response is written
+ *
+ * @author jason
+ *
+ */
+class IdleConnectionHandler extends IdleStateHandler {
+	
+	private ChannelHandlerContext ctx;
+	
+	private int outstanding;
+	
+	private boolean draining;
+
+	IdleConnectionHandler(final int idleTimeout) {
+		super(0, 0, idleTimeout, TimeUnit.SECONDS);
+	}
+	
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+		super.handlerAdded(ctx);
+	}
+	
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (msg instanceof HttpRequest) {
+			++outstanding;
+		}
+		super.channelRead(ctx, msg);
+	}
+	
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		if (msg instanceof HttpResponse && draining && !http2((HttpResponse)msg)) {
+			((HttpResponse)msg).headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+		}
+		
+		if (msg instanceof LastHttpContent && !informational(msg)) {
+			promise = promise.unvoid();
+			promise.addListener(future -> responded());
+		}
+		
+		super.write(ctx, msg, promise);
+	}
+	
+	private boolean http2(HttpResponse response) {
+		// HTTP/2 says goodbye when the connection closes
+		return response.headers().contains(ExtensionHeaderNames.STREAM_ID.text());
+	}
+	
+	private boolean informational(Object msg) {
+		// a 100 Continue doesn't answer anything
+		return msg instanceof HttpResponse && ((HttpResponse)msg).status().codeClass() == HttpStatusClass.INFORMATIONAL;
+	}
+	
+	private void responded() {
+		// responses to requests that never made it this far don't count
+		if (outstanding > 0) {
+			--outstanding;
+		}
+		if (outstanding == 0 && draining) {
+			ctx.close();
+		}
+	}
+	
+	@Override
+	protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) throws Exception {
+		// a request can take longer than the timeout to answer
+		if (outstanding == 0) {
+			ctx.close();
+		}
+	}
+	
+	/**
+	 * Closes the connection once everything outstanding has been answered.
+	 * Must be called from the connection's event loop
+	 */
+	void drain() {
+		assert ctx.executor().inEventLoop();
+		draining = true;
+		if (outstanding == 0) {
+			ctx.close();
+		}
+	}
+}
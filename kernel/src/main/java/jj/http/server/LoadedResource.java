@@ -16,6 +16,7 @@
 package jj.http.server;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.compression.ZlibWrapper;
 
 
 /**
@@ -30,5 +31,12 @@ public interface LoadedResource extends ServableResource {
 	
 	ByteBuf bytes();
 	
+	/**
+	 * The bytes compressed with the given wrapper, either GZIP or ZLIB. Only
+	 * asked for if the resource is {@link #compressible()}. {@link CompressedBytes}
+	 * does the work
+	 */
+	ByteBuf compressedBytes(ZlibWrapper wrapper);
+	
 	long size();
 }
@@ -16,10 +16,16 @@
 package jj.http.server;
 
 public enum PipelineStages {
+	FlushConsolidator,
+	PrefaceDetector,
 	Decoder,
-	Aggregator,
+	BodyStreamer,
 	Encoder,
+	Upgrader,
+	Http2,
 	ChunkedWriter,
+	Compressor,
+	IdleConnection,
 	JJEngine,
 	JJWebsocketHandler
 }
\ No newline at end of file
@@ -28,33 +28,49 @@ import io.netty.handler.codec.http.HttpHeaders;
 
 /**
  * Helper to determine, from request headers and prepared response,  
- * what content to actually serve to the client
+ * what content to actually serve to the client.
+ * 
+ * <p>
+ * A bad request is one whose Range header can't be understood, which
+ * gets the whole resource. A good request with no ranges left is one
+ * that can't be satisfied
  * @author jason
  *
  */
-class RangeHeaderReader {
+public class RangeHeaderReader {
 	
 	private static final String HEADER_PREFIX = "bytes=";
 	private static final Pattern SPLITTER = Pattern.compile(",");
 	private static final Pattern RANGE = Pattern.compile("(\\d*)-(\\d*)");
 	
-	static class Range implements Comparable<Range> {
-		final long start;
-		final long end;
+	/**
+	 * An inclusive range of bytes
+	 */
+	public static class Range implements Comparable<Range> {
+		public final long start;
+		public final long end;
 		
 		private Range(final long start, final long end) {
 			this.start = start;
 			this.end = end;
 		}
 		
+		public long length() {
+			return end - start + 1;
+		}
+		
 		@Override
 		public String toString() {
 			return start + "-" + end;
 		}
 
+		/**
+		 * ordered by start, and the longer range first when they start together
+		 */
 		@Override
 		public int compareTo(Range o) {
-			return (int)Math.signum(start - o.start);
+			int result = Long.compare(start, o.start);
+			return result == 0 ? Long.compare(o.end, end) : result;
 		}
 	}
 	
@@ -91,11 +107,27 @@ class RangeHeaderReader {
 		final long responseSize,
 		final long overlapDistance,
 		final int maxRanges
+	) {
+		this(requestHeaders.get(HttpHeaderNames.RANGE), responseSize, overlapDistance, maxRanges);
+	}
+	
+	/**
+	 * 
+	 * @param rangeHeader The value of the Range header from the request
+	 * @param resource The resource being served
+	 * @param overlapDistance The amount of distance between consecutive ranges that should be coalesced
+	 * @param maxRanges The maximum number of ranges that can be requested before bailing
+	 */
+	RangeHeaderReader(
+		final CharSequence rangeHeader,
+		final long responseSize,
+		final long overlapDistance,
+		final int maxRanges
 	) {
 		this.responseSize = responseSize;
 		this.overlapDistance = overlapDistance;
 		this.maxRanges = maxRanges;
-		parseRanges(requestHeaders.get(HttpHeaderNames.RANGE).toString());
+		parseRanges(rangeHeader == null ? null : rangeHeader.toString());
 	}
 	
 	private void parseRanges(String headerValue) {
@@ -123,7 +155,7 @@ class RangeHeaderReader {
 
 	private void tryCandidates(String[] candidates) {
 		for (String candidate : candidates) {
-			Matcher matcher = RANGE.matcher(candidate);
+			Matcher matcher = RANGE.matcher(candidate.trim());
 			if (matcher.matches()) {
 				String group1 = matcher.group(1);
 				String group2 = matcher.group(2);
@@ -132,17 +164,25 @@ class RangeHeaderReader {
 					break;
 				}
 				Range range;
-				if (StringUtils.isEmpty(group1)) {
-					// it's a range from the end
-					range = new Range(responseSize - (Long.parseLong(group2) + 1), responseSize - 1);
-				} else if (StringUtils.isEmpty(group2)) {
-					// it specifies a start to the end
-					range = new Range(Long.parseLong(group1), responseSize - 1);
-				} else {
-					// it's a normal range
-					range = new Range(Long.parseLong(group1), Long.parseLong(group2));
+				try {
+					if (StringUtils.isEmpty(group1)) {
+						// it's a range from the end. asking for more than there is gets everything,
+						// asking for nothing gets nothing
+						long suffix = Long.parseLong(group2);
+						range = suffix == 0 ? null : new Range(Math.max(0, responseSize - suffix), responseSize - 1);
+					} else if (StringUtils.isEmpty(group2)) {
+						// it specifies a start to the end
+						range = new Range(Long.parseLong(group1), responseSize - 1);
+					} else {
+						// it's a normal range
+						range = new Range(Long.parseLong(group1), Long.parseLong(group2));
+					}
+				} catch (NumberFormatException nfe) {
+					// too big to be real
+					badRequest = true;
+					break;
 				}
-				if (range.start >= 0 && range.start <= range.end && range.start <= responseSize - 1) {
+				if (range != null && range.start >= 0 && range.start <= range.end && range.start <= responseSize - 1) {
 					ranges.add(range.end > responseSize - 1 ? new Range(range.start, responseSize - 1) : range);
 				}
 				
@@ -189,7 +229,7 @@ class RangeHeaderReader {
 	}
 
 	private void cleanOverlaps(List<Range> adjustedRanges) {
-		long hwm = 0;
+		long hwm = -1;
 		for (Iterator<Range> i = adjustedRanges.iterator(); i.hasNext();) {
 			Range range = i.next();
 			if (range.end > hwm) {
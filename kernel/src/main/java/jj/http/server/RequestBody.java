@@ -0,0 +1,64 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import java.nio.file.Path;
+
+/**
+ * <p>
+ * The body of an incoming request. Small bodies arrive whole with the request,
+ * larger ones are read from the connection as they are consumed, so a request
+ * that nobody reads holds no more than what the socket already had.
+ *
+ * <p>
+ * A body can be read once, either directly or by spooling. Whatever hasn't been
+ * read when the response is sent is thrown away, and spooled files are deleted
+ * then too
+ *
+ * @author jason
+ *
+ */
+public interface RequestBody {
+	
+	/**
+	 * Told when a spooled body is completely in its file, or when it
+	 * couldn't get there
+	 */
+	public interface SpoolListener {
+		
+		void spooled(Path path);
+		
+		void errored(Throwable cause);
+	}
+
+	/**
+	 * The length the request declared for its body, or -1 if it didn't
+	 */
+	long length();
+	
+	/**
+	 * Hands the body to the listener, one part at a time as it arrives. The next
+	 * part is not read from the connection until the listener returns from the
+	 * last one, or resumes if it paused
+	 */
+	void read(RequestBodyListener listener);
+	
+	/**
+	 * Writes the body to a temporary file, and tells the listener where it is
+	 * once it's all there. The file lasts until the response is sent
+	 */
+	void spool(SpoolListener listener);
+}
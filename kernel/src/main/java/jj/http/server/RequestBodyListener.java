@@ -0,0 +1,64 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaders;
+
+/**
+ * <p>
+ * Receives a {@link RequestBody} as it arrives. Every method is called on the
+ * connection's I/O thread, so none of them should block.
+ *
+ * <p>
+ * Listeners that hand the parts off somewhere asynchronous can {@link #pause()}
+ * while they do, and nothing more is read from the connection until they
+ * {@link #resume()}. The parts are released after {@link #bodyPart(ByteBuf)}
+ * returns, so anything kept past that has to be retained
+ *
+ * @author jason
+ *
+ */
+public abstract class RequestBodyListener {
+	
+	private StreamedRequestBody body;
+	
+	void attach(final StreamedRequestBody body) {
+		assert this.body == null : "listeners can only read one body";
+		this.body = body;
+	}
+	
+	/**
+	 * Stops reading the body after the current part. Only call this from
+	 * {@link #bodyPart(ByteBuf)}
+	 */
+	protected final void pause() {
+		body.pause();
+	}
+	
+	/**
+	 * Continues reading the body after a pause. Can be called from any thread
+	 */
+	protected final void resume() {
+		body.resume();
+	}
+
+	protected void bodyPart(ByteBuf bodyPart) {}
+	
+	protected void bodyComplete(HttpHeaders trailingHeaders) {}
+	
+	protected void bodyErrored(Throwable cause) {}
+}
@@ -0,0 +1,133 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static java.nio.file.StandardOpenOption.*;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaders;
+import jj.http.server.RequestBody.SpoolListener;
+
+/**
+ * Writes a {@link RequestBody} to a file as it arrives, pausing the body while
+ * each part is written so the connection is read no faster than the disk takes it.
+ * The writes are asynchronous, so the I/O thread never waits on them
+ *
+ * @author jason
+ *
+ */
+class RequestBodySpooler extends RequestBodyListener implements CompletionHandler<Integer, ByteBuf> {
+	
+	private final Path path;
+	
+	private final SpoolListener listener;
+	
+	private AsynchronousFileChannel file;
+	
+	private long position;
+	
+	private volatile boolean failed;
+	
+	RequestBodySpooler(final Path path, final SpoolListener listener) {
+		this.path = path;
+		this.listener = listener;
+	}
+	
+	@Override
+	protected void bodyPart(ByteBuf bodyPart) {
+		if (failed) {
+			return;
+		}
+		
+		try {
+			if (file == null) {
+				file = AsynchronousFileChannel.open(path, WRITE, TRUNCATE_EXISTING);
+			}
+		} catch (IOException ioe) {
+			fail(ioe);
+			return;
+		}
+		
+		pause();
+		write(bodyPart.retain());
+	}
+	
+	private void write(ByteBuf part) {
+		file.write(part.nioBuffer(), position, part, this);
+	}
+	
+	@Override
+	public void completed(Integer written, ByteBuf part) {
+		position += written;
+		part.skipBytes(written);
+		if (part.isReadable()) {
+			write(part);
+		} else {
+			part.release();
+			resume();
+		}
+	}
+	
+	@Override
+	public void failed(Throwable cause, ByteBuf part) {
+		part.release();
+		fail(cause);
+		// and the body stays paused, until the response
+		// is sent and the rest is thrown away
+	}
+	
+	@Override
+	protected void bodyComplete(HttpHeaders trailingHeaders) {
+		if (!failed) {
+			try {
+				close();
+				listener.spooled(path);
+			} catch (IOException ioe) {
+				fail(ioe);
+			}
+		}
+	}
+	
+	@Override
+	protected void bodyErrored(Throwable cause) {
+		fail(cause);
+	}
+	
+	private void close() throws IOException {
+		if (file != null) {
+			file.close();
+		}
+	}
+	
+	private void fail(Throwable cause) {
+		if (!failed) {
+			failed = true;
+			try {
+				close();
+				Files.deleteIfExists(path);
+			} catch (IOException ioe) {
+				cause.addSuppressed(ioe);
+			}
+			listener.errored(cause);
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import java.nio.channels.ClosedChannelException;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * <p>
+ * Takes the place of an aggregator. Requests whose bodies are known to be small
+ * are gathered up whole, the way they always were. Anything bigger, or of unknown
+ * length, goes on right away as a {@link StreamedHttpRequest} with an empty
+ * body of its own, and the body parts follow into its {@link StreamedRequestBody}
+ * as they arrive.
+ *
+ * <p>
+ * Auto-read is turned off for the length of a streamed body, so the connection
+ * is only read as fast as the body is consumed. It comes back on when the body
+ * ends, for the next request
+ *
+ * @author jason
+ *
+ */
+class RequestBodyStreamer extends ChannelInboundHandlerAdapter {
+	
+	/**
+	 * A request whose body is still arriving
+	 */
+	static final class StreamedHttpRequest extends DefaultFullHttpRequest {
+		
+		private final StreamedRequestBody body;
+		
+		StreamedHttpRequest(final HttpRequest head, final StreamedRequestBody body) {
+			super(head.protocolVersion(), head.method(), head.uri(), Unpooled.EMPTY_BUFFER);
+			headers().set(head.headers());
+			setDecoderResult(head.decoderResult());
+			this.body = body;
+		}
+		
+		StreamedRequestBody body() {
+			return body;
+		}
+	}
+	
+	private final int maxBufferedLength;
+	
+	private final long maxRequestBodySize;
+	
+	private FullHttpRequest aggregating;
+	
+	private StreamedRequestBody streaming;
+	
+	RequestBodyStreamer(final int maxBufferedLength, final long maxRequestBodySize) {
+		this.maxBufferedLength = maxBufferedLength;
+		this.maxRequestBodySize = maxRequestBodySize;
+	}
+	
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (msg instanceof FullHttpRequest) {
+			// bad requests, and upgrade requests, come whole
+			ctx.fireChannelRead(msg);
+		} else if (msg instanceof HttpRequest) {
+			start(ctx, (HttpRequest)msg);
+		} else if (msg instanceof HttpContent) {
+			part(ctx, (HttpContent)msg);
+		} else {
+			ctx.fireChannelRead(msg);
+		}
+	}
+	
+	private void start(ChannelHandlerContext ctx, HttpRequest head) {
+		assert aggregating == null && streaming == null;
+		
+		long length = HttpUtil.getContentLength(head, -1L);
+		boolean chunked = HttpUtil.isTransferEncodingChunked(head);
+		
+		if (length > maxRequestBodySize) {
+			// and everything after it gets dropped on the floor until the connection closes
+			DefaultFullHttpResponse response =
+				new DefaultFullHttpResponse(head.protocolVersion(), HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+			response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+			ctx.channel().writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+			
+		} else if (!chunked && length <= maxBufferedLength) {
+			
+			if (length > 0 && HttpUtil.is100ContinueExpected(head)) {
+				ctx.channel().writeAndFlush(new DefaultFullHttpResponse(head.protocolVersion(), HttpResponseStatus.CONTINUE));
+			}
+			aggregating = new DefaultFullHttpRequest(
+				head.protocolVersion(),
+				head.method(),
+				head.uri(),
+				length > 0 ? ctx.alloc().buffer((int)length) : Unpooled.EMPTY_BUFFER
+			);
+			aggregating.headers().set(head.headers());
+			aggregating.setDecoderResult(head.decoderResult());
+			
+		} else {
+			
+			streaming = new StreamedRequestBody(ctx.channel(), length, maxRequestBodySize, HttpUtil.is100ContinueExpected(head));
+			ctx.channel().config().setAutoRead(false);
+			ctx.fireChannelRead(new StreamedHttpRequest(head, streaming));
+		}
+	}
+	
+	private void part(ChannelHandlerContext ctx, HttpContent content) {
+		boolean last = content instanceof LastHttpContent;
+		
+		if (aggregating != null) {
+			try {
+				if (content.content().isReadable()) {
+					aggregating.content().writeBytes(content.content());
+				}
+				if (!content.decoderResult().isSuccess()) {
+					aggregating.setDecoderResult(content.decoderResult());
+				}
+				if (last) {
+					aggregating.trailingHeaders().set(((LastHttpContent)content).trailingHeaders());
+				}
+			} finally {
+				content.release();
+			}
+			
+			if (last) {
+				FullHttpRequest request = aggregating;
+				aggregating = null;
+				ctx.fireChannelRead(request);
+			}
+			
+		} else if (streaming != null) {
+			StreamedRequestBody body = streaming;
+			if (last) {
+				streaming = null;
+				ctx.channel().config().setAutoRead(true);
+			}
+			body.offer(content);
+			
+		} else {
+			// the rest of a request that was turned away
+			content.release();
+		}
+	}
+	
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		if (streaming != null) {
+			streaming.error(new ClosedChannelException());
+			streaming = null;
+		}
+		super.channelInactive(ctx);
+	}
+	
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		if (aggregating != null) {
+			aggregating.release();
+			aggregating = null;
+		}
+	}
+}
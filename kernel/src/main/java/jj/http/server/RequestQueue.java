@@ -0,0 +1,174 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import java.time.Clock;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import jj.event.Publisher;
+import jj.logging.Warning;
+
+/**
+ * <p>
+ * Keeps track of the requests a route processor has accepted but not yet
+ * started working on, and turns new ones away with a 503 when there are too many
+ * of them, or the oldest has been waiting too long. Turning a request away right
+ * now is kinder than answering it after the client gave up, and keeps the
+ * requests that don't need the queue moving
+ *
+ * <p>
+ * Get one from {@link RequestQueues}, which also reports on them
+ *
+ * @author jason
+ *
+ */
+public class RequestQueue {
+	
+	/**
+	 * A place in the queue. Exactly one of {@link #start(HttpServerResponse)}
+	 * or {@link #cancel()} must be called, or the queue never shrinks
+	 */
+	public class Ticket {
+		
+		private final long enqueuedTime = clock.millis();
+		
+		private final AtomicBoolean done = new AtomicBoolean();
+		
+		Ticket() {}
+		
+		private boolean leave() {
+			if (done.compareAndSet(false, true)) {
+				waiting.remove(this);
+				depth.decrementAndGet();
+				return true;
+			}
+			return false;
+		}
+		
+		/**
+		 * Call when work on the request begins. If the request waited too long
+		 * it is turned away and this returns false, so don't do the work
+		 */
+		public boolean start(final HttpServerResponse response) {
+			if (leave()) {
+				long maxTime = configuration.maxRequestQueueTime();
+				if (maxTime > 0 && clock.millis() - enqueuedTime > maxTime) {
+					turnAway(response);
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Call if the request gets answered without ever starting
+		 */
+		public void cancel() {
+			leave();
+		}
+	}
+	
+	private final String name;
+	
+	private final HttpServerSocketConfiguration configuration;
+	
+	private final Clock clock;
+	
+	private final Publisher publisher;
+	
+	private final ConcurrentLinkedQueue<Ticket> waiting = new ConcurrentLinkedQueue<>();
+	
+	// the queue is slow to count
+	private final AtomicInteger depth = new AtomicInteger();
+	
+	private final AtomicBoolean refusing = new AtomicBoolean();
+	
+	RequestQueue(
+		final String name,
+		final HttpServerSocketConfiguration configuration,
+		final Clock clock,
+		final Publisher publisher
+	) {
+		this.name = name;
+		this.configuration = configuration;
+		this.clock = clock;
+		this.publisher = publisher;
+	}
+	
+	/**
+	 * A place in the queue for a request, or null if the request should be
+	 * turned away
+	 */
+	public Ticket admit() {
+		int maxDepth = configuration.maxQueuedRequests();
+		long maxTime = configuration.maxRequestQueueTime();
+		
+		int currentDepth = depth.incrementAndGet();
+		if ((maxDepth > 0 && currentDepth > maxDepth) || (maxTime > 0 && oldestAge() > maxTime)) {
+			depth.decrementAndGet();
+			if (refusing.compareAndSet(false, true)) {
+				publisher.publish(new Warning(
+					"{} is turning requests away with {} waiting, the oldest for {} milliseconds", name, depth(), oldestAge()
+				));
+			}
+			return null;
+		}
+		
+		if (refusing.compareAndSet(true, false)) {
+			publisher.publish(new Warning("{} is accepting requests again", name));
+		}
+		
+		Ticket ticket = new Ticket();
+		waiting.add(ticket);
+		return ticket;
+	}
+	
+	/**
+	 * Answers a request with a 503 and a Retry-After
+	 */
+	public void turnAway(final HttpServerResponse response) {
+		response.header(HttpHeaderNames.RETRY_AFTER, configuration.retryAfter())
+			.sendError(HttpResponseStatus.SERVICE_UNAVAILABLE);
+	}
+	
+	public String name() {
+		return name;
+	}
+	
+	/**
+	 * How many requests are waiting
+	 */
+	public int depth() {
+		return depth.get();
+	}
+	
+	/**
+	 * How many milliseconds the oldest waiting request has been waiting
+	 */
+	public long oldestAge() {
+		Ticket oldest = waiting.peek();
+		return oldest == null ? 0 : clock.millis() - oldest.enqueuedTime;
+	}
+	
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{" + name + ", depth: " + depth() + ", oldest: " + oldestAge() + "}";
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import java.time.Clock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import jj.event.Publisher;
+
+/**
+ * <p>
+ * Hands out the {@link RequestQueue} for each route processor that wants one,
+ * and reports on how deep they are, both to the script API and anything else
+ * that wants to watch
+ *
+ * @author jason
+ *
+ */
+@Singleton
+public class RequestQueues {
+	
+	private final HttpServerSocketConfiguration configuration;
+	
+	private final Clock clock;
+	
+	private final Publisher publisher;
+	
+	private final ConcurrentMap<String, RequestQueue> queues = new ConcurrentHashMap<>();
+	
+	@Inject
+	RequestQueues(
+		final HttpServerSocketConfiguration configuration,
+		final Clock clock,
+		final Publisher publisher
+	) {
+		this.configuration = configuration;
+		this.clock = clock;
+		this.publisher = publisher;
+	}
+	
+	/**
+	 * The queue with the given name, which is made the first time it's asked for
+	 */
+	public RequestQueue queue(final String name) {
+		return queues.computeIfAbsent(name, n -> new RequestQueue(n, configuration, clock, publisher));
+	}
+	
+	public String[] names() {
+		return queues.keySet().toArray(new String[0]);
+	}
+	
+	/**
+	 * How many requests are waiting in the named queue
+	 */
+	public int depth(final String name) {
+		RequestQueue queue = queues.get(name);
+		return queue == null ? 0 : queue.depth();
+	}
+	
+	/**
+	 * How many milliseconds the oldest request in the named queue has been waiting
+	 */
+	public long oldestAge(final String name) {
+		RequestQueue queue = queues.get(name);
+		return queue == null ? 0 : queue.oldestAge();
+	}
+}
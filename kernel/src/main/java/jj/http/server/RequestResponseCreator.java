@@ -0,0 +1,67 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import jj.event.Publisher;
+
+/**
+ * <p>
+ * Wires up the request/response pair for an incoming HTTP message by hand.
+ * This used to be done with a child injector per request, which was the
+ * single most expensive thing happening on the I/O threads.
+ *
+ * <p>
+ * The instances are not pooled - responses get held past the return from
+ * the handler by continuations and by the access log, so recycling them would
+ * require tracking when everyone is done, which costs more than allocation does
+ *
+ * @author jason
+ *
+ */
+@Singleton
+class RequestResponseCreator {
+
+	private final HttpServerSocketConfiguration configuration;
+	
+	private final ResponseHeaderCache headerCache;
+
+	private final Publisher publisher;
+
+	@Inject
+	RequestResponseCreator(
+		final HttpServerSocketConfiguration configuration,
+		final ResponseHeaderCache headerCache,
+		final Publisher publisher
+	) {
+		this.configuration = configuration;
+		this.headerCache = headerCache;
+		this.publisher = publisher;
+	}
+
+	HttpServerRequestImpl createRequest(final ChannelHandlerContext ctx, final FullHttpRequest request) {
+		return new HttpServerRequestImpl(request, ctx);
+	}
+
+	HttpServerResponseImpl createResponse(final ChannelHandlerContext ctx, final HttpServerRequestImpl request) {
+		return new HttpServerResponseImpl(configuration, headerCache, request, ctx, publisher);
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+/**
+ * <p>
+ * Thrown when a {@link LoadedResource} has died and let go of its bytes between
+ * being found and being sent. Nothing has been set on the response when it's
+ * thrown, so the request can be served again with whatever replaced it
+ * 
+ * @author jason
+ *
+ */
+class ResourceGoneException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	ResourceGoneException(final LoadedResource resource, final Throwable cause) {
+		super(resource + " is gone", cause);
+	}
+}
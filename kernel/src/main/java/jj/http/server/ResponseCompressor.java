@@ -0,0 +1,106 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+
+/**
+ * <p>
+ * Compresses outgoing responses as they stream by, but only the ones that
+ * ask for it by declaring that they vary on Accept-Encoding and haven't already
+ * picked a Content-Encoding. Everything else goes by untouched, which keeps
+ * already compressed bytes safe. File transfers and partial responses are never
+ * touched, since their bodies have to go out exactly as they are.
+ *
+ * <p>
+ * Also the one place that decides which encoding a client gets, so responses
+ * that carry precompressed bytes pick the same thing the stream would have
+ *
+ * @author jason
+ *
+ */
+class ResponseCompressor extends HttpContentCompressor {
+
+	/**
+	 * Headers for a response whose body is written exactly as it is, either
+	 * a file transfer or a partial response. Shares the headers of the response
+	 * it is made from
+	 */
+	static final class TransferHeaders extends DefaultHttpResponse {
+		
+		TransferHeaders(final HttpResponse response) {
+			super(response.protocolVersion(), response.status(), response.headers());
+		}
+	}
+
+	static CharSequence contentEncoding(ZlibWrapper wrapper) {
+		assert wrapper == ZlibWrapper.GZIP || wrapper == ZlibWrapper.ZLIB;
+		return wrapper == ZlibWrapper.GZIP ? HttpHeaderValues.GZIP : HttpHeaderValues.DEFLATE;
+	}
+
+	private static final ResponseCompressor CHOOSER = new ResponseCompressor(0);
+	
+	/**
+	 * The encoding to use for a body of the given length, for connections that
+	 * can't have a compressor in the pipeline, so only get bytes that are already
+	 * compressed
+	 */
+	static ZlibWrapper encodingFor(final CharSequence acceptEncoding, final long length, final long threshold) {
+		return CHOOSER.choose(acceptEncoding, length, threshold);
+	}
+
+	private final long threshold;
+
+	ResponseCompressor(final long threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * The encoding to use for a body of the given length, given the value of
+	 * the request's Accept-Encoding header. null means send it as is. A length
+	 * less than zero means it isn't known
+	 */
+	ZlibWrapper encodingFor(final CharSequence acceptEncoding, final long length) {
+		return choose(acceptEncoding, length, threshold);
+	}
+	
+	private ZlibWrapper choose(final CharSequence acceptEncoding, final long length, final long threshold) {
+		return acceptEncoding == null || (length >= 0 && length < threshold) ?
+			null :
+			determineWrapper(acceptEncoding.toString());
+	}
+
+	@Override
+	protected Result beginEncode(HttpResponse response, String acceptEncoding) throws Exception {
+		HttpHeaders headers = response.headers();
+		if (
+			response instanceof TransferHeaders ||
+			!headers.containsValue(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING, true) ||
+			encodingFor(acceptEncoding, HttpUtil.getContentLength(response, -1L)) == null
+		) {
+			return null;
+		}
+
+		return super.beginEncode(response, acceptEncoding);
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.AsciiString;
+import jj.Version;
+import jj.event.Listener;
+import jj.event.Subscriber;
+import jj.resource.ResourceIdentifier;
+import jj.resource.ResourceKilled;
+
+/**
+ * <p>
+ * Keeps the header values that don't change from response to response ready to
+ * go, as {@link AsciiString}s the encoder can copy straight out. The Server header
+ * is made once, and the Date header at most once a second.
+ *
+ * <p>
+ * The headers that describe a servable resource's body are made the first time
+ * it is sent with a given encoding, and reused until the resource dies. Resources
+ * never change, a changed file is a new resource, so they can't go stale
+ *
+ * @author jason
+ *
+ */
+@Singleton
+@Subscriber
+class ResponseHeaderCache {
+	
+	private static final DateTimeFormatter HTTP_DATE =
+		DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+	
+	private static final class CachedDate {
+		
+		final long second;
+		final AsciiString value;
+		
+		CachedDate(final long second) {
+			this.second = second;
+			this.value = new AsciiString(HTTP_DATE.format(Instant.ofEpochSecond(second)));
+		}
+	}
+	
+	/**
+	 * the headers for one encoding of one resource's body
+	 */
+	private static final class ResourceHeaders {
+		
+		final ServableResource resource;
+		final String etag;
+		final long length;
+		final HttpHeaders headers;
+		
+		ResourceHeaders(final ServableResource resource, final ZlibWrapper encoding, final String etag, final long length) {
+			this.resource = resource;
+			this.etag = etag;
+			this.length = length;
+			
+			// everything in here is known to be valid
+			headers = new DefaultHttpHeaders(false);
+			if (etag != null) {
+				headers.add(HttpHeaderNames.ETAG, new AsciiString(etag));
+			}
+			headers.add(HttpHeaderNames.CONTENT_TYPE, new AsciiString(resource.contentType()));
+			headers.add(HttpHeaderNames.CONTENT_LENGTH, new AsciiString(String.valueOf(length)));
+			if (resource.compressible()) {
+				headers.add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+			}
+			if (encoding == null) {
+				// ranges are only ever served from the unencoded bytes
+				headers.add(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES);
+			} else {
+				headers.add(HttpHeaderNames.CONTENT_ENCODING, ResponseCompressor.contentEncoding(encoding));
+			}
+		}
+	}
+	
+	private final AsciiString server;
+	
+	private volatile CachedDate date = new CachedDate(System.currentTimeMillis() / 1000);
+	
+	/** indexed by {@link #slot(ZlibWrapper)}, replaced whole when one changes */
+	private final ConcurrentMap<ResourceIdentifier<?, ?>, ResourceHeaders[]> resources = new ConcurrentHashMap<>();
+	
+	@Inject
+	ResponseHeaderCache(final Version version) {
+		server = new AsciiString(version.name() + "/" + version.version() + " (" + version.branchName() + ")");
+	}
+	
+	AsciiString server() {
+		return server;
+	}
+	
+	AsciiString date() {
+		long second = System.currentTimeMillis() / 1000;
+		CachedDate result = date;
+		if (result.second != second) {
+			// racing threads can both do this, they get the same answer
+			result = new CachedDate(second);
+			date = result;
+		}
+		return result.value;
+	}
+	
+	/**
+	 * The ETag, Content-Type, Content-Length, Vary, and either Content-Encoding
+	 * or Accept-Ranges headers for sending the given resource with the given encoding,
+	 * or none, as a body of the given length. The ETag is the one for that encoding,
+	 * since the bytes differ from one to the next. Don't modify them
+	 */
+	HttpHeaders resourceHeaders(final ServableResource resource, final ZlibWrapper encoding, final String etag, final long length) {
+		if (!resource.alive()) {
+			// it's on its way out, there's no point keeping anything
+			return new ResourceHeaders(resource, encoding, etag, length).headers;
+		}
+		
+		int slot = slot(encoding);
+		ResourceHeaders[] cached = resources.get(resource.identifier());
+		ResourceHeaders result = cached == null ? null : cached[slot];
+		
+		if (result == null || result.resource != resource || result.length != length || !Objects.equals(result.etag, etag)) {
+			result = new ResourceHeaders(resource, encoding, etag, length);
+			ResourceHeaders[] replacement = cached == null ? new ResourceHeaders[3] : cached.clone();
+			replacement[slot] = result;
+			resources.put(resource.identifier(), replacement);
+		}
+		
+		return result.headers;
+	}
+	
+	private int slot(final ZlibWrapper encoding) {
+		return encoding == null ? 0 : encoding == ZlibWrapper.GZIP ? 1 : 2;
+	}
+	
+	@Listener
+	void on(ResourceKilled event) {
+		resources.remove(event.identifier());
+	}
+}
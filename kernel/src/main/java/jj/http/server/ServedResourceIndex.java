@@ -0,0 +1,100 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Singleton;
+
+import jj.event.Listener;
+import jj.event.Subscriber;
+import jj.resource.ResourceIdentifier;
+import jj.resource.ResourceKilled;
+
+/**
+ * <p>
+ * Remembers the live resource each uri path was served from, for each class of
+ * servable resource, so finding it again is a map read instead of making an
+ * identifier and searching the resource cache for it
+ *
+ * <p>
+ * Paths are remembered once a lookup finds their resource, and forgotten when it
+ * is killed. A resource that turns up dead anyway is forgotten on the spot, so the
+ * lookup goes the long way and finds its replacement
+ *
+ * @author jason
+ *
+ */
+@Singleton
+@Subscriber
+class ServedResourceIndex {
+	
+	private final ConcurrentMap<Class<?>, ConcurrentMap<String, ServableResource>> resources = new ConcurrentHashMap<>();
+	
+	/** the paths each resource is remembered under, to forget them when it dies */
+	private final ConcurrentMap<ResourceIdentifier<?, ?>, Set<String>> paths = new ConcurrentHashMap<>();
+	
+	/**
+	 * The live resource of the given class remembered for the given path, or null
+	 */
+	<T extends ServableResource> T find(final Class<T> resourceClass, final String path) {
+		ConcurrentMap<String, ServableResource> byPath = resources.get(resourceClass);
+		ServableResource result = byPath == null || path == null ? null : byPath.get(path);
+		if (result != null && !result.alive()) {
+			byPath.remove(path, result);
+			result = null;
+		}
+		return resourceClass.cast(result);
+	}
+	
+	/**
+	 * Remember that the given path found the given resource, which was looked up
+	 * as the given class
+	 */
+	void remember(final Class<? extends ServableResource> resourceClass, final String path, final ServableResource resource) {
+		if (path == null) {
+			return;
+		}
+		
+		paths.computeIfAbsent(resource.identifier(), identifier -> ConcurrentHashMap.newKeySet()).add(path);
+		resources.computeIfAbsent(resourceClass, c -> new ConcurrentHashMap<>()).put(path, resource);
+		
+		// it was killed in the meantime, and might not have been forgotten
+		if (!resource.alive()) {
+			forget(resource.identifier(), resourceClass);
+		}
+	}
+	
+	private void forget(final ResourceIdentifier<?, ?> identifier, final Class<?> resourceClass) {
+		Set<String> forgotten = paths.remove(identifier);
+		ConcurrentMap<String, ServableResource> byPath = resources.get(resourceClass);
+		if (forgotten != null && byPath != null) {
+			for (String path : forgotten) {
+				ServableResource resource = byPath.get(path);
+				if (resource != null && resource.identifier().equals(identifier)) {
+					byPath.remove(path, resource);
+				}
+			}
+		}
+	}
+	
+	@Listener
+	void on(ResourceKilled event) {
+		forget(event.identifier(), event.type());
+	}
+}
@@ -15,12 +15,14 @@
  */
 package jj.http.server;
 
+import java.io.IOException;
 import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
 import jj.http.server.uri.Route;
 import jj.http.server.uri.RouteMatch;
 import jj.http.server.uri.URIMatch;
@@ -38,26 +40,37 @@ import jj.resource.ResourceThread;
 @Singleton
 public class SimpleRouteProcessor implements RouteProcessor {
 	
+	private final HttpServerSocketConfiguration configuration;
 	private final ResourceFinder resourceFinder;
 	private final ResourceLoader resourceLoader;
-	private final Map<String, Class<? extends ServableResource>> servableResources;
+	private final ServedResourceIndex index;
 	private final Map<Class<? extends ServableResource>, RouteProcessorConfiguration> configurationMap;
 	
 	@Inject
 	SimpleRouteProcessor(
+		final HttpServerSocketConfiguration configuration,
 		final ResourceFinder resourceFinder,
 		final ResourceLoader resourceLoader,
-		final Map<String, Class<? extends ServableResource>> servableResources,
+		final ServedResourceIndex index,
 		final Map<Class<? extends ServableResource>, RouteProcessorConfiguration> configurationMap
 	) {
+		this.configuration = configuration;
 		this.resourceFinder = resourceFinder;
 		this.resourceLoader = resourceLoader;
-		this.servableResources = servableResources;
+		this.index = index;
 		this.configurationMap = configurationMap;
 	}
 	
 	private ServableResource findResource(final Class<? extends ServableResource> resourceClass, final HttpServerRequest request) {
-		return resourceLoader.findResource(resourceClass, configurationMap.get(resourceClass).location(), request.uriMatch().path);
+		String path = request.uriMatch().path;
+		ServableResource resource = index.find(resourceClass, path);
+		if (resource == null) {
+			resource = resourceLoader.findResource(resourceClass, configurationMap.get(resourceClass).location(), path);
+			if (resource != null) {
+				index.remember(resourceClass, path, resource);
+			}
+		}
+		return resource;
 	}
 	
 	@ResourceThread
@@ -69,7 +82,7 @@ public class SimpleRouteProcessor implements RouteProcessor {
 	@Override
 	public void process(final RouteMatch routeMatch, final HttpServerRequest request, final HttpServerResponse response) {
 		
-		Class<? extends ServableResource> resourceClass = servableResources.get(routeMatch.resourceName());
+		Class<? extends ServableResource> resourceClass = routeMatch.resourceClass();
 
 		assert resourceClass != null : "configured a route processor incorrectly";
 
@@ -87,16 +100,16 @@ public class SimpleRouteProcessor implements RouteProcessor {
 					@Override
 					protected void run() throws Exception {
 						ServableResource resource = findResource(resourceClass, request);
-						serve(resource, request, response);
+						serve(routeMatch, resource, request, response);
 					}
 				}
 			);
 		} else {
-			serve(resource, request, response);
+			serve(routeMatch, resource, request, response);
 		}
 	}
 	
-	private void serve(final ServableResource resource, final HttpServerRequest request, final HttpServerResponse response) {
+	private void serve(final RouteMatch routeMatch, final ServableResource resource, final HttpServerRequest request, final HttpServerResponse response) {
 		URIMatch match = request.uriMatch();
 		try {
 			
@@ -105,8 +118,8 @@ public class SimpleRouteProcessor implements RouteProcessor {
 				response.sendNotFound();
 			}
 			
-			// if the e-tag matches our SHA, 304
-			else if (resource.sha1().equals(request.header(HttpHeaderNames.IF_NONE_MATCH))) {
+			// if the e-tag matches the one it would be sent with, 304
+			else if (matches(response.etag(resource), request.header(HttpHeaderNames.IF_NONE_MATCH))) {
 				response.sendNotModified(resource, match.versioned);
 			} 
 
@@ -116,7 +129,7 @@ public class SimpleRouteProcessor implements RouteProcessor {
 				match.versioned && 
 				(match.sha1 == null || match.sha1.equals(resource.sha1()))
 			) {
-				response.sendCachableResource(resource);
+				sendResource(resource, request, response, true);
 			} 
 
 			
@@ -130,13 +143,68 @@ public class SimpleRouteProcessor implements RouteProcessor {
 			// if the URI was not versioned, respond with an uncached resource
 			// (but with proper e-tags, if we loaded the resource
 			else {
-				response.sendUncachableResource(resource);
+				sendResource(resource, request, response, false);
 				
 			}
 		
+		} catch (ResourceGoneException gone) {
+			// it died between being found and being sent, and it's already
+			// out of the index by then, so its replacement gets looked up
+			process(routeMatch, request, response);
 		} catch (Exception e) {
 			response.error(e);
 		}
 	}
-
+	
+	private void sendResource(
+		final ServableResource resource,
+		final HttpServerRequest request,
+		final HttpServerResponse response,
+		final boolean cache
+	) throws IOException {
+		RangeHeaderReader rangeHeaderReader = rangesFor(resource, request);
+		
+		// ranges we can't understand are ignored, and they get the whole thing
+		if (rangeHeaderReader != null && !rangeHeaderReader.isBadRequest()) {
+			response.sendPartialResource(resource, rangeHeaderReader.ranges(), cache);
+		} else if (cache) {
+			response.sendCachableResource(resource);
+		} else {
+			response.sendUncachableResource(resource);
+		}
+	}
+	
+	private static boolean matches(final String etag, final CharSequence header) {
+		return etag != null && header != null && etag.contentEquals(header);
+	}
+	
+	/**
+	 * The ranges the request asked for, or null if it didn't ask or its If-Range
+	 * doesn't match the resource. The e-tag is the only validator we send, so
+	 * it's the only one that can match, and since ranges are only ever cut from
+	 * the identity bytes, only the identity e-tag counts. An If-Range naming an
+	 * encoded variant gets the whole thing
+	 */
+	private RangeHeaderReader rangesFor(final ServableResource resource, final HttpServerRequest request) {
+		CharSequence range = request.header(HttpHeaderNames.RANGE);
+		if (range == null || !HttpMethod.GET.equals(request.method())) {
+			return null;
+		}
+		
+		CharSequence ifRange = request.header(HttpHeaderNames.IF_RANGE);
+		if (ifRange != null && !matches(resource.sha1(), ifRange)) {
+			return null;
+		}
+		
+		long size;
+		if (resource instanceof TransferableResource) {
+			size = ((TransferableResource)resource).size();
+		} else if (resource instanceof LoadedResource) {
+			size = ((LoadedResource)resource).bytes().readableBytes();
+		} else {
+			return null;
+		}
+		
+		return new RangeHeaderReader(range, size, configuration.rangeCoalesceDistance(), configuration.maxRanges());
+	}
 }
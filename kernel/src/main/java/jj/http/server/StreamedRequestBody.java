@@ -0,0 +1,281 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * <p>
+ * The {@link RequestBody} implementation. Parts are queued as they arrive from
+ * the {@link RequestBodyStreamer} and handed to the listener once there is one,
+ * asking the connection for more whenever the queue runs dry. The streamer turns
+ * auto-read off when it starts a body, so this is the only thing reading until
+ * the body ends.
+ *
+ * <p>
+ * The queue only ever holds what arrived in one read from the socket. In
+ * edge-triggered epoll mode that can be everything the socket had buffered,
+ * since those reads drain it regardless of auto-read, but it's never more than
+ * the receive buffer.
+ *
+ * <p>
+ * Bodies that arrived whole with the request start out ended, with the one
+ * part queued. All of the state belongs to the channel's event loop, except
+ * what the response checks when it finishes
+ *
+ * @author jason
+ *
+ */
+class StreamedRequestBody implements RequestBody {
+	
+	private final Channel channel;
+	
+	private final long length;
+	
+	private final long maxSize;
+	
+	private final ArrayDeque<HttpContent> pending = new ArrayDeque<>(4);
+	
+	private volatile boolean expectsContinue;
+	
+	private RequestBodyListener listener;
+	
+	private long received;
+	
+	private boolean paused;
+	
+	/** the last part arrived */
+	private volatile boolean ended;
+	
+	/** the listener has been told the body is done, one way or the other */
+	private boolean completed;
+	
+	/** the response went out, nothing else gets read */
+	private boolean finished;
+	
+	private HttpHeaders trailingHeaders;
+	
+	private Throwable failure;
+	
+	private Path spooled;
+	
+	StreamedRequestBody(final Channel channel, final long length, final long maxSize, final boolean expectsContinue) {
+		this.channel = channel;
+		this.length = length;
+		this.maxSize = maxSize;
+		this.expectsContinue = expectsContinue;
+	}
+	
+	/**
+	 * a body that's already all here
+	 */
+	StreamedRequestBody(final Channel channel, final ByteBuf content) {
+		this(channel, content.readableBytes(), Long.MAX_VALUE, false);
+		pending.add(new DefaultLastHttpContent(content));
+		ended = true;
+	}
+	
+	@Override
+	public long length() {
+		return length;
+	}
+	
+	@Override
+	public void read(final RequestBodyListener listener) {
+		assert listener != null;
+		
+		listener.attach(this);
+		onEventLoop(() -> {
+			assert this.listener == null : "a request body can only be read once";
+			this.listener = listener;
+			
+			if (finished) {
+				complete(new IllegalStateException("the response has already been sent"));
+			} else if (failure != null) {
+				complete(failure);
+			} else {
+				if (expectsContinue) {
+					// the client has been waiting for us to want it
+					expectsContinue = false;
+					channel.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+				}
+				drain();
+			}
+		});
+	}
+	
+	@Override
+	public void spool(final SpoolListener listener) {
+		assert listener != null;
+		
+		Path path;
+		try {
+			path = Files.createTempFile("jj-request-body-", ".tmp");
+		} catch (IOException ioe) {
+			listener.errored(ioe);
+			return;
+		}
+		
+		onEventLoop(() -> spooled = path);
+		read(new RequestBodySpooler(path, listener));
+	}
+	
+	/**
+	 * called by the streamer with each part as it arrives
+	 */
+	void offer(final HttpContent content) {
+		assert channel.eventLoop().inEventLoop();
+		
+		if (content instanceof LastHttpContent) {
+			ended = true;
+		}
+		
+		received += content.content().readableBytes();
+		
+		if (finished || failure != null) {
+			content.release();
+		} else if (!content.decoderResult().isSuccess()) {
+			content.release();
+			// the decoder won't read anything else from this connection
+			error(content.decoderResult().cause());
+			channel.close();
+		} else if (received > maxSize) {
+			content.release();
+			error(new TooLongFrameException("request body is larger than " + maxSize + " bytes"));
+			channel.close();
+		} else {
+			pending.add(content);
+			drain();
+		}
+	}
+	
+	/**
+	 * called by the streamer if the body can't be finished
+	 */
+	void error(final Throwable cause) {
+		assert channel.eventLoop().inEventLoop();
+		
+		if (failure == null) {
+			failure = cause;
+			releasePending();
+			if (listener != null) {
+				complete(cause);
+			}
+		}
+	}
+	
+	/**
+	 * Called once the response has been sent. Anything not yet read is thrown away,
+	 * and the spooled file, if there is one, is deleted. Returns false if the connection
+	 * can't be used again, because the client is still waiting to hear if it should send
+	 * the body at all
+	 */
+	boolean finish() {
+		onEventLoop(() -> {
+			finished = true;
+			releasePending();
+			if (!ended && !expectsContinue) {
+				// read and discard the rest, so the connection can carry the next request
+				channel.config().setAutoRead(true);
+			}
+			if (spooled != null) {
+				try {
+					Files.deleteIfExists(spooled);
+				} catch (IOException ioe) {
+					// nothing to be done about it, it's in the temp directory
+				}
+			}
+		});
+		
+		return ended || !expectsContinue;
+	}
+	
+	void pause() {
+		assert channel.eventLoop().inEventLoop();
+		paused = true;
+	}
+	
+	void resume() {
+		onEventLoop(() -> {
+			paused = false;
+			drain();
+		});
+	}
+	
+	private void drain() {
+		if (listener == null || completed || finished) {
+			return;
+		}
+		
+		while (!paused && !pending.isEmpty()) {
+			HttpContent content = pending.poll();
+			try {
+				if (content instanceof LastHttpContent) {
+					trailingHeaders = ((LastHttpContent)content).trailingHeaders();
+				}
+				if (content.content().isReadable()) {
+					listener.bodyPart(content.content());
+				}
+			} finally {
+				content.release();
+			}
+		}
+		
+		if (!paused && pending.isEmpty()) {
+			if (ended) {
+				completed = true;
+				listener.bodyComplete(trailingHeaders);
+			} else {
+				channel.read();
+			}
+		}
+	}
+	
+	private void complete(final Throwable cause) {
+		if (!completed) {
+			completed = true;
+			listener.bodyErrored(cause);
+		}
+	}
+	
+	private void releasePending() {
+		for (HttpContent content = pending.poll(); content != null; content = pending.poll()) {
+			content.release();
+		}
+	}
+	
+	private void onEventLoop(final Runnable runnable) {
+		if (channel.eventLoop().inEventLoop()) {
+			runnable.run();
+		} else {
+			channel.eventLoop().execute(runnable);
+		}
+	}
+}
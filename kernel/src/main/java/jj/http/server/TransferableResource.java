@@ -19,6 +19,11 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.handler.codec.compression.ZlibWrapper;
+
 import jj.resource.FileResource;
 
 /**
@@ -33,6 +38,31 @@ import jj.resource.FileResource;
 public interface TransferableResource extends FileResource<Void>, ServableResource {
 	
 	FileChannel fileChannel() throws IOException;
+	
+	/**
+	 * The given part of the file, for transferring directly. Writing
+	 * it releases it
+	 */
+	default FileRegion fileRegion(long position, long count) throws IOException {
+		return new DefaultFileRegion(fileChannel(), position, count);
+	}
 
 	RandomAccessFile randomAccessFile() throws IOException;
+	
+	/**
+	 * A copy of this resource already compressed with the given wrapper,
+	 * either GZIP or ZLIB, or null if there isn't one ready. Only asked
+	 * for if the resource is {@link #compressible()}
+	 */
+	default TransferableResource precompressed(ZlibWrapper wrapper) {
+		return null;
+	}
+	
+	/**
+	 * The whole resource, if it's small enough to be kept in memory, retained
+	 * for the caller to release. null means it has to come from the file
+	 */
+	default ByteBuf inMemory() throws IOException {
+		return null;
+	}
 }
@@ -0,0 +1,314 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server.resource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import jj.event.Listener;
+import jj.event.Publisher;
+import jj.event.Subscriber;
+import jj.http.server.TransferableResource;
+import jj.logging.Warning;
+import jj.resource.ResourceConfiguration;
+import jj.resource.ResourceIdentifier;
+import jj.resource.ResourceKilled;
+import jj.resource.ResourceThread;
+
+/**
+ * <p>
+ * Keeps the files of {@link TransferableResource}s open between requests, so popular
+ * files aren't opened and closed for every response. Each open file is shared by
+ * everyone sending it at once, and counts its users. It is closed once the last one is
+ * done with it and it's no longer kept, either because its resource was killed or because
+ * {@link ResourceConfiguration#maxOpenFiles()} more recently sent files pushed it out.
+ *
+ * <p>
+ * Everyone gets a channel of their own that reads the shared file at its own position,
+ * and closing it lets go of the file. File regions get the shared file itself, since the
+ * native transport reaches into them for the descriptor, and let go of it when they're
+ * released
+ *
+ * @author jason
+ *
+ */
+@Singleton
+@Subscriber
+class FileChannelCache {
+	
+	/**
+	 * one open file, which starts out with one user, the cache
+	 */
+	private final class OpenFile {
+		
+		final TransferableResource resource;
+		final FileChannel channel;
+		final AtomicInteger users = new AtomicInteger(1);
+		
+		OpenFile(final TransferableResource resource) throws IOException {
+			this.resource = resource;
+			this.channel = FileChannel.open(resource.path());
+		}
+		
+		OpenFile use() {
+			users.incrementAndGet();
+			return this;
+		}
+		
+		void done() {
+			if (users.decrementAndGet() == 0) {
+				try {
+					channel.close();
+				} catch (IOException ioe) {
+					publisher.publish(new Warning("closing {} threw", resource.path(), ioe));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * reads an open file at its own position, and is done with it when closed
+	 */
+	private static final class BorrowedFileChannel extends FileChannel {
+		
+		private final OpenFile file;
+		
+		private long position;
+		
+		BorrowedFileChannel(final OpenFile file) {
+			this.file = file;
+		}
+		
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			int read = file.channel.read(dst, position);
+			if (read > 0) {
+				position += read;
+			}
+			return read;
+		}
+		
+		@Override
+		public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+			long total = 0;
+			for (int i = offset; i < offset + length; ++i) {
+				int read = read(dsts[i]);
+				if (read < 0) {
+					return total == 0 ? -1 : total;
+				}
+				total += read;
+				if (dsts[i].hasRemaining()) {
+					break;
+				}
+			}
+			return total;
+		}
+		
+		@Override
+		public int read(ByteBuffer dst, long position) throws IOException {
+			return file.channel.read(dst, position);
+		}
+		
+		@Override
+		public long position() throws IOException {
+			return position;
+		}
+		
+		@Override
+		public FileChannel position(long newPosition) throws IOException {
+			position = newPosition;
+			return this;
+		}
+		
+		@Override
+		public long size() throws IOException {
+			return file.channel.size();
+		}
+		
+		@Override
+		public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+			return file.channel.transferTo(position, count, target);
+		}
+		
+		@Override
+		public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+			return file.channel.map(mode, position, size);
+		}
+		
+		@Override
+		public FileLock lock(long position, long size, boolean shared) throws IOException {
+			return file.channel.lock(position, size, shared);
+		}
+		
+		@Override
+		public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+			return file.channel.tryLock(position, size, shared);
+		}
+		
+		@Override
+		public void force(boolean metaData) throws IOException {
+			// nothing was written
+		}
+		
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			throw new NonWritableChannelException();
+		}
+		
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+			throw new NonWritableChannelException();
+		}
+		
+		@Override
+		public int write(ByteBuffer src, long position) throws IOException {
+			throw new NonWritableChannelException();
+		}
+		
+		@Override
+		public FileChannel truncate(long size) throws IOException {
+			throw new NonWritableChannelException();
+		}
+		
+		@Override
+		public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+			throw new NonWritableChannelException();
+		}
+		
+		@Override
+		protected void implCloseChannel() throws IOException {
+			file.done();
+		}
+	}
+	
+	/**
+	 * a region of an open file, which is done with it when released
+	 */
+	private static final class SharedFileRegion extends DefaultFileRegion {
+		
+		private final OpenFile file;
+		
+		SharedFileRegion(final OpenFile file, final long position, final long count) {
+			super(file.channel, position, count);
+			this.file = file;
+		}
+		
+		@Override
+		protected void deallocate() {
+			file.done();
+		}
+	}
+	
+	private final ResourceConfiguration configuration;
+	
+	private final Publisher publisher;
+	
+	/** in access order, so the least recently sent is first */
+	private final LinkedHashMap<ResourceIdentifier<?, ?>, OpenFile> open = new LinkedHashMap<>(16, 0.75f, true);
+	
+	@Inject
+	FileChannelCache(final ResourceConfiguration configuration, final Publisher publisher) {
+		this.configuration = configuration;
+		this.publisher = publisher;
+	}
+	
+	/**
+	 * A channel that reads the given resource's file. Close it when done
+	 */
+	@ResourceThread
+	FileChannel fileChannel(final TransferableResource resource) throws IOException {
+		return new BorrowedFileChannel(use(resource));
+	}
+	
+	/**
+	 * A region of the given resource's file. Release it when done,
+	 * which writing it does
+	 */
+	@ResourceThread
+	FileRegion fileRegion(final TransferableResource resource, final long position, final long count) throws IOException {
+		return new SharedFileRegion(use(resource), position, count);
+	}
+	
+	private OpenFile use(final TransferableResource resource) throws IOException {
+		synchronized (open) {
+			OpenFile file = open.get(resource.identifier());
+			if (file != null && file.resource == resource) {
+				return file.use();
+			}
+		}
+		
+		OpenFile file = new OpenFile(resource);
+		if (configuration.maxOpenFiles() < 1) {
+			// not kept, so the one user is whoever asked
+			return file;
+		}
+		
+		synchronized (open) {
+			// checked in here since a resource is marked dead before it's announced,
+			// so if it dies after this the kill will find it in the map
+			if (!resource.alive()) {
+				return file;
+			}
+			
+			OpenFile previous = open.put(resource.identifier(), file);
+			if (previous != null) {
+				previous.done();
+			}
+			
+			Iterator<OpenFile> eldest = open.values().iterator();
+			while (open.size() > configuration.maxOpenFiles()) {
+				OpenFile evicted = eldest.next();
+				eldest.remove();
+				evicted.done();
+			}
+			
+			return file.use();
+		}
+	}
+	
+	/**
+	 * the number of files being kept open
+	 */
+	int openFiles() {
+		synchronized (open) {
+			return open.size();
+		}
+	}
+	
+	@Listener
+	void on(ResourceKilled event) {
+		synchronized (open) {
+			OpenFile killed = open.remove(event.identifier());
+			if (killed != null) {
+				killed.done();
+			}
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server.resource;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardCopyOption.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.inject.Inject;
+
+import io.netty.channel.FileRegion;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import jj.http.server.CompressedBytes;
+import jj.http.server.TransferableResource;
+import jj.resource.AbstractResource;
+import jj.resource.NoSuchResourceException;
+import jj.resource.PathResolver;
+import jj.resource.ResourceThread;
+import jj.server.ServerLocation;
+import jj.util.SHA1Helper;
+
+/**
+ * <p>
+ * A compressed copy of a {@link StaticResource}, kept in a file with an extension
+ * naming the encoding. Named for the sidecar file, so the resource for "script.js"
+ * gzipped is "script.js.gz". The sidecar lives in the server's {@link ServerLocation#Cache},
+ * under the location and name of the resource, so it never lands in a directory that
+ * gets watched or served
+ *
+ * <p>
+ * Next to the sidecar is a record of the SHA-1 and size of the file it was made from,
+ * in the same form a {@link jj.resource.FileResource}'s saved SHA-1 takes. The sidecar
+ * is reused only if that matches the file as it is now, and written otherwise, since
+ * deploys can easily leave a changed file older than its sidecar. The resource depends
+ * on its static resource, so it dies when that file changes, and the next one made
+ * will write a fresh sidecar
+ *
+ * @author jason
+ *
+ */
+public class PrecompressedResource extends AbstractResource<Void> implements TransferableResource {
+
+	static final String GZIP_EXTENSION = "gz";
+	static final String ZLIB_EXTENSION = "zz";
+	static final String SOURCE_EXTENSION = "source";
+	static final String CACHE_DIRECTORY = "precompressed";
+
+	static String extension(ZlibWrapper wrapper) {
+		assert wrapper == ZlibWrapper.GZIP || wrapper == ZlibWrapper.ZLIB;
+		return wrapper == ZlibWrapper.GZIP ? GZIP_EXTENSION : ZLIB_EXTENSION;
+	}
+
+	private final Path path;
+
+	private final StaticResource target;
+
+	private final ZlibWrapper wrapper;
+
+	private final long size;
+
+	private final String sha1;
+
+	private final FileChannelCache fileChannelCache;
+
+	@Inject
+	@ResourceThread
+	PrecompressedResource(
+		final Dependencies dependencies,
+		final PathResolver pathResolver,
+		final FileChannelCache fileChannelCache
+	) throws IOException {
+		super(dependencies);
+		this.path = pathResolver.resolvePath(ServerLocation.Cache, CACHE_DIRECTORY + "/" + base() + "/" + name());
+		this.fileChannelCache = fileChannelCache;
+
+		int dot = name().lastIndexOf('.');
+		String extension = name().substring(dot + 1);
+		wrapper = GZIP_EXTENSION.equals(extension) ? ZlibWrapper.GZIP : ZLIB_EXTENSION.equals(extension) ? ZlibWrapper.ZLIB : null;
+		target = dot == -1 ? null : resourceFinder.findResource(StaticResource.class, base(), name().substring(0, dot));
+
+		if (wrapper == null || target == null || !target.alive()) {
+			throw new NoSuchResourceException(getClass(), path);
+		}
+
+		Path record = path.resolveSibling(path.getFileName() + "." + SOURCE_EXTENSION);
+		byte[] madeFrom = (target.sha1() + target.size()).getBytes(US_ASCII);
+		if (!Files.exists(path) || !Files.exists(record) || !Arrays.equals(madeFrom, Files.readAllBytes(record))) {
+			// the old record goes first and the new one goes in after the sidecar,
+			// so a failure in between just means it gets made again
+			Files.deleteIfExists(record);
+			Files.createDirectories(path.getParent());
+			compress();
+			Files.write(record, madeFrom);
+		}
+
+		size = Files.size(path);
+		sha1 = SHA1Helper.keyFor(target.sha1(), extension);
+
+		target.addDependent(this);
+		target.precompressed(this);
+	}
+
+	private void compress() throws IOException {
+		// written to the side and moved into place so nobody ever
+		// sends a partial file
+		Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			try (OutputStream out = CompressedBytes.compressing(wrapper, Files.newOutputStream(temp))) {
+				Files.copy(target.path(), out);
+			}
+			Files.move(temp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * true if the compression did any good
+	 */
+	boolean smaller() {
+		return size < target.size();
+	}
+
+	ZlibWrapper wrapper() {
+		return wrapper;
+	}
+
+	@Override
+	public String contentType() {
+		return target.contentType();
+	}
+
+	@Override
+	public boolean compressible() {
+		// it already is
+		return false;
+	}
+
+	@Override
+	public Path path() {
+		return path;
+	}
+
+	@Override
+	public boolean isDirectory() {
+		return false;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public String sha1() {
+		return sha1;
+	}
+
+	@Override
+	@ResourceThread
+	public FileChannel fileChannel() throws IOException {
+		return fileChannelCache.fileChannel(this);
+	}
+
+	@Override
+	@ResourceThread
+	public FileRegion fileRegion(long position, long count) throws IOException {
+		return fileChannelCache.fileRegion(this, position, count);
+	}
+
+	@Override
+	@ResourceThread
+	public RandomAccessFile randomAccessFile() throws IOException {
+		return new RandomAccessFile(path.toFile(), "r");
+	}
+
+	@Override
+	public boolean needsReplacing() throws IOException {
+		// only replaced when the static resource dies
+		return false;
+	}
+}
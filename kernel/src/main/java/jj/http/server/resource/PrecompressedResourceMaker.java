@@ -0,0 +1,79 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server.resource;
+
+import java.nio.file.FileSystems;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.netty.handler.codec.compression.ZlibWrapper;
+import jj.event.Listener;
+import jj.event.Subscriber;
+import jj.http.server.HttpServerSocketConfiguration;
+import jj.resource.ResourceFinder;
+import jj.resource.ResourceLoaded;
+import jj.resource.ResourceLoader;
+
+/**
+ * <p>
+ * Watches for compressible {@link StaticResource}s to be loaded, and starts
+ * loading their {@link PrecompressedResource}s in the background. Only files
+ * on the default file system get them, the rest come packaged with the server
+ *
+ * @author jason
+ *
+ */
+@Singleton
+@Subscriber
+public class PrecompressedResourceMaker {
+	
+	private static final ZlibWrapper[] WRAPPERS = { ZlibWrapper.GZIP, ZlibWrapper.ZLIB };
+
+	private final HttpServerSocketConfiguration configuration;
+	
+	private final ResourceFinder resourceFinder;
+	
+	private final ResourceLoader resourceLoader;
+
+	@Inject
+	PrecompressedResourceMaker(
+		final HttpServerSocketConfiguration configuration,
+		final ResourceFinder resourceFinder,
+		final ResourceLoader resourceLoader
+	) {
+		this.configuration = configuration;
+		this.resourceFinder = resourceFinder;
+		this.resourceLoader = resourceLoader;
+	}
+	
+	@Listener
+	void on(ResourceLoaded event) {
+		if (event.type() == StaticResource.class && configuration.compressResponses()) {
+			StaticResource resource = resourceFinder.findResource(StaticResource.class, event.base(), event.name());
+			if (
+				resource != null &&
+				resource.compressible() &&
+				resource.size() >= configuration.compressionThreshold() &&
+				resource.path().getFileSystem() == FileSystems.getDefault()
+			) {
+				for (ZlibWrapper wrapper : WRAPPERS) {
+					resourceLoader.loadResource(PrecompressedResource.class, event.base(), event.name() + "." + PrecompressedResource.extension(wrapper));
+				}
+			}
+		}
+	}
+}
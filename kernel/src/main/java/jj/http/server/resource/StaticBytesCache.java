@@ -0,0 +1,168 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server.resource;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import jj.event.Listener;
+import jj.event.Subscriber;
+import jj.resource.ResourceConfiguration;
+import jj.resource.ResourceIdentifier;
+import jj.resource.ResourceKilled;
+import jj.resource.ResourceThread;
+
+/**
+ * <p>
+ * Holds the bytes of small {@link StaticResource}s in direct memory once they've been
+ * served, so the next time they go out without touching the file system. Files up to
+ * {@link ResourceConfiguration#maxFileSizeToHold()} bytes are held, up to a total of
+ * {@link ResourceConfiguration#maxHeldBytes()}, and the least recently served are let
+ * go to make room.
+ *
+ * <p>
+ * Bytes are let go when their resource is killed, so a changed file is read fresh.
+ * Everything handed out is retained for the caller, so letting go of bytes never pulls
+ * them out from under a response that's still being written
+ *
+ * @author jason
+ *
+ */
+@Singleton
+@Subscriber
+class StaticBytesCache {
+	
+	private static final class Held {
+		
+		final StaticResource resource;
+		final ByteBuf bytes;
+		
+		Held(final StaticResource resource, final ByteBuf bytes) {
+			this.resource = resource;
+			this.bytes = bytes;
+		}
+	}
+	
+	private final ResourceConfiguration configuration;
+	
+	/** in access order, so the least recently served is first */
+	private final LinkedHashMap<ResourceIdentifier<?, ?>, Held> held = new LinkedHashMap<>(16, 0.75f, true);
+	
+	private long heldBytes;
+	
+	@Inject
+	StaticBytesCache(final ResourceConfiguration configuration) {
+		this.configuration = configuration;
+	}
+	
+	/**
+	 * The bytes of the given resource, retained for the caller, or null if
+	 * it's too big to hold or the file changed out from under it
+	 */
+	@ResourceThread
+	ByteBuf bytes(final StaticResource resource) throws IOException {
+		long size = resource.size();
+		if (size > configuration.maxFileSizeToHold() || size > configuration.maxHeldBytes()) {
+			return null;
+		}
+		
+		synchronized (held) {
+			Held result = held.get(resource.identifier());
+			if (result != null && result.resource == resource) {
+				return result.bytes.duplicate().retain();
+			}
+		}
+		
+		ByteBuf bytes = read(resource, (int)size);
+		if (bytes == null) {
+			return null;
+		}
+		
+		synchronized (held) {
+			if (!resource.alive()) {
+				// no point keeping it, but it can still be sent
+				return bytes;
+			}
+			
+			Held previous = held.put(resource.identifier(), new Held(resource, bytes));
+			if (previous != null) {
+				forget(previous);
+			}
+			heldBytes += size;
+			
+			Iterator<Held> eldest = held.values().iterator();
+			while (heldBytes > configuration.maxHeldBytes()) {
+				Held evicted = eldest.next();
+				eldest.remove();
+				forget(evicted);
+			}
+			
+			return bytes.duplicate().retain();
+		}
+	}
+	
+	private ByteBuf read(final StaticResource resource, final int size) throws IOException {
+		ByteBuf bytes = Unpooled.directBuffer(size, size);
+		try (FileChannel channel = resource.fileChannel()) {
+			while (bytes.isWritable()) {
+				if (bytes.writeBytes(channel, bytes.writerIndex(), bytes.writableBytes()) < 0) {
+					break;
+				}
+			}
+			// if it's not what we were told, the file changed and the
+			// resource is about to die, so it goes out the slow way
+			if (bytes.isWritable() || channel.size() != size) {
+				bytes.release();
+				return null;
+			}
+			return bytes;
+		} catch (IOException ioe) {
+			bytes.release();
+			throw ioe;
+		}
+	}
+	
+	private void forget(final Held forgotten) {
+		heldBytes -= forgotten.bytes.capacity();
+		forgotten.bytes.release();
+	}
+	
+	/**
+	 * the number of bytes being held
+	 */
+	long heldBytes() {
+		synchronized (held) {
+			return heldBytes;
+		}
+	}
+	
+	@Listener
+	void on(ResourceKilled event) {
+		synchronized (held) {
+			Held killed = held.remove(event.identifier());
+			if (killed != null) {
+				forget(killed);
+			}
+		}
+	}
+}
@@ -15,32 +15,57 @@
  */
 package jj.http.server.resource;
 
+import static jj.server.ServerLocation.Assets;
+
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.util.EnumMap;
 
 import javax.inject.Inject;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.FileRegion;
+import io.netty.handler.codec.compression.ZlibWrapper;
 import jj.http.server.TransferableResource;
 import jj.resource.AbstractFileResource;
+import jj.resource.ResourceLoader;
 import jj.resource.ResourceThread;
 
 /**
  * Basic representation of a file. no assumptions are made about content, and the bytes are
- * not loaded.  Mainly a bridge from filesystem elements to the serving system
+ * not loaded.  Mainly a bridge from filesystem elements to the serving system. Small files
+ * are held in memory once they've been served, by the {@link StaticBytesCache}, and the
+ * files of larger ones are kept open between responses by the {@link FileChannelCache}.
+ * Its {@link PrecompressedResource}s register themselves as they're loaded, and one that
+ * gets evicted is loaded again the next time it's asked for
  * 
  * @author jason
  *
  */
 public class StaticResource extends AbstractFileResource<Void> implements TransferableResource {
 	
+	private final EnumMap<ZlibWrapper, PrecompressedResource> precompressed = new EnumMap<>(ZlibWrapper.class);
+	
+	private final StaticBytesCache bytesCache;
+	
+	private final FileChannelCache fileChannelCache;
+	
+	private final ResourceLoader resourceLoader;
+	
 	@Inject
 	StaticResource(
 		final Dependencies dependencies,
-		final Path path
+		final Path path,
+		final StaticBytesCache bytesCache,
+		final FileChannelCache fileChannelCache,
+		final ResourceLoader resourceLoader
 	) throws IOException {
 		super(dependencies, path, false);
+		this.bytesCache = bytesCache;
+		this.fileChannelCache = fileChannelCache;
+		this.resourceLoader = resourceLoader;
 	}
 	
 	@Override
@@ -53,10 +78,48 @@ public class StaticResource extends AbstractFileResource<Void> implements Transf
 		return settings.compressible();
 	}
 	
+	@Override
+	public TransferableResource precompressed(ZlibWrapper wrapper) {
+		PrecompressedResource result;
+		synchronized (precompressed) {
+			result = precompressed.get(wrapper);
+			if (result != null && !result.alive() && alive()) {
+				// the cache let it go to make room. taken out so only one
+				// load gets started, and it puts itself back when it's done
+				precompressed.remove(wrapper);
+			} else {
+				return result != null && result.alive() && result.smaller() ? result : null;
+			}
+		}
+		
+		// the sidecar is still on disk, so this is cheap, and until it's
+		// done responses go out uncompressed, as they did before it was made
+		resourceLoader.loadResource(PrecompressedResource.class, base(), result.name());
+		return null;
+	}
+	
+	void precompressed(PrecompressedResource resource) {
+		synchronized (precompressed) {
+			precompressed.put(resource.wrapper(), resource);
+		}
+	}
+	
 	@Override
 	@ResourceThread
 	public FileChannel fileChannel() throws IOException {
-		return FileChannel.open(path);
+		return fileChannelCache.fileChannel(this);
+	}
+	
+	@Override
+	@ResourceThread
+	public FileRegion fileRegion(long position, long count) throws IOException {
+		return fileChannelCache.fileRegion(this, position, count);
+	}
+	
+	@Override
+	@ResourceThread
+	public ByteBuf inMemory() throws IOException {
+		return bytesCache.bytes(this);
 	}
 	
 	@Override
@@ -64,4 +127,11 @@ public class StaticResource extends AbstractFileResource<Void> implements Transf
 	public RandomAccessFile randomAccessFile() throws IOException {
 		return new RandomAccessFile(path.toFile(), "r");
 	}
+	
+	@Override
+	protected boolean pinned() {
+		// the document filters find the server's own assets as though
+		// they're always loaded
+		return base() == Assets;
+	}
 }
@@ -31,6 +31,9 @@ class ParamNode extends TrieNode {
 	private SeparatorNode child;
 	final Parameter parameter;
 	
+	// patterns are matched against the uri in place, by a matcher kept for each thread
+	private final ThreadLocal<Matcher> matchers;
+	
 	static String makeValue(final Route route) {
 		return makeValue(route.uri(), route.index());
 	}
@@ -68,6 +71,7 @@ class ParamNode extends TrieNode {
 			makeParameterPattern(m.group(3))
 		);
 		route.addParam(parameter);
+		matchers = parameter.pattern == null ? null : ThreadLocal.withInitial(() -> parameter.pattern.matcher(""));
 	}
 	
 	private Type parseType(String value) {
@@ -99,50 +103,48 @@ class ParamNode extends TrieNode {
 		child.addRoute(route.advanceIndex());
 	}
 	
-	private String matchParam(String uri, int index) {
-		String value = makeValue(uri, index);
-		value = (parameter.pattern != null && !parameter.pattern.matcher(value).find()) ? "" : value;
-		return value;
+	private int paramEnd(String uri, int index) {
+		int end = uri.indexOf(PATH_SEPARATOR_CHAR, index);
+		if (end == -1) { end = uri.indexOf(EXTENSION_SEPARATOR_CHAR, index); }
+		if (end == -1) { end = uri.length(); }
+		return (matchers != null && !matchers.get().reset(uri).region(index, end).find()) ? index : end;
 	}
 
 	@Override
 	boolean findGoal(RouteFinderContext context, String uri, int index) {
 		// first, see if we match
-		String matchValue = "";
+		int end = index;
 		switch (parameter.type) {
 			case Param:
-				matchValue = matchParam(uri, index);
+				end = paramEnd(uri, index);
 				break;
 			case Splat:
-				int end = uri.length();
+				end = uri.length();
 				if (child != null) {
 					assert child.terminal : "splat followed by non-terminal child!";
 					end = uri.lastIndexOf('.');
 					// if we're expecting an extension an none exist, we don't match.
 					// is returning here correct?
-					if (end == -1) return false;
+					if (end < index) return false;
 				}
-
-				matchValue = uri.substring(index, end);
 				break;
 		}
 
-
-		if (!matchValue.isEmpty()) {
-
-			context.addParam(parameter.name, matchValue);
+		int mark = context.mark();
+		if (end > index) {
+			context.addParam(parameter.name, index, end);
 		}
 
-		if (index + matchValue.length() == uri.length()) {
-			if (goal != null) {
-				context.setGoal(goal);
-				return true;
-			}
-			return false;
+		boolean found = end == uri.length() ?
+			reachedEnd(context) :
+			child != null && child.findGoal(context, uri, end + 1);
+		
+		// a failed branch doesn't get to leave its parameters behind
+		if (!found) {
+			context.reset(mark);
 		}
-
-		return child != null && child.findGoal(context, uri, index + matchValue.length() + 1);
-
+		
+		return found;
 	}
 	
 	@Override
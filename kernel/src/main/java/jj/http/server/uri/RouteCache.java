@@ -0,0 +1,89 @@
+/*
+ *    Copyright 2012 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server.uri;
+
+import static io.netty.handler.codec.http.HttpMethod.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.netty.handler.codec.http.HttpMethod;
+import jj.http.server.ServableResources;
+
+/**
+ * <p>
+ * Remembers how paths were routed, so the trie is only searched the first time
+ * a method and path come through, and the route processor and resource class
+ * of the match are only looked up then too. Made along with the trie it searches
+ * and replaced along with it, so it never outlives the routes it came from
+ * 
+ * <p>
+ * Each of the standard methods gets its own paths, and when they fill up they are
+ * emptied to refill with whatever is being asked for now. Other methods are always
+ * searched
+ * 
+ * @author jason
+ *
+ */
+class RouteCache {
+	
+	private final RouteTrie trie;
+	private final ServableResources servables;
+	private final int maxSize;
+	private final ConcurrentMap<String, RouteMatch>[] resolved;
+	
+	@SuppressWarnings("unchecked")
+	RouteCache(final RouteTrie trie, final ServableResources servables, final int maxSize) {
+		this.trie = trie;
+		this.servables = servables;
+		this.maxSize = maxSize;
+		resolved = (ConcurrentMap<String, RouteMatch>[])new ConcurrentMap<?, ?>[TrieNode.METHOD_COUNT];
+		for (int i = 0; i < resolved.length; ++i) {
+			resolved[i] = new ConcurrentHashMap<>();
+		}
+	}
+	
+	RouteMatch find(final HttpMethod method, final URIMatch uriMatch) {
+		// HEAD is routed as a GET anyway
+		int index = TrieNode.methodIndex(HEAD.equals(method) ? GET : method);
+		if (index == -1 || maxSize < 1 || uriMatch.path == null) {
+			return resolve(trie.find(method, uriMatch));
+		}
+		
+		ConcurrentMap<String, RouteMatch> paths = resolved[index];
+		RouteMatch result = paths.get(uriMatch.path);
+		if (result == null) {
+			result = resolve(trie.find(method, uriMatch));
+			if (paths.size() >= maxSize) {
+				paths.clear();
+			}
+			paths.put(uriMatch.path, result);
+			return result;
+		}
+		
+		return new RouteMatch(uriMatch, result);
+	}
+	
+	private RouteMatch resolve(final RouteMatch match) {
+		return match.matched() ?
+			new RouteMatch(match, servables.routeProcessor(match.resourceName()), servables.classFor(match.resourceName())) :
+			match;
+	}
+	
+	int size(final HttpMethod method) {
+		return resolved[TrieNode.methodIndex(method)].size();
+	}
+}
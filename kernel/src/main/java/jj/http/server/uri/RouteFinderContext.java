@@ -15,52 +15,59 @@
  */
 package jj.http.server.uri;
 
-import io.netty.handler.codec.http.HttpMethod;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 
 /**
- * state carrier for route matching attempts
+ * state carrier for route matching attempts. one is kept for each thread
+ * and reused, so a search only records where its parameters are in the uri,
+ * and the parameters are only copied out once a goal is found
  * 
  * @author jason
  *
  */
 class RouteFinderContext {
 	
-	class Match {
-		Map<String, String> params;
-		Map<HttpMethod, Route> goal;
-		
-		void addParam(String key, String value) {
-			if (params == null) { params = new HashMap<>(); }
-			params.put(key, value);
-		}
-		
-		@Override
-		public String toString() {
-			return String.format("Match(%n  params=%s%n  goal=%s%n)", params, goal);
-		}
-	}
+	private String[] names = new String[8];
+	private int[] offsets = new int[16];
+	private int count;
+	
+	/** the node holding the goal we matched */
+	TrieNode goal;
 	
-	/** the goals we have matched thus far */
-	List<Match> matches = new ArrayList<>();
+	RouteFinderContext begin() {
+		count = 0;
+		goal = null;
+		return this;
+	}
 	
-	Match currentMatch;
+	int mark() {
+		return count;
+	}
 	
-	void addParam(String key, String value) {
-		if (currentMatch == null) { currentMatch = new Match(); }
-		currentMatch.addParam(key, value);
+	void reset(int mark) {
+		count = mark;
 	}
 	
-	void setGoal(Map<HttpMethod, Route> goal) {
-		Match match = currentMatch == null ? new Match() : currentMatch;
-		match.goal = goal;
-		matches.add(match);
-		currentMatch = null;
+	void addParam(String name, int start, int end) {
+		if (count == names.length) {
+			names = Arrays.copyOf(names, count * 2);
+			offsets = Arrays.copyOf(offsets, count * 4);
+		}
+		names[count] = name;
+		offsets[count * 2] = start;
+		offsets[count * 2 + 1] = end;
+		++count;
 	}
 	
+	void setGoal(TrieNode goal) {
+		this.goal = goal;
+	}
 	
+	Map<String, String> params(String uri) {
+		return count == 0 ?
+			Collections.emptyMap() :
+			new RouteParams(uri, Arrays.copyOf(names, count), Arrays.copyOf(offsets, count * 2));
+	}
 }
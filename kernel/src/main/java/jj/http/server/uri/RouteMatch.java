@@ -19,18 +19,50 @@ import io.netty.handler.codec.http.HttpMethod;
 
 import java.util.Map;
 
+import jj.http.server.RouteProcessor;
+import jj.http.server.ServableResource;
+
 public class RouteMatch {
 
 	final URIMatch uriMatch;
 	final Route route;
 	public final Map<HttpMethod, Route> routes;
 	final Map<String, String> params;
+	final RouteProcessor routeProcessor;
+	final Class<? extends ServableResource> resourceClass;
 
 	RouteMatch(final URIMatch uriMatch, final HttpMethod method, final Map<HttpMethod, Route> routes, final Map<String, String> params) {
+		this(uriMatch, routes == null ? null : routes.get(method), routes, params, null, null);
+	}
+	
+	/**
+	 * the given match, resolved to what serves it
+	 */
+	RouteMatch(final RouteMatch match, final RouteProcessor routeProcessor, final Class<? extends ServableResource> resourceClass) {
+		this(match.uriMatch, match.route, match.routes, match.params, routeProcessor, resourceClass);
+	}
+	
+	/**
+	 * the given match, for another uri with the same path
+	 */
+	RouteMatch(final URIMatch uriMatch, final RouteMatch match) {
+		this(uriMatch, match.route, match.routes, match.params, match.routeProcessor, match.resourceClass);
+	}
+	
+	private RouteMatch(
+		final URIMatch uriMatch,
+		final Route route,
+		final Map<HttpMethod, Route> routes,
+		final Map<String, String> params,
+		final RouteProcessor routeProcessor,
+		final Class<? extends ServableResource> resourceClass
+	) {
 		this.uriMatch = uriMatch;
-		this.route = routes == null ? null : routes.get(method);
+		this.route = route;
 		this.routes = routes;
 		this.params = params;
+		this.routeProcessor = routeProcessor;
+		this.resourceClass = resourceClass;
 	}
 
 	public boolean matched() {
@@ -48,6 +80,20 @@ public class RouteMatch {
 		return route == null ? null : route.resourceName();
 	}
 
+	/**
+	 * @return the processor for the resource of the matched route, if any
+	 */
+	public RouteProcessor routeProcessor() {
+		return routeProcessor;
+	}
+	
+	/**
+	 * @return the class of the resource of the matched route, if any
+	 */
+	public Class<? extends ServableResource> resourceClass() {
+		return resourceClass;
+	}
+
 	public String toString() {
 		return String.format("RouteMatch(%n  uriMatch=%s%n  route=%s%n  routes=%s%n  params=%s%n)", uriMatch, route, routes, params);
 	}
@@ -0,0 +1,78 @@
+/*
+ *    Copyright 2012 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server.uri;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * the parameters of a route match, kept as offsets into the uri until
+ * something asks for them
+ * 
+ * @author jason
+ *
+ */
+class RouteParams extends AbstractMap<String, String> {
+	
+	private final String uri;
+	private final String[] names;
+	private final int[] offsets;
+	
+	RouteParams(final String uri, final String[] names, final int[] offsets) {
+		assert names.length * 2 == offsets.length;
+		this.uri = uri;
+		this.names = names;
+		this.offsets = offsets;
+	}
+	
+	private String value(int i) {
+		return uri.substring(offsets[i * 2], offsets[i * 2 + 1]);
+	}
+	
+	@Override
+	public String get(Object key) {
+		// later parameters replace earlier ones of the same name
+		for (int i = names.length - 1; i >= 0; --i) {
+			if (names[i].equals(key)) {
+				return value(i);
+			}
+		}
+		return null;
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		for (String name : names) {
+			if (name.equals(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Set<Entry<String, String>> entrySet() {
+		Set<String> seen = new LinkedHashSet<>();
+		Set<Entry<String, String>> result = new LinkedHashSet<>();
+		for (int i = names.length - 1; i >= 0; --i) {
+			if (seen.add(names[i])) {
+				result.add(new SimpleImmutableEntry<>(names[i], value(i)));
+			}
+		}
+		return result;
+	}
+}
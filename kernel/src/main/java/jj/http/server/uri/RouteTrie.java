@@ -17,8 +17,6 @@ package jj.http.server.uri;
 
 import static io.netty.handler.codec.http.HttpMethod.*;
 
-import java.util.Collections;
-import java.util.Map;
 import io.netty.handler.codec.http.HttpMethod;
 
 /**
@@ -29,6 +27,8 @@ import io.netty.handler.codec.http.HttpMethod;
  */
 class RouteTrie {
 	
+	private static final ThreadLocal<RouteFinderContext> contexts = ThreadLocal.withInitial(RouteFinderContext::new);
+	
 	private final TrieNode root = new SeparatorNode(TrieNode.PATH_SEPARATOR_CHAR);
 	
 	RouteTrie addRoute(Route route) {
@@ -49,26 +49,17 @@ class RouteTrie {
 		// just play HEAD out as a GET
 		if (HEAD.equals(method)) { method = GET; }
 		
-		RouteFinderContext context = new RouteFinderContext();
+		RouteFinderContext context = contexts.get().begin();
 		RouteMatch result = null;
 		
 		if (root.findGoal(context, uri.path, 0)) {
-			// 
-			Map<HttpMethod, Route> routes = null;
-			for (Route r : context.matches.get(0).goal.values()) {
-				if (r.method().equals(method) || OPTIONS.equals(method)) {
-					routes = context.matches.get(0).goal;
-					break;
-				}
-			}
-			
-			@SuppressWarnings("unchecked")
-			Map<String, String> params =
-				(Map<String, String>)(context.matches.get(0).params == null ? Collections.emptyMap() : Collections.unmodifiableMap(context.matches.get(0).params));
-			if (routes != null) {
-				result = new RouteMatch(uri, method, routes, params);
+			TrieNode node = context.goal;
+			int bit = TrieNode.methodBit(method);
+			if (OPTIONS.equals(method) || (bit == 0 ? node.goal.containsKey(method) : (node.methods & bit) != 0)) {
+				result = new RouteMatch(uri, method, node.goal, context.params(uri.path));
 			}
 		}
+		context.begin();
 		
 		if (result == null) {
 			result = new RouteMatch(uri, method, null, null);
@@ -30,6 +30,7 @@ import jj.event.Subscriber;
 import jj.execution.ServerTask;
 import jj.execution.TaskRunner;
 import jj.http.server.RouteContributor;
+import jj.http.server.ServableResources;
 
 /**
  * The public interface to the routing system.  mainly just mediates
@@ -45,17 +46,22 @@ public class Router {
 	private final RouterConfiguration configuration;
 	private final Set<RouteContributor> routeContributors;
 	private final TaskRunner taskRunner;
-	private final AtomicReference<RouteTrie> trie = new AtomicReference<>();
+	private final ServableResources servables;
+	
+	/** holds the trie, so they are replaced together */
+	private final AtomicReference<RouteCache> routes = new AtomicReference<>();
 	
 	@Inject
 	Router(
 		final RouterConfiguration configuration,
 		final Set<RouteContributor> routeContributors,
-		final TaskRunner taskRunner
+		final TaskRunner taskRunner,
+		final ServableResources servables
 	) {
 		this.configuration = configuration;
 		this.routeContributors = routeContributors;
 		this.taskRunner = taskRunner;
+		this.servables = servables;
 	}
 	
 	@Listener
@@ -75,15 +81,15 @@ public class Router {
 				
 				newTrie.compress();
 				
-				trie.set(newTrie);
+				routes.set(new RouteCache(newTrie, servables, configuration.routeCacheSize()));
 			}
 		});
 	}
 	
 	public RouteMatch routeRequest(final HttpMethod method, final URIMatch uriMatch) {
-		RouteTrie routes = trie.get();
-		assert routes != null : "can't route before configuration is complete!";
+		RouteCache current = routes.get();
+		assert current != null : "can't route before configuration is complete!";
 		
-		return routes.find(method, uriMatch);
+		return current.find(method, uriMatch);
 	}
 }
@@ -29,4 +29,10 @@ public interface RouterConfiguration {
 	String welcomeFile();
 
 	List<Route> routes();
+	
+	/**
+	 * How many paths to remember the routing of, for each method
+	 */
+	@Default("4096")
+	int routeCacheSize();
 }
@@ -30,6 +30,11 @@ class SeparatorNode extends TrieNode {
 	int keyLength = 1;
 	Map<String, ParamNode> paramNodeChildren;
 	
+	// built from the children whenever they change, and read by the search.
+	// the last change is compression, before the router publishes the trie
+	private Branches stringBranches;
+	private ParamNode[] paramNodes;
+	
 	final char separator;
 	
 	SeparatorNode(final char separator) {
@@ -39,7 +44,6 @@ class SeparatorNode extends TrieNode {
 
 	@Override
 	void doAddChild(Route route) {
-		
 		char current = route.currentChar();
 		
 		// not correctly an assertion! should throw IllegalArgumentException?
@@ -69,35 +73,38 @@ class SeparatorNode extends TrieNode {
 			}
 			nextNode.addRoute(route.advanceIndex());
 		}
+		
+		makeBranches();
+	}
+	
+	private void makeBranches() {
+		stringBranches = stringNodeChildren == null ? null : new Branches(stringNodeChildren, keyLength);
+		paramNodes = paramNodeChildren == null ? null : paramNodeChildren.values().toArray(new ParamNode[paramNodeChildren.size()]);
 	}
 
 	@Override
 	boolean findGoal(RouteFinderContext context, String uri, int index) {
 		if (uri.length() == index) {
-			if (goal != null) {
-				context.setGoal(goal);
-				return true;
-			}
-			return false;
+			return reachedEnd(context);
 		}
 		
-		boolean result = false;
-		
-		if (stringNodeChildren != null && uri.length() >= index + keyLength) {
-			String current = uri.substring(index, index + keyLength);
-			result = stringNodeChildren.containsKey(current) &&
-				stringNodeChildren.get(current).findGoal(context, uri, index + keyLength);
+		// the first match wins, static segments before parameters
+		if (stringBranches != null) {
+			TrieNode child = stringBranches.find(uri, index);
+			if (child != null && child.findGoal(context, uri, index + keyLength)) {
+				return true;
+			}
 		}
 		
-		if (paramNodeChildren != null) {
-			for (ParamNode paramNode : paramNodeChildren.values()) {
-				boolean matched = paramNode.findGoal(context, uri, index);
-				result = result || matched;
-				
+		if (paramNodes != null) {
+			for (ParamNode paramNode : paramNodes) {
+				if (paramNode.findGoal(context, uri, index)) {
+					return true;
+				}
 			}
 		}
 		
-		return result;
+		return false;
 	}
 	
 	@Override
@@ -127,6 +134,8 @@ class SeparatorNode extends TrieNode {
 				paramNodeChildren = Collections.unmodifiableMap(paramNodeChildren);
 			}
 		}
+		
+		makeBranches();
 	}
 	
 	@Override
@@ -24,6 +24,10 @@ class StaticNode extends TrieNode {
 	Map<String, TrieNode> children;
 	int keyLength = 1;
 	
+	// built from the children whenever they change, and read by the search.
+	// the last change is compression, before the router publishes the trie
+	private Branches branches;
+	
 	void doAddChild(Route route) {
 		children = children == null ? new LinkedHashMap<>(4, 0.75f) : children;
 		TrieNode nextNode;
@@ -48,6 +52,8 @@ class StaticNode extends TrieNode {
 			}
 		}
 		nextNode.addRoute(route.advanceIndex());
+		
+		branches = new Branches(children, keyLength);
 	}
 	
 	StaticNode mergeUp(StringBuilder accumulator) {
@@ -83,24 +89,20 @@ class StaticNode extends TrieNode {
 				children.values().forEach(TrieNode::compress);
 				children = Collections.unmodifiableMap(children);
 			}
+			
+			branches = new Branches(children, keyLength);
 		}
 	}
 	
 	@Override
 	boolean findGoal(RouteFinderContext context, String uri, int index) {
 		if (uri.length() == index) {
-			if (goal != null) {
-				context.setGoal(goal);
-				return true;
-			}
-			return false;
+			return reachedEnd(context);
 		}
 		
-		if (children != null && uri.length() >= index + keyLength) {
-			String current = uri.substring(index, index + keyLength);
-			if (children.containsKey(current)) {
-				return children.get(current).findGoal(context, uri, index + keyLength);
-			}
+		if (branches != null) {
+			TrieNode child = branches.find(uri, index);
+			return child != null && child.findGoal(context, uri, index + keyLength);
 		}
 		
 		return false;
@@ -17,6 +17,7 @@ package jj.http.server.uri;
 
 import io.netty.handler.codec.http.HttpMethod;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -33,12 +34,76 @@ abstract class TrieNode {
 	static final String EXTENSION_SEPARATOR_STRING = String.valueOf(EXTENSION_SEPARATOR_CHAR);
 	static final String PARAM_CHARS = ":*";
 	
+	private static final String[] METHOD_NAMES = { "GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS", "TRACE", "CONNECT" };
+	
+	/** the number of standard methods, which all have an index */
+	static final int METHOD_COUNT = METHOD_NAMES.length;
+	
+	/**
+	 * the index of the given method among the standard ones, or -1 if it
+	 * isn't one of them
+	 */
+	static int methodIndex(HttpMethod method) {
+		String name = method.name();
+		for (int i = 0; i < METHOD_NAMES.length; ++i) {
+			if (METHOD_NAMES[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * a bit standing for the given method in a goal's method mask, or 0 if
+	 * the method isn't one of the standard ones and has to be looked up
+	 */
+	static int methodBit(HttpMethod method) {
+		int index = methodIndex(method);
+		return index == -1 ? 0 : 1 << index;
+	}
+	
+	/**
+	 * children compiled down to arrays, so looking one up doesn't need to build a key.
+	 * keys are all the same length, and when there is more than one they are single
+	 * characters, so they can be found by their first character
+	 */
+	static final class Branches {
+		
+		private final char[] firsts;
+		private final String[] keys;
+		private final TrieNode[] nodes;
+		private final int keyLength;
+		
+		Branches(final Map<String, ? extends TrieNode> children, final int keyLength) {
+			this.keyLength = keyLength;
+			keys = children.keySet().toArray(new String[children.size()]);
+			Arrays.sort(keys, (k1, k2) -> k1.charAt(0) - k2.charAt(0));
+			firsts = new char[keys.length];
+			nodes = new TrieNode[keys.length];
+			for (int i = 0; i < keys.length; ++i) {
+				firsts[i] = keys[i].charAt(0);
+				nodes[i] = children.get(keys[i]);
+			}
+		}
+		
+		TrieNode find(final String uri, final int index) {
+			if (uri.length() < index + keyLength) {
+				return null;
+			}
+			int i = Arrays.binarySearch(firsts, uri.charAt(index));
+			return i < 0 || !uri.regionMatches(index + 1, keys[i], 1, keyLength - 1) ? null : nodes[i];
+		}
+	}
+	
 	// this is set to true on a SeparatorNode if an exntension is found at the end of
 	// a route. it indicates that after the separator, no node type switches are allowed
 	boolean terminal;
 	
 	Map<HttpMethod, Route> goal;
 	
+	/** the methodBit of every method in the goal */
+	int methods;
+	
 	void addRoute(Route route) {
 		if (route.uri().length() == route.index()) {
 		
@@ -49,6 +114,7 @@ abstract class TrieNode {
 				);
 			}
 			goal.put(route.method(), route);
+			methods |= methodBit(route.method());
 			route.added();
 		
 		} else {
@@ -61,6 +127,17 @@ abstract class TrieNode {
 	
 	abstract boolean findGoal(RouteFinderContext context, String uri, int index);
 	
+	/**
+	 * finishes a search that has consumed the whole uri
+	 */
+	boolean reachedEnd(RouteFinderContext context) {
+		if (goal != null) {
+			context.setGoal(this);
+			return true;
+		}
+		return false;
+	}
+	
 	private void compressGoal() {
 		if (goal != null) {
 			
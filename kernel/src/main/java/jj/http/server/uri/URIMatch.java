@@ -15,11 +15,7 @@
  */
 package jj.http.server.uri;
 
-import io.netty.handler.codec.http.QueryStringDecoder;
-
-import java.nio.file.Paths;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
 
 import jj.util.StringUtils;
 
@@ -40,13 +36,20 @@ import jj.util.StringUtils;
  * one of the words 'alpha', 'beta', or 'pre' optionally separated by a dot or a dash,
  * optionally followed by one of the words 'pack' or 'min' separated by a dot or a
  * dash.
+ * 
+ * <p>
+ * The path is normalized the way an absolute file path would be: everything from
+ * the query string on is dropped, repeated slashes are collapsed, "." segments
+ * are removed, and ".." segments remove the segment before them, never going
+ * above the root.  A trailing slash is kept.  This is done in one pass over the
+ * uri, which is returned as is when there is nothing to normalize
+ * 
  * @author jason
  *
  */
 public class URIMatch {
 	
-	private static final Pattern URI_PATTERN = Pattern.compile("^/(?:([\\da-f]{40})/)?(.*?)(?:\\.([^.]+))?$");
-	private static final Pattern VERSION_PATTERN = Pattern.compile("-\\d+(?:[.]\\d+)*(?:[.-]?(?:alpha|beta|pre))?(?:(?:[.-](?:min|pack))?$|/)");
+	private static final int SHA1_LENGTH = 40;
 
 	/** the complete URI including any leading and trailing / */
 	public final String uri;
@@ -82,29 +85,191 @@ public class URIMatch {
 	
 	public URIMatch(final String uri) {
 		assert uri != null : "uri must not be null";
-		QueryStringDecoder qsd = new QueryStringDecoder(uri.startsWith("/") ? uri : "/" + uri);
 		
-		this.uri = "/".equals(uri) ? uri : (Paths.get(qsd.path()).normalize().toString() + (qsd.path().endsWith("/") ? "/" : ""));
-		Matcher matcher = URI_PATTERN.matcher(this.uri);
+		this.uri = "/".equals(uri) ? uri : normalize(uri);
+		
 		String shaCandidate = null;
 		String nameCandidate = null;
 		String extensionCandidate = null;
-		if (matcher.matches()) {
-			shaCandidate = matcher.group(1);
-			nameCandidate = matcher.group(2);
-			if (nameCandidate != null && nameCandidate.endsWith("/")) {
-				nameCandidate = nameCandidate.substring(0, nameCandidate.length() - 1);
-			}
-			extensionCandidate = matcher.group(3);
-			if (extensionCandidate != null && extensionCandidate.endsWith("/")) {
-				extensionCandidate = extensionCandidate.substring(0, extensionCandidate.length() - 1);
+		int nameStart = isSha1(this.uri) ? SHA1_LENGTH + 2 : 1;
+		int nameEnd = this.uri.lastIndexOf('.');
+		if (nameEnd < nameStart || nameEnd == this.uri.length() - 1) {
+			nameEnd = this.uri.length();
+		}
+		if (!hasLineTerminator(this.uri, nameStart, nameEnd)) {
+			shaCandidate = nameStart == 1 ? null : this.uri.substring(1, SHA1_LENGTH + 1);
+			nameCandidate = withoutTrailingSlash(this.uri.substring(nameStart, nameEnd));
+			if (nameEnd < this.uri.length()) {
+				extensionCandidate = withoutTrailingSlash(this.uri.substring(nameEnd + 1));
 			}
 		}
 		sha1 = shaCandidate;
 		name = nameCandidate;
 		extension = extensionCandidate;
-		path = name == null ? null : name + (extensionCandidate == null ? "" : "." + extensionCandidate);
-		versioned = sha1 != null || (nameCandidate != null && VERSION_PATTERN.matcher(nameCandidate).find());
+		path = name == null ? null : extensionCandidate == null ? name : name + "." + extensionCandidate;
+		versioned = sha1 != null || (nameCandidate != null && isVersioned(nameCandidate));
+	}
+	
+	/**
+	 * the path of the given uri, starting with a slash, with everything from the
+	 * query string on removed and the segments normalized
+	 */
+	private static String normalize(final String uri) {
+		int offset = uri.startsWith("/") ? 0 : -1;
+		int end = uri.indexOf('?');
+		end = end == -1 ? uri.length() : end;
+		
+		int nul = uri.indexOf('\0');
+		if (nul != -1 && nul < end) {
+			throw new IllegalArgumentException("uri must not contain a nul character: " + uri);
+		}
+		
+		if (offset == 0 && isNormal(uri, end)) {
+			return end == uri.length() ? uri : uri.substring(0, end);
+		}
+		
+		// segments are kept as start and end pairs, like a stack.
+		// an offset of -1 stands for the slash we put in front
+		int[] segments = new int[8];
+		int count = 0;
+		int length = 0;
+		
+		for (int i = offset; i < end;) {
+			// skip the separator
+			int start = i + 1;
+			int stop = start;
+			while (stop < end && uri.charAt(stop) != '/') {
+				++stop;
+			}
+			int segmentLength = stop - start;
+			if (segmentLength == 0 || (segmentLength == 1 && uri.charAt(start) == '.')) {
+				// nothing to keep
+			} else if (segmentLength == 2 && uri.charAt(start) == '.' && uri.charAt(start + 1) == '.') {
+				if (count > 0) {
+					--count;
+					length -= segments[count * 2 + 1] - segments[count * 2] + 1;
+				}
+			} else {
+				if (count * 2 == segments.length) {
+					segments = Arrays.copyOf(segments, segments.length * 2);
+				}
+				segments[count * 2] = start;
+				segments[count * 2 + 1] = stop;
+				++count;
+				length += segmentLength + 1;
+			}
+			i = stop;
+		}
+		
+		// when there was no slash in front, the one we put there might be the end
+		boolean trailingSlash = end == 0 || uri.charAt(end - 1) == '/';
+		StringBuilder result = new StringBuilder(length + 2);
+		for (int i = 0; i < count; ++i) {
+			result.append('/').append(uri, segments[i * 2], segments[i * 2 + 1]);
+		}
+		if (count == 0) {
+			result.append('/');
+		}
+		if (trailingSlash) {
+			// even on the root
+			result.append('/');
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * true if the path up to end is already normalized
+	 */
+	private static boolean isNormal(final String uri, final int end) {
+		if (end == 1) {
+			// just the root, which normalizes to the root with a trailing slash
+			return false;
+		}
+		for (int i = 0; i < end; ++i) {
+			char c = uri.charAt(i);
+			if (c == '/' && i + 1 < end && uri.charAt(i + 1) == '/') {
+				return false;
+			}
+			if (c == '.' && uri.charAt(i - 1) == '/') {
+				int next = i + 1 < end && uri.charAt(i + 1) == '.' ? i + 2 : i + 1;
+				if (next == end || uri.charAt(next) == '/') {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isSha1(final String uri) {
+		if (uri.length() < SHA1_LENGTH + 2 || uri.charAt(SHA1_LENGTH + 1) != '/') {
+			return false;
+		}
+		for (int i = 1; i <= SHA1_LENGTH; ++i) {
+			char c = uri.charAt(i);
+			if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * names can't span lines, so these never made it through the old pattern
+	 */
+	private static boolean hasLineTerminator(final String uri, final int start, final int end) {
+		for (int i = start; i < end; ++i) {
+			char c = uri.charAt(i);
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static String withoutTrailingSlash(final String value) {
+		return value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+	}
+	
+	/**
+	 * looks for a dash, some numbers separated by dots, maybe alpha, beta, or pre,
+	 * and then either a slash, or the end of the name maybe after min or pack
+	 */
+	private static boolean isVersioned(final String name) {
+		for (int dash = name.indexOf('-'); dash != -1; dash = name.indexOf('-', dash + 1)) {
+			int i = digits(name, dash + 1);
+			if (i == -1) {
+				continue;
+			}
+			for (int next; i < name.length() && name.charAt(i) == '.' && (next = digits(name, i + 1)) != -1;) {
+				i = next;
+			}
+			int separated = i < name.length() && (name.charAt(i) == '.' || name.charAt(i) == '-') ? i + 1 : i;
+			if (name.startsWith("alpha", separated) || name.startsWith("beta", separated)) {
+				i = separated + (name.charAt(separated) == 'a' ? 5 : 4);
+			} else if (name.startsWith("pre", separated)) {
+				i = separated + 3;
+			}
+			if (i == name.length() || name.charAt(i) == '/') {
+				return true;
+			}
+			if ((name.charAt(i) == '.' || name.charAt(i) == '-') &&
+				(name.regionMatches(i + 1, "min", 0, 3) && i + 4 == name.length() ||
+				name.regionMatches(i + 1, "pack", 0, 4) && i + 5 == name.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * the index after the run of digits starting at start, or -1 if there aren't any
+	 */
+	private static int digits(final String name, final int start) {
+		int i = start;
+		while (i < name.length() && name.charAt(i) >= '0' && name.charAt(i) <= '9') {
+			++i;
+		}
+		return i == start ? -1 : i;
 	}
 	
 	@Override
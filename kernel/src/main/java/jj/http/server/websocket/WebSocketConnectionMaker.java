@@ -19,6 +19,7 @@ import static jj.http.server.PipelineStages.*;
 import static jj.server.ServerLocation.Virtual;
 
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -47,53 +48,53 @@ import jj.resource.ResourceFinder;
 @Singleton
 public class WebSocketConnectionMaker {
 	
+	private static final Pattern HTTP_REPLACER = Pattern.compile("http");
+	
 	private final WebSocketFrameHandlerCreator handlerCreator;
 	
 	private final ResourceFinder resourceFinder;
 	
-	private final ChannelHandlerContext ctx;
-	
-	private final FullHttpRequest request;
-	
-	private final HttpServerResponse response;
-	
-	private final WebSocketServerHandshakerFactory handshakerFactory;
-	
 	private final Set<Class<? extends WebSocketConnectionHost>> webSocketConnectionHostClasses;
 	
 	@Inject
 	WebSocketConnectionMaker(
 		final WebSocketFrameHandlerCreator handlerCreator,
 		final ResourceFinder resourceFinder,
-		final ChannelHandlerContext ctx,
-		final FullHttpRequest request,
-		final HttpServerResponse response,
-		final WebSocketServerHandshakerFactory handshakerFactory,
 		final Set<Class<? extends WebSocketConnectionHost>> webSocketConnectionHostClasses
 	) {
 		this.handlerCreator = handlerCreator;
 		this.resourceFinder = resourceFinder;
-		this.ctx = ctx;
-		this.request = request;
-		this.response = response;
-		this.handshakerFactory = handshakerFactory;
 		this.webSocketConnectionHostClasses = webSocketConnectionHostClasses;
 	}
 	
-	public void handshakeWebsocket() {
-		final WebSocketServerHandshaker handshaker = handshakerFactory.newHandshaker(request);
+	WebSocketServerHandshakerFactory handshakerFactory(final FullHttpRequest request) {
+		String uri = HTTP_REPLACER.matcher(
+			request.headers().get(HttpHeaderNames.ORIGIN) + 
+			request.uri()
+		).replaceFirst("ws");
+		
+		return new WebSocketServerHandshakerFactory(uri, null, false);
+	}
+	
+	public void handshakeWebsocket(
+		final ChannelHandlerContext ctx,
+		final FullHttpRequest request,
+		final HttpServerResponse response
+	) {
+		final WebSocketServerHandshaker handshaker = handshakerFactory(request).newHandshaker(request);
 		if (handshaker == null) {
 			response
 				.header(HttpHeaderNames.SEC_WEBSOCKET_VERSION, WebSocketVersion.V13.toHttpHeaderValue())
 				.sendError(HttpResponseStatus.UPGRADE_REQUIRED);
 		} else {
-			doHandshake(ctx, request, handshaker);
+			doHandshake(ctx, request, response, handshaker);
 		}
 	}
 
 	private void doHandshake(
 		final ChannelHandlerContext ctx,
 		final FullHttpRequest request,
+		final HttpServerResponse response,
 		final WebSocketServerHandshaker handshaker
 	) {
 		handshaker.handshake(ctx.channel(), request).addListener(new ChannelFutureListener() {
@@ -139,6 +140,10 @@ public class WebSocketConnectionMaker {
 						
 					} else {
 						
+						// websockets keep themselves alive
+						if (ctx.pipeline().get(IdleConnection.toString()) != null) {
+							ctx.pipeline().remove(IdleConnection.toString());
+						}
 						ctx.pipeline().replace(
 							JJEngine.toString(),
 							JJWebsocketHandler.toString(),
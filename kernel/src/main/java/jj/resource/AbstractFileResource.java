@@ -4,6 +4,8 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.Charset;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -107,7 +109,36 @@ public abstract class AbstractFileResource<T> extends AbstractResource<T> implem
 	}
 	
 	private ByteBuf readAllBytes(final Path path) throws IOException {
-		return Unpooled.wrappedBuffer(Files.readAllBytes(path));
+		if (!resourceConfiguration.offHeapFileBytes() || path.getFileSystem() != FileSystems.getDefault()) {
+			return Unpooled.wrappedBuffer(Files.readAllBytes(path));
+		}
+		
+		try (FileChannel channel = FileChannel.open(path)) {
+			long length = channel.size();
+			if (length > 0 && length >= resourceConfiguration.minMappedFileSize()) {
+				return new MappedFileBytes(channel.map(MapMode.READ_ONLY, 0, length));
+			}
+			
+			ByteBuf result = Unpooled.directBuffer((int)length, (int)length);
+			try {
+				while (result.isWritable() && result.writeBytes(channel, result.writableBytes()) >= 0) {
+					// keep reading
+				}
+				return result;
+			} catch (IOException ioe) {
+				result.release();
+				throw ioe;
+			}
+		}
+	}
+	
+	@Override
+	protected void died() {
+		// bytes on the heap are left for collection, since a response could still be reading
+		// them. outside the heap, responses hold their own reference to what they're sending
+		if (byteBuffer != null && byteBuffer.isDirect()) {
+			byteBuffer.release();
+		}
 	}
 
 	@Override
@@ -115,6 +146,11 @@ public abstract class AbstractFileResource<T> extends AbstractResource<T> implem
 		return sha1;
 	}
 
+	@Override
+	protected long retainedBytes() {
+		return super.retainedBytes() + (byteBuffer == null ? 0 : byteBuffer.capacity());
+	}
+
 	@Override
 	public Path path() {
 		return path;
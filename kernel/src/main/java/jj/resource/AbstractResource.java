@@ -202,6 +202,30 @@ public abstract class AbstractResource<T> implements Resource<T> {
 		return "";
 	}
 	
+	/**
+	 * A rough guess at the bytes any resource holds on to before counting what it
+	 * has loaded
+	 */
+	static final long BASE_RETAINED_BYTES = 512;
+	
+	/**
+	 * The bytes held in memory by this resource, used to weigh it in the cache.
+	 * Override this to add in anything big that the resource keeps around
+	 */
+	protected long retainedBytes() {
+		return BASE_RETAINED_BYTES;
+	}
+	
+	/**
+	 * Return true from this method to keep this resource in the cache no matter how
+	 * full it is. Anything that has to be there whenever it's looked for should be
+	 * pinned, since a resource that is let go isn't loaded again until something
+	 * asks the {@link ResourceLoader} for it. default is false
+	 */
+	protected boolean pinned() {
+		return false;
+	}
+	
 	/**
 	 * A resource-specific test to indicate if the given resource should be replaced when the
 	 * watch system becomes aware of it. any sort of check is allowed at this point. this method is
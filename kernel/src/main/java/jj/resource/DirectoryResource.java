@@ -91,4 +91,10 @@ public class DirectoryResource extends AbstractResource<Void> implements FileSys
 	protected boolean removeOnReload() {
 		return false;
 	}
+	
+	@Override
+	protected boolean pinned() {
+		// loading anything in a directory expects to find it
+		return true;
+	}
 }
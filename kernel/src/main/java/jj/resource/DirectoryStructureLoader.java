@@ -15,12 +15,14 @@
  */
 package jj.resource;
 
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -39,6 +41,12 @@ import jj.execution.TaskRunner;
  * Responsible for the initial load of directory structures during system startup,
  * and also listens for new directory creation
  * 
+ * <p>
+ * A structure is loaded by as many resource threads as are free. Each directory is
+ * only queued up once its parent has been loaded, since loading a resource expects
+ * to find its parent directory. The task that starts a load works along with the
+ * others and doesn't finish until the whole structure is loaded
+ * 
  * @author jason
  *
  */
@@ -49,12 +57,19 @@ class DirectoryStructureLoader {
 	private final PathResolver pathResolver;
 	private final ResourceFinder resourceFinder;
 	private final TaskRunner taskRunner;
+	private final ResourceConfiguration configuration;
 	
 	@Inject
-	DirectoryStructureLoader(PathResolver pathResolver, ResourceFinder resourceFinder, TaskRunner taskRunner) {
+	DirectoryStructureLoader(
+		PathResolver pathResolver,
+		ResourceFinder resourceFinder,
+		TaskRunner taskRunner,
+		ResourceConfiguration configuration
+	) {
 		this.pathResolver = pathResolver;
 		this.resourceFinder = resourceFinder;
 		this.taskRunner = taskRunner;
+		this.configuration = configuration;
 	}
 
 	@Listener
@@ -75,6 +90,96 @@ class DirectoryStructureLoader {
 		taskRunner.execute(new LoaderTask(path));
 	}
 	
+	/**
+	 * the directories of one structure that are waiting to be loaded,
+	 * shared by everything working on it
+	 */
+	private class Structure {
+		
+		private final Path path;
+		
+		private final ConcurrentLinkedQueue<Path> directories = new ConcurrentLinkedQueue<>();
+		
+		/** queued or being loaded */
+		private final AtomicInteger pending = new AtomicInteger();
+		
+		/** not counting the task that started it */
+		private final AtomicInteger helpers = new AtomicInteger();
+		
+		Structure(Path path) {
+			this.path = path;
+			add(path);
+		}
+		
+		private void add(Path directory) {
+			pending.incrementAndGet();
+			directories.add(directory);
+			synchronized (this) {
+				notifyAll();
+			}
+			
+			int current = helpers.get();
+			if (current < configuration.ioThreads() - 1 && helpers.compareAndSet(current, current + 1)) {
+				taskRunner.execute(new HelperTask(this));
+			}
+		}
+		
+		/**
+		 * loads directories until there are none waiting
+		 */
+		void work() {
+			for (Path directory = directories.poll(); directory != null; directory = directories.poll()) {
+				try {
+					loadDirectory(directory);
+				} finally {
+					if (pending.decrementAndGet() == 0) {
+						synchronized (this) {
+							notifyAll();
+						}
+					}
+				}
+			}
+		}
+		
+		/**
+		 * works until the whole structure is loaded, waiting when the
+		 * only directories left are being loaded by someone else
+		 */
+		void complete() throws InterruptedException {
+			for (;;) {
+				work();
+				synchronized (this) {
+					while (pending.get() > 0 && directories.isEmpty()) {
+						wait();
+					}
+					if (pending.get() == 0) {
+						return;
+					}
+				}
+			}
+		}
+		
+		private void loadDirectory(Path directory) {
+			Location location = pathResolver.resolveLocation(directory);
+			if (location.parentInDirectory()) {
+				resourceFinder.loadResource(
+					DirectoryResource.class,
+					location,
+					pathResolver.resolvePath(location).relativize(path.resolve(directory)).toString()
+				);
+			}
+			
+			// only now can its children go
+			try (DirectoryStream<Path> children = Files.newDirectoryStream(directory, child -> Files.isDirectory(child, NOFOLLOW_LINKS))) {
+				for (Path child : children) {
+					add(child);
+				}
+			} catch (IOException ioe) {
+				// same as not being there
+			}
+		}
+	}
+	
 	private class LoaderTask extends ResourceTask {
 		
 		private final Path path;
@@ -89,36 +194,26 @@ class DirectoryStructureLoader {
 			// we check if the path is a directory here in ResourceThread context,
 			// so that the external methods can be invoked without incurring I/O costs
 			assert Files.isDirectory(path) : "asked to load a file " + path;
-			Files.walkFileTree(path, new FileVisitor<Path>() {
-
-				@Override
-				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-					Location location = pathResolver.resolveLocation(dir);
-					if (location.parentInDirectory()) {
-						resourceFinder.loadResource(
-								DirectoryResource.class,
-								location,
-								pathResolver.resolvePath(location).relativize(path.resolve(dir)).toString()
-						);
-					}
-					return FileVisitResult.CONTINUE;
-				}
-
-				@Override
-				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-					return FileVisitResult.CONTINUE;
-				}
-
-				@Override
-				public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-					return FileVisitResult.CONTINUE;
-				}
-
-				@Override
-				public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-					return FileVisitResult.CONTINUE;
-				}
-			});
+			new Structure(path).complete();
+		}
+	}
+	
+	private class HelperTask extends ResourceTask {
+		
+		private final Structure structure;
+		
+		HelperTask(Structure structure) {
+			super("helping load directory structure rooted at " + structure.path);
+			this.structure = structure;
+		}
+		
+		@Override
+		protected void run() throws Exception {
+			try {
+				structure.work();
+			} finally {
+				structure.helpers.decrementAndGet();
+			}
 		}
 	}
 }
@@ -61,6 +61,11 @@ public interface Location {
 				((Bundle)obj).locations.equals(locations);
 		}
 		
+		@Override
+		public int hashCode() {
+			return locations.hashCode();
+		}
+		
 		@Override
 		public boolean parentInDirectory() {
 			// bundles cannot be used in this way
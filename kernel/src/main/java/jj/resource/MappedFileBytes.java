@@ -0,0 +1,49 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.resource;
+
+import java.nio.MappedByteBuffer;
+
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * The bytes of a file mapped read-only into memory, which unmaps the
+ * file as soon as the last reference is released instead of waiting for
+ * the mapping to be collected. Netty only frees the buffers it allocates
+ * itself, so the mapping is wrapped as the only part of a composite,
+ * which gets told when it's done
+ * 
+ * @author jason
+ *
+ */
+final class MappedFileBytes extends CompositeByteBuf {
+	
+	private final MappedByteBuffer mapped;
+
+	MappedFileBytes(final MappedByteBuffer mapped) {
+		super(UnpooledByteBufAllocator.DEFAULT, true, 2, Unpooled.wrappedBuffer(mapped));
+		this.mapped = mapped;
+	}
+	
+	@Override
+	protected void deallocate() {
+		super.deallocate();
+		PlatformDependent.freeDirectBuffer(mapped);
+	}
+}
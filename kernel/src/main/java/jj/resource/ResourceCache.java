@@ -4,8 +4,10 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -21,6 +23,20 @@ import jj.event.Subscriber;
  * {@link ResourceIdentifier}s. Main purpose is to provide
  * a type-safe heterogeneous collection, and to provide a
  * way to get all known resources associated to a path
+ * 
+ * <p>
+ * Resources from the file system are also indexed by their path,
+ * so finding the ones to reload when a file changes only looks at
+ * the resources for that file. The index is kept up to date inside
+ * the same atomic operations that change the cache
+ * 
+ * <p>
+ * The cache holds on to no more than {@link ResourceConfiguration#maxCachedBytes()}
+ * worth of resources, as weighed by {@link AbstractResource#retainedBytes()}. When
+ * it's over, the {@link ResourceEvictionPolicy} picks resources to let go, which are
+ * taken out and killed, so the next request for them loads them again. Pinned
+ * resources aren't weighed and are never let go, and neither is anything that
+ * another living resource depends on
  * @author jason
  *
  */
@@ -30,40 +46,123 @@ class ResourceCache {
 	
 	private final ResourceCreators resourceCreators;
 	
-	private final ConcurrentMap<ResourceIdentifier, Resource<?>> resourceCache = new ConcurrentHashMap<>(128, 0.75F, 4);
+	private final ResourceConfiguration configuration;
+	
+	private final ConcurrentMap<ResourceIdentifier, ResourceEvictionPolicy.Entry> resourceCache = new ConcurrentHashMap<>(128, 0.75F, 4);
+	
+	private final ConcurrentMap<Path, Set<Resource<?>>> resourcesByPath = new ConcurrentHashMap<>(128, 0.75F, 4);
+	
+	private final ResourceEvictionPolicy policy = new ResourceEvictionPolicy();
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
 
 	@Inject
-	ResourceCache(final ResourceCreators resourceCreators) {
+	ResourceCache(final ResourceCreators resourceCreators, final ResourceConfiguration configuration) {
 		this.resourceCreators = resourceCreators;
+		this.configuration = configuration;
 	}
 
 	List<Resource<?>> findAllByPath(Path path) {
-		return Collections.unmodifiableList(
-			resourceCache.values().stream()
-				.filter(
-					resource ->
-						// only living resources
-						resource.alive() &&
-						// that are from the file system
-						resource instanceof FileSystemResource &&
-						// and have the same path
-						path.equals(((FileSystemResource)resource).path())
-				)
+		Set<Resource<?>> resources = resourcesByPath.get(path);
+		return resources == null ? Collections.emptyList() : Collections.unmodifiableList(
+			resources.stream()
+				// only living resources
+				.filter(Resource::alive)
 				.collect(Collectors.toList())
 		);
 	}
 	
+	private static Path pathOf(Resource<?> resource) {
+		return resource instanceof FileSystemResource ? ((FileSystemResource)resource).path() : null;
+	}
+	
+	private void index(Resource<?> resource) {
+		Path path = pathOf(resource);
+		if (path != null) {
+			resourcesByPath.compute(path, (p, resources) -> {
+				Set<Resource<?>> result = resources == null ? ConcurrentHashMap.newKeySet() : resources;
+				result.add(resource);
+				return result;
+			});
+		}
+	}
+	
+	private void unindex(Resource<?> resource) {
+		Path path = pathOf(resource);
+		if (path != null) {
+			resourcesByPath.computeIfPresent(path, (p, resources) -> {
+				resources.remove(resource);
+				return resources.isEmpty() ? null : resources;
+			});
+		}
+	}
+	
+	private static boolean pinned(Resource<?> resource) {
+		// only our own resources can be killed
+		return !(resource instanceof AbstractResource) || ((AbstractResource<?>)resource).pinned();
+	}
+	
+	private static boolean evictable(Resource<?> resource) {
+		for (AbstractResource<?> dependent : ((AbstractResource<?>)resource).dependents()) {
+			if (dependent.alive()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * called inside the atomic operations on the cache
+	 */
+	private ResourceEvictionPolicy.Entry added(Resource<?> resource) {
+		index(resource);
+		if (pinned(resource)) {
+			return new ResourceEvictionPolicy.Entry(resource, 0);
+		}
+		ResourceEvictionPolicy.Entry entry =
+			new ResourceEvictionPolicy.Entry(resource, ((AbstractResource<?>)resource).retainedBytes());
+		policy.admit(entry);
+		return entry;
+	}
+	
+	/**
+	 * called inside the atomic operations on the cache
+	 */
+	private void removed(ResourceEvictionPolicy.Entry entry) {
+		unindex(entry.resource);
+		policy.forget(entry);
+	}
+	
+	/**
+	 * called outside of the atomic operations, since taking things out of the cache is
+	 * one of those
+	 */
+	private void evict(ResourceEvictionPolicy.Entry added) {
+		for (ResourceEvictionPolicy.Entry victim : policy.victims(configuration.maxCachedBytes(), ResourceCache::evictable, added)) {
+			if (remove(victim.resource)) {
+				evictions.increment();
+				((AbstractResource<?>)victim.resource).kill();
+			}
+		}
+	}
+	
 	/**
 	 * Returns an unmodifiable snapshot of the current Resource instances.  This information is
 	 * immediately out of date, cannot be manipulated, and is in no particular order.
 	 */
 	List<Resource<?>> allResources() {
-		return Collections.unmodifiableList(new ArrayList<>(resourceCache.values()));
+		List<Resource<?>> result = new ArrayList<>(resourceCache.size());
+		resourceCache.values().forEach(entry -> result.add(entry.resource));
+		return Collections.unmodifiableList(result);
 	}
 	
 	@Listener
 	void on(ServerStopping ignored) {
 		resourceCache.clear();
+		resourcesByPath.clear();
+		policy.clear();
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -72,38 +171,108 @@ class ResourceCache {
 	}
 
 	<T extends Resource<A>, A> T get(ResourceIdentifier<T, A> identifier) {
-		return identifier.resourceClass.cast(resourceCache.get(identifier));
+		ResourceEvictionPolicy.Entry entry = resourceCache.get(identifier);
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		entry.touch();
+		return identifier.resourceClass.cast(entry.resource);
 	}
 
 	<T extends Resource<A>, A> T putIfAbsent(T resource) {
 		@SuppressWarnings("unchecked")
 		ResourceIdentifier<T, A> identifier = (ResourceIdentifier<T, A>) resource.identifier();
-		return identifier.resourceClass.cast(resourceCache.putIfAbsent(identifier, resource));
+		ResourceEvictionPolicy.Entry[] result = new ResourceEvictionPolicy.Entry[1];
+		boolean[] admitted = new boolean[1];
+		resourceCache.compute(identifier, (id, current) -> {
+			if (current == null) {
+				admitted[0] = true;
+				current = added(resource);
+			}
+			result[0] = current;
+			return current;
+		});
+		
+		if (admitted[0]) {
+			evict(result[0]);
+			return null;
+		}
+		return identifier.resourceClass.cast(result[0].resource);
 	}
 
 	<T extends Resource<A>, A> boolean replace(Resource<T> newResource) {
-		return resourceCache.replace(newResource.identifier(), newResource) != null;
+		ResourceEvictionPolicy.Entry result = resourceCache.computeIfPresent(newResource.identifier(), (id, current) -> {
+			removed(current);
+			return added(newResource);
+		});
+		
+		if (result != null) {
+			evict(result);
+		}
+		return result != null;
 	}
 
 	<T extends Resource<A>, A> boolean replace(Resource<T> currentResource, Resource<T> newResource) {
 		ResourceIdentifier<? ,?> identifier = currentResource.identifier();
 		assert identifier.equals(newResource.identifier()) : "RESOURCE REPLACEMENT MUST BE EQUIVALENT";
-		return resourceCache.replace(identifier, currentResource, newResource);
+		ResourceEvictionPolicy.Entry[] replaced = new ResourceEvictionPolicy.Entry[1];
+		resourceCache.computeIfPresent(identifier, (id, current) -> {
+			if (current.resource != currentResource) {
+				return current;
+			}
+			removed(current);
+			return replaced[0] = added(newResource);
+		});
+		
+		if (replaced[0] != null) {
+			evict(replaced[0]);
+		}
+		return replaced[0] != null;
 	}
 
 	<T extends Resource<A>, A> boolean remove(T resource) {
-		return resourceCache.remove(resource.identifier(), resource);
+		boolean[] removed = new boolean[1];
+		resourceCache.computeIfPresent(resource.identifier(), (id, current) -> {
+			if (current.resource != resource) {
+				return current;
+			}
+			removed(current);
+			removed[0] = true;
+			return null;
+		});
+		return removed[0];
 	}
 	
 	int size() {
 		return resourceCache.size();
 	}
 	
+	/**
+	 * the bytes held by the resources that can be let go
+	 */
+	long weight() {
+		return policy.weight();
+	}
+	
+	long hits() {
+		return hits.sum();
+	}
+	
+	long misses() {
+		return misses.sum();
+	}
+	
+	long evictions() {
+		return evictions.sum();
+	}
+	
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder(getClass().getName()).append(" {\n");
-		resourceCache.forEach((identifier, resource) ->
-			sb.append("  ").append(identifier).append(" = ").append(resource).append("\n")
+		resourceCache.forEach((identifier, entry) ->
+			sb.append("  ").append(identifier).append(" = ").append(entry.resource).append("\n")
 		);
  		return sb.append("}").toString();
 	}
@@ -74,6 +74,7 @@ public class ResourceCacheInspector {
 	private final Scriptable links;
 	private final Scriptable types;
 	private final Scriptable bases;
+	private final Scriptable counts;
 	
 	@Inject
 	ResourceCacheInspector(
@@ -90,6 +91,7 @@ public class ResourceCacheInspector {
 		links = makeLinks();
 		types = makeTypes(resourceCreators.knownResourceTypeNames());
 		bases = makeBases();
+		counts = makeCounts(resourceCache);
 	}
 	
 	private Scriptable makeNodes() {
@@ -146,6 +148,17 @@ public class ResourceCacheInspector {
 		}
 	}
 	
+	private Scriptable makeCounts(ResourceCache resourceCache) {
+		try (RhinoContext context = contextProvider.get()) {
+			Scriptable result = context.newObject(global);
+			result.put("hits", result, resourceCache.hits());
+			result.put("misses", result, resourceCache.misses());
+			result.put("evictions", result, resourceCache.evictions());
+			result.put("bytes", result, resourceCache.weight());
+			return result;
+		}
+	}
+	
 	public Scriptable nodes() {
 		return nodes;
 	}
@@ -161,4 +174,8 @@ public class ResourceCacheInspector {
 	public Scriptable bases() {
 		return bases;
 	}
+	
+	public Scriptable counts() {
+		return counts;
+	}
 }
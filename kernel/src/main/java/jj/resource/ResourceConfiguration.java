@@ -45,6 +45,52 @@ public interface ResourceConfiguration {
 	@Default(MAX_IN_MEMORY_SIZE + "") // hi java! you suck sometimes!
 	long maxFileSizeToLoad();
 	
+	/**
+	 * Should file resources keep the bytes they load outside of the heap?
+	 * They're let go as soon as the resource is killed, instead of waiting
+	 * for garbage collection
+	 */
+	@Default("false")
+	boolean offHeapFileBytes();
+	
+	/**
+	 * When file bytes are kept outside of the heap, files at least this
+	 * many bytes long are mapped into memory instead of read in
+	 */
+	@Default("1048576")
+	long minMappedFileSize();
+	
+	/**
+	 * The largest static file in bytes that will be held in memory
+	 * once it has been served, rather than read from disk every time
+	 */
+	@Default("65536")
+	long maxFileSizeToHold();
+	
+	/**
+	 * The most bytes of static files held in memory at once. The
+	 * least recently served go first when it's full
+	 */
+	@Default("33554432")
+	long maxHeldBytes();
+	
+	/**
+	 * The most files kept open between the responses that send them.
+	 * The least recently sent are closed first when it's full, and zero
+	 * opens every file for every response
+	 */
+	@Default("256")
+	int maxOpenFiles();
+	
+	/**
+	 * The most bytes of resources kept in the cache. When it's full, the
+	 * resources that haven't been asked for lately are let go and loaded
+	 * again the next time they're needed. Script environments, directories,
+	 * and anything another resource depends on are always kept
+	 */
+	@Default("268435456")
+	long maxCachedBytes();
+	
 	/**
 	 * Should the system watch files for changes and reload them?
 	 */
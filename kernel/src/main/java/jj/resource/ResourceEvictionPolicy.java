@@ -0,0 +1,166 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * <p>
+ * Decides which cached resources to let go when the {@link ResourceCache} weighs
+ * more than it's allowed. Resources start out on probation, and only move to the
+ * protected segment once they've been asked for again, so a burst of one-off
+ * lookups can't push out the resources that are actually in use. The protected
+ * segment gets most of the room, and what falls out of it goes back on probation
+ * for another chance
+ *
+ * <p>
+ * Being asked for just flips a flag on the entry, so lookups never take the lock.
+ * The entries move between segments when it's time to find something to evict
+ *
+ * @author jason
+ *
+ */
+class ResourceEvictionPolicy {
+	
+	/** the share of the room that goes to resources that have been asked for more than once */
+	private static final double PROTECTED_SHARE = 0.8;
+	
+	static final class Entry {
+		
+		final Resource<?> resource;
+		final long weight;
+		private volatile boolean referenced;
+		
+		Entry(final Resource<?> resource, final long weight) {
+			this.resource = resource;
+			this.weight = weight;
+		}
+		
+		void touch() {
+			if (!referenced) {
+				referenced = true;
+			}
+		}
+	}
+	
+	// both oldest first
+	private final LinkedHashSet<Entry> probation = new LinkedHashSet<>();
+	private final LinkedHashSet<Entry> protectedSegment = new LinkedHashSet<>();
+	
+	private long probationWeight;
+	private long protectedWeight;
+	
+	synchronized void admit(final Entry entry) {
+		probation.add(entry);
+		probationWeight += entry.weight;
+	}
+	
+	synchronized void forget(final Entry entry) {
+		if (probation.remove(entry)) {
+			probationWeight -= entry.weight;
+		} else if (protectedSegment.remove(entry)) {
+			protectedWeight -= entry.weight;
+		}
+	}
+	
+	synchronized void clear() {
+		probation.clear();
+		protectedSegment.clear();
+		probationWeight = 0;
+		protectedWeight = 0;
+	}
+	
+	synchronized long weight() {
+		return probationWeight + protectedWeight;
+	}
+	
+	/**
+	 * Takes entries out until what's left weighs no more than the given maximum,
+	 * and returns them for the caller to remove from the cache. Entries that fail
+	 * the test count as being in use, and the given entry, which is the one just
+	 * added, is always kept. Gives up once it has looked at everything without
+	 * getting under the maximum
+	 */
+	synchronized List<Entry> victims(final long maxWeight, final Predicate<Resource<?>> evictable, final Entry keep) {
+		if (probationWeight + protectedWeight <= maxWeight) {
+			return Collections.emptyList();
+		}
+		
+		// set aside, so it goes back as the newest
+		boolean keeping = keep != null && probation.remove(keep);
+		long kept = keeping ? keep.weight : 0;
+		probationWeight -= kept;
+		
+		List<Entry> result = new ArrayList<>();
+		long protectedMax = (long)(maxWeight * PROTECTED_SHARE);
+		// every entry can be promoted once and then looked at once more
+		for (int looks = 2 * (probation.size() + protectedSegment.size());
+			probationWeight + protectedWeight + kept > maxWeight && looks > 0;
+			--looks
+		) {
+			if (probation.isEmpty()) {
+				if (protectedSegment.isEmpty()) {
+					break;
+				}
+				Entry eldest = takeEldest(protectedSegment);
+				protectedWeight -= eldest.weight;
+				if (eldest.referenced) {
+					eldest.referenced = false;
+					protect(eldest);
+				} else {
+					admit(eldest);
+				}
+			} else {
+				Entry eldest = takeEldest(probation);
+				probationWeight -= eldest.weight;
+				if (eldest.referenced || !evictable.test(eldest.resource)) {
+					eldest.referenced = false;
+					protect(eldest);
+					while (protectedWeight > protectedMax) {
+						Entry demoted = takeEldest(protectedSegment);
+						protectedWeight -= demoted.weight;
+						admit(demoted);
+					}
+				} else {
+					result.add(eldest);
+				}
+			}
+		}
+		
+		if (keeping) {
+			admit(keep);
+		}
+		
+		return result;
+	}
+	
+	private void protect(final Entry entry) {
+		protectedSegment.add(entry);
+		protectedWeight += entry.weight;
+	}
+	
+	private Entry takeEldest(final LinkedHashSet<Entry> segment) {
+		Iterator<Entry> iterator = segment.iterator();
+		Entry eldest = iterator.next();
+		iterator.remove();
+		return eldest;
+	}
+}
@@ -1,13 +1,12 @@
 package jj.resource;
 
-import javax.inject.Inject;
-import javax.inject.Singleton;
-import java.util.regex.MatchResult;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Objects;
 
 /**
- * A tuple that identifies a given resource, but is not instance specific
+ * A tuple that identifies a given resource, but is not instance specific.
+ * Compared field by field with a hash worked out up front, since these are
+ * looked up constantly. Arguments are told apart by their string form, the
+ * same as always
  * @author jason
  */
 public class ResourceIdentifier<T extends Resource<A>, A> {
@@ -18,7 +17,11 @@ public class ResourceIdentifier<T extends Resource<A>, A> {
 	public final String name;
 	public final A argument;
 
-	private final String stringRep;
+	private final String argumentKey;
+
+	private final int hash;
+
+	private volatile String stringRep;
 
 	ResourceIdentifier(Class<T> resourceClass, Location base, String name, A argument) {
 		this.resourceClass = resourceClass;
@@ -26,7 +29,19 @@ public class ResourceIdentifier<T extends Resource<A>, A> {
 		this.name = name;
 		this.argument = argument;
 
-		stringRep = stringify(resourceClass, base, name, argument);
+		argumentKey = argumentKey(argument);
+		hash = hash(resourceClass, base, name, argumentKey);
+	}
+
+	static String argumentKey(Object argument) {
+		return argument == null ? null : argument.toString();
+	}
+
+	static int hash(Class<?> resourceClass, Location base, String name, String argumentKey) {
+		int result = resourceClass.hashCode();
+		result = 31 * result + Objects.hashCode(base);
+		result = 31 * result + Objects.hashCode(name);
+		return 31 * result + Objects.hashCode(argumentKey);
 	}
 
 	private String stringify(Class<?> resourceClass, Location base, String name, Object argument) {
@@ -54,20 +69,38 @@ public class ResourceIdentifier<T extends Resource<A>, A> {
 
 	@Override
 	public boolean equals(Object obj) {
-		return obj instanceof ResourceIdentifier && stringRep.equals(obj.toString());
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof ResourceIdentifier)) {
+			return false;
+		}
+		ResourceIdentifier<?, ?> other = (ResourceIdentifier<?, ?>)obj;
+		return hash == other.hash &&
+			resourceClass == other.resourceClass &&
+			Objects.equals(base, other.base) &&
+			Objects.equals(name, other.name) &&
+			Objects.equals(argumentKey, other.argumentKey);
 	}
 
 	public boolean equals(Class<?> resourceClass, Location base, String name, Object argument) {
-		return stringRep.equals(stringify(resourceClass, base, name, argument));
+		return this.resourceClass == resourceClass &&
+			Objects.equals(this.base, base) &&
+			Objects.equals(this.name, name) &&
+			Objects.equals(argumentKey, argumentKey(argument));
 	}
 
 	@Override
 	public String toString() {
-		return stringRep;
+		String result = stringRep;
+		if (result == null) {
+			stringRep = result = stringify(resourceClass, base, name, argumentKey);
+		}
+		return result;
 	}
 
 	@Override
 	public int hashCode() {
-		return stringRep.hashCode();
+		return hash;
 	}
 }
@@ -1,18 +1,84 @@
 package jj.resource;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 /**
+ * <p>
  * Handles creation of resource identifiers, including normalizing
  * locations
  *
+ * <p>
+ * Identifiers without arguments are remembered by what they were made from
+ * for as long as anything holds on to them, so asking again hands back the
+ * same identifier without normalizing or allocating anything. Resources keep
+ * their identifiers, so this covers everything that's loaded
+ *
  * @author jason
  */
 @Singleton
 public class ResourceIdentifierMaker {
 
+	/**
+	 * what an identifier was made from. each thread keeps one around
+	 * to fill in for lookups
+	 */
+	private static final class Inputs {
+		
+		private Class<?> resourceClass;
+		private Location base;
+		private String name;
+		private int hash;
+		
+		Inputs set(Class<?> resourceClass, Location base, String name) {
+			this.resourceClass = resourceClass;
+			this.base = base;
+			this.name = name;
+			hash = ResourceIdentifier.hash(resourceClass, base, name, null);
+			return this;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Inputs)) {
+				return false;
+			}
+			Inputs other = (Inputs)obj;
+			return hash == other.hash &&
+				resourceClass == other.resourceClass &&
+				Objects.equals(base, other.base) &&
+				Objects.equals(name, other.name);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+	
+	private static final class Made extends WeakReference<ResourceIdentifier<?, ?>> {
+		
+		private final Inputs inputs;
+		
+		Made(Inputs inputs, ResourceIdentifier<?, ?> identifier, ReferenceQueue<ResourceIdentifier<?, ?>> queue) {
+			super(identifier, queue);
+			this.inputs = inputs;
+		}
+	}
+
 	private final PathResolver pathResolver;
+	
+	private final ConcurrentMap<Inputs, Made> made = new ConcurrentHashMap<>();
+	
+	private final ReferenceQueue<ResourceIdentifier<?, ?>> collected = new ReferenceQueue<>();
+	
+	private final ThreadLocal<Inputs> lookups = ThreadLocal.withInitial(Inputs::new);
 
 	@Inject
 	ResourceIdentifierMaker(PathResolver pathResolver) {
@@ -24,6 +90,26 @@ public class ResourceIdentifierMaker {
 	}
 
 	public <T extends Resource<A>, A> ResourceIdentifier<T, A> make(Class<T> resourceClass, Location base, String name, A argument) {
+		if (argument != null) {
+			return create(resourceClass, base, name, argument);
+		}
+		
+		forgetCollected();
+		
+		Made ref = made.get(lookups.get().set(resourceClass, base, name));
+		ResourceIdentifier<?, ?> result = ref == null ? null : ref.get();
+		if (result == null) {
+			result = create(resourceClass, base, name, null);
+			Inputs inputs = new Inputs().set(resourceClass, base, name);
+			made.put(inputs, new Made(inputs, result, collected));
+		}
+		
+		@SuppressWarnings("unchecked")
+		ResourceIdentifier<T, A> identifier = (ResourceIdentifier<T, A>)result;
+		return identifier;
+	}
+	
+	private <T extends Resource<A>, A> ResourceIdentifier<T, A> create(Class<T> resourceClass, Location base, String name, A argument) {
 		// find the canonical tuple
 		Location normalizedBase = base instanceof Location.Bundle ? base : pathResolver.normalizedLocation(base, name);
 		if (normalizedBase != null && !normalizedBase.equals(base)) {
@@ -32,4 +118,15 @@ public class ResourceIdentifierMaker {
 
 		return new ResourceIdentifier<>(resourceClass, base, name, argument);
 	}
+	
+	private void forgetCollected() {
+		for (Made ref = (Made)collected.poll(); ref != null; ref = (Made)collected.poll()) {
+			made.remove(ref.inputs, ref);
+		}
+	}
+	
+	int remembered() {
+		forgetCollected();
+		return made.size();
+	}
 }
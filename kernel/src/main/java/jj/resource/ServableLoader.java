@@ -6,7 +6,6 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import jj.http.server.ServableResource;
-import jj.http.server.ServableResources;
 import jj.http.server.uri.RouteMatch;
 import jj.http.server.uri.Router;
 import jj.http.server.uri.URIMatch;
@@ -14,15 +13,10 @@ import jj.http.server.uri.URIMatch;
 @Singleton
 public class ServableLoader {
 	
-	private final ServableResources servables;
 	private final Router router;
 	
 	@Inject
-	ServableLoader(
-		final ServableResources servables,
-		final Router router
-	) {
-		this.servables = servables;
+	ServableLoader(final Router router) {
 		this.router = router;
 	}
 
@@ -32,8 +26,7 @@ public class ServableLoader {
 			
 			RouteMatch match = router.routeRequest(GET, uriMatch);
 			if (match.matched()) {
-				Class<? extends ServableResource> resourceClass = servables.classFor(match.resourceName());
-				resource = servables.routeProcessor(match.resourceName()).loadResource(resourceClass, uriMatch, match.route());
+				resource = match.routeProcessor().loadResource(match.resourceClass(), uriMatch, match.route());
 			}
 		}
 		return resource;
@@ -202,6 +202,12 @@ public abstract class AbstractScriptEnvironment<T> extends AbstractResource<T> i
 		return script() == null ? null : execute(script());
 	}
 	
+	@Override
+	protected boolean pinned() {
+		// environments hold running state, so they only go when their scripts change
+		return true;
+	}
+	
 	@Override
 	protected void died() {
 		// mark dead
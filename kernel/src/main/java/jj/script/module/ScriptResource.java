@@ -1,7 +1,7 @@
 package jj.script.module;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.ZlibWrapper;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -11,6 +11,7 @@ import javax.inject.Provider;
 
 import org.mozilla.javascript.Script;
 
+import jj.http.server.CompressedBytes;
 import jj.http.server.LoadedResource;
 import jj.http.server.ServableResourceConfiguration;
 import jj.resource.AbstractFileResource;
@@ -23,6 +24,8 @@ public class ScriptResource extends AbstractFileResource<Void> implements Loaded
 	
 	private final Script script;
 	
+	private final CompressedBytes compressedBytes = new CompressedBytes();
+	
 	@Inject
 	ScriptResource(
 		final Dependencies dependencies,
@@ -46,7 +49,13 @@ public class ScriptResource extends AbstractFileResource<Void> implements Loaded
 	
 	@Override
 	public ByteBuf bytes() {
-		return Unpooled.wrappedBuffer(byteBuffer);
+		// a slice shares the reference count, so whoever wants to keep it retains it
+		return byteBuffer.slice();
+	}
+	
+	@Override
+	public ByteBuf compressedBytes(ZlibWrapper wrapper) {
+		return compressedBytes.bytes(wrapper, byteBuffer);
 	}
 
 	@Override
@@ -22,6 +22,8 @@ public class Server implements LocationResolver {
 
 	private static final String MODULES_PATH = "modules/";
 	
+	private static final String CACHE = "cache";
+	
 	private final Path rootPath;
 	
 	private final Assets assets;
@@ -76,6 +78,9 @@ public class Server implements LocationResolver {
 		case Modules:
 			return rootPath.resolve(MODULES).resolve(name);
 			
+		case Cache:
+			return rootPath.resolve(CACHE).resolve(name);
+			
 		case Virtual:
 			return null;
 		}
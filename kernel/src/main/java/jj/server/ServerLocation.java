@@ -49,7 +49,14 @@ public enum ServerLocation implements Location {
 	/**
 	 * Specs to validate API modules
 	 */
-	APISpecs;
+	APISpecs,
+	
+	/**
+	 * A subdirectory of the root named "cache" where the server keeps
+	 * files it makes for itself, like compressed copies of static files.
+	 * It is never watched and never served.
+	 */
+	Cache;
 
 	@Override
 	public boolean parentInDirectory() {
@@ -53,7 +53,9 @@ public enum SHA1Helper {
 	}
 	
 	public static String keyFor(final ByteBuf byteBuf) {
-		return toHex(sha1.get().digest(byteBuf.array()));
+		// works the same whether the bytes are on the heap or not
+		sha1.get().update(byteBuf.nioBuffer());
+		return toHex(sha1.get().digest());
 	}
 	
 	public static String keyFor(final ByteBuffer bytes) {
@@ -0,0 +1,22 @@
+var body = inject('jj.document.ScriptRequestBody');
+
+/**
+ * The body of the request being served. Reading it may pause
+ * the script until the body has all arrived.
+ * 
+ * var requestBody = require('jj/request-body');
+ * 
+ * var text = requestBody.text();   // the body as a string
+ * var path = requestBody.spool();  // a temporary file holding the body, for uploads
+ * 
+ * Either returns undefined if the body couldn't be read. The spooled
+ * file is deleted once the response is sent
+ */
+module.exports = {
+	text: function() {
+		return body.text();
+	},
+	spool: function() {
+		return body.spool();
+	}
+}
@@ -10,6 +10,27 @@ module.exports = {
 	timeout: support.makeIntProperty('timeout'),
 	sendBufferSize: support.makeIntProperty('sendBufferSize'),
 	receiveBufferSize: support.makeIntProperty('receiveBufferSize'),
+	flushConsolidationLimit: support.makeIntProperty('flushConsolidationLimit'),
+	zeroCopyTransfer: support.makeBooleanProperty('zeroCopyTransfer'),
+	zeroCopyThreshold: support.makeLongProperty('zeroCopyThreshold'),
+	compressResponses: support.makeBooleanProperty('compressResponses'),
+	compressionThreshold: support.makeLongProperty('compressionThreshold'),
+	http2: support.makeBooleanProperty('http2'),
+	http2MaxConcurrentStreams: support.makeIntProperty('http2MaxConcurrentStreams'),
+	http2InitialWindowSize: support.makeIntProperty('http2InitialWindowSize'),
+	maxRanges: support.makeIntProperty('maxRanges'),
+	rangeCoalesceDistance: support.makeLongProperty('rangeCoalesceDistance'),
+	maxRequestBodySize: support.makeLongProperty('maxRequestBodySize'),
+	acceptorsPerBinding: support.makeIntProperty('acceptorsPerBinding'),
+	tcpFastOpen: support.makeIntProperty('tcpFastOpen'),
+	tcpDeferAccept: support.makeIntProperty('tcpDeferAccept'),
+	maxQueuedRequests: support.makeIntProperty('maxQueuedRequests'),
+	maxRequestQueueTime: support.makeLongProperty('maxRequestQueueTime'),
+	retryAfter: support.makeIntProperty('retryAfter'),
+	idleTimeout: support.makeIntProperty('idleTimeout'),
+	maxConnections: support.makeIntProperty('maxConnections'),
+	maxConnectionsPerAddress: support.makeIntProperty('maxConnectionsPerAddress'),
+	drainTimeout: support.makeLongProperty('drainTimeout'),
 	bind: function(host, port) {
 		var binding = null;
 		if (typeof host == 'string' && typeof port == 'number') {
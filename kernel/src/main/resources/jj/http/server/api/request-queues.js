@@ -0,0 +1,18 @@
+// reports how many requests are waiting in each route processor's
+// queue, and how long the oldest of them has been waiting
+
+module.exports = function() {
+
+	var queues = inject('jj.http.server.RequestQueues');
+	var names = queues.names();
+	
+	var result = {};
+	for (var i = 0; i < names.length; ++i) {
+		var name = String(names[i]);
+		result[name] = {
+			depth: queues.depth(name),
+			oldestAge: queues.oldestAge(name)
+		};
+	}
+	return result;
+}
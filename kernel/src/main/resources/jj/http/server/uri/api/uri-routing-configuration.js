@@ -51,7 +51,9 @@ module.exports = {
 		DELETE: makeSetter(DELETE)
 	},
 	
-	welcomeFile: support.makeStringProperty('welcomeFile')
+	welcomeFile: support.makeStringProperty('welcomeFile'),
+	
+	routeCacheSize: support.makeIntProperty('routeCacheSize')
 }
 
 
@@ -12,6 +12,7 @@ module.exports = function() {
 		nodes: rci.nodes(),
 		links: rci.links(),
 		types: rci.types(),
-		bases: rci.bases()
+		bases: rci.bases(),
+		counts: rci.counts()
 	}
 }
\ No newline at end of file
@@ -3,5 +3,11 @@ var support = require('jj/configuration-support')('jj.resource.ResourceConfigura
 module.exports = {
 	ioThreads: support.makeIntProperty('ioThreads'),
 	maxFileSizeToLoad: support.makeLongProperty('maxFileSizeToLoad'),
+	offHeapFileBytes: support.makeBooleanProperty('offHeapFileBytes'),
+	minMappedFileSize: support.makeLongProperty('minMappedFileSize'),
+	maxFileSizeToHold: support.makeLongProperty('maxFileSizeToHold'),
+	maxHeldBytes: support.makeLongProperty('maxHeldBytes'),
+	maxOpenFiles: support.makeIntProperty('maxOpenFiles'),
+	maxCachedBytes: support.makeLongProperty('maxCachedBytes'),
 	watchFiles: support.makeBooleanProperty('watchFiles')
 }
\ No newline at end of file
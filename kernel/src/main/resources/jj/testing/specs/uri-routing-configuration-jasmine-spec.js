@@ -18,11 +18,16 @@ var inject = function(id) {
 var valueOf = java.lang.String.valueOf;
 var names = [];
 var stringProperty = function() {}
+var intProperty = function() {}
 var support = {
 	makeStringProperty:function(name) {
 		names.push(name);
 		return stringProperty;
 	},
+	makeIntProperty:function(name) {
+		names.push(name);
+		return intProperty;
+	},
 	accumulateError: function() {},
 	addToList: function() {}
 };
@@ -48,6 +53,18 @@ describe("exports", function() {
 		});
 	});
 	
+	describe("routeCacheSize", function() {
+		
+		it("sets up using makeIntProperty", function() {
+			expect(names[1]).toBe("routeCacheSize");
+		});
+		
+		it("delegates to intProperty", function() {
+			
+			expect(module.exports.routeCacheSize).toBe(intProperty);
+		});
+	});
+	
 	describe("route", function() {
 		
 		it("contains routing methods", function() {
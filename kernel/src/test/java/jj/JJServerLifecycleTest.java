@@ -18,6 +18,8 @@ package jj;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.util.concurrent.CompletableFuture;
+
 import jj.ServerStarting.Priority;
 import jj.event.MockPublisher;
 import jj.execution.JJTask;
@@ -120,7 +122,36 @@ public class JJServerLifecycleTest {
 		jsl.stop();
 		
 		// then
-		assertThat(publisher.events.get(0), is(instanceOf(ServerStopping.class)));
+		assertThat(publisher.events.get(0), is(instanceOf(ServerDraining.class)));
+		assertThat(publisher.events.get(1), is(instanceOf(ServerStopping.class)));
+	}
+
+	@Test
+	public void testStoppingWaitsForDraining() throws Exception {
+		
+		// given
+		publisher = new MockPublisher();
+		taskRunner = new MockTaskRunner();
+		JJServerLifecycle jsl = new JJServerLifecycle(server, publisher, taskRunner, version);
+		jsl.start();
+		publisher.events.clear();
+		
+		CompletableFuture<Void> drained = new CompletableFuture<>();
+		publisher.onPublish = event -> {
+			if (event instanceof ServerDraining) {
+				((ServerDraining)event).waitFor(drained);
+				new Thread(() -> drained.complete(null)).start();
+			} else {
+				assertTrue(drained.isDone());
+			}
+		};
+		
+		// when
+		jsl.stop();
+		
+		// then
+		assertThat(publisher.events.size(), is(2));
+		assertThat(publisher.events.get(1), is(instanceOf(ServerStopping.class)));
 	}
 
 	@SuppressWarnings("unchecked")
@@ -0,0 +1,155 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.document;
+
+import static jj.server.ServerLocation.*;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.inject.Injector;
+import com.google.inject.Module;
+
+import jj.event.MockPublisher;
+import jj.execution.JJTask;
+import jj.execution.TaskHelper;
+import jj.execution.TaskRunner;
+import jj.http.server.HttpServerRequest;
+import jj.http.server.HttpServerResponse;
+import jj.http.server.HttpServerSocketConfiguration;
+import jj.http.server.RequestQueue;
+import jj.http.server.RequestQueues;
+import jj.http.server.RequestQueuesMaker;
+import jj.http.server.resource.StaticResource;
+import jj.http.server.uri.Route;
+import jj.http.server.uri.RouteMatch;
+import jj.resource.ResourceFinder;
+import jj.util.MockClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DocumentScriptEnvironmentRouteProcessorTest {
+	
+	static final String MAPPING = "/index";
+	
+	@Mock ResourceFinder resourceFinder;
+	@Mock TaskRunner taskRunner;
+	@Mock Injector injector;
+	@Mock HttpServerSocketConfiguration configuration;
+	
+	@Mock RouteMatch routeMatch;
+	@Mock Route route;
+	@Mock HttpServerRequest request;
+	@Mock HttpServerResponse response;
+	
+	@Captor ArgumentCaptor<JJTask<?>> taskCaptor;
+	
+	MockClock clock = new MockClock();
+	
+	RequestQueue requestQueue;
+	
+	DocumentScriptEnvironmentRouteProcessor dserp;
+	
+	@Before
+	public void before() {
+		given(configuration.maxQueuedRequests()).willReturn(1);
+		given(configuration.maxRequestQueueTime()).willReturn(1000L);
+		
+		RequestQueues requestQueues = RequestQueuesMaker.make(configuration, clock, new MockPublisher());
+		dserp = new DocumentScriptEnvironmentRouteProcessor(resourceFinder, taskRunner, injector, requestQueues);
+		requestQueue = requestQueues.queue(DocumentScriptEnvironmentRouteProcessor.class.getSimpleName());
+		
+		given(routeMatch.route()).willReturn(route);
+		given(route.mapping()).willReturn(MAPPING);
+	}
+	
+	private void assertTheQueueStillAdmits() {
+		assertThat(requestQueue.depth(), is(0));
+		clock.advance(2, TimeUnit.SECONDS);
+		RequestQueue.Ticket ticket = requestQueue.admit();
+		assertThat(ticket, is(notNullValue()));
+		ticket.cancel();
+	}
+	
+	@Test
+	public void testFailedLoadGivesUpItsPlace() throws Exception {
+		
+		RuntimeException failure = new RuntimeException();
+		given(resourceFinder.loadResource(StaticResource.class, Assets, DocumentScriptEnvironment.JJ_JS)).willThrow(failure);
+		
+		dserp.process(routeMatch, request, response);
+		
+		verify(taskRunner).execute(taskCaptor.capture());
+		try {
+			TaskHelper.invoke(taskCaptor.getValue());
+			fail("should have thrown");
+		} catch (RuntimeException re) {
+			TaskHelper.errored(taskCaptor.getValue(), re);
+		}
+		
+		verify(response).error(failure);
+		assertTheQueueStillAdmits();
+	}
+	
+	@Test
+	public void testFailedServeGivesUpItsPlace() throws Exception {
+		
+		DocumentScriptEnvironment dse = mock(DocumentScriptEnvironment.class);
+		given(resourceFinder.findResource(DocumentScriptEnvironment.class, Virtual, MAPPING)).willReturn(dse);
+		RuntimeException failure = new RuntimeException();
+		given(injector.createChildInjector(any(Module.class))).willThrow(failure);
+		
+		try {
+			dserp.process(routeMatch, request, response);
+			fail("should have thrown");
+		} catch (RuntimeException re) {
+			assertThat(re, is(sameInstance(failure)));
+		}
+		
+		assertTheQueueStillAdmits();
+	}
+	
+	@Test
+	public void testRejectedLoadGivesUpItsPlace() throws Exception {
+		
+		RuntimeException failure = new RuntimeException();
+		given(taskRunner.execute(any())).willThrow(failure);
+		
+		try {
+			dserp.process(routeMatch, request, response);
+			fail("should have thrown");
+		} catch (RuntimeException re) {
+			assertThat(re, is(sameInstance(failure)));
+		}
+		
+		assertTheQueueStillAdmits();
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.document;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import java.nio.file.Paths;
+
+import jj.document.ScriptRequestBody.RequestBodyLoad;
+import jj.document.servable.DocumentRequestProcessor;
+import jj.http.server.HttpServerRequest;
+import jj.http.server.RequestBody;
+import jj.http.server.RequestBody.SpoolListener;
+import jj.script.ContinuationState;
+import jj.script.CurrentScriptEnvironment;
+import jj.script.PendingKey;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mozilla.javascript.Undefined;
+
+/**
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ScriptRequestBodyTest {
+	
+	@Mock CurrentDocumentRequestProcessor document;
+	@Mock CurrentScriptEnvironment env;
+	
+	ScriptRequestBody srb;
+	
+	@Mock DocumentRequestProcessor drp;
+	@Mock HttpServerRequest request;
+	@Mock RequestBody body;
+	
+	@Captor ArgumentCaptor<RequestBodyLoad> loadCaptor;
+	@Captor ArgumentCaptor<SpoolListener> spoolListenerCaptor;
+	@Mock PendingKey pendingKey;
+	@Mock ContinuationState continuationState;
+	
+	RuntimeException continuation = new RuntimeException();
+	
+	@Before
+	public void before() {
+		srb = new ScriptRequestBody(document, env);
+		
+		given(document.current()).willReturn(drp);
+		given(drp.httpRequest()).willReturn(request);
+		given(request.requestBody()).willReturn(body);
+		given(env.preparedContinuation(any(RequestBodyLoad.class))).willThrow(continuation);
+	}
+	
+	private RequestBodyLoad continued(Runnable runnable) {
+		try {
+			runnable.run();
+			fail("should have thrown");
+		} catch (RuntimeException e) {
+			assertThat(e, is(sameInstance(continuation)));
+		}
+		
+		verify(env).preparedContinuation(loadCaptor.capture());
+		RequestBodyLoad load = loadCaptor.getValue();
+		load.pendingKey(pendingKey);
+		given(continuationState.continuationAs(RequestBodyLoad.class)).willReturn(load);
+		return load;
+	}
+	
+	@Test
+	public void testBodyThatArrivedWithTheRequest() {
+		
+		given(request.body()).willReturn("the body");
+		
+		assertThat(srb.text(), is("the body"));
+		verifyZeroInteractions(env);
+	}
+	
+	@Test
+	public void testStreamedBodyContinues() {
+		
+		continued(() -> srb.text());
+	}
+	
+	@Test
+	public void testSpooledBody() {
+		
+		continued(() -> srb.spool());
+		
+		srb.process(continuationState);
+		
+		verify(body).spool(spoolListenerCaptor.capture());
+		spoolListenerCaptor.getValue().spooled(Paths.get("/tmp/spooled"));
+		
+		verify(pendingKey).resume("/tmp/spooled");
+	}
+	
+	@Test
+	public void testSpoolingFailed() {
+		
+		continued(() -> srb.spool());
+		
+		srb.process(continuationState);
+		
+		verify(body).spool(spoolListenerCaptor.capture());
+		spoolListenerCaptor.getValue().errored(new Exception());
+		
+		verify(pendingKey).resume(Undefined.instance);
+	}
+}
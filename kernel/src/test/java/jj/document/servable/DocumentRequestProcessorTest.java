@@ -23,6 +23,7 @@ import jj.http.server.uri.URIMatch;
 import jj.script.PendingKey;
 import jj.script.DependsOnScriptEnvironmentInitialization;
 import jj.script.ScriptTask;
+import jj.http.server.RequestQueue;
 import io.netty.channel.Channel;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
@@ -56,6 +57,8 @@ public class DocumentRequestProcessorTest {
 	@Mock HttpServerRequest httpRequest;
 	HttpServerResponse httpResponse;
 	
+	@Mock RequestQueue.Ticket ticket;
+	
 	PendingKey pendingKey;
 	
 	int filterCalls;
@@ -105,6 +108,7 @@ public class DocumentRequestProcessorTest {
 		
 		// auto-stubbing the builder pattern
 		httpResponse = mock(HttpServerResponse.class, ANSWER_WITH_SELF);
+		given(ticket.start(httpResponse)).willReturn(true);
 		
 		pendingKey = new PendingKey();
 		
@@ -119,6 +123,7 @@ public class DocumentRequestProcessorTest {
 			documentScriptEnvironment,
 			httpRequest,
 			httpResponse,
+			ticket,
 			filters
 		);
 	}
@@ -142,6 +147,20 @@ public class DocumentRequestProcessorTest {
 		verify(httpResponse).content(bytes);
 	}
 	
+	@Test
+	public void testDoesNothingWhenTurnedAway() throws Exception {
+		
+		DocumentRequestProcessor toTest = toTest(Collections.<DocumentFilter>emptySet());
+		given(ticket.start(httpResponse)).willReturn(false);
+		
+		toTest.process();
+		taskRunner.runUntilIdle();
+		
+		verify(ticket).start(httpResponse);
+		verify(documentScriptEnvironment, never()).hasServerScript();
+		verify(httpResponse, never()).content(any(byte[].class));
+	}
+	
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testWaitsForInitialization() throws Exception {
@@ -20,10 +20,15 @@ import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 import static org.mockito.BDDMockito.*;
 
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.resolver.dns.DnsAddressResolverGroup;
 import io.netty.resolver.dns.DnsServerAddresses;
@@ -31,6 +36,8 @@ import io.netty.resolver.dns.DnsServerAddresses;
 import javax.inject.Provider;
 
 import jj.configuration.ConfigurationLoading;
+import jj.http.Transport;
+import jj.http.server.HttpServerLoopback;
 
 
 import org.junit.Before;
@@ -48,7 +55,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 @RunWith(MockitoJUnitRunner.class)
 public class HttpClientTest {
 	
-	@Mock HttpClientNioEventLoopGroup group;
+	@Mock HttpClientEventLoopGroup group;
 	@Mock HttpClientChannelInitializer initializer;
 	@Mock HttpClientConfigurationReader configuration;
 	Bootstrap bootstrap;
@@ -58,6 +65,8 @@ public class HttpClientTest {
 		}
 	};
 	
+	@Mock HttpServerLoopback loopback;
+	
 	HttpClient client;
 	
 	@Captor ArgumentCaptor<SocketAddress> localAddressCaptor;
@@ -69,7 +78,8 @@ public class HttpClientTest {
 	@Before
 	public void before() {
 		bootstrap = mock(Bootstrap.class, ANSWER_WITH_SELF);
-		client = new HttpClient(group, initializer, configuration, provider);
+		given(group.transport()).willReturn(Transport.Nio);
+		client = new HttpClient(group, initializer, configuration, provider, loopback);
 	}
 
 	@Test
@@ -96,4 +106,29 @@ public class HttpClientTest {
 		// make sure we try to catch errors
 		verify(bootstrap).validate();
 	}
+	
+	@Test
+	public void testRequestsToOurselvesStayInProcess() throws Exception {
+		
+		HttpClientEventLoopGroup realGroup = new HttpClientEventLoopGroup((t, e) -> e.printStackTrace());
+		try {
+			given(loopback.serves("localhost", 8080)).willReturn(true);
+			given(loopback.address()).willReturn(new LocalAddress("nobody-home"));
+			client = new HttpClient(realGroup, new HttpClientChannelInitializer(), configuration, provider, loopback);
+			
+			ChannelFuture future = client.connect(false, "localhost", 8080).await();
+			
+			assertThat(future.channel(), is(instanceOf(LocalChannel.class)));
+			// and nothing touched the network bootstrap
+			verifyZeroInteractions(bootstrap);
+			
+			// but secure requests can't
+			given(loopback.serves("localhost", 8443)).willReturn(true);
+			client.on((ConfigurationLoading)null);
+			client.connect(true, "localhost", 8443);
+			verify(bootstrap).connect(InetAddress.getLoopbackAddress(), 8443);
+		} finally {
+			realGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+		}
+	}
 }
@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.compression.ZlibWrapper;
+
+import org.junit.Test;
+
+/**
+ * @author jason
+ *
+ */
+public class CompressedBytesTest {
+	
+	final String text = "body { color: red; } body { color: red; } body { color: red; } body { color: red; }";
+	final ByteBuf source = Unpooled.copiedBuffer(text, UTF_8);
+	
+	final CompressedBytes compressedBytes = new CompressedBytes();
+	
+	private String inflate(InputStream in) throws Exception {
+		try (InputStream is = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), UTF_8);
+		}
+	}
+
+	@Test
+	public void testGzip() throws Exception {
+		
+		ByteBuf gzipped = compressedBytes.bytes(ZlibWrapper.GZIP, source);
+		
+		assertThat(gzipped.readableBytes(), is(lessThan(source.readableBytes())));
+		assertThat(inflate(new GZIPInputStream(new ByteBufInputStream(gzipped))), is(text));
+		assertThat(source.readableBytes(), is(text.length()));
+	}
+
+	@Test
+	public void testDeflate() throws Exception {
+		
+		ByteBuf deflated = compressedBytes.bytes(ZlibWrapper.ZLIB, source);
+		
+		assertThat(inflate(new InflaterInputStream(new ByteBufInputStream(deflated))), is(text));
+	}
+
+	@Test
+	public void testCompressesOnce() throws Exception {
+		
+		ByteBuf first = compressedBytes.bytes(ZlibWrapper.GZIP, source);
+		first.skipBytes(first.readableBytes());
+		
+		ByteBuf second = compressedBytes.bytes(ZlibWrapper.GZIP, Unpooled.EMPTY_BUFFER);
+		
+		assertThat(second.readableBytes(), is(first.writerIndex()));
+		assertThat(inflate(new GZIPInputStream(new ByteBufInputStream(second))), is(text));
+	}
+}
@@ -17,7 +17,6 @@ package jj.http.server;
 
 import static io.netty.handler.codec.http.HttpMethod.GET;
 import static org.hamcrest.Matchers.is;
-import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.*;
 import static org.mockito.BDDMockito.*;
 import io.netty.channel.Channel;
@@ -52,11 +51,6 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
-import com.google.inject.Binder;
-import com.google.inject.Injector;
-import com.google.inject.Module;
-import com.google.inject.binder.AnnotatedBindingBuilder;
-
 /**
  * @author jason
  *
@@ -68,26 +62,18 @@ public class EngineHttpHandlerTest {
 	@Mock ChannelHandlerContext ctx;
 	@Mock Channel channel;
 	@Mock ChannelFuture channelFuture;
-	@Mock Injector injector;
-	@Mock Binder binder;
-	@Mock AnnotatedBindingBuilder<Object> abb;
-	@Captor ArgumentCaptor<Module> moduleCaptor;
+	@Mock RequestResponseCreator requestResponseCreator;
 	@Captor ArgumentCaptor<FullHttpResponse> responseCaptor;
 	@Captor ArgumentCaptor<ChannelFutureListener> futureListenerCaptor;
 	@Mock WebSocketRequestChecker webSocketRequestChecker;
 	@Mock WebSocketConnectionMaker webSocketConnectionMaker;
 
-	@Mock HttpServerRequestImpl httpRequest1;
-	@Mock HttpServerRequestImpl httpRequest2;
-	@Mock HttpServerRequestImpl httpRequest3;
-	@Mock HttpServerRequestImpl httpRequest4;
-	@Mock HttpServerRequestImpl httpRequest5;
+	@Mock HttpServerRequestImpl httpRequest;
 	
-	@Mock HttpServerResponse httpResponse;
+	@Mock HttpServerResponseImpl httpResponse;
 	
 	EngineHttpHandler handler;
 	
-	@Mock ServableResources servableResources;
 	
 	@Mock Router router;
 	
@@ -101,18 +87,12 @@ public class EngineHttpHandlerTest {
 	@Before
 	public void before() throws Exception {
 		
-		handler = new EngineHttpHandler(servableResources, router, injector, webSocketRequestChecker, publisher);
+		handler = new EngineHttpHandler(router, requestResponseCreator, webSocketRequestChecker, webSocketConnectionMaker, publisher);
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private void prepareInjectorStubbing() {
-		// little ugly, but sets up an injector that will return our mocks
-		given(injector.getInstance(HttpServerRequest.class)).willReturn(httpRequest1);
-		given(injector.getInstance(HttpServerResponse.class)).willReturn(httpResponse);
-		given(injector.getInstance(WebSocketConnectionMaker.class)).willReturn(webSocketConnectionMaker);
-		given(injector.createChildInjector(any(Module.class))).willReturn(injector);
-		given(injector.createChildInjector(any(Module.class), any(Module.class))).willReturn(injector);
-		given(binder.bind((Class)any())).willReturn(abb);
+	private void prepareCreatorStubbing() {
+		given(requestResponseCreator.createRequest(eq(ctx), any(FullHttpRequest.class))).willReturn(httpRequest);
+		given(requestResponseCreator.createResponse(ctx, httpRequest)).willReturn(httpResponse);
 	}
 	
 	@Test
@@ -120,7 +100,7 @@ public class EngineHttpHandlerTest {
 		FullHttpRequest fullHttpRequest = mock(FullHttpRequest.class, RETURNS_DEEP_STUBS);
 		given(fullHttpRequest.decoderResult().isSuccess()).willReturn(false);
 		
-		prepareInjectorStubbing();
+		prepareCreatorStubbing();
 		
 		handler.channelRead0(ctx, fullHttpRequest);
 		
@@ -133,11 +113,11 @@ public class EngineHttpHandlerTest {
 		FullHttpRequest fullHttpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
 		given(webSocketRequestChecker.isWebSocketRequest(fullHttpRequest)).willReturn(true);
 		
-		prepareInjectorStubbing();
+		prepareCreatorStubbing();
 		
 		handler.channelRead0(ctx, fullHttpRequest);
 		
-		verify(webSocketConnectionMaker).handshakeWebsocket();
+		verify(webSocketConnectionMaker).handshakeWebsocket(ctx, fullHttpRequest, httpResponse);
 	}
 	
 	private void givenRouting() {
@@ -151,40 +131,25 @@ public class EngineHttpHandlerTest {
 		
 		// given
 		FullHttpRequest fullHttpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, GET, "/");
-		prepareInjectorStubbing();
+		prepareCreatorStubbing();
 		givenRouting();
-		given(servableResources.routeProcessor(resourceName)).willReturn(routeProcessor);
+		given(routeMatch.routeProcessor()).willReturn(routeProcessor);
 		
 		// when
 		handler.channelRead0(ctx, fullHttpRequest);
 		
 		// then
-		verify(injector).createChildInjector(moduleCaptor.capture());
-		
-		Module module = moduleCaptor.getValue();
-		assertThat(module, is(notNullValue()));
-		
-		module.configure(binder);
-		
-		verify(binder).bind(ChannelHandlerContext.class);
-		verify(abb).toInstance(ctx);
-		verify(binder).bind(FullHttpRequest.class);
-		verify(abb).toInstance(fullHttpRequest);
-		verify(binder).bind(HttpServerRequest.class);
-		verify(abb).to(HttpServerRequestImpl.class);
-		verify(binder).bind(HttpServerResponse.class);
-		verify(abb).to(HttpServerResponseImpl.class);
-		
-		verifyNoMoreInteractions(binder, abb);
+		verify(requestResponseCreator).createRequest(ctx, fullHttpRequest);
+		verify(requestResponseCreator).createResponse(ctx, httpRequest);
 		
-		verify(routeProcessor).process(routeMatch, httpRequest1, httpResponse);
+		verify(routeProcessor).process(routeMatch, httpRequest, httpResponse);
 	}
 	
 	@Test
 	public void testNotFound() throws Exception {
 		// given
 		FullHttpRequest fullHttpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, GET, "/");
-		prepareInjectorStubbing();
+		prepareCreatorStubbing();
 		givenRouting();
 		
 		// when
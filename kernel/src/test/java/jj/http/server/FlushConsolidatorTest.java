@@ -0,0 +1,134 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author jason
+ *
+ */
+public class FlushConsolidatorTest {
+	
+	AtomicInteger flushes = new AtomicInteger();
+	
+	EmbeddedChannel channel;
+	
+	@Before
+	public void before() {
+		channel = new EmbeddedChannel();
+		// the embedded channel's handler is already last, so these go in reverse
+		channel.pipeline()
+			.addFirst(new ChannelInboundHandlerAdapter() {
+				@Override
+				public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+					// answers every message, like pipelined requests
+					ctx.writeAndFlush(msg);
+				}
+			})
+			.addFirst(new FlushConsolidator(3))
+			.addFirst(new ChannelOutboundHandlerAdapter() {
+				@Override
+				public void flush(ChannelHandlerContext ctx) throws Exception {
+					flushes.incrementAndGet();
+					ctx.flush();
+				}
+			});
+	}
+	
+	@After
+	public void after() {
+		channel.finish();
+	}
+	
+	@Test
+	public void testFlushesOnceWhenReadIsComplete() {
+		
+		channel.pipeline().fireChannelRead("one");
+		channel.pipeline().fireChannelRead("two");
+		
+		assertThat(flushes.get(), is(0));
+		
+		channel.pipeline().fireChannelReadComplete();
+		
+		assertThat(flushes.get(), is(1));
+		assertThat(channel.readOutbound(), is("one"));
+		assertThat(channel.readOutbound(), is("two"));
+	}
+	
+	@Test
+	public void testFlushesAtTheLimit() {
+		
+		channel.pipeline().fireChannelRead("one");
+		channel.pipeline().fireChannelRead("two");
+		channel.pipeline().fireChannelRead("three");
+		
+		assertThat(flushes.get(), is(1));
+		
+		channel.pipeline().fireChannelRead("four");
+		channel.pipeline().fireChannelReadComplete();
+		
+		assertThat(flushes.get(), is(2));
+	}
+	
+	@Test
+	public void testFlushesOutsideOfReadsAtTheEndOfTheTurn() {
+		
+		channel.write("one");
+		channel.flush();
+		channel.write("two");
+		channel.flush();
+		
+		assertThat(flushes.get(), is(0));
+		
+		channel.runPendingTasks();
+		
+		assertThat(flushes.get(), is(1));
+		assertThat(channel.readOutbound(), is("one"));
+		assertThat(channel.readOutbound(), is("two"));
+	}
+	
+	@Test
+	public void testFlushesBeforeClosing() {
+		
+		channel.pipeline().fireChannelRead("one");
+		channel.close();
+		
+		assertThat(flushes.get(), is(1));
+		assertThat(channel.readOutbound(), is("one"));
+	}
+	
+	@Test
+	public void testNothingToFlush() {
+		
+		channel.pipeline().fireChannelReadComplete();
+		channel.runPendingTasks();
+		
+		assertThat(flushes.get(), is(0));
+	}
+}
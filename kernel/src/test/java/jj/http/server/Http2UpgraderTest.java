@@ -0,0 +1,238 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static jj.http.server.PipelineStages.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler.UpgradeEvent;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.HttpConversionUtil.ExtensionHeaderNames;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandler;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
+import jj.Version;
+import jj.event.Publisher;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * runs real HTTP/2 clients against the server side of the pipeline, in memory
+ * 
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class Http2UpgraderTest {
+	
+	@Mock HttpServerSocketConfiguration configuration;
+	@Mock Version version;
+	@Mock Publisher publisher;
+	
+	Http2Upgrader upgrader;
+	
+	EmbeddedChannel server;
+	EmbeddedChannel client;
+	
+	List<Object> events = new ArrayList<>();
+	List<FullHttpResponse> responses = new ArrayList<>();
+	
+	/**
+	 * answers every request with its own URI through a real response
+	 */
+	class Responder extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) throws Exception {
+			HttpServerRequestImpl request = new HttpServerRequestImpl(msg, ctx);
+			new HttpServerResponseImpl(configuration, new ResponseHeaderCache(version), request, ctx, publisher)
+				.content(msg.uri().getBytes(UTF_8))
+				.end();
+		}
+		
+		@Override
+		public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+			events.add(evt);
+			super.userEventTriggered(ctx, evt);
+		}
+	}
+	
+	class ResponseCollector extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) throws Exception {
+			responses.add(msg.retain());
+		}
+	}
+	
+	@Before
+	public void before() {
+		given(configuration.http2MaxConcurrentStreams()).willReturn(100);
+		given(configuration.http2InitialWindowSize()).willReturn(65535);
+		
+		upgrader = new Http2Upgrader(configuration);
+		
+		// the embedded channel adds a handler of its own at the end, so
+		// the stages go in front of it, back to front
+		server = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+		server.pipeline()
+			.addFirst(JJEngine.toString(), new Responder())
+			.addFirst(BodyStreamer.toString(), new RequestBodyStreamer(HttpServerChannelInitializer.MAX_CONTENT_LENGTH, 1 << 20))
+			.addFirst(Upgrader.toString(), upgrader.newUpgradeHandler())
+			.addFirst(Encoder.toString(), new HttpResponseEncoder())
+			.addFirst(Decoder.toString(), new HttpRequestDecoder())
+			.addFirst(PrefaceDetector.toString(), upgrader.newPrefaceDetector());
+	}
+	
+	@After
+	public void after() {
+		server.finish();
+		if (client != null) {
+			client.finish();
+		}
+		for (FullHttpResponse response : responses) {
+			response.release();
+		}
+	}
+	
+	private void givenAnHttp2Client() {
+		Http2Connection connection = new DefaultHttp2Connection(false);
+		HttpToHttp2ConnectionHandler handler = new HttpToHttp2ConnectionHandlerBuilder()
+			.connection(connection)
+			.frameListener(new InboundHttp2ToHttpAdapterBuilder(connection).maxContentLength(8192).build())
+			.build();
+		client = new EmbeddedChannel(handler, new ResponseCollector());
+	}
+	
+	private void exchange() {
+		boolean moved;
+		do {
+			moved = false;
+			for (ByteBuf bytes = client.readOutbound(); bytes != null; bytes = client.readOutbound()) {
+				server.writeInbound(bytes);
+				moved = true;
+			}
+			server.runPendingTasks();
+			for (ByteBuf bytes = server.readOutbound(); bytes != null; bytes = server.readOutbound()) {
+				client.writeInbound(bytes);
+				moved = true;
+			}
+		} while (moved);
+	}
+	
+	private FullHttpRequest request(String uri, int streamId) {
+		FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+		request.headers().set(HttpHeaderNames.HOST, "localhost");
+		request.headers().setInt(ExtensionHeaderNames.STREAM_ID.text(), streamId);
+		request.headers().set(ExtensionHeaderNames.SCHEME.text(), "http");
+		return request;
+	}
+	
+	private void assertHttp2Pipeline() {
+		assertThat(server.pipeline().get(Http2.toString()), is(instanceOf(HttpToHttp2ConnectionHandler.class)));
+		assertThat(server.pipeline().get(PrefaceDetector.toString()), is(nullValue()));
+		assertThat(server.pipeline().get(Decoder.toString()), is(nullValue()));
+		assertThat(server.pipeline().get(Encoder.toString()), is(nullValue()));
+		assertThat(server.pipeline().get(Upgrader.toString()), is(nullValue()));
+		assertThat(server.pipeline().get(BodyStreamer.toString()), is(nullValue()));
+	}
+	
+	@Test
+	public void testPriorKnowledge() {
+		
+		givenAnHttp2Client();
+		
+		client.writeAndFlush(request("/one", 3));
+		client.writeAndFlush(request("/two", 5));
+		exchange();
+		
+		assertHttp2Pipeline();
+		assertThat(responses.size(), is(2));
+		for (FullHttpResponse response : responses) {
+			String streamId = response.headers().get(ExtensionHeaderNames.STREAM_ID.text());
+			String body = response.content().toString(UTF_8);
+			assertThat(response.status(), is(HttpResponseStatus.OK));
+			assertThat(body, is("3".equals(streamId) ? "/one" : "/two"));
+		}
+		// streams close, the connection doesn't
+		assertTrue(server.isOpen());
+	}
+	
+	@Test
+	public void testHttp1IsLeftAlone() {
+		
+		server.writeInbound(server.alloc().buffer().writeBytes("GET /plain HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(UTF_8)));
+		server.runPendingTasks();
+		assertThat(server.pipeline().get(PrefaceDetector.toString()), is(nullValue()));
+		assertThat(server.pipeline().get(Decoder.toString()), is(notNullValue()));
+		assertThat(server.pipeline().get(Http2.toString()), is(nullValue()));
+		
+		ByteBuf written = server.readOutbound();
+		StringBuilder sb = new StringBuilder();
+		for (; written != null; written = server.readOutbound()) {
+			sb.append(written.toString(UTF_8));
+			written.release();
+		}
+		assertTrue(sb.toString().startsWith("HTTP/1.1 200 OK"));
+		assertTrue(sb.toString().endsWith("/plain"));
+	}
+	
+	@Test
+	public void testUpgrade() {
+		
+		server.writeInbound(server.alloc().buffer().writeBytes((
+			"GET /upgraded HTTP/1.1\r\n" +
+			"Host: localhost\r\n" +
+			"Connection: Upgrade, HTTP2-Settings\r\n" +
+			"Upgrade: h2c\r\n" +
+			"HTTP2-Settings: AAMAAABk\r\n\r\n"
+		).getBytes(UTF_8)));
+		
+		ByteBuf switching = server.readOutbound();
+		assertTrue(switching.toString(UTF_8).startsWith("HTTP/1.1 101 Switching Protocols"));
+		switching.release();
+		
+		assertHttp2Pipeline();
+		assertThat(events.size(), is(1));
+		assertThat(((UpgradeEvent)events.get(0)).upgradeRequest().uri(), is("/upgraded"));
+	}
+}
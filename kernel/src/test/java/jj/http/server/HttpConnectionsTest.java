@@ -0,0 +1,174 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static jj.http.server.PipelineStages.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import jj.event.MockPublisher;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class HttpConnectionsTest {
+	
+	/** embedded channels all come from the same place, so this lets them come from anywhere */
+	private static final class Connection extends EmbeddedChannel {
+		
+		private final SocketAddress remoteAddress;
+		
+		Connection(String host) {
+			super(new IdleConnectionHandler(0));
+			remoteAddress = new InetSocketAddress(host, 8080);
+			// the handler needs its name to be found
+			pipeline().remove(IdleConnectionHandler.class);
+			pipeline().addFirst(IdleConnection.toString(), new IdleConnectionHandler(0));
+		}
+		
+		@Override
+		public SocketAddress remoteAddress() {
+			return remoteAddress;
+		}
+	}
+	
+	@Mock HttpServerSocketConfiguration configuration;
+	
+	MockPublisher publisher = new MockPublisher();
+	
+	HttpConnections connections;
+	
+	@Before
+	public void before() {
+		connections = new HttpConnections(configuration, publisher);
+	}
+	
+	@Test
+	public void testLimitsConnections() {
+		given(configuration.maxConnections()).willReturn(2);
+		
+		Connection c1 = new Connection("10.0.0.1");
+		assertTrue(connections.accept(c1));
+		assertTrue(connections.accept(new Connection("10.0.0.2")));
+		assertFalse(connections.accept(new Connection("10.0.0.3")));
+		assertThat(connections.count(), is(2));
+		assertThat(publisher.events.size(), is(1));
+		
+		c1.close();
+		
+		assertThat(connections.count(), is(1));
+		assertTrue(connections.accept(new Connection("10.0.0.3")));
+	}
+	
+	@Test
+	public void testLimitsConnectionsPerAddress() {
+		given(configuration.maxConnectionsPerAddress()).willReturn(1);
+		
+		Connection c1 = new Connection("10.0.0.1");
+		assertTrue(connections.accept(c1));
+		assertFalse(connections.accept(new Connection("10.0.0.1")));
+		assertTrue(connections.accept(new Connection("10.0.0.2")));
+		
+		c1.close();
+		
+		assertTrue(connections.accept(new Connection("10.0.0.1")));
+		assertThat(connections.count(), is(2));
+	}
+	
+	@Test
+	public void testRefusedConnectionsAreClosedAtAccept() throws Exception {
+		given(configuration.maxConnections()).willReturn(1);
+		connections.accept(new Connection("10.0.0.1"));
+		
+		Connection refused = new Connection("10.0.0.2");
+		EmbeddedChannel server = new EmbeddedChannel(connections, new ChannelInboundHandlerAdapter() {
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+				fail("should not have been passed along");
+			}
+		});
+		server.writeInbound(refused);
+		
+		assertFalse(refused.isOpen());
+		server.finish();
+	}
+	
+	@Test
+	public void testDrainsConnections() throws Exception {
+		Connection idle = new Connection("10.0.0.1");
+		Connection busy = new Connection("10.0.0.2");
+		connections.accept(idle);
+		connections.accept(busy);
+		busy.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/"));
+		
+		Future<Void> drained = connections.drain(10, TimeUnit.SECONDS);
+		idle.runPendingTasks();
+		busy.runPendingTasks();
+		
+		assertFalse(idle.isOpen());
+		assertTrue(busy.isOpen());
+		assertFalse(drained.isDone());
+		assertFalse(connections.accept(new Connection("10.0.0.3")));
+		
+		busy.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+		
+		assertFalse(busy.isOpen());
+		assertTrue(drained.isDone());
+		// and it's open for business again
+		assertTrue(connections.accept(new Connection("10.0.0.3")));
+		
+		ReferenceCountUtil.release(busy.readInbound());
+		ReferenceCountUtil.release(busy.readOutbound());
+	}
+	
+	@Test
+	public void testDrainingClosesWhateverIsLeftAtTheDeadline() throws Exception {
+		Connection busy = new Connection("10.0.0.1");
+		connections.accept(busy);
+		busy.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/"));
+		
+		Future<Void> drained = connections.drain(10, TimeUnit.MILLISECONDS);
+		busy.runPendingTasks();
+		
+		assertTrue(drained.await(5, TimeUnit.SECONDS));
+		assertFalse(busy.isOpen());
+		
+		ReferenceCountUtil.release(busy.readInbound());
+	}
+}
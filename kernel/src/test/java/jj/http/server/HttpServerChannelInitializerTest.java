@@ -20,7 +20,6 @@ import static org.mockito.BDDMockito.*;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
 import io.netty.handler.stream.ChunkedWriteHandler;
@@ -44,6 +43,10 @@ public class HttpServerChannelInitializerTest {
 	
 	@Mock Provider<EngineHttpHandler> engineProvider;
 	
+	@Mock HttpServerSocketConfiguration configuration;
+	
+	@Mock Http2Upgrader http2Upgrader;
+	
 	@InjectMocks HttpServerChannelInitializer hsci;
 	
 	@Mock EngineHttpHandler engine;
@@ -53,11 +56,16 @@ public class HttpServerChannelInitializerTest {
 	@Mock SocketChannel ch;
 	@Mock ChannelPipeline pipeline;
 	
+	@Mock ChannelHandler prefaceDetector;
+	@Mock ChannelHandler upgradeHandler;
+	
 	@Test
 	public void test() throws Exception {
 		
 		// given
 		given(engineProvider.get()).willReturn(engine);
+		given(configuration.compressResponses()).willReturn(true);
+		given(configuration.flushConsolidationLimit()).willReturn(256);
 		given(ch.pipeline()).willReturn(pipeline);
 		given(pipeline.addLast(anyString(), any(ChannelHandler.class))).willReturn(pipeline);
 		
@@ -69,15 +77,50 @@ public class HttpServerChannelInitializerTest {
 		// then
 		InOrder i = inOrder(pipeline);
 		
+		i.verify(pipeline).addLast(eq(FlushConsolidator.toString()), isA(FlushConsolidator.class));
 		i.verify(pipeline).addLast(eq(Decoder.toString()), isA(HttpRequestDecoder.class));
-		i.verify(pipeline).addLast(eq(Aggregator.toString()), isA(HttpObjectAggregator.class));
+		i.verify(pipeline).addLast(eq(BodyStreamer.toString()), isA(RequestBodyStreamer.class));
 		i.verify(pipeline).addLast(eq(Encoder.toString()), isA(HttpResponseEncoder.class));
 		i.verify(pipeline).addLast(eq(ChunkedWriter.toString()), isA(ChunkedWriteHandler.class));
+		i.verify(pipeline).addLast(eq(Compressor.toString()), isA(ResponseCompressor.class));
+		i.verify(pipeline).addLast(eq(IdleConnection.toString()), isA(IdleConnectionHandler.class));
 		i.verify(pipeline).addLast(JJEngine.toString(), engine);
 		
 		// this test acts as an inventory of the handlers, so
 		// ensure nothing else happened
 		verifyNoMoreInteractions(pipeline);
 	}
-
+	
+	@Test
+	public void testHttp2() throws Exception {
+		
+		// given
+		given(engineProvider.get()).willReturn(engine);
+		given(configuration.http2()).willReturn(true);
+		given(configuration.compressResponses()).willReturn(true);
+		given(http2Upgrader.newPrefaceDetector()).willReturn(prefaceDetector);
+		given(http2Upgrader.newUpgradeHandler()).willReturn(upgradeHandler);
+		given(ch.pipeline()).willReturn(pipeline);
+		given(pipeline.addLast(anyString(), any(ChannelHandler.class))).willReturn(pipeline);
+		
+		
+		// when
+		hsci.initChannel(ch);
+		
+		
+		// then
+		InOrder i = inOrder(pipeline);
+		
+		i.verify(pipeline).addLast(PrefaceDetector.toString(), prefaceDetector);
+		i.verify(pipeline).addLast(eq(Decoder.toString()), isA(HttpRequestDecoder.class));
+		i.verify(pipeline).addLast(eq(Encoder.toString()), isA(HttpResponseEncoder.class));
+		i.verify(pipeline).addLast(Upgrader.toString(), upgradeHandler);
+		i.verify(pipeline).addLast(eq(BodyStreamer.toString()), isA(RequestBodyStreamer.class));
+		i.verify(pipeline).addLast(eq(ChunkedWriter.toString()), isA(ChunkedWriteHandler.class));
+		i.verify(pipeline).addLast(eq(Compressor.toString()), isA(ResponseCompressor.class));
+		i.verify(pipeline).addLast(eq(IdleConnection.toString()), isA(IdleConnectionHandler.class));
+		i.verify(pipeline).addLast(JJEngine.toString(), engine);
+		
+		verifyNoMoreInteractions(pipeline);
+	}
 }
@@ -0,0 +1,126 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author jason
+ *
+ */
+public class HttpServerLoopbackTest {
+	
+	EventLoopGroup group;
+	
+	HttpServerLoopback loopback;
+	
+	@Before
+	public void before() {
+		group = new DefaultEventLoopGroup(1);
+		loopback = new HttpServerLoopback();
+	}
+	
+	@After
+	public void after() {
+		loopback.close();
+		group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+	}
+	
+	private void open(Binding...bindings) throws Exception {
+		loopback.open(group, new ChannelInboundHandlerAdapter() {
+			@Override
+			public boolean isSharable() {
+				return true;
+			}
+		}, new ChannelInitializer<Channel>() {
+			@Override
+			protected void initChannel(Channel ch) throws Exception {
+				ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+					@Override
+					public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+						// echoes
+						ctx.writeAndFlush(msg);
+					}
+				});
+			}
+		}, Arrays.asList(bindings)).sync();
+	}
+	
+	@Test
+	public void testServesNothingUntilOpen() {
+		assertFalse(loopback.serves("localhost", 8080));
+	}
+	
+	@Test
+	public void testServesItsBindings() throws Exception {
+		open(new Binding(8080), new Binding("example.com", 8090), new Binding("127.0.0.1", 8100));
+		
+		assertTrue(loopback.serves("localhost", 8080));
+		assertTrue(loopback.serves("127.0.0.1", 8080));
+		assertTrue(loopback.serves("[::1]", 8080));
+		assertTrue(loopback.serves("example.com", 8090));
+		assertTrue(loopback.serves("localhost", 8100));
+		
+		assertFalse(loopback.serves("example.com", 8080));
+		assertFalse(loopback.serves("localhost", 8090));
+		assertFalse(loopback.serves("localhost", 8081));
+		
+		loopback.close();
+		
+		assertFalse(loopback.serves("localhost", 8080));
+	}
+	
+	@Test
+	public void testConnectionsGetTheServerPipeline() throws Exception {
+		open(new Binding(8080));
+		
+		BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+		Channel client = new Bootstrap()
+			.group(group)
+			.channel(LocalChannel.class)
+			.handler(new ChannelInboundHandlerAdapter() {
+				@Override
+				public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+					received.add(msg);
+				}
+			})
+			.connect(loopback.address()).sync().channel();
+		
+		client.writeAndFlush("hi");
+		
+		assertThat(received.poll(5, TimeUnit.SECONDS), is("hi"));
+		client.close().sync();
+	}
+}
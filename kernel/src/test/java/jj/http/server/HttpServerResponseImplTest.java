@@ -22,21 +22,36 @@ import static org.mockito.BDDMockito.*;
 
 import java.io.IOException;
 import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
 
 import jj.Version;
 import jj.event.Publisher;
 import jj.http.server.HttpServerRequestImpl;
 import jj.http.server.HttpServerResponseImpl;
+import jj.http.server.RangeHeaderReader.Range;
 import jj.logging.LoggedEvent;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpContentEncoder;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.util.concurrent.EventExecutor;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -63,19 +78,26 @@ public class HttpServerResponseImplTest {
 	DefaultFullHttpRequest nettyRequest;
 	HttpServerRequestImpl request;
 	@Mock(answer = Answers.RETURNS_DEEP_STUBS) ChannelHandlerContext ctx;
+	@Mock EventExecutor executor;
 	@Mock Publisher publisher;
 	@Mock Version version;
+	@Mock HttpServerSocketConfiguration configuration;
 	HttpServerResponseImpl response;
 	
 	@Captor ArgumentCaptor<LoggedEvent> eventCaptor;
+	@Captor ArgumentCaptor<Object> writeCaptor;
 
 	@Before
 	public void before() {
 		nettyRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
 		nettyRequest.headers().add(HttpHeaderNames.HOST, host);
 		request = new HttpServerRequestImpl(nettyRequest, ctx);
+		given(ctx.alloc()).willReturn(PooledByteBufAllocator.DEFAULT);
+		// writes happen right away, unless a test says we're off the event loop
+		given(ctx.executor()).willReturn(executor);
+		given(executor.inEventLoop()).willReturn(true);
 		
-		response = new HttpServerResponseImpl(version, request, ctx, publisher);
+		response = new HttpServerResponseImpl(configuration, new ResponseHeaderCache(version), request, ctx, publisher);
 		assertThat(response.charset(), is(UTF_8));
 	}
 
@@ -119,8 +141,13 @@ public class HttpServerResponseImplTest {
 	
 	private void verifyInlineResponse() {
 		
-		verify(ctx, times(2)).write(any());
-		verify(ctx).writeAndFlush(any());
+		// bodies written as bytes come from the channel's allocator
+		verify(ctx, atMost(1)).alloc();
+		// the whole thing goes in one message
+		verify(ctx).writeAndFlush(writeCaptor.capture());
+		assertThat(writeCaptor.getValue(), is(instanceOf(FullHttpResponse.class)));
+		// as if it were written, which keeps leak detection quiet
+		((FullHttpResponse)writeCaptor.getValue()).release();
 		
 		verifyNoMoreInteractions(ctx);
 		
@@ -166,6 +193,51 @@ public class HttpServerResponseImplTest {
 		verifyEventIsPublished(RequestErrored.class);
 	}
 	
+	private FullHttpResponse verifyFullResponse() {
+		verify(ctx).writeAndFlush(writeCaptor.capture());
+		return (FullHttpResponse)writeCaptor.getValue();
+	}
+	
+	@Test
+	public void testBufferContentIsSharedNotCopied() {
+		
+		response.content(bytes).end();
+		
+		FullHttpResponse sent = verifyFullResponse();
+		assertThat(sent.content().array(), is(sameInstance(bytes.array())));
+		assertThat(sent.content().toString(UTF_8), is("this is the bytes"));
+		assertThat(bytes.refCnt(), is(2));
+		
+		// as if it were written
+		sent.release();
+		assertThat(bytes.refCnt(), is(1));
+		assertThat(bytes.readableBytes(), is((int)size));
+	}
+	
+	@Test
+	public void testContentPartsAreComposed() {
+		
+		response.content("and ".getBytes(UTF_8)).content(bytes).end();
+		
+		FullHttpResponse sent = verifyFullResponse();
+		assertThat(sent.content(), is(instanceOf(CompositeByteBuf.class)));
+		assertThat(sent.content().toString(UTF_8), is("and this is the bytes"));
+		
+		sent.release();
+		assertThat(bytes.refCnt(), is(1));
+	}
+	
+	@Test
+	public void testErrorLetsGoOfEarlierContent() {
+		
+		response.content(bytes).error(new Exception());
+		
+		assertThat(bytes.refCnt(), is(1));
+		FullHttpResponse sent = verifyFullResponse();
+		assertThat(sent.content().toString(UTF_8), is(HttpResponseStatus.INTERNAL_SERVER_ERROR.reasonPhrase()));
+		sent.release();
+	}
+	
 	LoadedResource givenALoadedResource() throws IOException {
 		
 		LoadedResource lr = mock(LoadedResource.class);
@@ -204,6 +276,103 @@ public class HttpServerResponseImplTest {
 		verifyInlineResponse();
 	}
 	
+	@Test
+	public void testCompressibleLoadedResourceIsSentCompressed() throws IOException {
+		
+		nettyRequest.headers().add(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate");
+		given(ctx.pipeline().get(ResponseCompressor.class)).willReturn(new ResponseCompressor(size));
+		ByteBuf compressed = Unpooled.wrappedBuffer(new byte[] { 1, 2, 3 });
+		LoadedResource resource = givenALoadedResource();
+		given(resource.compressible()).willReturn(true);
+		given(resource.compressedBytes(ZlibWrapper.GZIP)).willReturn(compressed);
+		
+		response.sendCachableResource(resource);
+		
+		assertThat(response.header(HttpHeaderNames.VARY), is(HttpHeaderNames.ACCEPT_ENCODING.toString()));
+		assertThat(response.header(HttpHeaderNames.CONTENT_ENCODING), is(HttpHeaderValues.GZIP.toString()));
+		assertThat(response.header(HttpHeaderNames.CONTENT_LENGTH), is("3"));
+		// different bytes, so a different ETag
+		assertThat(response.header(HttpHeaderNames.ETAG), is(sha1 + "-gzip"));
+		assertThat(response.etag(resource), is(sha1 + "-gzip"));
+	}
+	
+	@Test
+	public void testCompressibleLoadedResourceIsNotModifiedByItsEncodedETag() throws IOException {
+		
+		nettyRequest.headers().add(HttpHeaderNames.ACCEPT_ENCODING, "deflate");
+		given(ctx.pipeline().get(ResponseCompressor.class)).willReturn(new ResponseCompressor(size));
+		LoadedResource resource = givenALoadedResource();
+		given(resource.compressible()).willReturn(true);
+		
+		response.sendNotModified(resource);
+		
+		assertThat(response.header(HttpHeaderNames.ETAG), is(sha1 + "-deflate"));
+		verifyFullResponse().release();
+	}
+	
+	@Test
+	public void testCompressibleLoadedResourceBelowThresholdIsSentAsIs() throws IOException {
+		
+		nettyRequest.headers().add(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate");
+		given(ctx.pipeline().get(ResponseCompressor.class)).willReturn(new ResponseCompressor(size + 1));
+		LoadedResource resource = givenALoadedResource();
+		given(resource.compressible()).willReturn(true);
+		
+		response.sendCachableResource(resource);
+		
+		assertThat(response.header(HttpHeaderNames.VARY), is(HttpHeaderNames.ACCEPT_ENCODING.toString()));
+		assertThat(response.containsHeader(HttpHeaderNames.CONTENT_ENCODING), is(false));
+		assertThat(response.header(HttpHeaderNames.CONTENT_LENGTH), is(String.valueOf(size)));
+		assertThat(response.header(HttpHeaderNames.ETAG), is(sha1));
+		verify(resource, never()).compressedBytes(any());
+	}
+	
+	private ByteBuf offHeapBytes() {
+		// freed as soon as the last reference goes, like file bytes kept outside the heap
+		return Unpooled.directBuffer().writeBytes(bytes.duplicate());
+	}
+	
+	@Test
+	public void testLoadedResourceKilledBeforeItsWritten() throws IOException {
+		
+		ByteBuf offHeap = offHeapBytes();
+		LoadedResource resource = givenALoadedResource();
+		given(resource.bytes()).willReturn(offHeap);
+		
+		response.sendCachableResource(resource);
+		// the resource dies before the event loop gets to the write
+		offHeap.release();
+		
+		FullHttpResponse sent = verifyFullResponse();
+		assertThat(sent.content().toString(UTF_8), is("this is the bytes"));
+		sent.release();
+		assertThat(offHeap.refCnt(), is(0));
+	}
+	
+	@Test
+	public void testLoadedResourceThatsGoneLeavesTheResponseAlone() throws IOException {
+		
+		ByteBuf offHeap = offHeapBytes();
+		offHeap.release();
+		LoadedResource resource = givenALoadedResource();
+		given(resource.bytes()).willReturn(offHeap);
+		
+		try {
+			response.sendCachableResource(resource);
+			fail("sent a resource that was gone");
+		} catch (ResourceGoneException gone) {}
+		
+		try {
+			response.sendPartialResource(resource, ranges("bytes=5-10"), true);
+			fail("sent a resource that was gone");
+		} catch (ResourceGoneException gone) {}
+		
+		assertThat(response.containsHeader(HttpHeaderNames.CACHE_CONTROL), is(false));
+		assertThat(response.containsHeader(HttpHeaderNames.ETAG), is(false));
+		verify(ctx, never()).write(any());
+		verify(ctx, never()).writeAndFlush(any());
+	}
+	
 	TransferableResource givenATransferableResource() throws IOException {
 		
 		TransferableResource tr = mock(TransferableResource.class);
@@ -211,6 +380,7 @@ public class HttpServerResponseImplTest {
 		given(tr.contentType()).willReturn(mime);
 		given(tr.size()).willReturn(size);
 		given(tr.fileChannel()).willReturn(mock(FileChannel.class));
+		given(tr.fileRegion(anyLong(), anyLong())).willCallRealMethod();
 		
 		return tr;
 	}
@@ -221,6 +391,8 @@ public class HttpServerResponseImplTest {
 		verify(ctx, times(2)).write(any());
 		// this verifies the LastHttpContent
 		verify(ctx).writeAndFlush(anyObject());
+		// and this is where they were written
+		verify(ctx, atLeastOnce()).executor();
 		
 		verifyNoMoreInteractions(ctx);
 		
@@ -241,6 +413,290 @@ public class HttpServerResponseImplTest {
 		verifyTransferredResponse();
 	}
 	
+	@Test
+	public void testTransferableResourceIsWrittenInOneRunOnTheEventLoop() throws IOException {
+		
+		given(executor.inEventLoop()).willReturn(false);
+		
+		testCachedResource(givenATransferableResource());
+		
+		// nothing goes out from here, it all goes out together over there
+		verify(ctx, never()).write(any());
+		verify(ctx, never()).writeAndFlush(any());
+		verify(publisher, never()).publish(any());
+		
+		ArgumentCaptor<Runnable> writeTask = ArgumentCaptor.forClass(Runnable.class);
+		verify(executor).execute(writeTask.capture());
+		writeTask.getValue().run();
+		
+		verify(ctx, times(2)).write(writeCaptor.capture());
+		verify(ctx).writeAndFlush(writeCaptor.capture());
+		List<Object> written = writeCaptor.getAllValues();
+		assertThat(written.get(0), is(instanceOf(ResponseCompressor.TransferHeaders.class)));
+		assertThat(written.get(1), is(instanceOf(ChunkedNioFile.class)));
+		assertThat(written.get(2), is(LastHttpContent.EMPTY_LAST_CONTENT));
+		verifyRequestRespondedIsPublished();
+	}
+	
+	private void givenZeroCopyIsConfigured() {
+		given(configuration.zeroCopyTransfer()).willReturn(true);
+		given(configuration.zeroCopyThreshold()).willReturn(size);
+	}
+	
+	private Object verifyTransferredBody() {
+		verify(ctx, times(2)).write(writeCaptor.capture());
+		return writeCaptor.getAllValues().get(1);
+	}
+	
+	@Test
+	public void testZeroCopyTransferableResource() throws IOException {
+		
+		givenZeroCopyIsConfigured();
+		given(ctx.pipeline().get(SslHandler.class)).willReturn(null);
+		given(ctx.pipeline().get(HttpContentEncoder.class)).willReturn(null);
+		TransferableResource resource = givenATransferableResource();
+		given(resource.path()).willReturn(Paths.get("/"));
+		
+		testCachedResource(resource);
+		
+		assertThat(verifyTransferredBody(), is(instanceOf(DefaultFileRegion.class)));
+	}
+	
+	@Test
+	public void testZeroCopyIsNotUsedOverSsl() throws IOException {
+		
+		givenZeroCopyIsConfigured();
+		given(ctx.pipeline().get(SslHandler.class)).willReturn(mock(SslHandler.class));
+		TransferableResource resource = givenATransferableResource();
+		given(resource.path()).willReturn(Paths.get("/"));
+		
+		testCachedResource(resource);
+		
+		assertThat(verifyTransferredBody(), is(instanceOf(ChunkedNioFile.class)));
+	}
+	
+	@Test
+	public void testZeroCopyIsNotUsedBelowThreshold() throws IOException {
+		
+		given(configuration.zeroCopyTransfer()).willReturn(true);
+		given(configuration.zeroCopyThreshold()).willReturn(size + 1);
+		
+		testCachedResource(givenATransferableResource());
+		
+		assertThat(verifyTransferredBody(), is(instanceOf(ChunkedNioFile.class)));
+	}
+
+	@Test
+	public void testPrecompressedTransferableResource() throws IOException {
+
+		nettyRequest.headers().add(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate");
+		given(ctx.pipeline().get(ResponseCompressor.class)).willReturn(new ResponseCompressor(size));
+		TransferableResource precompressed = givenATransferableResource();
+		given(precompressed.size()).willReturn(3L);
+		given(precompressed.sha1()).willReturn("the sidecar's own sha");
+		TransferableResource resource = givenATransferableResource();
+		given(resource.compressible()).willReturn(true);
+		given(resource.precompressed(ZlibWrapper.GZIP)).willReturn(precompressed);
+
+		assertThat(response.etag(resource), is("the sidecar's own sha"));
+		
+		response.sendCachableResource(resource);
+
+		assertThat(response.header(HttpHeaderNames.VARY), is(HttpHeaderNames.ACCEPT_ENCODING.toString()));
+		assertThat(response.header(HttpHeaderNames.CONTENT_ENCODING), is(HttpHeaderValues.GZIP.toString()));
+		assertThat(response.header(HttpHeaderNames.CONTENT_LENGTH), is("3"));
+		assertThat(response.header(HttpHeaderNames.ETAG), is("the sidecar's own sha"));
+
+		verify(ctx, times(2)).write(writeCaptor.capture());
+		assertThat(writeCaptor.getAllValues().get(0), is(instanceOf(ResponseCompressor.TransferHeaders.class)));
+		verify(precompressed).fileChannel();
+		verify(resource, never()).fileChannel();
+	}
+
+	@Test
+	public void testCompressibleTransferableResourceWithoutPrecompressionIsSentAsIs() throws IOException {
+
+		nettyRequest.headers().add(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate");
+		given(ctx.pipeline().get(ResponseCompressor.class)).willReturn(new ResponseCompressor(size));
+		TransferableResource resource = givenATransferableResource();
+		given(resource.compressible()).willReturn(true);
+
+		response.sendCachableResource(resource);
+
+		assertThat(response.header(HttpHeaderNames.VARY), is(HttpHeaderNames.ACCEPT_ENCODING.toString()));
+		assertThat(response.containsHeader(HttpHeaderNames.CONTENT_ENCODING), is(false));
+		assertThat(response.header(HttpHeaderNames.CONTENT_LENGTH), is(String.valueOf(size)));
+		assertThat(response.header(HttpHeaderNames.ETAG), is(sha1));
+		assertThat(response.etag(resource), is(sha1));
+	}
+
+	private List<Range> ranges(String rangeHeader) {
+		return new RangeHeaderReader(rangeHeader, size, 0, 5).ranges();
+	}
+	
+	private List<Object> verifyPartialResponse(int writes) {
+		verify(ctx, times(writes)).write(writeCaptor.capture());
+		verify(ctx).writeAndFlush(anyObject());
+		verifyRequestRespondedIsPublished();
+		
+		List<Object> written = writeCaptor.getAllValues();
+		assertThat(written.get(0), is(instanceOf(ResponseCompressor.TransferHeaders.class)));
+		return written.subList(1, written.size());
+	}
+	
+	@Test
+	public void testSingleRangeLoadedResource() throws IOException {
+		
+		response.sendPartialResource(givenALoadedResource(), ranges("bytes=5-10"), true);
+		
+		assertThat(response.status(), is(HttpResponseStatus.PARTIAL_CONTENT));
+		assertThat(response.header(HttpHeaderNames.CONTENT_TYPE), is(mime));
+		assertThat(response.header(HttpHeaderNames.CONTENT_RANGE), is("bytes 5-10/" + size));
+		assertThat(response.header(HttpHeaderNames.CONTENT_LENGTH), is("6"));
+		assertThat(response.header(HttpHeaderNames.ETAG), is(sha1));
+		assertThat(response.header(HttpHeaderNames.CACHE_CONTROL), is(HttpServerResponse.MAX_AGE_ONE_YEAR));
+		
+		List<Object> body = verifyPartialResponse(2);
+		assertThat(((HttpContent)body.get(0)).content().toString(UTF_8), is("is the"));
+		// the slice keeps the resource bytes alive after it gets written
+		assertThat(bytes.refCnt(), is(2));
+	}
+	
+	@Test
+	public void testRangeOfLoadedResourceKilledBeforeItsWritten() throws IOException {
+		
+		ByteBuf offHeap = offHeapBytes();
+		LoadedResource resource = givenALoadedResource();
+		given(resource.bytes()).willReturn(offHeap);
+		
+		response.sendPartialResource(resource, ranges("bytes=5-10"), true);
+		offHeap.release();
+		
+		HttpContent part = (HttpContent)verifyPartialResponse(2).get(0);
+		assertThat(part.content().toString(UTF_8), is("is the"));
+		part.release();
+		assertThat(offHeap.refCnt(), is(0));
+	}
+	
+	@Test
+	public void testMultipleRangesLoadedResource() throws IOException {
+		
+		response.sendPartialResource(givenALoadedResource(), ranges("bytes=0-3,12-"), false);
+		
+		assertThat(response.status(), is(HttpResponseStatus.PARTIAL_CONTENT));
+		String contentType = response.header(HttpHeaderNames.CONTENT_TYPE).toString();
+		assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+		String boundary = contentType.substring(contentType.indexOf('=') + 1);
+		
+		List<Object> body = verifyPartialResponse(6);
+		StringBuilder sent = new StringBuilder();
+		for (Object part : body) {
+			sent.append(((HttpContent)part).content().toString(UTF_8));
+		}
+		
+		assertThat(sent.toString(), is(
+			"\r\n--" + boundary + "\r\ncontent-type: " + mime + "\r\ncontent-range: bytes 0-3/" + size + "\r\n\r\nthis" +
+			"\r\n--" + boundary + "\r\ncontent-type: " + mime + "\r\ncontent-range: bytes 12-16/" + size + "\r\n\r\nbytes" +
+			"\r\n--" + boundary + "--\r\n"
+		));
+		assertThat(response.header(HttpHeaderNames.CONTENT_LENGTH), is(String.valueOf(sent.length())));
+	}
+	
+	@Test
+	public void testUnsatisfiableRange() throws IOException {
+		
+		response.sendPartialResource(givenALoadedResource(), Collections.emptyList(), false);
+		
+		assertThat(response.status(), is(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE));
+		assertThat(response.header(HttpHeaderNames.CONTENT_RANGE), is("bytes */" + size));
+		verifyInlineResponse();
+	}
+	
+	@Test
+	public void testSingleRangeZeroCopyTransferableResource() throws IOException {
+		
+		givenZeroCopyIsConfigured();
+		given(configuration.zeroCopyThreshold()).willReturn(0L);
+		given(ctx.pipeline().get(SslHandler.class)).willReturn(null);
+		given(ctx.pipeline().get(HttpContentEncoder.class)).willReturn(null);
+		TransferableResource resource = givenATransferableResource();
+		given(resource.path()).willReturn(Paths.get("/"));
+		
+		response.sendPartialResource(resource, ranges("bytes=5-10"), false);
+		
+		assertThat(response.header(HttpHeaderNames.CONTENT_RANGE), is("bytes 5-10/" + size));
+		DefaultFileRegion region = (DefaultFileRegion)verifyPartialResponse(2).get(0);
+		assertThat(region.position(), is(5L));
+		assertThat(region.count(), is(6L));
+	}
+	
+	@Test
+	public void testMultipleRangesTransferableResource() throws IOException {
+		
+		TransferableResource resource = givenATransferableResource();
+		
+		response.sendPartialResource(resource, ranges("bytes=0-3,12-"), false);
+		
+		List<Object> body = verifyPartialResponse(6);
+		assertThat(body.get(1), is(instanceOf(ChunkedNioFile.class)));
+		assertThat(body.get(3), is(instanceOf(ChunkedNioFile.class)));
+		// every part closes its own channel
+		verify(resource, times(2)).fileChannel();
+	}
+	
+	@Test
+	public void testTransferableResourceInMemory() throws IOException {
+		
+		TransferableResource resource = givenATransferableResource();
+		given(resource.inMemory()).willReturn(bytes.duplicate().retain());
+		
+		response.sendCachableResource(resource);
+		
+		verify(ctx).write(writeCaptor.capture());
+		assertThat(writeCaptor.getValue(), is(instanceOf(ResponseCompressor.TransferHeaders.class)));
+		verify(ctx).writeAndFlush(writeCaptor.capture());
+		LastHttpContent body = (LastHttpContent)writeCaptor.getValue();
+		assertThat(body.content().toString(UTF_8), is("this is the bytes"));
+		verify(resource, never()).fileChannel();
+		
+		body.release();
+		assertThat(bytes.refCnt(), is(1));
+	}
+	
+	@Test
+	public void testRangesOfTransferableResourceInMemory() throws IOException {
+		
+		TransferableResource resource = givenATransferableResource();
+		given(resource.inMemory()).willReturn(bytes.duplicate().retain(), bytes.duplicate().retain());
+		
+		response.sendPartialResource(resource, ranges("bytes=0-3,12-"), false);
+		
+		List<Object> body = verifyPartialResponse(6);
+		assertThat(((HttpContent)body.get(1)).content().toString(UTF_8), is("this"));
+		assertThat(((HttpContent)body.get(3)).content().toString(UTF_8), is("bytes"));
+		verify(resource, never()).fileChannel();
+		
+		((HttpContent)body.get(1)).release();
+		((HttpContent)body.get(3)).release();
+		assertThat(bytes.refCnt(), is(1));
+	}
+	
+	@Test
+	public void testRangesMadeBeforeAFailureAreLetGo() throws IOException {
+		
+		TransferableResource resource = givenATransferableResource();
+		given(resource.inMemory()).willReturn(bytes.duplicate().retain()).willThrow(new IOException());
+		
+		try {
+			response.sendPartialResource(resource, ranges("bytes=0-3,12-"), false);
+			fail("should have thrown");
+		} catch (IOException ioe) {}
+		
+		assertThat(bytes.refCnt(), is(1));
+		verify(ctx, never()).write(any());
+		verify(ctx, never()).writeAndFlush(any());
+	}
+	
 	@Test
 	public void testCachedNotModifiedTransferableResource() throws IOException {
 		
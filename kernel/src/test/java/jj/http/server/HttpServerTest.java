@@ -18,14 +18,18 @@ package jj.http.server;
 import static jj.AnswerWithSelf.ANSWER_WITH_SELF;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
+import static org.junit.Assume.*;
 import static org.mockito.BDDMockito.*;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
 
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.Arrays;
@@ -35,9 +39,12 @@ import java.util.concurrent.TimeUnit;
 
 import javax.inject.Provider;
 
+import jj.ServerDraining;
+import jj.ServerStopping;
 import jj.configuration.ConfigurationLoaded;
 import jj.event.MockPublisher;
 import jj.execution.MockTaskRunner;
+import jj.http.Transport;
 
 import org.junit.After;
 import org.junit.Before;
@@ -69,9 +76,12 @@ public class HttpServerTest {
 	
 	MockPublisher publisher;
 	MockTaskRunner taskRunner;
-	MockHttpServerNioEventLoopGroup childGroup;
+	MockHttpServerEventLoopGroup childGroup;
 	
 	@Mock HttpServerChannelInitializer initializer;
+	@Mock HttpConnections connections;
+	@Mock HttpServerLoopback loopback;
+	@Mock ChannelFuture loopbackFuture;
 	@Mock UncaughtExceptionHandler uncaughtExceptionHandler;
 	
 	@Mock ChannelFuture future;
@@ -87,6 +97,8 @@ public class HttpServerTest {
 	int receiveBufferSize;
 	boolean keepAlive;
 	int backlog;
+	int acceptorsPerBinding;
+	long drainTimeout;
 	List<Binding> bindings;
 	int hashCode;
 	
@@ -98,6 +110,7 @@ public class HttpServerTest {
 		receiveBufferSize = 65536;
 		keepAlive = true;
 		backlog = 12;
+		acceptorsPerBinding = 1;
 		bindings =  Arrays.asList(new Binding(8080), new Binding("localhost", 8090));
 		hashCode = 12;
 	}
@@ -139,6 +152,111 @@ public class HttpServerTest {
 			return backlog;
 		}
 		
+		@Override
+		public boolean zeroCopyTransfer() {
+			return true;
+		}
+		
+		@Override
+		public long zeroCopyThreshold() {
+			return 65536;
+		}
+		
+		@Override
+		public boolean compressResponses() {
+			return true;
+		}
+		
+		@Override
+		public long compressionThreshold() {
+			return 1024;
+		}
+		
+		@Override
+		public boolean http2() {
+			return true;
+		}
+		
+		@Override
+		public int http2MaxConcurrentStreams() {
+			return 100;
+		}
+		
+		@Override
+		public int http2InitialWindowSize() {
+			return 65535;
+		}
+		
+		@Override
+		public int maxRanges() {
+			return 5;
+		}
+		
+		@Override
+		public long rangeCoalesceDistance() {
+			return 80;
+		}
+		
+		@Override
+		public int flushConsolidationLimit() {
+			return 256;
+		}
+		
+		@Override
+		public long maxRequestBodySize() {
+			return 104857600;
+		}
+		
+		@Override
+		public int acceptorsPerBinding() {
+			return acceptorsPerBinding;
+		}
+		
+		@Override
+		public int tcpFastOpen() {
+			return 0;
+		}
+		
+		@Override
+		public int tcpDeferAccept() {
+			return 0;
+		}
+		
+		@Override
+		public int maxQueuedRequests() {
+			return 256;
+		}
+		
+		@Override
+		public long maxRequestQueueTime() {
+			return 2000;
+		}
+		
+		@Override
+		public int retryAfter() {
+			return 1;
+		}
+		
+		@Override
+		public int idleTimeout() {
+			return 60;
+		}
+		
+		@Override
+		public int maxConnections() {
+			return 0;
+		}
+		
+		@Override
+		public int maxConnectionsPerAddress() {
+			return 0;
+		}
+		
+		@Override
+		public long drainTimeout() {
+			return drainTimeout;
+		}
+		
 		@Override
 		public List<Binding> bindings() {
 			return bindings;
@@ -156,10 +274,12 @@ public class HttpServerTest {
 		serverBootstrap = mock(ServerBootstrap.class, ANSWER_WITH_SELF);
 		publisher = new MockPublisher();
 		taskRunner = new MockTaskRunner();
-		childGroup = new MockHttpServerNioEventLoopGroup();
+		childGroup = new MockHttpServerEventLoopGroup();
 		httpServer = new HttpServer(
 			childGroup,
 			initializer,
+			connections,
+			loopback,
 			configuration,
 			httpServerSwitch,
 			publisher,
@@ -178,6 +298,7 @@ public class HttpServerTest {
 		receiveBufferSize = -1;
 		keepAlive = false;
 		backlog = -1;
+		acceptorsPerBinding = -1;
 		bindings =  null;
 		hashCode = -1;
 	}
@@ -197,6 +318,7 @@ public class HttpServerTest {
 		given(httpServerSwitch.on()).willReturn(true);
 		given(serverBootstrap.bind(8080)).willReturn(future);
 		given(serverBootstrap.bind("localhost", 8090)).willReturn(future);
+		willReturn(loopbackFuture).given(loopback).open(any(), any(), any(), any());
 	}
 	
 	@Captor ArgumentCaptor<EventLoopGroup> bossGroupCaptor;
@@ -217,8 +339,9 @@ public class HttpServerTest {
 		assertThat(publisher.events.get(1), is(instanceOf(BindingHttpServer.class)));
 		assertThat(publisher.events.get(2), is(instanceOf(HttpServerStarted.class)));
 		
-		verify(serverBootstrap).channel(NioServerSocketChannel.class);
+		verify(serverBootstrap).channel(childGroup.transport().serverSocketChannel());
 		verify(serverBootstrap).group(bossGroupCaptor.capture(), eq(childGroup));
+		verify(serverBootstrap).handler(connections);
 		verify(serverBootstrap).childHandler(initializer);
 		verify(serverBootstrap).option(ChannelOption.SO_KEEPALIVE, configuration.keepAlive());
 		verify(serverBootstrap).option(ChannelOption.SO_REUSEADDR, configuration.reuseAddress());
@@ -228,6 +351,31 @@ public class HttpServerTest {
 		verify(serverBootstrap).option(ChannelOption.SO_RCVBUF, configuration.receiveBufferSize());
 		verify(serverBootstrap).option(ChannelOption.SO_SNDBUF, configuration.sendBufferSize());
 		verify(future, times(2)).sync();
+		verify(loopback).open(childGroup, connections, initializer, bindings);
+		verify(loopbackFuture).sync();
+	}
+	
+	@Test
+	public void testNativeTransportSharesPortsBetweenAcceptors() throws Exception {
+		
+		assumeThat(childGroup.transport(), is(Transport.Epoll));
+
+		// given
+		givenConfig1();
+		acceptorsPerBinding = 3;
+		givenStartupConditions();
+
+		// when
+		httpServer.on((ConfigurationLoaded)null);
+		taskRunner.runFirstTask();
+		
+		// then
+		assertThat(publisher.events.size(), is(3));
+		verify(serverBootstrap).option(EpollChannelOption.SO_REUSEPORT, true);
+		verify(serverBootstrap).childOption(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+		verify(serverBootstrap, times(3)).bind(8080);
+		verify(serverBootstrap, times(3)).bind("localhost", 8090);
+		verify(future, times(6)).sync();
 	}
 	
 	@Captor ArgumentCaptor<GenericFutureListener<Future<?>>> groupFutureListenerCaptor;
@@ -262,15 +410,69 @@ public class HttpServerTest {
 		}).given(groupFuture).addListener(any());
 		willReturn(groupFuture).given(bossGroup).shutdownGracefully(anyLong(), anyLong(), BDDMockito.any(TimeUnit.class));
 		given(groupFuture.isSuccess()).willReturn(true);
+		drainTimeout = 1000;
+		given(connections.drain(1000, TimeUnit.MILLISECONDS)).willReturn(ImmediateEventExecutor.INSTANCE.newSucceededFuture(null));
 
 		// when
 		httpServer.on((ConfigurationLoaded)null);
 		taskRunner.runFirstTask();
 		
 		// then
+		verify(connections).drain(1000, TimeUnit.MILLISECONDS);
+		assertFalse(childGroup.isShuttingDown());
 		assertThat(publisher.events.size(), is(3));
 		assertThat(publisher.events.get(0), is(instanceOf(HttpServerRestarting.class)));
 		assertThat(publisher.events.get(1), is(instanceOf(BindingHttpServer.class)));
 		assertThat(publisher.events.get(2), is(instanceOf(HttpServerStarted.class)));
 	}
+	
+	@Test
+	public void testServerStopDrainsConnections() throws Exception {
+
+		// given
+		givenConfig1();
+		givenStartupConditions();
+		httpServer.on((ConfigurationLoaded)null);
+		taskRunner.runFirstTask();
+		publisher.events.clear();
+		
+		given(serverBootstrap.group()).willReturn(bossGroup);
+		Promise<Void> bossShutdown = ImmediateEventExecutor.INSTANCE.newPromise();
+		willReturn(bossShutdown).given(bossGroup).shutdownGracefully(anyLong(), anyLong(), BDDMockito.any(TimeUnit.class));
+		drainTimeout = 500;
+		Promise<Void> drained = ImmediateEventExecutor.INSTANCE.newPromise();
+		given(connections.drain(500, TimeUnit.MILLISECONDS)).willReturn(drained);
+		ServerDraining draining = mock(ServerDraining.class);
+		
+		// when
+		httpServer.on(draining);
+		
+		// then
+		ArgumentCaptor<java.util.concurrent.Future<?>> stoppedCaptor = ArgumentCaptor.forClass(java.util.concurrent.Future.class);
+		verify(draining).waitFor(stoppedCaptor.capture());
+		java.util.concurrent.Future<?> stopped = stoppedCaptor.getValue();
+		verifyZeroInteractions(connections);
+		
+		// when
+		bossShutdown.setSuccess(null);
+		
+		// then
+		verify(loopback).close();
+		verify(connections).drain(500, TimeUnit.MILLISECONDS);
+		assertFalse(stopped.isDone());
+		
+		// when
+		drained.setSuccess(null);
+		
+		// then
+		assertTrue(stopped.isDone());
+		assertFalse(childGroup.isShuttingDown());
+		
+		// when
+		httpServer.on((ServerStopping)null);
+		
+		// then
+		assertTrue(childGroup.isShuttingDown());
+		assertThat(publisher.events.get(0), is(instanceOf(HttpServerStopped.class)));
+	}
 }
@@ -0,0 +1,154 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static io.netty.handler.codec.http.HttpResponseStatus.*;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author jason
+ *
+ */
+public class IdleConnectionHandlerTest {
+	
+	IdleConnectionHandler handler;
+	
+	EmbeddedChannel channel;
+	
+	@Before
+	public void before() {
+		handler = new IdleConnectionHandler(30);
+		channel = new EmbeddedChannel(handler);
+	}
+	
+	@After
+	public void after() {
+		channel.finish();
+		Object msg;
+		while ((msg = channel.readInbound()) != null) {
+			ReferenceCountUtil.release(msg);
+		}
+		while ((msg = channel.readOutbound()) != null) {
+			ReferenceCountUtil.release(msg);
+		}
+	}
+	
+	private void request() {
+		channel.writeInbound(new DefaultFullHttpRequest(HTTP_1_1, HttpMethod.GET, "/"));
+	}
+	
+	private void idle() throws Exception {
+		handler.channelIdle(channel.pipeline().context(handler), IdleStateEvent.ALL_IDLE_STATE_EVENT);
+	}
+	
+	@Test
+	public void testClosesWhenIdle() throws Exception {
+		
+		idle();
+		
+		assertFalse(channel.isOpen());
+	}
+	
+	@Test
+	public void testWaitsForOutstandingResponses() throws Exception {
+		
+		request();
+		request();
+		idle();
+		assertTrue(channel.isOpen());
+		
+		channel.writeOutbound(new DefaultFullHttpResponse(HTTP_1_1, OK));
+		idle();
+		assertTrue(channel.isOpen());
+		
+		// a streamed response ends with its last content
+		channel.writeOutbound(new DefaultHttpResponse(HTTP_1_1, OK));
+		idle();
+		assertTrue(channel.isOpen());
+		
+		channel.writeOutbound(LastHttpContent.EMPTY_LAST_CONTENT);
+		idle();
+		assertFalse(channel.isOpen());
+	}
+	
+	@Test
+	public void testContinueDoesNotAnswerAnything() throws Exception {
+		
+		request();
+		channel.writeOutbound(new DefaultFullHttpResponse(HTTP_1_1, CONTINUE));
+		idle();
+		
+		assertTrue(channel.isOpen());
+	}
+	
+	@Test
+	public void testDrainClosesRightAwayWithNothingOutstanding() {
+		
+		handler.drain();
+		
+		assertFalse(channel.isOpen());
+	}
+	
+	@Test
+	public void testDrainClosesAfterTheLastResponse() {
+		
+		request();
+		request();
+		handler.drain();
+		assertTrue(channel.isOpen());
+		
+		channel.writeOutbound(new DefaultFullHttpResponse(HTTP_1_1, OK));
+		assertTrue(channel.isOpen());
+		
+		FullHttpResponse last = new DefaultFullHttpResponse(HTTP_1_1, OK);
+		channel.writeOutbound(last);
+		assertThat(last.headers().get(HttpHeaderNames.CONNECTION), is(HttpHeaderValues.CLOSE.toString()));
+		assertFalse(channel.isOpen());
+	}
+	
+	@Test
+	public void testDrainLeavesHttp2ResponsesAlone() {
+		
+		request();
+		handler.drain();
+		
+		HttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, OK);
+		response.headers().setInt("x-http2-stream-id", 3);
+		channel.writeOutbound(response);
+		
+		assertThat(response.headers().contains(HttpHeaderNames.CONNECTION), is(false));
+		assertFalse(channel.isOpen());
+	}
+}
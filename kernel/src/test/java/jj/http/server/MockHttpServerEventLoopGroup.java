@@ -19,8 +19,8 @@ package jj.http.server;
  * @author jason
  *
  */
-class MockHttpServerNioEventLoopGroup extends HttpServerNioEventLoopGroup {
-	MockHttpServerNioEventLoopGroup() {
+class MockHttpServerEventLoopGroup extends HttpServerEventLoopGroup {
+	MockHttpServerEventLoopGroup() {
 		super((t, e) -> {
 			e.printStackTrace();
 			throw new AssertionError(e);
@@ -102,5 +102,63 @@ public class RangeHeaderReaderTest {
 		assertThat(ranges.get(1).start, is(500L));
 		assertThat(ranges.get(1).end, is(2000L));
 	}
-
+	
+	@Test
+	public void testFirstByte() {
+		List<Range> ranges = rangeHeaderReader("bytes=0-0", 2000L, 80).ranges();
+		
+		assertThat(ranges.size(), is(1));
+		assertThat(ranges.get(0).start, is(0L));
+		assertThat(ranges.get(0).end, is(0L));
+		assertThat(ranges.get(0).length(), is(1L));
+	}
+	
+	@Test
+	public void testSuffix() {
+		List<Range> ranges = rangeHeaderReader("bytes=-100", 2000L, 80).ranges();
+		
+		assertThat(ranges.size(), is(1));
+		assertThat(ranges.get(0).start, is(1900L));
+		assertThat(ranges.get(0).end, is(1999L));
+	}
+	
+	@Test
+	public void testSuffixLongerThanResponse() {
+		List<Range> ranges = rangeHeaderReader("bytes=-5000", 2000L, 80).ranges();
+		
+		assertThat(ranges.size(), is(1));
+		assertThat(ranges.get(0).start, is(0L));
+		assertThat(ranges.get(0).end, is(1999L));
+	}
+	
+	@Test
+	public void testSameStart() {
+		List<Range> ranges = rangeHeaderReader("bytes=0-10, 0-500", 2000L, 0).ranges();
+		
+		assertThat(ranges.size(), is(1));
+		assertThat(ranges.get(0).start, is(0L));
+		assertThat(ranges.get(0).end, is(500L));
+	}
+	
+	@Test
+	public void testUnsatisfiable() {
+		RangeHeaderReader rangeHandler = rangeHeaderReader("bytes=2000-,-0", 2000L, 80);
+		
+		assertThat(rangeHandler.isBadRequest(), is(false));
+		assertThat(rangeHandler.ranges().size(), is(0));
+	}
+	
+	@Test
+	public void testNoRangeHeader() {
+		List<Range> ranges = new RangeHeaderReader(new DefaultHttpHeaders(), 2000L, 80).ranges();
+		
+		assertThat(ranges.size(), is(1));
+		assertThat(ranges.get(0).start, is(0L));
+		assertThat(ranges.get(0).end, is(1999L));
+	}
+	
+	@Test
+	public void testOverflow() {
+		assertThat(rangeHeaderReader("bytes=0-99999999999999999999", 2000L, 80).isBadRequest(), is(true));
+	}
 }
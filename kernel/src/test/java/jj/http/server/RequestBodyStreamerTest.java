@@ -0,0 +1,313 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequestDecoder;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import jj.http.server.RequestBody.SpoolListener;
+import jj.http.server.RequestBodyStreamer.StreamedHttpRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author jason
+ *
+ */
+public class RequestBodyStreamerTest {
+	
+	static final int MAX_BUFFERED = 16;
+	static final long MAX_SIZE = 1024;
+	
+	class CollectingListener extends RequestBodyListener {
+		
+		final StringBuilder body = new StringBuilder();
+		int parts;
+		boolean complete;
+		Throwable errored;
+		boolean pauseNext;
+		
+		@Override
+		protected void bodyPart(ByteBuf bodyPart) {
+			body.append(bodyPart.toString(UTF_8));
+			++parts;
+			if (pauseNext) {
+				pauseNext = false;
+				pause();
+			}
+		}
+		
+		@Override
+		protected void bodyComplete(HttpHeaders trailingHeaders) {
+			complete = true;
+		}
+		
+		@Override
+		protected void bodyErrored(Throwable cause) {
+			errored = cause;
+		}
+		
+		void unpause() {
+			resume();
+		}
+	}
+	
+	EmbeddedChannel channel;
+	
+	@Before
+	public void before() {
+		channel = new EmbeddedChannel(new HttpRequestDecoder(), new RequestBodyStreamer(MAX_BUFFERED, MAX_SIZE));
+	}
+	
+	@After
+	public void after() {
+		channel.finish();
+	}
+	
+	private void write(String bytes) {
+		channel.writeInbound(channel.alloc().buffer().writeBytes(bytes.getBytes(UTF_8)));
+	}
+	
+	private String post(int length, String... extraHeaders) {
+		StringBuilder sb = new StringBuilder("POST /upload HTTP/1.1\r\nHost: localhost\r\nContent-Length: ").append(length).append("\r\n");
+		for (String header : extraHeaders) {
+			sb.append(header).append("\r\n");
+		}
+		return sb.append("\r\n").toString();
+	}
+	
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		java.util.Arrays.fill(chars, c);
+		return new String(chars);
+	}
+	
+	private StreamedRequestBody streamed() {
+		Object read = channel.readInbound();
+		assertThat(read, is(instanceOf(StreamedHttpRequest.class)));
+		return ((StreamedHttpRequest)read).body();
+	}
+	
+	@Test
+	public void testSmallBodiesArriveWhole() {
+		
+		write(post(5) + "hel");
+		assertThat(channel.readInbound(), is(nullValue()));
+		
+		write("lo");
+		
+		FullHttpRequest request = channel.readInbound();
+		try {
+			assertThat(request, is(not(instanceOf(StreamedHttpRequest.class))));
+			assertThat(request.content().toString(UTF_8), is("hello"));
+			assertTrue(channel.config().isAutoRead());
+		} finally {
+			request.release();
+		}
+	}
+	
+	@Test
+	public void testBodilessRequestsArriveWhole() {
+		
+		write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n");
+		
+		FullHttpRequest request = channel.readInbound();
+		assertThat(request, is(not(instanceOf(StreamedHttpRequest.class))));
+		assertThat(request.content().readableBytes(), is(0));
+		request.release();
+	}
+	
+	@Test
+	public void testLargeBodiesAreStreamed() {
+		
+		write(post(40) + repeat('a', 10));
+		
+		StreamedRequestBody body = streamed();
+		assertThat(body.length(), is(40L));
+		// nothing else gets read until the body is
+		assertFalse(channel.config().isAutoRead());
+		
+		CollectingListener listener = new CollectingListener();
+		body.read(listener);
+		assertThat(listener.body.toString(), is(repeat('a', 10)));
+		
+		write(repeat('b', 20));
+		write(repeat('c', 10));
+		
+		assertThat(listener.body.toString(), is(repeat('a', 10) + repeat('b', 20) + repeat('c', 10)));
+		assertTrue(listener.complete);
+		assertThat(listener.errored, is(nullValue()));
+		assertTrue(channel.config().isAutoRead());
+		
+		assertTrue(body.finish());
+	}
+	
+	@Test
+	public void testChunkedBodiesAreStreamed() {
+		
+		write("POST /upload HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabc\r\n");
+		
+		StreamedRequestBody body = streamed();
+		assertThat(body.length(), is(-1L));
+		
+		write("2\r\nde\r\n0\r\n\r\n");
+		
+		// read after it all arrived, it all got held
+		CollectingListener listener = new CollectingListener();
+		body.read(listener);
+		
+		assertThat(listener.body.toString(), is("abcde"));
+		assertTrue(listener.complete);
+	}
+	
+	@Test
+	public void testPausing() {
+		
+		write(post(30) + repeat('a', 10));
+		StreamedRequestBody body = streamed();
+		
+		CollectingListener listener = new CollectingListener();
+		listener.pauseNext = true;
+		body.read(listener);
+		
+		write(repeat('b', 10));
+		write(repeat('c', 10));
+		
+		assertThat(listener.parts, is(1));
+		assertFalse(listener.complete);
+		
+		listener.unpause();
+		
+		assertThat(listener.body.toString(), is(repeat('a', 10) + repeat('b', 10) + repeat('c', 10)));
+		assertTrue(listener.complete);
+	}
+	
+	@Test
+	public void testDeclaredTooLarge() {
+		
+		write(post((int)MAX_SIZE + 1));
+		
+		assertThat(channel.readInbound(), is(nullValue()));
+		FullHttpResponse response = channel.readOutbound();
+		assertThat(response.status(), is(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE));
+		assertFalse(channel.isOpen());
+	}
+	
+	@Test
+	public void testStreamedTooLarge() {
+		
+		write("POST /upload HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n");
+		StreamedRequestBody body = streamed();
+		CollectingListener listener = new CollectingListener();
+		body.read(listener);
+		
+		write(Integer.toHexString((int)MAX_SIZE + 1) + "\r\n" + repeat('a', (int)MAX_SIZE + 1) + "\r\n");
+		
+		assertThat(listener.errored, is(notNullValue()));
+		assertFalse(channel.isOpen());
+	}
+	
+	@Test
+	public void testContinueIsSentWhenTheBodyIsRead() {
+		
+		write(post(20, "Expect: 100-continue"));
+		StreamedRequestBody body = streamed();
+		
+		assertThat(channel.readOutbound(), is(nullValue()));
+		
+		body.read(new CollectingListener());
+		
+		FullHttpResponse response = channel.readOutbound();
+		assertThat(response.status(), is(HttpResponseStatus.CONTINUE));
+	}
+	
+	@Test
+	public void testUnreadBodiesAreDiscarded() {
+		
+		write(post(30) + repeat('a', 10));
+		StreamedRequestBody body = streamed();
+		
+		assertTrue(body.finish());
+		assertTrue(channel.config().isAutoRead());
+		
+		write(repeat('b', 20) + "GET /next HTTP/1.1\r\nHost: localhost\r\n\r\n");
+		
+		FullHttpRequest next = channel.readInbound();
+		assertThat(next.uri(), is("/next"));
+		next.release();
+	}
+	
+	@Test
+	public void testUnsentBodiesCloseTheConnection() {
+		
+		write(post(30, "Expect: 100-continue"));
+		StreamedRequestBody body = streamed();
+		
+		// the client is waiting to hear if it should send,
+		// so the connection can't be trusted
+		assertFalse(body.finish());
+	}
+	
+	@Test
+	public void testSpooling() throws Exception {
+		
+		write(post(40) + repeat('a', 10));
+		StreamedRequestBody body = streamed();
+		
+		AtomicReference<Path> spooled = new AtomicReference<>();
+		body.spool(new SpoolListener() {
+			
+			@Override
+			public void spooled(Path path) {
+				spooled.set(path);
+			}
+			
+			@Override
+			public void errored(Throwable cause) {
+				throw new AssertionError(cause);
+			}
+		});
+		
+		write(repeat('b', 30));
+		
+		// the writes finish elsewhere, and come back to the channel
+		for (int i = 0; i < 500 && spooled.get() == null; ++i) {
+			channel.runPendingTasks();
+			Thread.sleep(10);
+		}
+		
+		Path path = spooled.get();
+		assertThat(path, is(notNullValue()));
+		assertThat(new String(Files.readAllBytes(path), UTF_8), is(repeat('a', 10) + repeat('b', 30)));
+		
+		body.finish();
+		assertFalse(Files.exists(path));
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import jj.event.MockPublisher;
+import jj.logging.Warning;
+import jj.util.MockClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class RequestQueueTest {
+	
+	@Mock HttpServerSocketConfiguration configuration;
+	@Mock HttpServerResponse response;
+	
+	MockClock clock = new MockClock();
+	MockPublisher publisher = new MockPublisher();
+	
+	RequestQueues rqs;
+	RequestQueue rq;
+	
+	@Before
+	public void before() {
+		given(configuration.maxQueuedRequests()).willReturn(2);
+		given(configuration.maxRequestQueueTime()).willReturn(1000L);
+		given(configuration.retryAfter()).willReturn(3);
+		given(response.header(HttpHeaderNames.RETRY_AFTER, 3L)).willReturn(response);
+		
+		rqs = new RequestQueues(configuration, clock, publisher);
+		rq = rqs.queue("documents");
+	}
+	
+	@Test
+	public void testQueuesAreNamed() {
+		assertThat(rqs.queue("documents"), is(sameInstance(rq)));
+		assertThat(rqs.names(), is(arrayContaining("documents")));
+		assertThat(rqs.depth("nothing"), is(0));
+	}
+	
+	@Test
+	public void testTracksDepthAndAge() {
+		RequestQueue.Ticket ticket1 = rq.admit();
+		clock.advance(10, TimeUnit.MILLISECONDS);
+		RequestQueue.Ticket ticket2 = rq.admit();
+		clock.advance(5, TimeUnit.MILLISECONDS);
+		
+		assertThat(rqs.depth("documents"), is(2));
+		assertThat(rqs.oldestAge("documents"), is(15L));
+		
+		assertTrue(ticket1.start(response));
+		assertThat(rq.depth(), is(1));
+		assertThat(rq.oldestAge(), is(5L));
+		
+		ticket2.cancel();
+		assertThat(rq.depth(), is(0));
+		assertThat(rq.oldestAge(), is(0L));
+		
+		verifyZeroInteractions(response);
+	}
+	
+	@Test
+	public void testStartingTwiceLeavesOnce() {
+		RequestQueue.Ticket ticket = rq.admit();
+		rq.admit();
+		
+		assertTrue(ticket.start(response));
+		clock.advance(2, TimeUnit.SECONDS);
+		assertTrue(ticket.start(response));
+		ticket.cancel();
+		
+		assertThat(rq.depth(), is(1));
+	}
+	
+	@Test
+	public void testTurnsAwayWhenTooDeep() {
+		assertThat(rq.admit(), is(notNullValue()));
+		assertThat(rq.admit(), is(notNullValue()));
+		assertThat(rq.admit(), is(nullValue()));
+		assertThat(rq.admit(), is(nullValue()));
+		
+		assertThat(rq.depth(), is(2));
+		// only once per episode
+		assertThat(publisher.events.size(), is(1));
+		assertThat(publisher.events.get(0), is(instanceOf(Warning.class)));
+	}
+	
+	@Test
+	public void testTurnsAwayWhenTooOld() {
+		RequestQueue.Ticket ticket = rq.admit();
+		clock.advance(1001, TimeUnit.MILLISECONDS);
+		
+		assertThat(rq.admit(), is(nullValue()));
+		
+		// and the old one is turned away when its turn comes
+		assertFalse(ticket.start(response));
+		verify(response).header(HttpHeaderNames.RETRY_AFTER, 3L);
+		verify(response).sendError(HttpResponseStatus.SERVICE_UNAVAILABLE);
+		
+		// and now things are fine
+		assertThat(rq.admit(), is(notNullValue()));
+		assertThat(publisher.events.size(), is(2));
+	}
+	
+	@Test
+	public void testZeroMeansNoLimits() {
+		given(configuration.maxQueuedRequests()).willReturn(0);
+		given(configuration.maxRequestQueueTime()).willReturn(0L);
+		
+		RequestQueue.Ticket ticket = rq.admit();
+		for (int i = 0; i < 10; ++i) {
+			assertThat(rq.admit(), is(notNullValue()));
+		}
+		clock.advance(1, TimeUnit.HOURS);
+		
+		assertThat(rq.admit(), is(notNullValue()));
+		assertTrue(ticket.start(response));
+		assertThat(publisher.events, is(empty()));
+	}
+}
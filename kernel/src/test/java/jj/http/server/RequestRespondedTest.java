@@ -19,6 +19,7 @@ import static java.nio.charset.StandardCharsets.*;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 import static org.mockito.BDDMockito.*;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
@@ -49,6 +50,7 @@ public class RequestRespondedTest {
 	
 	@Mock Logger logger;
 	@Mock Version version;
+	@Mock HttpServerSocketConfiguration configuration;
 	@Mock(answer = Answers.RETURNS_DEEP_STUBS) ChannelHandlerContext ctx;
 	@Mock SocketAddress socketAddress;
 	MockPublisher publisher;
@@ -57,11 +59,12 @@ public class RequestRespondedTest {
 	public void testAccessLog() throws IOException {
 		given(ctx.channel().remoteAddress()).willReturn(socketAddress);
 		given(socketAddress.toString()).willReturn("1.1.1.1");
+		given(ctx.alloc()).willReturn(UnpooledByteBufAllocator.DEFAULT);
 		publisher = new MockPublisher();
 		HttpServerRequestImpl request =
 			new HttpServerRequestImpl(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/"), ctx);
 		
-		HttpServerResponseImpl response = new HttpServerResponseImpl(version, request, ctx, publisher);
+		HttpServerResponseImpl response = new HttpServerResponseImpl(configuration, new ResponseHeaderCache(version), request, ctx, publisher);
 		
 		// given
 		given(logger.isInfoEnabled()).willReturn(true);
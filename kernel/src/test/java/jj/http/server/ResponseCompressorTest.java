@@ -0,0 +1,126 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author jason
+ *
+ */
+public class ResponseCompressorTest {
+	
+	final ByteBuf body = Unpooled.copiedBuffer("this is the body, it's not very long but it repeats. this is the body", UTF_8);
+	
+	EmbeddedChannel channel;
+	
+	@After
+	public void after() {
+		channel.finish();
+	}
+	
+	private void givenARequest(long threshold, String acceptEncoding) {
+		channel = new EmbeddedChannel(new ResponseCompressor(threshold));
+		DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+		if (acceptEncoding != null) {
+			request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, acceptEncoding);
+		}
+		assertTrue(channel.writeInbound(request));
+		channel.readInbound();
+	}
+	
+	private HttpResponse respond(boolean varies) {
+		FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, body.duplicate());
+		response.headers().set(HttpHeaderNames.CONTENT_LENGTH, body.readableBytes());
+		if (varies) {
+			response.headers().set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+		}
+		assertTrue(channel.writeOutbound(response));
+		return channel.readOutbound();
+	}
+
+	@Test
+	public void testCompressesResponsesThatVaryOnAcceptEncoding() {
+		
+		givenARequest(0, "gzip");
+		
+		HttpResponse response = respond(true);
+		
+		assertThat(response.headers().get(HttpHeaderNames.CONTENT_ENCODING), is(HttpHeaderValues.GZIP.toString()));
+		assertThat(response.headers().contains(HttpHeaderNames.CONTENT_LENGTH), is(false));
+		HttpContent content = channel.readOutbound();
+		assertThat(content.content().readableBytes(), is(greaterThan(0)));
+		content.release();
+	}
+
+	@Test
+	public void testLeavesOtherResponsesAlone() {
+		
+		givenARequest(0, "gzip");
+		
+		HttpResponse response = respond(false);
+		
+		assertThat(response.headers().contains(HttpHeaderNames.CONTENT_ENCODING), is(false));
+		assertThat(response.headers().getInt(HttpHeaderNames.CONTENT_LENGTH), is(body.readableBytes()));
+		((FullHttpResponse)response).release();
+	}
+
+	@Test
+	public void testLeavesSmallResponsesAlone() {
+		
+		givenARequest(body.readableBytes() + 1, "gzip");
+		
+		HttpResponse response = respond(true);
+		
+		assertThat(response.headers().contains(HttpHeaderNames.CONTENT_ENCODING), is(false));
+		((FullHttpResponse)response).release();
+	}
+
+	@Test
+	public void testEncodingNegotiation() {
+		
+		ResponseCompressor compressor = new ResponseCompressor(10);
+		
+		assertThat(compressor.encodingFor("gzip, deflate", 10), is(ZlibWrapper.GZIP));
+		assertThat(compressor.encodingFor("gzip;q=0.5, deflate", 10), is(ZlibWrapper.ZLIB));
+		assertThat(compressor.encodingFor("*", -1), is(ZlibWrapper.GZIP));
+		assertThat(compressor.encodingFor("identity", 10), is(nullValue()));
+		assertThat(compressor.encodingFor(null, 10), is(nullValue()));
+		assertThat(compressor.encodingFor("gzip", 9), is(nullValue()));
+		
+		channel = new EmbeddedChannel();
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.AsciiString;
+import jj.Version;
+import jj.resource.ResourceIdentifier;
+import jj.resource.ResourceKilled;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ResponseHeaderCacheTest {
+	
+	static final String SHA1 = "da39a3ee5e6b4b0d3255bfef95601890afd80709";
+	static final String GZIP_ETAG = SHA1 + "-gzip";
+	static final String DEFLATE_ETAG = SHA1 + "-deflate";
+	
+	@Mock Version version;
+	@Mock ServableResource resource;
+	@Mock ResourceIdentifier<ServableResource, Void> identifier;
+	
+	ResponseHeaderCache rhc;
+	
+	@Before
+	public void before() {
+		given(version.name()).willReturn("JibbrJabbr");
+		given(version.version()).willReturn("1.0");
+		given(version.branchName()).willReturn("master");
+		
+		willReturn(identifier).given(resource).identifier();
+		given(resource.alive()).willReturn(true);
+		given(resource.sha1()).willReturn(SHA1);
+		given(resource.contentType()).willReturn("text/plain; charset=UTF-8");
+		given(resource.compressible()).willReturn(true);
+		
+		rhc = new ResponseHeaderCache(version);
+	}
+	
+	@Test
+	public void testServer() {
+		assertThat(rhc.server().toString(), is("JibbrJabbr/1.0 (master)"));
+		assertThat(rhc.server(), is(sameInstance(rhc.server())));
+	}
+	
+	@Test
+	public void testDate() {
+		AsciiString date = rhc.date();
+		
+		// parses, and is close to now
+		ZonedDateTime parsed = ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME);
+		assertThat(Math.abs(parsed.toEpochSecond() - System.currentTimeMillis() / 1000), is(lessThanOrEqualTo(1L)));
+		
+		// good for the rest of the second
+		AsciiString next = rhc.date();
+		assertTrue(next == date || !next.equals(date));
+	}
+	
+	@Test
+	public void testIdentityHeaders() {
+		HttpHeaders headers = rhc.resourceHeaders(resource, null, SHA1, 1234);
+		
+		assertThat(headers.get(HttpHeaderNames.ETAG), is(SHA1));
+		assertThat(headers.get(HttpHeaderNames.CONTENT_TYPE), is("text/plain; charset=UTF-8"));
+		assertThat(headers.get(HttpHeaderNames.CONTENT_LENGTH), is("1234"));
+		assertThat(headers.get(HttpHeaderNames.VARY), is("accept-encoding"));
+		assertThat(headers.get(HttpHeaderNames.ACCEPT_RANGES), is("bytes"));
+		assertThat(headers.get(HttpHeaderNames.CONTENT_ENCODING), is(nullValue()));
+	}
+	
+	@Test
+	public void testEncodedHeaders() {
+		given(resource.compressible()).willReturn(false);
+		
+		HttpHeaders headers = rhc.resourceHeaders(resource, ZlibWrapper.GZIP, GZIP_ETAG, 400);
+		
+		assertThat(headers.get(HttpHeaderNames.ETAG), is(GZIP_ETAG));
+		assertThat(headers.get(HttpHeaderNames.CONTENT_LENGTH), is("400"));
+		assertThat(headers.get(HttpHeaderNames.CONTENT_ENCODING), is("gzip"));
+		assertThat(headers.get(HttpHeaderNames.VARY), is(nullValue()));
+		assertThat(headers.get(HttpHeaderNames.ACCEPT_RANGES), is(nullValue()));
+	}
+	
+	@Test
+	public void testReusesHeadersPerEncoding() {
+		HttpHeaders identity = rhc.resourceHeaders(resource, null, SHA1, 1234);
+		HttpHeaders gzip = rhc.resourceHeaders(resource, ZlibWrapper.GZIP, GZIP_ETAG, 400);
+		HttpHeaders deflate = rhc.resourceHeaders(resource, ZlibWrapper.ZLIB, DEFLATE_ETAG, 500);
+		
+		assertThat(rhc.resourceHeaders(resource, null, SHA1, 1234), is(sameInstance(identity)));
+		assertThat(rhc.resourceHeaders(resource, ZlibWrapper.GZIP, GZIP_ETAG, 400), is(sameInstance(gzip)));
+		assertThat(rhc.resourceHeaders(resource, ZlibWrapper.ZLIB, DEFLATE_ETAG, 500), is(sameInstance(deflate)));
+		
+		// a different length is a different body
+		assertThat(rhc.resourceHeaders(resource, null, SHA1, 12), is(not(sameInstance(identity))));
+		// and so is a different ETag
+		HttpHeaders other = rhc.resourceHeaders(resource, ZlibWrapper.GZIP, "another", 400);
+		assertThat(other, is(not(sameInstance(gzip))));
+		assertThat(other.get(HttpHeaderNames.ETAG), is("another"));
+	}
+	
+	@Test
+	public void testReplacedResourceGetsNewHeaders() {
+		HttpHeaders headers = rhc.resourceHeaders(resource, null, SHA1, 1234);
+		
+		ServableResource replacement = mock(ServableResource.class);
+		willReturn(identifier).given(replacement).identifier();
+		given(replacement.alive()).willReturn(true);
+		given(replacement.sha1()).willReturn("1234");
+		given(replacement.contentType()).willReturn("text/plain; charset=UTF-8");
+		
+		HttpHeaders replaced = rhc.resourceHeaders(replacement, null, "1234", 1234);
+		assertThat(replaced, is(not(sameInstance(headers))));
+		assertThat(replaced.get(HttpHeaderNames.ETAG), is("1234"));
+	}
+	
+	@Test
+	public void testForgetsKilledResources() {
+		HttpHeaders headers = rhc.resourceHeaders(resource, null, SHA1, 1234);
+		
+		ResourceKilled event = mock(ResourceKilled.class);
+		willReturn(identifier).given(event).identifier();
+		rhc.on(event);
+		
+		assertThat(rhc.resourceHeaders(resource, null, SHA1, 1234), is(not(sameInstance(headers))));
+	}
+	
+	@Test
+	public void testDoesNotKeepDeadResources() {
+		given(resource.alive()).willReturn(false);
+		
+		HttpHeaders headers = rhc.resourceHeaders(resource, null, SHA1, 1234);
+		
+		assertThat(rhc.resourceHeaders(resource, null, SHA1, 1234), is(not(sameInstance(headers))));
+	}
+}
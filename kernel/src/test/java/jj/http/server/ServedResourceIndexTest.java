@@ -0,0 +1,92 @@
+/*
+ *    Copyright 2012 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import jj.http.server.resource.StaticResource;
+import jj.resource.ResourceIdentifier;
+import jj.resource.ResourceKilled;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ServedResourceIndexTest {
+	
+	@Mock StaticResource resource;
+	@Mock ResourceIdentifier<StaticResource, Void> identifier;
+	@Mock ResourceKilled resourceKilled;
+	
+	ServedResourceIndex index = new ServedResourceIndex();
+	
+	@Before
+	public void before() {
+		willReturn(identifier).given(resource).identifier();
+		willReturn(identifier).given(resourceKilled).identifier();
+		willReturn(StaticResource.class).given(resourceKilled).type();
+		given(resource.alive()).willReturn(true);
+	}
+	
+	@Test
+	public void testRemembers() {
+		assertThat(index.find(StaticResource.class, "index.html"), is(nullValue()));
+		
+		index.remember(StaticResource.class, "index.html", resource);
+		index.remember(StaticResource.class, "", resource);
+		
+		assertThat(index.find(StaticResource.class, "index.html"), is(resource));
+		assertThat(index.find(StaticResource.class, ""), is(resource));
+		assertThat(index.find(StaticResource.class, "other.html"), is(nullValue()));
+		assertThat(index.find(ServableResource.class, "index.html"), is(nullValue()));
+		assertThat(index.find(StaticResource.class, null), is(nullValue()));
+	}
+	
+	@Test
+	public void testForgetsKilledResources() {
+		index.remember(StaticResource.class, "index.html", resource);
+		index.remember(StaticResource.class, "", resource);
+		
+		index.on(resourceKilled);
+		
+		assertThat(index.find(StaticResource.class, "index.html"), is(nullValue()));
+		assertThat(index.find(StaticResource.class, ""), is(nullValue()));
+	}
+	
+	@Test
+	public void testForgetsDeadResources() {
+		index.remember(StaticResource.class, "index.html", resource);
+		
+		given(resource.alive()).willReturn(false);
+		
+		assertThat(index.find(StaticResource.class, "index.html"), is(nullValue()));
+		
+		// and never remembers them
+		index.remember(StaticResource.class, "index.html", resource);
+		given(resource.alive()).willReturn(true);
+		
+		assertThat(index.find(StaticResource.class, "index.html"), is(nullValue()));
+	}
+}
@@ -16,15 +16,21 @@
 package jj.http.server;
 
 import static jj.server.ServerLocation.*;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.*;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
 import jj.execution.JJTask;
 import jj.execution.Promise;
 import jj.execution.TaskHelper;
+import jj.http.server.RangeHeaderReader.Range;
 import jj.http.server.resource.StaticResource;
 import jj.http.server.uri.RouteMatch;
 import jj.http.server.uri.URIMatch;
@@ -53,9 +59,10 @@ public class SimpleRouteProcessorTest {
 	static final String UNVERSIONED_URI = "/" + ZERO_TXT;
 	static final String VERSIONED_URI = "/" + SHA1 + "/" + ZERO_TXT;
 	
+	@Mock HttpServerSocketConfiguration configuration;
 	@Mock ResourceFinder resourceFinder;
 	@Mock ResourceLoader resourceLoader;
-	Map<String, Class<? extends ServableResource>> servableResources;
+	@Mock ServedResourceIndex index;
 	Map<Class<? extends ServableResource>, RouteProcessorConfiguration> processorConfigurations;
 	
 	SimpleRouteProcessor srs;
@@ -68,27 +75,30 @@ public class SimpleRouteProcessorTest {
 	@Mock Promise promise;
 	
 	@Captor ArgumentCaptor<JJTask<?>> taskCaptor;
+	@Captor ArgumentCaptor<List<Range>> rangesCaptor;
 	
 	ServerLocation location = Root; // YEAH RIGHT!
 	
 	@Before
 	public void before() {
 		
-		servableResources = new HashMap<>();
-		servableResources.put(STATIC, StaticResource.class);
-		
 		processorConfigurations = new HashMap<>();
 		processorConfigurations.put(StaticResource.class, () -> location);
 		
-		given(routeMatch.resourceName()).willReturn(STATIC);
+		willReturn(StaticResource.class).given(routeMatch).resourceClass();
 		
 		given(request.uriMatch()).willReturn(new URIMatch("/hi/there"));
 
 		given(resourceLoader.loadResource(any(), any(), anyString())).willReturn(promise);
 		
 		given(resource.sha1()).willReturn(SHA1);
+		given(response.etag(resource)).willReturn(SHA1);
+		
+		given(resource.size()).willReturn(1000L);
+		given(configuration.maxRanges()).willReturn(5);
+		given(configuration.rangeCoalesceDistance()).willReturn(80L);
 		
-		srs = new SimpleRouteProcessor(resourceFinder, resourceLoader, servableResources, processorConfigurations);
+		srs = new SimpleRouteProcessor(configuration, resourceFinder, resourceLoader, index, processorConfigurations);
 	}
 	
 	@Test
@@ -130,6 +140,38 @@ public class SimpleRouteProcessorTest {
 		srs.process(routeMatch, request, response);
 		
 		verify(response).sendUncachableResource(resource);
+		verify(index).remember(StaticResource.class, new URIMatch(UNVERSIONED_URI).path, resource);
+	}
+	
+	@Test
+	public void testIndexedResource() throws Exception {
+		
+		URIMatch match = new URIMatch(UNVERSIONED_URI);
+		given(request.uriMatch()).willReturn(match);
+		given(index.find(StaticResource.class, match.path)).willReturn(resource);
+		
+		srs.process(routeMatch, request, response);
+		
+		verify(response).sendUncachableResource(resource);
+		verify(resourceLoader, never()).findResource(any(), any(), anyString());
+	}
+	
+	@Test
+	public void testResourceThatsGoneIsLookedUpAgain() throws Exception {
+		
+		URIMatch match = new URIMatch(UNVERSIONED_URI);
+		given(request.uriMatch()).willReturn(match);
+		given(index.find(StaticResource.class, match.path)).willReturn(resource, (StaticResource)null);
+		StaticResource replacement = mock(StaticResource.class);
+		given(replacement.sha1()).willReturn(SHA1);
+		given(resourceLoader.findResource(StaticResource.class, location, match.path)).willReturn(replacement);
+		ResourceGoneException gone = new ResourceGoneException(mock(LoadedResource.class), null);
+		given(response.sendUncachableResource(resource)).willThrow(gone);
+		
+		srs.process(routeMatch, request, response);
+		
+		verify(response).sendUncachableResource(replacement);
+		verify(response, never()).error(any(Throwable.class));
 	}
 	
 	@Test
@@ -167,6 +209,27 @@ public class SimpleRouteProcessorTest {
 		verify(response).sendNotModified(resource, false);
 	}
 	
+	@Test
+	public void testNotModifiedOnlyForTheEncodingItWouldBeSentIn() throws Exception {
+		
+		givenResourceRequest(UNVERSIONED_URI);
+		
+		// say it's going out compressed this time
+		given(response.etag(resource)).willReturn(SHA1 + "-gzip");
+		given(request.header(HttpHeaderNames.IF_NONE_MATCH)).willReturn(SHA1);
+		
+		srs.process(routeMatch, request, response);
+		
+		verify(response, never()).sendNotModified(any(), anyBoolean());
+		verify(response).sendUncachableResource(resource);
+		
+		given(request.header(HttpHeaderNames.IF_NONE_MATCH)).willReturn(SHA1 + "-gzip");
+		
+		srs.process(routeMatch, request, response);
+		
+		verify(response).sendNotModified(resource, false);
+	}
+	
 	@Test
 	public void testStandardResponseTemporaryRedirect() throws Exception {
 		
@@ -194,5 +257,91 @@ public class SimpleRouteProcessorTest {
 		
 		verify(response).error(toThrow);
 	}
+	
+	private void givenRangeRequest(String range) {
+		given(request.method()).willReturn(HttpMethod.GET);
+		given(request.header(HttpHeaderNames.RANGE)).willReturn(range);
+	}
+	
+	@Test
+	public void testRangeRequest() throws Exception {
+		
+		givenResourceRequest(VERSIONED_URI);
+		givenRangeRequest("bytes=0-99,500-");
+		
+		srs.process(routeMatch, request, response);
+		
+		verify(response).sendPartialResource(eq(resource), rangesCaptor.capture(), eq(true));
+		List<Range> ranges = rangesCaptor.getValue();
+		assertThat(ranges.size(), is(2));
+		assertThat(ranges.get(0).start, is(0L));
+		assertThat(ranges.get(0).end, is(99L));
+		assertThat(ranges.get(1).start, is(500L));
+		assertThat(ranges.get(1).end, is(999L));
+	}
+	
+	@Test
+	public void testUnsatisfiableRangeRequest() throws Exception {
+		
+		givenResourceRequest(UNVERSIONED_URI);
+		givenRangeRequest("bytes=1000-");
+		
+		srs.process(routeMatch, request, response);
+		
+		verify(response).sendPartialResource(resource, Collections.emptyList(), false);
+	}
+	
+	@Test
+	public void testBadRangeRequestGetsEverything() throws Exception {
+		
+		givenResourceRequest(UNVERSIONED_URI);
+		givenRangeRequest("lines=1-2");
+		
+		srs.process(routeMatch, request, response);
+		
+		verify(response).sendUncachableResource(resource);
+	}
+	
+	@Test
+	public void testIfRangeMatches() throws Exception {
+		
+		givenResourceRequest(UNVERSIONED_URI);
+		givenRangeRequest("bytes=-10");
+		given(request.header(HttpHeaderNames.IF_RANGE)).willReturn(SHA1);
+		
+		srs.process(routeMatch, request, response);
+		
+		verify(response).sendPartialResource(eq(resource), rangesCaptor.capture(), eq(false));
+		assertThat(rangesCaptor.getValue().get(0).start, is(990L));
+	}
+	
+	@Test
+	public void testIfRangeDoesNotMatch() throws Exception {
+		
+		givenResourceRequest(VERSIONED_URI);
+		givenRangeRequest("bytes=0-99");
+		given(request.header(HttpHeaderNames.IF_RANGE)).willReturn("some other sha1");
+		
+		srs.process(routeMatch, request, response);
+		
+		verify(response).sendCachableResource(resource);
+		verify(response, never()).sendPartialResource(any(), any(), anyBoolean());
+	}
+	
+	@Test
+	public void testIfRangeForAnEncodedVariantGetsEverything() throws Exception {
+		
+		givenResourceRequest(UNVERSIONED_URI);
+		givenRangeRequest("bytes=0-99");
+		
+		// it would go out compressed, but the ranges come from the identity bytes
+		given(response.etag(resource)).willReturn(SHA1 + "-gzip");
+		given(request.header(HttpHeaderNames.IF_RANGE)).willReturn(SHA1 + "-gzip");
+		
+		srs.process(routeMatch, request, response);
+		
+		verify(response).sendUncachableResource(resource);
+		verify(response, never()).sendPartialResource(any(), any(), anyBoolean());
+	}
 
 }
@@ -0,0 +1,229 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server.resource;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedNioFile;
+import jj.event.Publisher;
+import jj.http.server.TransferableResource;
+import jj.resource.ResourceConfiguration;
+import jj.resource.ResourceIdentifier;
+import jj.resource.ResourceKilled;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * uses the file system, in a temp directory
+ * 
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class FileChannelCacheTest {
+	
+	@Mock ResourceConfiguration configuration;
+	@Mock Publisher publisher;
+	
+	FileChannelCache cache;
+	
+	Path directory;
+	
+	@Before
+	public void before() throws Exception {
+		directory = Files.createTempDirectory("open");
+		
+		given(configuration.maxOpenFiles()).willReturn(2);
+		
+		cache = new FileChannelCache(configuration, publisher);
+	}
+	
+	@After
+	public void after() throws Exception {
+		try (Stream<Path> paths = Files.list(directory)) {
+			for (Path path : (Iterable<Path>)paths::iterator) {
+				Files.delete(path);
+			}
+		}
+		Files.delete(directory);
+	}
+	
+	private TransferableResource givenAFile(String name, String contents) throws Exception {
+		Path path = directory.resolve(name);
+		Files.write(path, contents.getBytes(UTF_8));
+		
+		TransferableResource resource = mock(TransferableResource.class);
+		ResourceIdentifier<?, ?> identifier = mock(ResourceIdentifier.class);
+		willReturn(identifier).given(resource).identifier();
+		given(resource.alive()).willReturn(true);
+		given(resource.path()).willReturn(path);
+		
+		return resource;
+	}
+	
+	private String read(FileChannel channel, int length) throws Exception {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining() && channel.read(buffer) > 0);
+		return new String(buffer.array(), 0, buffer.position(), UTF_8);
+	}
+	
+	@Test
+	public void testSharesTheOpenFile() throws Exception {
+		
+		TransferableResource resource = givenAFile("file", "hello there");
+		
+		try (FileChannel one = cache.fileChannel(resource); FileChannel two = cache.fileChannel(resource)) {
+			assertThat(one, is(not(sameInstance(two))));
+			
+			one.position(6);
+			assertThat(read(one, 5), is("there"));
+			assertThat(read(two, 5), is("hello"));
+			assertThat(one.position(), is(11L));
+			assertThat(two.position(), is(5L));
+			assertThat(one.size(), is(11L));
+		}
+		
+		assertThat(cache.openFiles(), is(1));
+		
+		// still open for the next one
+		try (FileChannel three = cache.fileChannel(resource)) {
+			assertThat(read(three, 5), is("hello"));
+		}
+	}
+	
+	@Test
+	public void testChunkedTransfers() throws Exception {
+		
+		TransferableResource resource = givenAFile("file", "hello there");
+		
+		ChunkedNioFile chunks = new ChunkedNioFile(cache.fileChannel(resource), 2, 7, 4);
+		StringBuilder sent = new StringBuilder();
+		while (!chunks.isEndOfInput()) {
+			ByteBuf chunk = chunks.readChunk(UnpooledByteBufAllocator.DEFAULT);
+			sent.append(chunk.toString(UTF_8));
+			chunk.release();
+		}
+		chunks.close();
+		
+		assertThat(sent.toString(), is("llo the"));
+	}
+	
+	@Test
+	public void testZeroCopyTransfers() throws Exception {
+		
+		TransferableResource resource = givenAFile("file", "hello there");
+		
+		FileRegion region = cache.fileRegion(resource, 1, 4);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		region.transferTo(Channels.newChannel(out), 0);
+		region.release();
+		
+		assertThat(new String(out.toByteArray(), UTF_8), is("ello"));
+		assertThat(cache.openFiles(), is(1));
+	}
+	
+	@Test
+	public void testClosesTheLeastRecentlySent() throws Exception {
+		
+		TransferableResource one = givenAFile("one", "one");
+		TransferableResource two = givenAFile("two", "two");
+		TransferableResource three = givenAFile("three", "three");
+		
+		FileChannel inUse = cache.fileChannel(one);
+		cache.fileChannel(two).close();
+		cache.fileChannel(three).close();
+		
+		assertThat(cache.openFiles(), is(2));
+		
+		// still readable until it's done
+		assertThat(read(inUse, 3), is("one"));
+		inUse.close();
+	}
+	
+	@Test
+	public void testLetsGoOfKilledResources() throws Exception {
+		
+		TransferableResource resource = givenAFile("file", "hello there");
+		FileChannel inUse = cache.fileChannel(resource);
+		
+		ResourceKilled event = mock(ResourceKilled.class);
+		willReturn(resource.identifier()).given(event).identifier();
+		cache.on(event);
+		
+		assertThat(cache.openFiles(), is(0));
+		assertThat(read(inUse, 5), is("hello"));
+		inUse.close();
+	}
+	
+	@Test
+	public void testKeepsNothingForResourcesThatAlreadyDied() throws Exception {
+		
+		TransferableResource resource = givenAFile("file", "hello there");
+		given(resource.alive()).willReturn(false);
+		
+		try (FileChannel channel = cache.fileChannel(resource)) {
+			assertThat(read(channel, 5), is("hello"));
+			assertThat(cache.openFiles(), is(0));
+		}
+		assertThat(cache.openFiles(), is(0));
+	}
+	
+	@Test
+	public void testReplacementsOpenFresh() throws Exception {
+		
+		TransferableResource resource = givenAFile("file", "hello there");
+		cache.fileChannel(resource).close();
+		
+		TransferableResource replacement = givenAFile("file", "goodbye");
+		willReturn(resource.identifier()).given(replacement).identifier();
+		
+		try (FileChannel channel = cache.fileChannel(replacement)) {
+			assertThat(read(channel, 7), is("goodbye"));
+		}
+		assertThat(cache.openFiles(), is(1));
+	}
+	
+	@Test
+	public void testKeepsNothingWhenConfiguredNotTo() throws Exception {
+		
+		given(configuration.maxOpenFiles()).willReturn(0);
+		TransferableResource resource = givenAFile("file", "hello there");
+		
+		try (FileChannel channel = cache.fileChannel(resource)) {
+			assertThat(read(channel, 5), is("hello"));
+		}
+		assertThat(cache.openFiles(), is(0));
+	}
+}
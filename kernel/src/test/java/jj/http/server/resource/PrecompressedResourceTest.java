@@ -0,0 +1,252 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server.resource;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static jj.application.AppLocation.AppBase;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import io.netty.handler.codec.compression.ZlibWrapper;
+import jj.resource.MockAbstractResourceDependencies;
+import jj.resource.NoSuchResourceException;
+import jj.resource.PathResolver;
+import jj.resource.ResourceKiller;
+import jj.resource.ResourceLoader;
+import jj.server.ServerLocation;
+import jj.util.SHA1Helper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * uses the file system, in a temp directory
+ * 
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PrecompressedResourceTest {
+	
+	static final String NAME = "script.js";
+	static final String GZ_NAME = NAME + "." + PrecompressedResource.GZIP_EXTENSION;
+	static final String RECORD_NAME = GZ_NAME + "." + PrecompressedResource.SOURCE_EXTENSION;
+	
+	@Mock StaticResource target;
+	
+	@Mock FileChannelCache fileChannelCache;
+	
+	@Mock PathResolver pathResolver;
+	
+	Path directory;
+	Path served;
+	Path cache;
+	Path source;
+	Path sidecar;
+	Path record;
+	String contents;
+	
+	@Before
+	public void before() throws Exception {
+		directory = Files.createTempDirectory("precompressed");
+		served = Files.createDirectory(directory.resolve("served"));
+		cache = directory.resolve("cache");
+		source = served.resolve(NAME);
+		sidecar = cache.resolve(GZ_NAME);
+		record = cache.resolve(RECORD_NAME);
+		
+		given(pathResolver.resolvePath(eq(ServerLocation.Cache), anyString())).willAnswer(invocation ->
+			cache.resolve(((String)invocation.getArguments()[1]).substring(
+				(PrecompressedResource.CACHE_DIRECTORY + "/" + AppBase + "/").length()
+			))
+		);
+		
+		givenSource(200);
+	}
+	
+	private void givenSource(int functions) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < functions; ++i) {
+			sb.append("function f").append(i).append("() { return ").append(i).append("; }\n");
+		}
+		contents = sb.toString();
+		Files.write(source, contents.getBytes(UTF_8));
+		
+		given(target.alive()).willReturn(true);
+		given(target.path()).willReturn(source);
+		given(target.size()).willReturn(Files.size(source));
+		given(target.sha1()).willReturn(SHA1Helper.keyFor(source));
+		given(target.lastModified()).willReturn(Files.getLastModifiedTime(source));
+	}
+	
+	@After
+	public void after() throws Exception {
+		// deepest first, so the directories are empty when they go
+		try (Stream<Path> paths = Files.walk(directory).sorted(Comparator.reverseOrder())) {
+			for (Path path : (Iterable<Path>)paths::iterator) {
+				Files.delete(path);
+			}
+		}
+	}
+	
+	private MockAbstractResourceDependencies dependencies(String name) {
+		MockAbstractResourceDependencies dependencies =
+			new MockAbstractResourceDependencies(PrecompressedResource.class, AppBase, name);
+		given(dependencies.resourceFinder().findResource(StaticResource.class, AppBase, NAME)).willReturn(target);
+		return dependencies;
+	}
+	
+	private String gunzip(Path path) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+			byte[] buffer = new byte[4096];
+			for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+				out.write(buffer, 0, read);
+			}
+		}
+		return new String(out.toByteArray(), UTF_8);
+	}
+	
+	@Test
+	public void testWritesSidecar() throws Exception {
+		
+		PrecompressedResource resource = new PrecompressedResource(dependencies(GZ_NAME), pathResolver, fileChannelCache);
+		
+		assertTrue(Files.exists(sidecar));
+		assertThat(gunzip(sidecar), is(contents));
+		assertThat(new String(Files.readAllBytes(record), UTF_8), is(target.sha1() + target.size()));
+		assertThat(resource.wrapper(), is(ZlibWrapper.GZIP));
+		assertThat(resource.size(), is(Files.size(sidecar)));
+		assertTrue(resource.smaller());
+		assertThat(resource.sha1(), is(not(target.sha1())));
+		assertFalse(resource.compressible());
+		
+		verify(target).addDependent(resource);
+		verify(target).precompressed(resource);
+	}
+	
+	@Test
+	public void testWritesNothingWhereTheSourceIs() throws Exception {
+		
+		PrecompressedResource resource = new PrecompressedResource(dependencies(GZ_NAME), pathResolver, fileChannelCache);
+		
+		assertThat(resource.path(), is(sidecar));
+		verify(pathResolver).resolvePath(ServerLocation.Cache, PrecompressedResource.CACHE_DIRECTORY + "/" + AppBase + "/" + GZ_NAME);
+		// no sidecar, no record, no temp files
+		try (Stream<Path> paths = Files.list(served)) {
+			assertThat(paths.toArray(), is(new Object[] { source }));
+		}
+	}
+	
+	@Test
+	public void testReusesCurrentSidecar() throws Exception {
+		
+		Files.createDirectories(cache);
+		Files.write(sidecar, "not really gzip".getBytes(UTF_8));
+		Files.write(record, (target.sha1() + target.size()).getBytes(UTF_8));
+		
+		PrecompressedResource resource = new PrecompressedResource(dependencies(GZ_NAME), pathResolver, fileChannelCache);
+		
+		assertThat(new String(Files.readAllBytes(sidecar), UTF_8), is("not really gzip"));
+		assertThat(resource.size(), is(Files.size(sidecar)));
+	}
+	
+	@Test
+	public void testReplacesUnrecordedSidecar() throws Exception {
+		
+		Files.createDirectories(cache);
+		Files.write(sidecar, "not really gzip".getBytes(UTF_8));
+		
+		new PrecompressedResource(dependencies(GZ_NAME), pathResolver, fileChannelCache);
+		
+		assertThat(gunzip(sidecar), is(contents));
+	}
+	
+	@Test
+	public void testReplacesSidecarOfChangedSourceThatGotOlder() throws Exception {
+		
+		new PrecompressedResource(dependencies(GZ_NAME), pathResolver, fileChannelCache);
+		FileTime compressed = Files.getLastModifiedTime(sidecar);
+		
+		// the way a deploy that keeps modification times can leave things
+		givenSource(150);
+		Files.setLastModifiedTime(source, FileTime.fromMillis(compressed.toMillis() - 10000));
+		given(target.lastModified()).willReturn(Files.getLastModifiedTime(source));
+		
+		new PrecompressedResource(dependencies(GZ_NAME), pathResolver, fileChannelCache);
+		
+		assertThat(gunzip(sidecar), is(contents));
+		assertThat(new String(Files.readAllBytes(record), UTF_8), is(target.sha1() + target.size()));
+	}
+	
+	@Test
+	public void testEvictedSidecarIsLoadedAgainWhenAskedFor() throws Exception {
+		
+		ResourceLoader resourceLoader = mock(ResourceLoader.class);
+		StaticResource staticResource = StaticResourceMaker.make(AppBase, NAME, source, resourceLoader);
+		MockAbstractResourceDependencies dependencies = dependencies(GZ_NAME);
+		given(dependencies.resourceFinder().findResource(StaticResource.class, AppBase, NAME)).willReturn(staticResource);
+		
+		PrecompressedResource resource = new PrecompressedResource(dependencies, pathResolver, fileChannelCache);
+		assertThat(staticResource.precompressed(ZlibWrapper.GZIP), is(resource));
+		
+		// evicted on its own, since the static resource can't be while the sidecar depends on it
+		ResourceKiller.kill(resource);
+		
+		assertThat(staticResource.precompressed(ZlibWrapper.GZIP), is(nullValue()));
+		assertThat(staticResource.precompressed(ZlibWrapper.GZIP), is(nullValue()));
+		verify(resourceLoader).loadResource(PrecompressedResource.class, AppBase, GZ_NAME);
+		
+		PrecompressedResource reloaded = new PrecompressedResource(dependencies, pathResolver, fileChannelCache);
+		assertThat(staticResource.precompressed(ZlibWrapper.GZIP), is(reloaded));
+	}
+	
+	@Test
+	public void testNoTarget() throws Exception {
+		
+		given(target.alive()).willReturn(false);
+		
+		try {
+			new PrecompressedResource(dependencies(GZ_NAME), pathResolver, fileChannelCache);
+			fail();
+		} catch (NoSuchResourceException nsre) {}
+		
+		assertFalse(Files.exists(sidecar));
+	}
+	
+	@Test
+	public void testUnknownEncoding() throws Exception {
+		
+		try {
+			new PrecompressedResource(dependencies(NAME + ".br"), pathResolver, fileChannelCache);
+			fail();
+		} catch (NoSuchResourceException nsre) {}
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server.resource;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import io.netty.buffer.ByteBuf;
+import jj.resource.ResourceConfiguration;
+import jj.resource.ResourceIdentifier;
+import jj.resource.ResourceKilled;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * uses the file system, in a temp directory
+ * 
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class StaticBytesCacheTest {
+	
+	@Mock ResourceConfiguration configuration;
+	
+	StaticBytesCache cache;
+	
+	Path directory;
+	
+	@Before
+	public void before() throws Exception {
+		directory = Files.createTempDirectory("held");
+		
+		given(configuration.maxFileSizeToHold()).willReturn(8L);
+		given(configuration.maxHeldBytes()).willReturn(10L);
+		
+		cache = new StaticBytesCache(configuration);
+	}
+	
+	@After
+	public void after() throws Exception {
+		try (Stream<Path> paths = Files.list(directory)) {
+			for (Path path : (Iterable<Path>)paths::iterator) {
+				Files.delete(path);
+			}
+		}
+		Files.delete(directory);
+	}
+	
+	private StaticResource givenAFile(String name, String contents) throws Exception {
+		Path path = directory.resolve(name);
+		Files.write(path, contents.getBytes(UTF_8));
+		
+		StaticResource resource = mock(StaticResource.class);
+		ResourceIdentifier<?, ?> identifier = mock(ResourceIdentifier.class);
+		willReturn(identifier).given(resource).identifier();
+		given(resource.alive()).willReturn(true);
+		given(resource.size()).willReturn(Files.size(path));
+		given(resource.fileChannel()).willAnswer(invocation -> FileChannel.open(path));
+		
+		return resource;
+	}
+	
+	private String read(StaticResource resource) throws Exception {
+		ByteBuf bytes = cache.bytes(resource);
+		try {
+			return bytes.toString(UTF_8);
+		} finally {
+			bytes.release();
+		}
+	}
+	
+	@Test
+	public void testHoldsSmallFiles() throws Exception {
+		
+		StaticResource resource = givenAFile("small", "hi there");
+		
+		assertThat(read(resource), is("hi there"));
+		assertThat(read(resource), is("hi there"));
+		
+		verify(resource).fileChannel();
+		assertThat(cache.heldBytes(), is(8L));
+	}
+	
+	@Test
+	public void testIgnoresLargeFiles() throws Exception {
+		
+		StaticResource resource = givenAFile("large", "hi there everybody");
+		
+		assertThat(cache.bytes(resource), is(nullValue()));
+		
+		verify(resource, never()).fileChannel();
+		assertThat(cache.heldBytes(), is(0L));
+	}
+	
+	@Test
+	public void testLetsGoOfTheLeastRecentlyServed() throws Exception {
+		
+		StaticResource one = givenAFile("one", "1111");
+		StaticResource two = givenAFile("two", "2222");
+		StaticResource three = givenAFile("three", "3333");
+		
+		read(one);
+		read(two);
+		read(one);
+		read(three); // two goes
+		
+		assertThat(cache.heldBytes(), is(8L));
+		
+		read(one);
+		read(three);
+		verify(one).fileChannel();
+		verify(three).fileChannel();
+		
+		read(two);
+		verify(two, times(2)).fileChannel();
+	}
+	
+	@Test
+	public void testHandedOutBytesOutliveEviction() throws Exception {
+		
+		StaticResource one = givenAFile("one", "111111");
+		StaticResource two = givenAFile("two", "222222");
+		
+		ByteBuf bytes = cache.bytes(one);
+		read(two); // one goes
+		
+		assertThat(bytes.refCnt(), is(1));
+		assertThat(bytes.toString(UTF_8), is("111111"));
+		bytes.release();
+	}
+	
+	@Test
+	public void testLetsGoOfKilledResources() throws Exception {
+		
+		StaticResource resource = givenAFile("small", "hi there");
+		ByteBuf bytes = cache.bytes(resource);
+		
+		ResourceKilled event = mock(ResourceKilled.class);
+		willReturn(resource.identifier()).given(event).identifier();
+		cache.on(event);
+		
+		assertThat(cache.heldBytes(), is(0L));
+		assertThat(bytes.refCnt(), is(1));
+		bytes.release();
+	}
+	
+	@Test
+	public void testReadsReplacementsFresh() throws Exception {
+		
+		StaticResource resource = givenAFile("small", "hi there");
+		read(resource);
+		
+		StaticResource replacement = givenAFile("small", "hi again");
+		willReturn(resource.identifier()).given(replacement).identifier();
+		
+		assertThat(read(replacement), is("hi again"));
+		assertThat(cache.heldBytes(), is(8L));
+	}
+	
+	@Test
+	public void testDoesNotHoldChangedFiles() throws Exception {
+		
+		StaticResource resource = givenAFile("small", "hi there");
+		Files.write(directory.resolve("small"), "hi".getBytes(UTF_8));
+		
+		assertThat(cache.bytes(resource), is(nullValue()));
+		assertThat(cache.heldBytes(), is(0L));
+	}
+}
@@ -21,6 +21,8 @@ import java.nio.file.Path;
 
 import jj.event.Publisher;
 import jj.resource.Location;
+import jj.resource.ResourceConfiguration;
+import jj.resource.ResourceLoader;
 import jj.resource.MockAbstractResourceDependencies;
 import jj.resource.MockResourceIdentifierMaker;
 
@@ -30,6 +32,10 @@ import jj.resource.MockResourceIdentifierMaker;
  */
 public class StaticResourceMaker {
 	public static StaticResource make(Location base, String name, Path path) throws Exception {
+		return make(base, name, path, mock(ResourceLoader.class));
+	}
+	
+	public static StaticResource make(Location base, String name, Path path, ResourceLoader resourceLoader) throws Exception {
 
 		Publisher publisher = mock(Publisher.class);
 		
@@ -38,7 +44,10 @@ public class StaticResourceMaker {
 				new MockResourceIdentifierMaker().make(StaticResource.class, base, name),
 				publisher
 			),
-			path
+			path,
+			new StaticBytesCache(mock(ResourceConfiguration.class)),
+			new FileChannelCache(mock(ResourceConfiguration.class), publisher),
+			resourceLoader
 		);
 	}
 }
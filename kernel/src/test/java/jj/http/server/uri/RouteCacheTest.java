@@ -0,0 +1,120 @@
+/*
+ *    Copyright 2012 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.http.server.uri;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+import static io.netty.handler.codec.http.HttpMethod.*;
+
+import jj.http.server.RouteProcessor;
+import jj.http.server.ServableResources;
+import jj.http.server.resource.StaticResource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class RouteCacheTest {
+	
+	private static final String STATIC = "static";
+	
+	@Mock ServableResources servables;
+	@Mock RouteProcessor routeProcessor;
+	
+	RouteTrie trie;
+	
+	@Before
+	public void before() {
+		trie = new RouteTrie()
+			.addRoute(new Route(GET, "/files/*path", STATIC, ""))
+			.addRoute(new Route(POST, "/things/:id", STATIC, ""))
+			.compress();
+		
+		given(servables.routeProcessor(STATIC)).willReturn(routeProcessor);
+		willReturn(StaticResource.class).given(servables).classFor(STATIC);
+	}
+	
+	@Test
+	public void testResolvesOnce() {
+		RouteCache cache = new RouteCache(trie, servables, 16);
+		
+		URIMatch first = new URIMatch("/files/a.txt");
+		RouteMatch match1 = cache.find(GET, first);
+		
+		assertThat(match1.uriMatch, is(sameInstance(first)));
+		assertThat(match1.routeProcessor(), is(routeProcessor));
+		assertThat(match1.resourceClass(), is(equalTo(StaticResource.class)));
+		assertThat(match1.params.get("path"), is("a.txt"));
+		
+		// same path, and HEAD is routed the same as GET
+		URIMatch second = new URIMatch("/be03b9352e1e254cae9a58cff2b20e0c8d513e47/files/a.txt");
+		RouteMatch match2 = cache.find(HEAD, second);
+		
+		assertThat(match2.uriMatch, is(sameInstance(second)));
+		assertThat(match2.route, is(sameInstance(match1.route)));
+		assertThat(match2.params, is(sameInstance(match1.params)));
+		assertThat(match2.routeProcessor(), is(routeProcessor));
+		assertThat(match2.resourceClass(), is(equalTo(StaticResource.class)));
+		
+		verify(servables).routeProcessor(STATIC);
+		assertThat(cache.size(GET), is(1));
+	}
+	
+	@Test
+	public void testMethodsAreSeparate() {
+		RouteCache cache = new RouteCache(trie, servables, 16);
+		
+		assertTrue(cache.find(POST, new URIMatch("/things/1")).matched());
+		assertFalse(cache.find(GET, new URIMatch("/things/1")).matched());
+		assertFalse(cache.find(GET, new URIMatch("/things/1")).matched());
+		
+		assertThat(cache.size(POST), is(1));
+		assertThat(cache.size(GET), is(1));
+		verify(servables).routeProcessor(STATIC);
+	}
+	
+	@Test
+	public void testEmptiesWhenFull() {
+		RouteCache cache = new RouteCache(trie, servables, 2);
+		
+		cache.find(GET, new URIMatch("/files/a"));
+		cache.find(GET, new URIMatch("/files/b"));
+		assertThat(cache.size(GET), is(2));
+		
+		RouteMatch match = cache.find(GET, new URIMatch("/files/c"));
+		assertThat(match.params.get("path"), is("c"));
+		assertThat(cache.size(GET), is(1));
+	}
+	
+	@Test
+	public void testNoCache() {
+		RouteCache cache = new RouteCache(trie, servables, 0);
+		
+		assertTrue(cache.find(GET, new URIMatch("/files/a")).matched());
+		assertTrue(cache.find(GET, new URIMatch("/files/a")).matched());
+		
+		assertThat(cache.size(GET), is(0));
+		verify(servables, times(2)).routeProcessor(STATIC);
+	}
+}
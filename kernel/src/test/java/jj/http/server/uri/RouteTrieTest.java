@@ -458,6 +458,26 @@ public class RouteTrieTest {
 		assertThat(routeMatch.route.mapping(), is(result(-300)));
 	}
 	
+	@Test
+	public void testFailedBranchesLeaveNoParams() {
+		RouteTrie trie = new RouteTrie()
+			.addRoute(new Route(GET, "/thing/:id(\\d+)/view", DOCUMENT, result(0)))
+			.addRoute(new Route(GET, "/thing/:name/edit",      DOCUMENT, result(1)))
+			.compress();
+		
+		RouteMatch result = trie.find(GET, new URIMatch("/thing/12/edit"));
+		assertThat(result.route.mapping(), is(result(1)));
+		assertThat(result.params.get("name"), is("12"));
+		assertThat(result.params.containsKey("id"), is(false));
+		assertThat(result.params.size(), is(1));
+		
+		// and the next search on this thread starts clean
+		result = trie.find(GET, new URIMatch("/thing/12/view"));
+		assertThat(result.route.mapping(), is(result(0)));
+		assertThat(result.params.get("id"), is("12"));
+		assertThat(result.params.size(), is(1));
+	}
+	
 	@Test
 	public void testDuplicateRoute() {
 		
@@ -17,6 +17,7 @@ package jj.http.server.uri;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 import static io.netty.handler.codec.http.HttpMethod.*;
 
 import java.util.ArrayList;
@@ -28,6 +29,7 @@ import java.util.Set;
 
 import jj.execution.MockTaskRunner;
 import jj.http.server.RouteContributor;
+import jj.http.server.ServableResources;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -52,6 +54,11 @@ public class RouterTest {
 			return welcome;
 		}
 		
+		@Override
+		public int routeCacheSize() {
+			return 16;
+		}
+		
 		@Override
 		public List<Route> routes() {
 			List<Route> result = new ArrayList<>();
@@ -77,6 +84,8 @@ public class RouterTest {
 		new Route(DELETE, "/*path.something", SOMETHING, "")
 	);
 	
+	ServableResources servables = mock(ServableResources.class);
+	
 	Router router;
 
 	@Before
@@ -86,7 +95,7 @@ public class RouterTest {
 		routeContributors.add(routeContributor1);
 		routeContributors.add(routeContributor2);
 		
-		router = new Router(config, routeContributors, mockTaskRunner);
+		router = new Router(config, routeContributors, mockTaskRunner, servables);
 		router.on(null);
 		mockTaskRunner.runFirstTask();
 	}
@@ -19,6 +19,13 @@ import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 import jj.http.server.uri.URIMatch;
 
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.netty.handler.codec.http.QueryStringDecoder;
+
 import org.junit.Test;
 
 /**
@@ -146,4 +153,110 @@ public class URIMatchTest {
 		assertThat(match.extension, is("css"));
 		assertThat(match.versioned, is(false));
 	}
+	
+	@Test
+	public void testNormalization() {
+		assertThat(new URIMatch("/a/./b/../c").uri, is("/a/c"));
+		assertThat(new URIMatch("/a//b/").uri, is("/a/b/"));
+		assertThat(new URIMatch("/../../a").uri, is("/a"));
+		assertThat(new URIMatch("a/b?c=/d/../e").uri, is("/a/b"));
+		assertThat(new URIMatch("/a/..").uri, is("/"));
+		assertThat(new URIMatch("/a/../").uri, is("//"));
+		assertThat(new URIMatch("/?q").uri, is("//"));
+	}
+	
+	@Test
+	public void testLineTerminatorsInNames() {
+		URIMatch match = new URIMatch("/a\u2028b.js");
+		assertThat(match.name, is(nullValue()));
+		assertThat(match.path, is(nullValue()));
+		assertFalse(match.versioned);
+		
+		match = new URIMatch("/ab.j\ns");
+		assertThat(match.name, is("ab"));
+		assertThat(match.extension, is("j\ns"));
+	}
+	
+	/**
+	 * the way the match used to be made, with a file system path and some patterns
+	 */
+	private static final class Reference {
+		
+		static final Pattern URI_PATTERN = Pattern.compile("^/(?:([\\da-f]{40})/)?(.*?)(?:\\.([^.]+))?$");
+		static final Pattern VERSION_PATTERN = Pattern.compile("-\\d+(?:[.]\\d+)*(?:[.-]?(?:alpha|beta|pre))?(?:(?:[.-](?:min|pack))?$|/)");
+		
+		final String uri;
+		final String sha1;
+		final String name;
+		final String extension;
+		final String path;
+		final boolean versioned;
+		
+		Reference(final String uri) {
+			QueryStringDecoder qsd = new QueryStringDecoder(uri.startsWith("/") ? uri : "/" + uri);
+			this.uri = "/".equals(uri) ? uri : (Paths.get(qsd.path()).normalize().toString() + (qsd.path().endsWith("/") ? "/" : ""));
+			Matcher matcher = URI_PATTERN.matcher(this.uri);
+			String shaCandidate = null;
+			String nameCandidate = null;
+			String extensionCandidate = null;
+			if (matcher.matches()) {
+				shaCandidate = matcher.group(1);
+				nameCandidate = matcher.group(2);
+				if (nameCandidate != null && nameCandidate.endsWith("/")) {
+					nameCandidate = nameCandidate.substring(0, nameCandidate.length() - 1);
+				}
+				extensionCandidate = matcher.group(3);
+				if (extensionCandidate != null && extensionCandidate.endsWith("/")) {
+					extensionCandidate = extensionCandidate.substring(0, extensionCandidate.length() - 1);
+				}
+			}
+			sha1 = shaCandidate;
+			name = nameCandidate;
+			extension = extensionCandidate;
+			path = name == null ? null : name + (extensionCandidate == null ? "" : "." + extensionCandidate);
+			versioned = sha1 != null || (nameCandidate != null && VERSION_PATTERN.matcher(nameCandidate).find());
+		}
+	}
+	
+	private static final String[] PIECES = {
+		"/", "/", "/", "/", ".", ".", "..", "-", "-", "a", "b", "js", "min", "pack", "alpha", "beta", "pre",
+		"0", "1", "23", "?", "q=/x/../y", "\n", "\r", " ", "+", "%2F", "\0", "A",
+		"be03b9352e1e254cae9a58cff2b20e0c8d513e47", "be03b9352e1e254cae9a58cff2b20e0c8d513e4"
+	};
+	
+	private String randomUri(Random random) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = random.nextInt(14); i > 0; --i) {
+			sb.append(PIECES[random.nextInt(PIECES.length)]);
+		}
+		return sb.toString();
+	}
+	
+	@Test
+	public void testMatchesTheReference() {
+		Random random = new Random(1865);
+		for (int i = 0; i < 50000; ++i) {
+			String uri = randomUri(random);
+			
+			Reference expected;
+			try {
+				expected = new Reference(uri);
+			} catch (IllegalArgumentException iae) {
+				try {
+					new URIMatch(uri);
+					fail("expected [" + uri + "] to be rejected");
+				} catch (IllegalArgumentException expectedToo) {}
+				continue;
+			}
+			
+			URIMatch match = new URIMatch(uri);
+			String reason = "[" + uri + "] became " + match;
+			assertThat(reason, match.uri, is(expected.uri));
+			assertThat(reason, match.sha1, is(expected.sha1));
+			assertThat(reason, match.name, is(expected.name));
+			assertThat(reason, match.extension, is(expected.extension));
+			assertThat(reason, match.path, is(expected.path));
+			assertThat(reason, match.versioned, is(expected.versioned));
+		}
+	}
 }
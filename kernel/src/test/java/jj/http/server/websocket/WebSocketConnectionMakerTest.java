@@ -94,7 +94,13 @@ public class WebSocketConnectionMakerTest {
 		webSocketConnectionHosts.add(TestWebSocketConnectionHost.class);
 		webSocketConnectionHosts.add(DocumentScriptEnvironment.class);
 		
-		wscm = new WebSocketConnectionMaker(handlerCreator, resourceFinder, ctx, request, response, handshakerFactory, webSocketConnectionHosts);
+		wscm = new WebSocketConnectionMaker(handlerCreator, resourceFinder, webSocketConnectionHosts) {
+			
+			@Override
+			WebSocketServerHandshakerFactory handshakerFactory(FullHttpRequest request) {
+				return handshakerFactory;
+			}
+		};
 	}
 	
 	@Test
@@ -106,7 +112,7 @@ public class WebSocketConnectionMakerTest {
 		given(handshaker.handshake(channel, request)).willReturn(channelFuture);
 		
 		// when
-		wscm.handshakeWebsocket();
+		wscm.handshakeWebsocket(ctx, request, response);
 		
 		// then
 		verify(channelFuture).addListener(futureListenerCaptor.capture());
@@ -134,7 +140,7 @@ public class WebSocketConnectionMakerTest {
 		given(handshakerFactory.newHandshaker(request)).willReturn(null);
 		
 		// when
-		wscm.handshakeWebsocket();
+		wscm.handshakeWebsocket(ctx, request, response);
 		
 		// then
 		verify(response).header(HttpHeaderNames.SEC_WEBSOCKET_VERSION, WebSocketVersion.V13.toHttpHeaderValue());
@@ -150,7 +156,7 @@ public class WebSocketConnectionMakerTest {
 		given(handshaker.handshake(channel, request)).willReturn(channelFuture);
 		
 		// when
-		wscm.handshakeWebsocket();
+		wscm.handshakeWebsocket(ctx, request, response);
 		
 		// then
 		verify(channelFuture).addListener(futureListenerCaptor.capture());
@@ -193,7 +199,7 @@ public class WebSocketConnectionMakerTest {
 		given(handshaker.handshake(channel, request)).willReturn(channelFuture);
 		
 		// when
-		wscm.handshakeWebsocket();
+		wscm.handshakeWebsocket(ctx, request, response);
 		
 		// then
 		verify(channelFuture).addListener(futureListenerCaptor.capture());
@@ -0,0 +1,154 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.resource;
+
+import static jj.application.AppLocation.AppBase;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.util.IllegalReferenceCountException;
+import jj.http.server.CompressedBytes;
+import jj.util.SHA1Helper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author jason
+ *
+ */
+public class AbstractFileResourceTest {
+	
+	static class BytesResource extends AbstractFileResource<Void> {
+
+		BytesResource(Dependencies dependencies, Path path) {
+			super(dependencies, path);
+		}
+		
+		ByteBuf bytes() {
+			return byteBuffer;
+		}
+	}
+	
+	final String indexHtml = "index.html";
+	
+	MockAbstractResourceDependencies dependencies;
+	Path index;
+	byte[] contents;
+	
+	@Before
+	public void before() throws Exception {
+		dependencies = new MockAbstractResourceDependencies(BytesResource.class, AppBase, indexHtml);
+		index = Paths.get(AbstractFileResourceTest.class.getResource(indexHtml).toURI());
+		contents = Files.readAllBytes(index);
+	}
+	
+	private void assertBytes(BytesResource resource) {
+		byte[] bytes = new byte[resource.bytes().readableBytes()];
+		resource.bytes().getBytes(0, bytes);
+		assertThat(bytes, is(contents));
+		assertThat(resource.sha1(), is(SHA1Helper.keyFor(contents)));
+	}
+	
+	@Test
+	public void testHeapBytes() {
+		BytesResource resource = new BytesResource(dependencies, index);
+		
+		assertThat(resource.bytes().isDirect(), is(false));
+		assertBytes(resource);
+		
+		resource.kill();
+		assertThat(resource.bytes().refCnt(), is(1));
+	}
+	
+	@Test
+	public void testDirectBytes() {
+		given(dependencies.resourceConfiguration().offHeapFileBytes()).willReturn(true);
+		given(dependencies.resourceConfiguration().minMappedFileSize()).willReturn(Long.MAX_VALUE);
+		BytesResource resource = new BytesResource(dependencies, index);
+		
+		assertThat(resource.bytes().isDirect(), is(true));
+		assertThat(resource.bytes(), is(not(instanceOf(MappedFileBytes.class))));
+		assertBytes(resource);
+		
+		resource.kill();
+		assertThat(resource.bytes().refCnt(), is(0));
+	}
+	
+	@Test
+	public void testMappedBytes() {
+		given(dependencies.resourceConfiguration().offHeapFileBytes()).willReturn(true);
+		given(dependencies.resourceConfiguration().minMappedFileSize()).willReturn(1L);
+		BytesResource resource = new BytesResource(dependencies, index);
+		
+		assertThat(resource.bytes(), is(instanceOf(MappedFileBytes.class)));
+		assertBytes(resource);
+		
+		// what's being sent keeps it mapped
+		ByteBuf sending = resource.bytes().slice().retain();
+		resource.kill();
+		assertThat(resource.bytes().refCnt(), is(1));
+		sending.release();
+		assertThat(resource.bytes().refCnt(), is(0));
+	}
+	
+	private byte[] gunzip(ByteBuf gzipped) throws Exception {
+		try (InputStream in = new GZIPInputStream(new ByteBufInputStream(gzipped))) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+	
+	@Test
+	public void testMappedBytesCompressWhileHeldAfterTheResourceDies() throws Exception {
+		given(dependencies.resourceConfiguration().offHeapFileBytes()).willReturn(true);
+		given(dependencies.resourceConfiguration().minMappedFileSize()).willReturn(1L);
+		BytesResource resource = new BytesResource(dependencies, index);
+		
+		// the way a response holds them while it sends
+		ByteBuf sending = resource.bytes().slice().retain();
+		resource.kill();
+		
+		assertThat(gunzip(new CompressedBytes().bytes(ZlibWrapper.GZIP, resource.bytes())), is(contents));
+		assertThat(resource.bytes().refCnt(), is(1));
+		
+		sending.release();
+		assertThat(resource.bytes().refCnt(), is(0));
+		
+		try {
+			new CompressedBytes().bytes(ZlibWrapper.GZIP, resource.bytes());
+			fail("compressed unmapped bytes");
+		} catch (IllegalReferenceCountException irce) {
+			// can't hold what's gone
+		}
+	}
+}
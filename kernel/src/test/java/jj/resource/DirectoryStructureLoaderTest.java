@@ -0,0 +1,143 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.resource;
+
+import static jj.application.AppLocation.AppBase;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import jj.execution.JJTask;
+import jj.execution.MockTaskRunner;
+import jj.execution.Promise;
+import jj.execution.TaskHelper;
+import jj.execution.TaskRunner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DirectoryStructureLoaderTest {
+	
+	@Mock PathResolver pathResolver;
+	@Mock ResourceFinder resourceFinder;
+	@Mock ResourceConfiguration configuration;
+	
+	Path root;
+	
+	final List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+	final List<String> orphans = Collections.synchronizedList(new ArrayList<>());
+	
+	@Before
+	public void before() throws Exception {
+		root = Files.createTempDirectory("directory-structure");
+		Files.createDirectories(root.resolve("a/b/c"));
+		Files.createDirectories(root.resolve("d/e"));
+		Files.createDirectories(root.resolve("f"));
+		Files.createFile(root.resolve("a/file.txt"));
+		
+		given(pathResolver.resolveLocation(any(Path.class))).willReturn(AppBase);
+		given(pathResolver.resolvePath(AppBase)).willReturn(root);
+		given(configuration.ioThreads()).willReturn(4);
+		
+		given(resourceFinder.loadResource(eq(DirectoryResource.class), eq(AppBase), anyString())).willAnswer(invocation -> {
+			String name = (String)invocation.getArguments()[2];
+			int slash = name.lastIndexOf('/');
+			String parent = slash == -1 ? "" : name.substring(0, slash);
+			if (!name.isEmpty() && !loaded.contains(parent)) {
+				orphans.add(name);
+			}
+			loaded.add(name);
+			return null;
+		});
+	}
+	
+	@After
+	public void after() throws Exception {
+		try (Stream<Path> paths = Files.walk(root)) {
+			paths.sorted(Collections.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+	
+	private void assertLoaded() {
+		assertThat(loaded, containsInAnyOrder("", "a", "a/b", "a/b/c", "d", "d/e", "f"));
+		assertThat(orphans, is(empty()));
+	}
+
+	@Test
+	public void testParentsBeforeChildren() throws Exception {
+		MockTaskRunner taskRunner = new MockTaskRunner();
+		DirectoryStructureLoader loader = new DirectoryStructureLoader(pathResolver, resourceFinder, taskRunner, configuration);
+		
+		loader.on(new DirectoryCreation(root));
+		taskRunner.runFirstTask();
+		
+		// the first task loads everything itself when nobody helps
+		assertLoaded();
+		
+		taskRunner.runUntilIdle();
+		assertThat(loaded.size(), is(7));
+	}
+	
+	@Test
+	public void testLoadsAcrossThreads() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		TaskRunner taskRunner = new TaskRunner() {
+			
+			@Override
+			public <ExecutorType> Promise execute(JJTask<ExecutorType> task) {
+				executor.submit(() -> {
+					TaskHelper.invoke(task);
+					return null;
+				});
+				return null;
+			}
+		};
+		DirectoryStructureLoader loader = new DirectoryStructureLoader(pathResolver, resourceFinder, taskRunner, configuration);
+		
+		try {
+			loader.on(new DirectoryCreation(root));
+			for (int i = 0; i < 100 && loaded.size() < 7; ++i) {
+				Thread.sleep(10);
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.SECONDS);
+		}
+		
+		assertLoaded();
+	}
+}
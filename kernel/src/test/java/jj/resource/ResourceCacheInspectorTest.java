@@ -139,5 +139,23 @@ public class ResourceCacheInspectorTest {
 		assertThat(typeArray.get(0, typeArray), is("type1"));
 		assertThat(typeArray.get(1, typeArray), is("type2"));
 	}
+	
+	@Test
+	public void testCounts() {
+		given(resourceCache.hits()).willReturn(10L);
+		given(resourceCache.misses()).willReturn(2L);
+		given(resourceCache.evictions()).willReturn(1L);
+		given(resourceCache.weight()).willReturn(2048L);
+		
+		try (RhinoContext context = rhinoContextProvider.get()) {
+			rca = new ResourceCacheInspector(resourceCache, resourceCreators, rhinoContextProvider, context.initStandardObjects());
+		}
+		
+		Scriptable counts = rca.counts();
+		assertThat(counts.get("hits", counts), is(10L));
+		assertThat(counts.get("misses", counts), is(2L));
+		assertThat(counts.get("evictions", counts), is(1L));
+		assertThat(counts.get("bytes", counts), is(2048L));
+	}
 
 }
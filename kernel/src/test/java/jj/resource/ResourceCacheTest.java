@@ -18,6 +18,7 @@ package jj.resource;
 import static jj.server.ServerLocation.Virtual;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
 
 import java.io.IOException;
 import java.util.Date;
@@ -49,6 +50,7 @@ public class ResourceCacheTest {
 	
 	@Mock SimpleResourceCreator<MyResource, Void> creator1;
 	@Mock SimpleResourceCreator<TestDateResource, Date> creator2;
+	@Mock ResourceConfiguration configuration;
 
 	ResourceCache rc;
 
@@ -62,7 +64,8 @@ public class ResourceCacheTest {
 		HashMap<Class<? extends AbstractResource<?>>, SimpleResourceCreator<? extends AbstractResource<?>, ?>> map = new HashMap<>();
 		map.put(MyResource.class, creator1);
 		map.put(TestDateResource.class, creator2);
-		rc = new ResourceCache(new ResourceCreators(map));
+		given(configuration.maxCachedBytes()).willReturn(Long.MAX_VALUE);
+		rc = new ResourceCache(new ResourceCreators(map), configuration);
 
 		resource1 = new MyResource("resource1", publisher);
 		resource2 = new MyResource("resource2", publisher);
@@ -99,5 +102,84 @@ public class ResourceCacheTest {
 		assertThat(resources, hasSize(2));
 		assertThat(resources, containsInAnyOrder(resource1, testDateResource1));
 	}
-
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testPathIndexFollowsChanges() {
+		
+		MyResource replacement1 = new MyResource("resource1", publisher);
+		MyResource replacement2 = new MyResource("resource1", publisher);
+		
+		rc.putIfAbsent(resource1);
+		rc.putIfAbsent(resource2);
+		assertThat(rc.putIfAbsent(replacement1), is(resource1));
+		assertThat(rc.findAllByPath(resource1.path()), contains(resource1));
+		
+		assertThat(rc.replace((Resource)replacement2, (Resource)replacement1), is(false));
+		assertThat(rc.replace((Resource)resource1, (Resource)replacement1), is(true));
+		assertThat(rc.findAllByPath(resource1.path()), contains(replacement1));
+		
+		assertThat(rc.replace((Resource)replacement2), is(true));
+		assertThat(rc.findAllByPath(resource1.path()), contains(replacement2));
+		
+		assertThat(rc.remove(replacement1), is(false));
+		assertThat(rc.remove(replacement2), is(true));
+		assertThat(rc.findAllByPath(resource1.path()), is(empty()));
+		assertThat(rc.findAllByPath(resource2.path()), contains(resource2));
+		
+		resource2.kill();
+		assertThat(rc.findAllByPath(resource2.path()), is(empty()));
+	}
+	
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		given(configuration.maxCachedBytes()).willReturn(2 * AbstractResource.BASE_RETAINED_BYTES);
+		MyResource resource3 = new MyResource("resource3", publisher);
+		
+		rc.putIfAbsent(resource1);
+		rc.putIfAbsent(resource2);
+		assertThat(rc.get(resource1.identifier()), is(resource1));
+		assertThat(rc.weight(), is(2 * AbstractResource.BASE_RETAINED_BYTES));
+		
+		rc.putIfAbsent(resource3);
+		
+		assertThat(rc.get(resource2.identifier()), is(nullValue()));
+		assertThat(resource2.alive(), is(false));
+		assertThat(rc.findAllByPath(resource2.path()), is(empty()));
+		assertThat(rc.get(resource1.identifier()), is(resource1));
+		assertThat(rc.get(resource3.identifier()), is(resource3));
+		assertThat(rc.weight(), is(2 * AbstractResource.BASE_RETAINED_BYTES));
+		
+		assertThat(rc.hits(), is(3L));
+		assertThat(rc.misses(), is(1L));
+		assertThat(rc.evictions(), is(1L));
+	}
+	
+	@Test
+	public void testNeverEvictsWhatOthersDependOn() {
+		given(configuration.maxCachedBytes()).willReturn(2 * AbstractResource.BASE_RETAINED_BYTES);
+		MyResource resource3 = new MyResource("resource3", publisher);
+		resource1.addDependent(new MyResource("dependent", publisher));
+		
+		rc.putIfAbsent(resource1);
+		rc.putIfAbsent(resource2);
+		rc.putIfAbsent(resource3);
+		
+		assertThat(rc.get(resource1.identifier()), is(resource1));
+		assertThat(rc.get(resource2.identifier()), is(nullValue()));
+		assertThat(rc.get(resource3.identifier()), is(resource3));
+	}
+	
+	@Test
+	public void testKeepsWhatWasJustAdded() {
+		given(configuration.maxCachedBytes()).willReturn(1L);
+		
+		rc.putIfAbsent(resource1);
+		assertThat(rc.get(resource1.identifier()), is(resource1));
+		
+		rc.putIfAbsent(resource2);
+		assertThat(rc.get(resource1.identifier()), is(nullValue()));
+		assertThat(rc.get(resource2.identifier()), is(resource2));
+		assertThat(rc.evictions(), is(1L));
+	}
 }
@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2016 Jason Miller
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jj.resource;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.*;
+
+import jj.application.AppLocation;
+import jj.script.module.ScriptResource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * @author jason
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ResourceIdentifierMakerTest {
+	
+	@Mock PathResolver pathResolver;
+	
+	@Mock AbstractFileResource<Void> target;
+	
+	ResourceIdentifierMaker rim;
+	
+	@Before
+	public void before() {
+		rim = new ResourceIdentifierMaker(pathResolver);
+	}
+
+	@Test
+	public void testSameInputsMakeTheSameIdentifier() {
+		ResourceIdentifier<ScriptResource, Void> ri1 = rim.make(ScriptResource.class, AppLocation.AppBase, "thing.js");
+		ResourceIdentifier<ScriptResource, Void> ri2 = rim.make(ScriptResource.class, AppLocation.AppBase, new String("thing.js"));
+		ResourceIdentifier<ScriptResource, Void> ri3 = rim.make(ScriptResource.class, AppLocation.Public, "thing.js");
+		
+		assertThat(ri1, is(sameInstance(ri2)));
+		assertThat(ri1, is(not(ri3)));
+		assertThat(rim.remembered(), is(2));
+		
+		// the normalization is remembered too
+		verify(pathResolver).normalizedLocation(AppLocation.AppBase, "thing.js");
+	}
+	
+	@Test
+	public void testNormalizedIdentifiers() {
+		given(pathResolver.normalizedLocation(AppLocation.AppBase, "public/thing.js")).willReturn(AppLocation.Public);
+		given(pathResolver.normalizedName(AppLocation.AppBase, AppLocation.Public, "public/thing.js")).willReturn("thing.js");
+		
+		ResourceIdentifier<ScriptResource, Void> ri1 = rim.make(ScriptResource.class, AppLocation.AppBase, "public/thing.js");
+		ResourceIdentifier<ScriptResource, Void> ri2 = rim.make(ScriptResource.class, AppLocation.AppBase, "public/thing.js");
+		
+		assertThat(ri1, is(sameInstance(ri2)));
+		assertThat(ri1.name, is("thing.js"));
+	}
+	
+	@Test
+	public void testIdentifiersWithArgumentsAreNotRemembered() {
+		ResourceIdentifier<Sha1Resource, Sha1ResourceTarget> ri1 =
+			rim.make(Sha1Resource.class, AppLocation.AppBase, "thing", new Sha1ResourceTarget(target));
+		ResourceIdentifier<Sha1Resource, Sha1ResourceTarget> ri2 =
+			rim.make(Sha1Resource.class, AppLocation.AppBase, "thing", new Sha1ResourceTarget(target));
+		
+		assertThat(ri1, is(ri2));
+		assertThat(ri1, is(not(sameInstance(ri2))));
+		assertThat(rim.remembered(), is(0));
+	}
+}
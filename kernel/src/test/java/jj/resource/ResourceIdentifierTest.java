@@ -43,4 +43,20 @@ public class ResourceIdentifierTest {
 		assertThat(ri1, is(not(ri3)));
 		assertThat(ri2, is(not(ri3)));
 	}
+
+	@Test
+	public void testFieldwiseEquality() {
+		ResourceIdentifier<ScriptResource, Void> ri1 =
+			new ResourceIdentifier<>(ScriptResource.class, AppLocation.AppBase.and(AppLocation.Public), "thing.js", null);
+
+		ResourceIdentifier<ScriptResource, Void> ri2 =
+			new ResourceIdentifier<>(ScriptResource.class, AppLocation.AppBase.and(AppLocation.Public), "thing.js", null);
+
+		assertThat(ri1, is(ri2));
+		assertThat(ri1.hashCode(), is(ri2.hashCode()));
+		assertThat(ri1.equals(ScriptResource.class, AppLocation.AppBase.and(AppLocation.Public), "thing.js", null), is(true));
+		assertThat(ri1.equals(ScriptResource.class, AppLocation.AppBase, "thing.js", null), is(false));
+		assertThat(ri1.equals(ModuleScriptEnvironment.class, AppLocation.AppBase.and(AppLocation.Public), "thing.js", null), is(false));
+		assertThat(ri1.toString(), is("j.s.m.ScriptResource@[AppBase, Public]/thing.js"));
+	}
 }
@@ -87,6 +87,7 @@ public class ResourceInstanceCreatorTest  {
 				bind(Clock.class).toInstance(new MockClock());
 				bind(Publisher.class).toInstance(mock(Publisher.class));
 				bind(ResourceFinder.class).toInstance(mock(ResourceFinder.class));
+				bind(ResourceLoader.class).toInstance(mock(ResourceLoader.class));
 				bind(ResourceConfiguration.class).toInstance(mock(ResourceConfiguration.class));
 			}
 		}, moduleCaptor.getValue());
@@ -49,6 +49,7 @@ public class ResourceWatchServiceLoopTest {
 	ResourceCache resourceCache;
 	@Mock ResourceLoader resourceLoader;
 	@Mock FileWatcher watcher;
+	@Mock ResourceConfiguration resourceConfiguration;
 	MockPublisher publisher;
 	MockTaskRunner taskRunner;
 
@@ -78,7 +79,8 @@ public class ResourceWatchServiceLoopTest {
 	@Before
 	public void before() throws Exception {
 
-		resourceCache = new ResourceCache(makeResourceCreators());
+		given(resourceConfiguration.maxCachedBytes()).willReturn(Long.MAX_VALUE);
+		resourceCache = new ResourceCache(makeResourceCreators(), resourceConfiguration);
 		
 		taskRunner = new MockTaskRunner();
 		loop = new ResourceWatchServiceLoop(
@@ -6,7 +6,6 @@ import static org.junit.Assert.*;
 import static org.mockito.BDDMockito.*;
 import jj.css.StylesheetResource;
 import jj.http.server.RouteProcessor;
-import jj.http.server.ServableResources;
 import jj.http.server.resource.StaticResource;
 import jj.http.server.uri.Route;
 import jj.http.server.uri.RouteMatch;
@@ -21,7 +20,6 @@ import org.mockito.runners.MockitoJUnitRunner;
 @RunWith(MockitoJUnitRunner.class)
 public class ServableLoaderTest {
 	
-	private @Mock ServableResources servables;
 	private @Mock Router router;
 	
 	ServableLoader sl;
@@ -42,28 +40,25 @@ public class ServableLoaderTest {
 
 	@Test
 	public void test() {
-		sl = new ServableLoader(servables, router);
+		sl = new ServableLoader(router);
 		
 		// given
 		given(router.routeRequest(GET, cssResourcePath)).willReturn(routeMatch1);
 		given(routeMatch1.matched()).willReturn(true);
-		given(routeMatch1.resourceName()).willReturn("stylesheet");
+		given(routeMatch1.routeProcessor()).willReturn(routeProcessor);
+		willReturn(StylesheetResource.class).given(routeMatch1).resourceClass();
 		given(routeMatch1.route()).willReturn(route);
 		given(router.routeRequest(GET, baseStaticPath)).willReturn(routeMatch2);
 		given(routeMatch2.matched()).willReturn(true);
-		given(routeMatch2.resourceName()).willReturn("static");
+		given(routeMatch2.routeProcessor()).willReturn(routeProcessor);
+		willReturn(StaticResource.class).given(routeMatch2).resourceClass();
 		given(routeMatch2.route()).willReturn(route);
 		given(router.routeRequest(GET, assetStaticPath)).willReturn(routeMatch3);
 		given(routeMatch3.matched()).willReturn(true);
-		given(routeMatch3.resourceName()).willReturn("static");
+		given(routeMatch3.routeProcessor()).willReturn(routeProcessor);
+		willReturn(StaticResource.class).given(routeMatch3).resourceClass();
 		given(routeMatch3.route()).willReturn(route);
 		
-		willReturn(StylesheetResource.class).given(servables).classFor("stylesheet");
-		willReturn(StaticResource.class).given(servables).classFor("static");
-		
-		given(servables.routeProcessor("stylesheet")).willReturn(routeProcessor);
-		given(servables.routeProcessor("static")).willReturn(routeProcessor);
-		
 		given(routeProcessor.loadResource(StylesheetResource.class, cssResourcePath, route)).willReturn(cssResource);
 		given(routeProcessor.loadResource(StaticResource.class, baseStaticPath, route)).willReturn(staticResource1);
 		given(routeProcessor.loadResource(StaticResource.class, assetStaticPath, route)).willReturn(staticResource2);
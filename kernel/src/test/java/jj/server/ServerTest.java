@@ -1,5 +1,7 @@
 package jj.server;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.*;
 
 import java.nio.file.Path;
@@ -44,6 +46,9 @@ public class ServerTest {
 		// api spec resources are delegated to APISpecs
 		server.resolvePath(ServerLocation.APISpecs, "c");
 		verify(apiSpecs).path("c");
+		
+		// the cache is a directory of the root
+		assertThat(server.resolvePath(ServerLocation.Cache, "d"), is(path.resolve("cache").resolve("d")));
 	}
 
 
@@ -16,10 +16,12 @@
 package jj.http.server;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpContent;
@@ -28,6 +30,9 @@ import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.stream.ChunkedNioFile;
 import io.netty.util.ReferenceCountUtil;
 
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
@@ -153,6 +158,20 @@ public class EmbeddedHttpServer {
 					
 				} while (!fileChunk.isEndOfInput());
 				
+			} else if (msg instanceof FileRegion) {
+				
+				FileRegion fileRegion = (FileRegion)msg;
+				ByteBuf buffer = ctx.alloc().buffer((int)fileRegion.count());
+				try (WritableByteChannel out = Channels.newChannel(new ByteBufOutputStream(buffer))) {
+					long transferred = 0;
+					while (transferred < fileRegion.count()) {
+						transferred += fileRegion.transferTo(out, transferred);
+					}
+				} finally {
+					fileRegion.release();
+				}
+				addBodyComponent(buffer);
+				
 			} else {
 				publisher.publish(new Emergency("received a message of unknown type {}", msg.getClass()));
 			}